@@ -0,0 +1,199 @@
+package com.devtools.requestbin.config;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.devtools.requestbin.exception.ServiceOverloadedException;
+import com.devtools.requestbin.service.AdmissionControlService;
+import com.devtools.requestbin.service.AdmissionControlService.TrafficClass;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+/**
+ * Sheds load before a request reaches the controllers
+ * <p>
+ * - Capture and management requests wait for a slot from their own adaptive limiter
+ * - Requests that miss their queue deadline get an immediate 503 with Retry-After,
+ *   rendered by GlobalExceptionHandler like every other error
+ * - A request holds its slot until it completes, including asynchronous completion
+ *   (non-blocking captures), unless it gives the slot back early (releaseEarly)
+ * - Each admitted request's latency and status feed back into its limiter; 503 and 507
+ *   responses are the server's own sheds (shard queues, memory budget, storage quota), not
+ *   a sign of slowness, so they don't count as failures
+ * <p>
+ * Static files and the H2 console are not limited.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class AdmissionControlFilter
+  extends OncePerRequestFilter
+{
+
+  private static final String PERMIT_ATTRIBUTE = AdmissionControlFilter.class.getName() + ".permit";
+
+  private final AdmissionControlService admissionControlService;
+  private final HandlerExceptionResolver exceptionResolver;
+
+  public AdmissionControlFilter(
+    AdmissionControlService admissionControlService,
+    @Qualifier("handlerExceptionResolver") HandlerExceptionResolver exceptionResolver)
+  {
+    this.admissionControlService = admissionControlService;
+    this.exceptionResolver = exceptionResolver;
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request)
+  {
+    return trafficClass(request) == null;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+    throws ServletException, IOException
+  {
+    TrafficClass trafficClass = trafficClass(request);
+
+    if (!admissionControlService.tryAdmit(trafficClass))
+    {
+      exceptionResolver.resolveException(request, response, null, new ServiceOverloadedException(
+        "Server is overloaded. Please retry later.", admissionControlService.getRetryAfterSeconds()));
+      return;
+    }
+
+    Permit permit = new Permit(admissionControlService, trafficClass);
+    request.setAttribute(PERMIT_ATTRIBUTE, permit);
+    boolean failed = true;
+    try
+    {
+      chain.doFilter(request, response);
+      failed = isFailure(response.getStatus());
+    }
+    finally
+    {
+      if (request.isAsyncStarted())
+      {
+        // Non-blocking captures and async handlers finish after this returns
+        request.getAsyncContext().addListener(new PermitReleasingListener(permit));
+      }
+      else
+      {
+        permit.release(failed);
+      }
+    }
+  }
+
+  /**
+   * Gives the request's slot back now as a success, leaving the rest of the request out of
+   * the limiter's feedback: waits that are part of the response itself (long-poll, streamed
+   * downloads, a bin's mock latency) say nothing about the server's load
+   */
+  public static void releaseEarly(ServletRequest request)
+  {
+    if (request.getAttribute(PERMIT_ATTRIBUTE) instanceof Permit permit)
+    {
+      permit.release(false);
+    }
+  }
+
+  private static boolean isFailure(int status)
+  {
+    return status >= 500
+      && status != HttpServletResponse.SC_SERVICE_UNAVAILABLE
+      && status != HttpStatus.INSUFFICIENT_STORAGE.value();
+  }
+
+  private static TrafficClass trafficClass(HttpServletRequest request)
+  {
+    String path = request.getRequestURI().substring(request.getContextPath().length());
+    if (path.startsWith("/b/"))
+    {
+      return TrafficClass.CAPTURE;
+    }
+    if (path.startsWith("/api/") || path.startsWith("/replay/"))
+    {
+      return TrafficClass.MANAGEMENT;
+    }
+    return null;
+  }
+
+  /**
+   * A request's slot, released exactly once
+   */
+  private static final class Permit
+  {
+
+    private final AdmissionControlService admissionControlService;
+    private final TrafficClass trafficClass;
+    private final long start = System.nanoTime();
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    Permit(AdmissionControlService admissionControlService, TrafficClass trafficClass)
+    {
+      this.admissionControlService = admissionControlService;
+      this.trafficClass = trafficClass;
+    }
+
+    void release(boolean failed)
+    {
+      if (released.compareAndSet(false, true))
+      {
+        admissionControlService.complete(trafficClass, System.nanoTime() - start, failed);
+      }
+    }
+  }
+
+  /**
+   * Releases the slot of an asynchronous request when it completes
+   */
+  private static final class PermitReleasingListener
+    implements AsyncListener
+  {
+
+    private final Permit permit;
+
+    PermitReleasingListener(Permit permit)
+    {
+      this.permit = permit;
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event)
+    {
+      permit.release(isFailure(((HttpServletResponse)event.getSuppliedResponse()).getStatus()));
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event)
+    {
+      permit.release(true);
+    }
+
+    @Override
+    public void onError(AsyncEvent event)
+    {
+      permit.release(true);
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event)
+    {
+      // Restarted async processing drops its listeners
+      event.getAsyncContext().addListener(this);
+    }
+  }
+}
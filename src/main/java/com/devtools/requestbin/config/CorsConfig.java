@@ -3,8 +3,10 @@ package com.devtools.requestbin.config;
 import java.util.Arrays;
 import java.util.List;
 
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
@@ -16,13 +18,16 @@ import org.springframework.web.filter.CorsFilter;
  * - Browser security prevents  (<a href="http://localhost:3000">frontend</a>) from calling
  * (<a href="http://localhost:8080">backend</a>) without explicit permission
  * - This config grants that permission
+ * <p>
+ * The filter is ordered right after admission control, so it also answers preflights
+ * and decorates responses on the /b/* capture fast path.
  */
 @Configuration
 public class CorsConfig
 {
 
   @Bean
-  public CorsFilter corsFilter()
+  public FilterRegistrationBean<CorsFilter> corsFilter()
   {
     CorsConfiguration config = new CorsConfiguration();
 
@@ -49,6 +54,8 @@ public class CorsConfig
     UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
     source.registerCorsConfiguration("/**", config);  // Apply to all endpoints
 
-    return new CorsFilter(source);
+    FilterRegistrationBean<CorsFilter> registration = new FilterRegistrationBean<>(new CorsFilter(source));
+    registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+    return registration;
   }
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.devtools.requestbin.config;
+
+import com.devtools.requestbin.service.MemoryBudgetService;
+import com.devtools.requestbin.service.MockResponseService;
+import com.devtools.requestbin.service.RequestCaptureService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+/**
+ * Mounts the optional capture fast path on /b/*
+ * <p>
+ * Enabled with app.capture.fast-path.enabled=true. It runs right after admission
+ * control and CORS, so load shedding still applies to captures and browser clients
+ * get their CORS headers and preflight answers.
+ * <p>
+ * With app.capture.non-blocking.enabled=true bodies are received without holding a
+ * thread, and captures are handed straight to their bin's shard.
+ * The "capture" profile turns both on for ingestion-only nodes.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.capture.fast-path.enabled", havingValue = "true")
+public class FastCaptureConfig
+{
+
+  @Bean
+  public FilterRegistrationBean<FastCaptureFilter> fastCaptureFilter(
+    RequestCaptureService requestCaptureService,
+    MemoryBudgetService memoryBudgetService,
+    MockResponseService mockResponseService,
+    @Qualifier("handlerExceptionResolver") HandlerExceptionResolver exceptionResolver,
+    @Value("${app.capture.non-blocking.enabled:false}") boolean nonBlocking)
+  {
+    FilterRegistrationBean<FastCaptureFilter> registration = new FilterRegistrationBean<>(
+      new FastCaptureFilter(requestCaptureService, memoryBudgetService, mockResponseService,
+        exceptionResolver, nonBlocking));
+    registration.addUrlPatterns("/b/*");
+    registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+    return registration;
+  }
+}
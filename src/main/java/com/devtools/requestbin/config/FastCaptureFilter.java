@@ -0,0 +1,412 @@
+package com.devtools.requestbin.config;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.devtools.requestbin.dto.CaptureReceipt;
+import com.devtools.requestbin.exception.ServiceOverloadedException;
+import com.devtools.requestbin.service.MemoryBudgetService;
+import com.devtools.requestbin.service.MemoryBudgetService.BodyBuffer;
+import com.devtools.requestbin.service.MemoryBudgetService.BufferedBody;
+import com.devtools.requestbin.service.MockResponse;
+import com.devtools.requestbin.service.MockResponseService;
+import com.devtools.requestbin.service.RequestCaptureService;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+/**
+ * Low-level capture path for /b/{uniqueUrl}, mounted in front of the DispatcherServlet
+ * <p>
+ * - The bin id is cut straight out of the request URI (no handler mapping or binding)
+ * - The capture pipeline is called directly
+ * - The acknowledgement is written from precomputed byte fragments instead of
+ *   serializing a Map with Jackson; bins with a response template answer with their
+ *   compiled MockResponse instead
+ * <p>
+ * The JSON body matches RequestCaptureController's, and errors are rendered by
+ * GlobalExceptionHandler as usual. Anything that doesn't look like a plain
+ * /b/{uniqueUrl}, and any CORS preflight, falls through to Spring MVC.
+ * <p>
+ * The bin is checked (exists, not expired) before any of the body is read. The body is
+ * then read on the request thread, the capture is handed to the bin's shard and the
+ * request goes async: the thread is free while the shard stores it, and the ack is
+ * written on a container thread, never on the shard.
+ * <p>
+ * Non-blocking mode: the body is received with a servlet ReadListener, so a slow sender
+ * holds only a connection, not a thread.
+ * <p>
+ * A request the container times out while async (a sender too slow to finish its body, a
+ * shard too busy to store it) is answered 503 and gives back its body's budget.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class FastCaptureFilter
+  implements Filter
+{
+
+  private static final String PREFIX = "/b/";
+
+  private static final byte[] ACK_HEAD =
+    "{\"status\":\"success\",\"message\":\"Request captured\",\"requestId\":".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] ACK_NO_ID = "null".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] ACK_TIMESTAMP = ",\"timestamp\":\"".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] ACK_TAIL = "\"}".getBytes(StandardCharsets.US_ASCII);
+
+  private static final int READ_CHUNK_SIZE = 8192;
+  private static final long TIMEOUT_RETRY_AFTER_SECONDS = 5;
+
+  private final RequestCaptureService requestCaptureService;
+  private final MemoryBudgetService memoryBudgetService;
+  private final MockResponseService mockResponseService;
+  private final HandlerExceptionResolver exceptionResolver;
+  private final boolean nonBlocking;
+
+  @Override
+  public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain)
+    throws IOException, ServletException
+  {
+    HttpServletRequest request = (HttpServletRequest)servletRequest;
+    HttpServletResponse response = (HttpServletResponse)servletResponse;
+
+    // CORS preflights are not captures (CorsFilter normally answers them before this filter)
+    String uniqueUrl = CorsUtils.isPreFlightRequest(request) ? null : uniqueUrl(request);
+    if (uniqueUrl == null)
+    {
+      chain.doFilter(request, response);
+      return;
+    }
+
+    if (nonBlocking && request.isAsyncSupported())
+    {
+      captureNonBlocking(uniqueUrl, request, response);
+      return;
+    }
+    if (request.isAsyncSupported())
+    {
+      captureAsync(uniqueUrl, request, response);
+      return;
+    }
+
+    CaptureReceipt receipt;
+    try
+    {
+      receipt = requestCaptureService.captureRequest(uniqueUrl, request);
+    }
+    catch (RuntimeException e)
+    {
+      if (exceptionResolver.resolveException(request, response, null, e) == null)
+      {
+        throw e;
+      }
+      return;
+    }
+    writeResponse(request, response, receipt);
+  }
+
+  private void captureAsync(String uniqueUrl, HttpServletRequest request, HttpServletResponse response)
+  {
+    CompletableFuture<CaptureReceipt> capture;
+    try
+    {
+      requestCaptureService.checkActive(uniqueUrl);
+      capture = requestCaptureService.captureRequestAsync(uniqueUrl, request, memoryBudgetService.readBody(request));
+    }
+    catch (RuntimeException e)
+    {
+      if (exceptionResolver.resolveException(request, response, null, e) == null)
+      {
+        throw e;
+      }
+      return;
+    }
+    AsyncContext asyncContext = request.startAsync();
+    asyncContext.addListener(new TimeoutListener(uniqueUrl, asyncContext, () -> {}));
+    respondWhenStored(uniqueUrl, asyncContext, capture);
+  }
+
+  private void captureNonBlocking(String uniqueUrl, HttpServletRequest request, HttpServletResponse response)
+    throws IOException
+  {
+    BodyBuffer buffer;
+    try
+    {
+      requestCaptureService.checkActive(uniqueUrl);
+      buffer = memoryBudgetService.openBuffer(request);
+    }
+    catch (RuntimeException e)
+    {
+      exceptionResolver.resolveException(request, response, null, e);
+      return;
+    }
+
+    AsyncContext asyncContext = request.startAsync();
+    ServletInputStream in = request.getInputStream();
+    BodyReader reader = new BodyReader(uniqueUrl, asyncContext, in, buffer);
+    asyncContext.addListener(new TimeoutListener(uniqueUrl, asyncContext, reader::abandon));
+    in.setReadListener(reader);
+  }
+
+  /**
+   * Answers once the shard has stored the capture
+   * <p>
+   * The completion runs on the shard's thread, so the response is handed to a container
+   * thread: a slow client must never hold up the other bins on the shard.
+   */
+  private void respondWhenStored(String uniqueUrl, AsyncContext asyncContext, CompletableFuture<CaptureReceipt> capture)
+  {
+    capture.whenComplete((receipt, error) -> asyncContext.start(() -> {
+      if (error != null)
+      {
+        respondWithError(uniqueUrl, asyncContext, error instanceof CompletionException ? error.getCause() : error);
+        return;
+      }
+      MockResponse mockResponse = mockResponseService.responseFor(receipt.getBinId());
+      if (mockResponse != null)
+      {
+        // The bin's status and delay are not server load
+        AdmissionControlFilter.releaseEarly(asyncContext.getRequest());
+        mockResponseService.writeAfterLatency(mockResponse, asyncContext, receipt);
+        return;
+      }
+      try
+      {
+        writeAck((HttpServletResponse)asyncContext.getResponse(), receipt);
+        asyncContext.complete();
+      }
+      catch (IOException | RuntimeException e)
+      {
+        respondWithError(uniqueUrl, asyncContext, e);
+      }
+    }));
+  }
+
+  private void respondWithError(String uniqueUrl, AsyncContext asyncContext, Throwable t)
+  {
+    HttpServletRequest request = (HttpServletRequest)asyncContext.getRequest();
+    HttpServletResponse response = (HttpServletResponse)asyncContext.getResponse();
+    try
+    {
+      if (!(t instanceof Exception e) || response.isCommitted()
+        || exceptionResolver.resolveException(request, response, null, e) == null)
+      {
+        log.warn("Capture for bin {} failed: {}", uniqueUrl, t.getMessage());
+        if (!response.isCommitted())
+        {
+          response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+      }
+    }
+    catch (IOException | RuntimeException e)
+    {
+      log.debug("Could not send capture error response", e);
+    }
+    finally
+    {
+      asyncContext.complete();
+    }
+  }
+
+  /**
+   * Receives the body chunk by chunk on the container's I/O callbacks
+   */
+  @RequiredArgsConstructor
+  private final class BodyReader
+    implements ReadListener
+  {
+
+    private final String uniqueUrl;
+    private final AsyncContext asyncContext;
+    private final ServletInputStream in;
+    private final BodyBuffer buffer;
+    private final byte[] chunk = new byte[READ_CHUNK_SIZE];
+    private final AtomicBoolean done = new AtomicBoolean();
+
+    @Override
+    public void onDataAvailable()
+    {
+      try
+      {
+        int read;
+        while (!done.get() && in.isReady() && (read = in.read(chunk)) != -1)
+        {
+          // Without a blocking fallback, an exhausted budget always sheds the request
+          if (!buffer.isReserved() || !buffer.tryAppend(chunk, 0, read))
+          {
+            fail(memoryBudgetService.overloaded());
+          }
+        }
+      }
+      catch (IOException | RuntimeException e)
+      {
+        fail(e);
+      }
+    }
+
+    @Override
+    public void onAllDataRead()
+    {
+      if (!done.compareAndSet(false, true))
+      {
+        return;
+      }
+
+      BufferedBody body = buffer.finish();
+      HttpServletRequest request = (HttpServletRequest)asyncContext.getRequest();
+      try
+      {
+        respondWhenStored(uniqueUrl, asyncContext, requestCaptureService.captureRequestAsync(uniqueUrl, request, body));
+      }
+      catch (RuntimeException e)
+      {
+        respondWithError(uniqueUrl, asyncContext, e);
+      }
+    }
+
+    @Override
+    public void onError(Throwable t)
+    {
+      fail(t);
+    }
+
+    /**
+     * Stops receiving the body and gives back its budget; the response is left to the caller
+     *
+     * @return false when the body was already complete or abandoned
+     */
+    boolean abandon()
+    {
+      if (!done.compareAndSet(false, true))
+      {
+        return false;
+      }
+      buffer.discard();
+      return true;
+    }
+
+    private void fail(Throwable t)
+    {
+      if (abandon())
+      {
+        respondWithError(uniqueUrl, asyncContext, t);
+      }
+    }
+  }
+
+  /**
+   * Answers 503 when the container times an async capture out
+   * <p>
+   * A capture still on its shard is stored regardless; only its answer is lost.
+   */
+  @RequiredArgsConstructor
+  private final class TimeoutListener
+    implements AsyncListener
+  {
+
+    private final String uniqueUrl;
+    private final AsyncContext asyncContext;
+    private final Runnable onTimeout;
+
+    @Override
+    public void onTimeout(AsyncEvent event)
+    {
+      onTimeout.run();
+      respondWithError(uniqueUrl, asyncContext, new ServiceOverloadedException(
+        "Capture did not complete in time. Please retry later.", TIMEOUT_RETRY_AFTER_SECONDS));
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event)
+    {
+    }
+
+    @Override
+    public void onError(AsyncEvent event)
+    {
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event)
+    {
+    }
+  }
+
+  /**
+   * The bin id from /b/{uniqueUrl}, or null when the path has more segments or escapes
+   */
+  private static String uniqueUrl(HttpServletRequest request)
+  {
+    String uri = request.getRequestURI();
+    int start = request.getContextPath().length() + PREFIX.length();
+    if (uri.length() <= start || !uri.startsWith(PREFIX, start - PREFIX.length()))
+    {
+      return null;
+    }
+    for (int i = start; i < uri.length(); i++)
+    {
+      char c = uri.charAt(i);
+      if (c == '/' || c == '%' || c == ';')
+      {
+        return null;
+      }
+    }
+    return uri.substring(start);
+  }
+
+  /**
+   * Synchronous answer, for containers without async support (mock latency is not applied)
+   */
+  private void writeResponse(HttpServletRequest request, HttpServletResponse response, CaptureReceipt receipt)
+    throws IOException
+  {
+    MockResponse mockResponse = mockResponseService.responseFor(receipt.getBinId());
+    if (mockResponse != null)
+    {
+      AdmissionControlFilter.releaseEarly(request);
+      mockResponse.writeTo(response, receipt);
+      return;
+    }
+    writeAck(response, receipt);
+  }
+
+  private static void writeAck(HttpServletResponse response, CaptureReceipt receipt)
+    throws IOException
+  {
+    byte[] id = receipt.getRequestId() != null
+      ? Long.toString(receipt.getRequestId()).getBytes(StandardCharsets.US_ASCII)
+      : ACK_NO_ID;
+    byte[] timestamp = DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(receipt.getTimestamp())
+      .getBytes(StandardCharsets.US_ASCII);
+
+    byte[] body = new byte[ACK_HEAD.length + id.length + ACK_TIMESTAMP.length + timestamp.length + ACK_TAIL.length];
+    int offset = 0;
+    for (byte[] part : new byte[][] { ACK_HEAD, id, ACK_TIMESTAMP, timestamp, ACK_TAIL })
+    {
+      System.arraycopy(part, 0, body, offset, part.length);
+      offset += part.length;
+    }
+
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    response.setContentLength(body.length);
+    response.getOutputStream().write(body);
+  }
+}
@@ -28,19 +28,19 @@ public class LoggingAspect
   {
     long startTime = System.currentTimeMillis();
 
-    String className = joinPoint.getSignature().getDeclaringTypeName();
-    String methodName = joinPoint.getSignature().getName();
-
     try
     {
       Object result = joinPoint.proceed();
-      long executionTime = System.currentTimeMillis() - startTime;
 
-      log.debug(
-        "{}.{} executed in {} ms",
-        className.substring(className.lastIndexOf('.') + 1),
-        methodName,
-        executionTime);
+      // Names are only resolved when actually logging (this runs on every capture)
+      if (log.isDebugEnabled())
+      {
+        log.debug(
+          "{}.{} executed in {} ms",
+          simpleClassName(joinPoint),
+          joinPoint.getSignature().getName(),
+          System.currentTimeMillis() - startTime);
+      }
 
       return result;
     }
@@ -49,11 +49,17 @@ public class LoggingAspect
       long executionTime = System.currentTimeMillis() - startTime;
       log.error(
         "{}.{} failed after {} ms: {}",
-        className.substring(className.lastIndexOf('.') + 1),
-        methodName,
+        simpleClassName(joinPoint),
+        joinPoint.getSignature().getName(),
         executionTime,
         e.getMessage());
       throw e;
     }
   }
+
+  private static String simpleClassName(ProceedingJoinPoint joinPoint)
+  {
+    String className = joinPoint.getSignature().getDeclaringTypeName();
+    return className.substring(className.lastIndexOf('.') + 1);
+  }
 }
\ No newline at end of file
@@ -0,0 +1,118 @@
+package com.devtools.requestbin.config;
+
+import java.util.Map;
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Primary + read replica connection pools behind one routing DataSource
+ * <p>
+ * Enabled with app.datasource.replica.enabled=true (see the "replica" profile).
+ * - The primary pool uses spring.datasource.*, the replica pool app.datasource.replica.*
+ * - @Transactional(readOnly = true) work goes to the replica while it is fresh enough
+ *   (app.datasource.replica.max-staleness-ms), everything else to the primary
+ * - Clients that just wrote read from the primary for read-your-writes-ms, also from the
+ *   @Async and MVC async threads their requests hand work to (routingTaskDecorator)
+ * - With app.datasource.replica.copy-from-primary=true a second local H2 database is kept
+ *   in sync by ReplicaCopier, so routing can be tried out without a real replica
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.replica.enabled", havingValue = "true")
+public class ReadReplicaConfig
+{
+
+  @Bean
+  public DataSource primaryDataSource(DataSourceProperties properties)
+  {
+    return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  @Bean
+  public DataSource replicaDataSource(
+    @Value("${app.datasource.replica.url}") String url,
+    @Value("${app.datasource.replica.username:${spring.datasource.username:}}") String username,
+    @Value("${app.datasource.replica.password:${spring.datasource.password:}}") String password,
+    @Value("${app.datasource.replica.pool-size:10}") int poolSize)
+  {
+    HikariDataSource replica = DataSourceBuilder.create()
+      .type(HikariDataSource.class)
+      .url(url)
+      .username(username)
+      .password(password)
+      .build();
+    replica.setPoolName("replica");
+    replica.setReadOnly(true);
+    replica.setMaximumPoolSize(poolSize);
+    return replica;
+  }
+
+  @Bean
+  public ReplicaLagMonitor replicaLagMonitor(
+    @Qualifier("primaryDataSource") DataSource primaryDataSource,
+    @Qualifier("replicaDataSource") DataSource replicaDataSource,
+    @Value("${app.datasource.replica.max-staleness-ms:5000}") long maxStalenessMs)
+  {
+    return new ReplicaLagMonitor(primaryDataSource, replicaDataSource, maxStalenessMs);
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "app.datasource.replica.copy-from-primary", havingValue = "true")
+  public ReplicaCopier replicaCopier(
+    @Qualifier("primaryDataSource") DataSource primaryDataSource,
+    @Value("${app.datasource.replica.url}") String url,
+    @Value("${app.datasource.replica.username:${spring.datasource.username:}}") String username,
+    @Value("${app.datasource.replica.password:${spring.datasource.password:}}") String password)
+  {
+    return new ReplicaCopier(primaryDataSource, new DriverManagerDataSource(url, username, password));
+  }
+
+  /**
+   * Picked up by the auto-configured task executor (@Async, MVC async requests)
+   */
+  @Bean
+  public TaskDecorator routingTaskDecorator()
+  {
+    return ReplicaRoutingDataSource::withCurrentRouting;
+  }
+
+  @Bean
+  @Primary
+  public DataSource dataSource(
+    @Qualifier("primaryDataSource") DataSource primaryDataSource,
+    @Qualifier("replicaDataSource") DataSource replicaDataSource,
+    ReplicaLagMonitor replicaLagMonitor)
+  {
+    ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(replicaLagMonitor);
+    routing.setTargetDataSources(Map.of(
+      ReplicaRoutingDataSource.Target.PRIMARY, primaryDataSource,
+      ReplicaRoutingDataSource.Target.REPLICA, replicaDataSource));
+    routing.setDefaultTargetDataSource(primaryDataSource);
+    routing.afterPropertiesSet();
+    return new LazyConnectionDataSourceProxy(routing);
+  }
+
+  @Bean
+  public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(
+    @Value("${app.datasource.replica.read-your-writes-ms:10000}") long windowMs)
+  {
+    FilterRegistrationBean<ReadYourWritesFilter> registration = new FilterRegistrationBean<>(
+      new ReadYourWritesFilter(windowMs));
+    registration.addUrlPatterns("/api/*", "/replay/*");
+    registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+    return registration;
+  }
+}
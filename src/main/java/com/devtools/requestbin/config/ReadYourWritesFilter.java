@@ -0,0 +1,96 @@
+package com.devtools.requestbin.config;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Read-your-writes for clients of the management API
+ * <p>
+ * A client that changes something (for example creates a bin) gets a short-lived cookie;
+ * while it is valid, that client's reads go to the primary, so it never sees a replica
+ * that has not caught up with its own write yet. Other clients keep reading the replica.
+ * <p>
+ * CORS preflights (OPTIONS) change nothing and get no cookie. Async dispatches are filtered
+ * too, so a request's routing holds on the thread that completes it; only the initial
+ * dispatch sets the cookie.
+ */
+public class ReadYourWritesFilter
+  extends OncePerRequestFilter
+{
+
+  static final String COOKIE_NAME = "RB_PRIMARY_UNTIL";
+
+  private final long windowMs;
+
+  public ReadYourWritesFilter(long windowMs)
+  {
+    this.windowMs = windowMs;
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+    throws ServletException, IOException
+  {
+    long now = System.currentTimeMillis();
+    String method = request.getMethod();
+    boolean writing = !"GET".equals(method) && !"HEAD".equals(method) && !"OPTIONS".equals(method);
+
+    if (writing && !isAsyncDispatch(request))
+    {
+      Cookie cookie = new Cookie(COOKIE_NAME, Long.toString(now + windowMs));
+      cookie.setPath("/");
+      cookie.setHttpOnly(true);
+      cookie.setMaxAge((int)Math.max(1, TimeUnit.MILLISECONDS.toSeconds(windowMs)));
+      response.addCookie(cookie);
+    }
+
+    if (writing || primaryUntil(request) > now)
+    {
+      ReplicaRoutingDataSource.requirePrimary();
+    }
+    try
+    {
+      chain.doFilter(request, response);
+    }
+    finally
+    {
+      ReplicaRoutingDataSource.clearPrimaryRequired();
+    }
+  }
+
+  @Override
+  protected boolean shouldNotFilterAsyncDispatch()
+  {
+    return false;
+  }
+
+  private static long primaryUntil(HttpServletRequest request)
+  {
+    if (request.getCookies() == null)
+    {
+      return 0;
+    }
+    for (Cookie cookie : request.getCookies())
+    {
+      if (COOKIE_NAME.equals(cookie.getName()))
+      {
+        try
+        {
+          return Long.parseLong(cookie.getValue());
+        }
+        catch (NumberFormatException e)
+        {
+          return 0;
+        }
+      }
+    }
+    return 0;
+  }
+}
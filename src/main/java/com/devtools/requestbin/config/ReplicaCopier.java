@@ -0,0 +1,228 @@
+package com.devtools.requestbin.config;
+
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Stand-in for replication when the replica is a second local H2 database
+ * <p>
+ * Enabled with app.datasource.replica.copy-from-primary=true (see the "replica" profile);
+ * a real replica replicates itself and leaves this off.
+ * - Tables missing on the replica are created from the primary's own DDL (H2 SCRIPT NODATA),
+ *   including indexes but not constraints; tables dropped on the primary are dropped
+ * - Every copy reads all rows from one repeatable-read snapshot of the primary and replaces
+ *   the replica's rows in one transaction, so replica readers never see a half-done copy
+ * - replica_heartbeat is copied like any other table, so the replica's measured staleness
+ *   (ReplicaLagMonitor) is the age of the last copy
+ * <p>
+ * Copies the whole database every time: meant for local testing, not for large data.
+ */
+@Slf4j
+public class ReplicaCopier
+{
+
+  private final DataSource primary;
+  private final DataSource replica;
+
+  private final AtomicLong copyCount = new AtomicLong();
+  private volatile long lastCopyMs = -1;
+
+  /**
+   * @param replica a writable connection source for the replica (its read-only pool is not)
+   */
+  public ReplicaCopier(DataSource primary, DataSource replica)
+  {
+    this.primary = primary;
+    this.replica = replica;
+  }
+
+  @Scheduled(fixedDelayString = "${app.datasource.replica.copy-interval-ms:1000}")
+  public void copy()
+  {
+    long start = System.nanoTime();
+    try (Connection source = primary.getConnection(); Connection target = replica.getConnection())
+    {
+      source.setAutoCommit(false);
+      source.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+      try
+      {
+        List<String> tables = tables(source);
+        syncSchema(source, target, tables);
+        target.setAutoCommit(false);
+        for (String table : tables)
+        {
+          copyRows(source, target, table);
+        }
+        target.commit();
+      }
+      catch (SQLException | RuntimeException e)
+      {
+        if (!target.getAutoCommit())
+        {
+          target.rollback();
+        }
+        throw e;
+      }
+      finally
+      {
+        source.rollback();
+      }
+    }
+    catch (SQLException e)
+    {
+      log.warn("Could not copy the primary to the replica: {}", e.getMessage());
+      return;
+    }
+    lastCopyMs = (System.nanoTime() - start) / 1_000_000;
+    copyCount.incrementAndGet();
+  }
+
+  public Map<String, Object> getStats()
+  {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("copies", copyCount.get());
+    stats.put("lastCopyMs", lastCopyMs);
+    return stats;
+  }
+
+  /**
+   * Creates the tables the replica lacks and drops those the primary no longer has (autocommit)
+   */
+  private static void syncSchema(Connection source, Connection target, List<String> tables)
+    throws SQLException
+  {
+    Set<String> existing = new HashSet<>(tables(target));
+    for (String table : existing)
+    {
+      if (!tables.contains(table))
+      {
+        execute(target, "drop table if exists " + quote(table));
+      }
+    }
+    for (String table : tables)
+    {
+      if (existing.contains(table))
+      {
+        continue;
+      }
+      try (Statement statement = source.createStatement();
+        ResultSet script = statement.executeQuery("script nodata table " + quote(table)))
+      {
+        List<String> ddl = new ArrayList<>();
+        while (script.next())
+        {
+          String sql = script.getString(1);
+          if (sql.startsWith("CREATE") && (sql.contains(" TABLE ") || sql.contains(" INDEX ")))
+          {
+            ddl.add(sql);
+          }
+        }
+        for (String sql : ddl)
+        {
+          execute(target, sql);
+        }
+      }
+    }
+  }
+
+  private static void copyRows(Connection source, Connection target, String table)
+    throws SQLException
+  {
+    execute(target, "delete from " + quote(table));
+    try (Statement statement = source.createStatement();
+      ResultSet rows = statement.executeQuery("select * from " + quote(table)))
+    {
+      ResultSetMetaData meta = rows.getMetaData();
+      int columns = meta.getColumnCount();
+      StringBuilder names = new StringBuilder();
+      StringBuilder parameters = new StringBuilder();
+      for (int i = 1; i <= columns; i++)
+      {
+        names.append(i > 1 ? ", " : "").append(quote(meta.getColumnName(i)));
+        parameters.append(i > 1 ? ", ?" : "?");
+      }
+      try (PreparedStatement insert = target.prepareStatement(
+        "insert into " + quote(table) + " (" + names + ") values (" + parameters + ")"))
+      {
+        int batched = 0;
+        while (rows.next())
+        {
+          for (int i = 1; i <= columns; i++)
+          {
+            insert.setObject(i, detached(rows.getObject(i)));
+          }
+          insert.addBatch();
+          if (++batched % 500 == 0)
+          {
+            insert.executeBatch();
+          }
+        }
+        insert.executeBatch();
+      }
+    }
+  }
+
+  /**
+   * Large objects belong to their connection; copy their content instead
+   */
+  private static Object detached(Object value)
+    throws SQLException
+  {
+    if (value instanceof Clob clob)
+    {
+      return clob.getSubString(1, (int)clob.length());
+    }
+    if (value instanceof Blob blob)
+    {
+      return blob.getBytes(1, (int)blob.length());
+    }
+    return value;
+  }
+
+  private static List<String> tables(Connection connection)
+    throws SQLException
+  {
+    List<String> tables = new ArrayList<>();
+    try (Statement statement = connection.createStatement();
+      ResultSet rows = statement.executeQuery("select table_name from information_schema.tables"
+        + " where table_schema = 'PUBLIC' and table_type = 'BASE TABLE' order by table_name"))
+    {
+      while (rows.next())
+      {
+        tables.add(rows.getString(1));
+      }
+    }
+    return tables;
+  }
+
+  private static void execute(Connection connection, String sql)
+    throws SQLException
+  {
+    try (Statement statement = connection.createStatement())
+    {
+      statement.execute(sql);
+    }
+  }
+
+  private static String quote(String name)
+  {
+    return "\"" + name.replace("\"", "\"\"") + "\"";
+  }
+}
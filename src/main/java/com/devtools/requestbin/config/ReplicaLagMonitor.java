@@ -0,0 +1,111 @@
+package com.devtools.requestbin.config;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Measures how far the read replica lags behind the primary
+ * <p>
+ * Every heartbeat writes the current time into replica_heartbeat on the primary and reads
+ * it back from the replica; the replica's staleness is the age of the value it returns.
+ * The replica is usable while that stays within the staleness tolerance. Any error on the
+ * replica (down, table not replicated yet) makes it unusable until the next good beat.
+ * <p>
+ * The tolerance should be well above the heartbeat interval, which is the best
+ * resolution a heartbeat can measure.
+ */
+@Slf4j
+public class ReplicaLagMonitor
+{
+
+  private final JdbcTemplate primary;
+  private final JdbcTemplate replica;
+  private final long maxStalenessMs;
+
+  private volatile boolean replicaUsable;
+  private volatile long stalenessMs = -1;
+
+  private final AtomicLong primaryConnections = new AtomicLong();
+  private final AtomicLong replicaConnections = new AtomicLong();
+
+  public ReplicaLagMonitor(DataSource primary, DataSource replica, long maxStalenessMs)
+  {
+    this.primary = new JdbcTemplate(primary);
+    this.replica = new JdbcTemplate(replica);
+    this.maxStalenessMs = maxStalenessMs;
+  }
+
+  @PostConstruct
+  public void init()
+  {
+    primary.execute("create table if not exists replica_heartbeat (id integer primary key, beat_at timestamp not null)");
+    if (primary.update("update replica_heartbeat set beat_at = ? where id = 1", Timestamp.valueOf(LocalDateTime.now())) == 0)
+    {
+      primary.update("insert into replica_heartbeat (id, beat_at) values (1, ?)", Timestamp.valueOf(LocalDateTime.now()));
+    }
+    heartbeat();
+  }
+
+  @Scheduled(fixedDelayString = "${app.datasource.replica.heartbeat-interval-ms:1000}")
+  public void heartbeat()
+  {
+    boolean wasUsable = replicaUsable;
+    try
+    {
+      primary.update("update replica_heartbeat set beat_at = ? where id = 1", Timestamp.valueOf(LocalDateTime.now()));
+      Timestamp replicated = replica.queryForObject("select beat_at from replica_heartbeat where id = 1", Timestamp.class);
+      stalenessMs = replicated != null
+        ? Math.max(0, Duration.between(replicated.toLocalDateTime(), LocalDateTime.now()).toMillis())
+        : -1;
+      replicaUsable = replicated != null && stalenessMs <= maxStalenessMs;
+    }
+    catch (RuntimeException e)
+    {
+      stalenessMs = -1;
+      replicaUsable = false;
+      if (wasUsable)
+      {
+        log.warn("Read replica unavailable, reading from primary: {}", e.getMessage());
+      }
+      return;
+    }
+
+    if (wasUsable != replicaUsable)
+    {
+      log.info("Read replica {} (staleness {} ms, tolerance {} ms)",
+        replicaUsable ? "in use" : "too stale, reading from primary", stalenessMs, maxStalenessMs);
+    }
+  }
+
+  public boolean isReplicaUsable()
+  {
+    return replicaUsable;
+  }
+
+  ReplicaRoutingDataSource.Target record(ReplicaRoutingDataSource.Target target)
+  {
+    (target == ReplicaRoutingDataSource.Target.REPLICA ? replicaConnections : primaryConnections).incrementAndGet();
+    return target;
+  }
+
+  public Map<String, Object> getStats()
+  {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("replicaUsable", replicaUsable);
+    stats.put("stalenessMs", stalenessMs);
+    stats.put("maxStalenessMs", maxStalenessMs);
+    stats.put("primaryConnections", primaryConnections.get());
+    stats.put("replicaConnections", replicaConnections.get());
+    return stats;
+  }
+}
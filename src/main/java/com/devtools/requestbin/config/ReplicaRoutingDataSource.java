@@ -0,0 +1,75 @@
+package com.devtools.requestbin.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends read-only transactions to the replica pool and everything else to the primary
+ * <p>
+ * The replica is skipped when:
+ * - its measured lag exceeds the staleness tolerance, or it is unreachable (ReplicaLagMonitor)
+ * - the current HTTP client wrote recently (read-your-writes, see ReadYourWritesFilter)
+ * <p>
+ * Must sit behind a LazyConnectionDataSourceProxy: the connection is only fetched at the
+ * first statement, after the transaction has been marked read-only.
+ */
+public class ReplicaRoutingDataSource
+  extends AbstractRoutingDataSource
+{
+
+  public enum Target
+  {
+    PRIMARY, REPLICA
+  }
+
+  private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+
+  private final ReplicaLagMonitor lagMonitor;
+
+  public ReplicaRoutingDataSource(ReplicaLagMonitor lagMonitor)
+  {
+    this.lagMonitor = lagMonitor;
+  }
+
+  /**
+   * Routes every transaction on this thread to the primary until clearPrimaryRequired
+   */
+  public static void requirePrimary()
+  {
+    PRIMARY_REQUIRED.set(Boolean.TRUE);
+  }
+
+  public static void clearPrimaryRequired()
+  {
+    PRIMARY_REQUIRED.remove();
+  }
+
+  /**
+   * Wraps a task handed to another thread so it routes like the submitting thread does
+   */
+  public static Runnable withCurrentRouting(Runnable task)
+  {
+    Boolean primaryRequired = PRIMARY_REQUIRED.get();
+    return () -> {
+      Boolean previous = PRIMARY_REQUIRED.get();
+      PRIMARY_REQUIRED.set(primaryRequired);
+      try
+      {
+        task.run();
+      }
+      finally
+      {
+        PRIMARY_REQUIRED.set(previous);
+      }
+    };
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey()
+  {
+    boolean replica = TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+      && PRIMARY_REQUIRED.get() == null
+      && lagMonitor.isReplicaUsable();
+    return lagMonitor.record(replica ? Target.REPLICA : Target.PRIMARY);
+  }
+}
@@ -1,16 +1,31 @@
 package com.devtools.requestbin.controller;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
+import com.devtools.requestbin.config.AdmissionControlFilter;
 import com.devtools.requestbin.dto.ApiResponse;
 import com.devtools.requestbin.dto.BinDetailsResponse;
 import com.devtools.requestbin.dto.BinResponse;
+import com.devtools.requestbin.dto.CapturedRequestPage;
 import com.devtools.requestbin.dto.CapturedRequestResponse;
+import com.devtools.requestbin.dto.CapturedRequestSummary;
 import com.devtools.requestbin.dto.CreateBinRequest;
+import com.devtools.requestbin.dto.RequestBatchResponse;
+import com.devtools.requestbin.dto.RequestFilter;
+import com.devtools.requestbin.dto.ScanResponse;
+import com.devtools.requestbin.exception.InvalidRequestException;
 import com.devtools.requestbin.service.BinService;
+import com.devtools.requestbin.service.HarExportService;
+import com.devtools.requestbin.service.LongPollService;
+import com.devtools.requestbin.service.PayloadScanService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -18,11 +33,16 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/bins")
@@ -31,6 +51,9 @@ public class BinController
 {
 
   private final BinService binService;
+  private final PayloadScanService payloadScanService;
+  private final LongPollService longPollService;
+  private final HarExportService harExportService;
 
   @PostMapping
   public ResponseEntity<ApiResponse<BinResponse>> createBin(
@@ -42,19 +65,111 @@ public class BinController
     return ResponseEntity.status(HttpStatus.CREATED).body(response);
   }
 
+  /**
+   * Bin read endpoints support conditional GET
+   * <p>
+   * The ETag is the bin's version stamp; pollers sending If-None-Match get a
+   * 304 Not Modified without the requests being loaded.
+   */
   @GetMapping("/{uniqueUrl}")
-  public ResponseEntity<ApiResponse<BinResponse>> getBin(@PathVariable String uniqueUrl)
+  public ResponseEntity<ApiResponse<BinResponse>> getBin(@PathVariable String uniqueUrl, WebRequest webRequest)
   {
+    String etag = binService.getBinVersion(uniqueUrl);
+    if (webRequest.checkNotModified(etag))
+    {
+      return null;
+    }
+
     BinResponse bin = binService.getBinByUniqueUrl(uniqueUrl);
     ApiResponse<BinResponse> response = ApiResponse.success(bin, "Bin retrieved successfully");
-    return ResponseEntity.ok(response);
+    return ResponseEntity.ok()
+      .cacheControl(CacheControl.noCache())
+      .eTag(etag)
+      .body(response);
   }
 
   @GetMapping("/{uniqueUrl}/details")
-  public ResponseEntity<ApiResponse<BinDetailsResponse>> getBinDetails(@PathVariable String uniqueUrl)
+  public ResponseEntity<ApiResponse<BinDetailsResponse>> getBinDetails(
+    @PathVariable String uniqueUrl,
+    WebRequest webRequest)
   {
+    String etag = binService.getBinVersion(uniqueUrl);
+    if (webRequest.checkNotModified(etag))
+    {
+      return null;
+    }
+
     BinDetailsResponse details = binService.getBinDetailsWithRequests(uniqueUrl);
     ApiResponse<BinDetailsResponse> response = ApiResponse.success(details, "Bin details retrieved successfully");
+    return ResponseEntity.ok()
+      .cacheControl(CacheControl.noCache())
+      .eTag(etag)
+      .body(response);
+  }
+
+  /**
+   * Incremental fetch for machine consumers (long-poll)
+   * <p>
+   * Returns requests with a sequence number above `after`, oldest first. If there are
+   * none yet, the call waits up to `wait` (e.g. 30s) for new ones without holding a
+   * server thread.
+   */
+  @GetMapping("/{uniqueUrl}/requests")
+  public DeferredResult<ApiResponse<RequestBatchResponse>> pollRequests(
+    @PathVariable String uniqueUrl,
+    @RequestParam(defaultValue = "0") long after,
+    @RequestParam(defaultValue = "100") int max,
+    @RequestParam(defaultValue = "0s") String wait,
+    HttpServletRequest request)
+  {
+    // The wait is the client's choice, not server latency
+    AdmissionControlFilter.releaseEarly(request);
+    return longPollService.poll(uniqueUrl, after, max, parseWait(wait));
+  }
+
+  /**
+   * Query a bin's requests on the server
+   * <p>
+   * Filters: method, from, to, ipAddress, headerName, headerValue, minBodySize, maxBodySize
+   * Pagination: pass the returned nextCursor as ?cursor= to get the next page
+   */
+  @GetMapping("/{uniqueUrl}/requests/query")
+  public ResponseEntity<ApiResponse<CapturedRequestPage<CapturedRequestSummary>>> queryRequests(
+    @PathVariable String uniqueUrl,
+    @ModelAttribute RequestFilter filter,
+    @RequestParam(required = false) Long cursor,
+    @RequestParam(defaultValue = "50") int limit)
+  {
+    CapturedRequestPage<CapturedRequestSummary> page = binService.queryRequests(uniqueUrl, filter, cursor, limit);
+    ApiResponse<CapturedRequestPage<CapturedRequestSummary>> response =
+      ApiResponse.success(page, "Requests retrieved successfully");
+    return ResponseEntity.ok(response);
+  }
+
+  /**
+   * Scan a bin's JSON bodies with a field predicate
+   * <p>
+   * Example: ?where=$.event.type == "invoice.paid"&limit=50
+   */
+  @GetMapping("/{uniqueUrl}/requests/scan")
+  public ResponseEntity<ApiResponse<ScanResponse>> scanRequests(
+    @PathVariable String uniqueUrl,
+    @RequestParam String where,
+    @RequestParam(defaultValue = "50") int limit)
+  {
+    ScanResponse result = payloadScanService.scan(uniqueUrl, where, limit);
+    ApiResponse<ScanResponse> response = ApiResponse.success(result, "Scan completed successfully");
+    return ResponseEntity.ok(response);
+  }
+
+  /**
+   * Traffic counters of a bin: everything received, and what its sampling policy kept or dropped
+   */
+  @GetMapping("/{uniqueUrl}/sampling")
+  public ResponseEntity<ApiResponse<Map<String, Object>>> getSamplingStats(@PathVariable String uniqueUrl)
+  {
+    Map<String, Object> stats = binService.getSamplingStats(uniqueUrl);
+    ApiResponse<Map<String, Object>> response = ApiResponse.success(stats, "Sampling statistics retrieved successfully");
     return ResponseEntity.ok(response);
   }
 
@@ -115,6 +230,61 @@ public class BinController
       .body(csv);
   }
 
+  /**
+   * Export bin requests as HAR 1.2, streamed as they are read
+   * <p>
+   * Takes the /requests/query filter (method, from, to, ...). The plain download is
+   * compressed in transit when the client accepts gzip (server.compression); gzip=true
+   * downloads a .har.gz file instead.
+   */
+  @GetMapping("/{uniqueUrl}/export/har")
+  public ResponseEntity<StreamingResponseBody> exportHar(
+    @PathVariable String uniqueUrl,
+    @ModelAttribute RequestFilter filter,
+    @RequestParam(defaultValue = "false") boolean gzip,
+    HttpServletRequest request)
+  {
+    HarExportService.HarWriter har = harExportService.exportHar(uniqueUrl, filter);
+    // A download of any size should not hold an admission slot while it streams
+    AdmissionControlFilter.releaseEarly(request);
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentDisposition(
+      ContentDisposition.attachment()
+        .filename(uniqueUrl + (gzip ? "_requests.har.gz" : "_requests.har"))
+        .build()
+    );
+    if (!gzip)
+    {
+      headers.setContentType(MediaType.APPLICATION_JSON);
+      return ResponseEntity.ok()
+        .headers(headers)
+        .body(har::writeTo);
+    }
+
+    headers.set(HttpHeaders.CONTENT_TYPE, "application/gzip");
+    return ResponseEntity.ok()
+      .headers(headers)
+      .body(out -> {
+        try (GZIPOutputStream compressed = new GZIPOutputStream(out, 65536))
+        {
+          har.writeTo(compressed);
+        }
+      });
+  }
+
+  private Duration parseWait(String wait)
+  {
+    try
+    {
+      return DurationStyle.detectAndParse(wait);
+    }
+    catch (IllegalArgumentException e)
+    {
+      throw new InvalidRequestException("Invalid wait duration: " + wait + " (use e.g. 30s)");
+    }
+  }
+
   /**
    * Extract client IP address from request
    * Handles cases where request is behind proxy/load balancer
@@ -0,0 +1,56 @@
+package com.devtools.requestbin.controller;
+
+import com.devtools.requestbin.dto.ApiResponse;
+import com.devtools.requestbin.dto.CapturedRequestResponse;
+import com.devtools.requestbin.service.RequestCaptureService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * Full details (headers, body, query params) of a single captured request
+ * <p>
+ * Requests are looked up within their bin: knowing a bin's URL does not open up the
+ * requests of other bins, whose ids may be sequential.
+ * <p>
+ * A captured request only changes when duplicates are collapsed into it (COLLAPSE bins
+ * count them in deliveryCount), so the ETag is its id and deliveryCount. Responses must
+ * be revalidated before reuse; an unchanged request is answered with 304 and no body.
+ */
+@RestController
+@RequestMapping("/api/bins/{uniqueUrl}/requests")
+@RequiredArgsConstructor
+public class CapturedRequestController
+{
+
+  private static final CacheControl CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
+  private final RequestCaptureService requestCaptureService;
+
+  @GetMapping("/{requestId}")
+  public ResponseEntity<ApiResponse<CapturedRequestResponse>> getRequest(
+    @PathVariable String uniqueUrl,
+    @PathVariable Long requestId,
+    WebRequest webRequest)
+  {
+    // Looked up before revalidating, so a removed request is a 404 rather than a 304
+    CapturedRequestResponse request = requestCaptureService.getRequest(uniqueUrl, requestId);
+    String etag = "\"request-" + requestId + "-" + (request.getDeliveryCount() != null ? request.getDeliveryCount() : 1) + "\"";
+    if (webRequest.checkNotModified(etag))
+    {
+      // Status 304 and headers are already set on the response
+      return null;
+    }
+
+    ApiResponse<CapturedRequestResponse> response = ApiResponse.success(request, "Request retrieved successfully");
+    return ResponseEntity.ok()
+      .cacheControl(CACHE_CONTROL)
+      .eTag(etag)
+      .body(response);
+  }
+}
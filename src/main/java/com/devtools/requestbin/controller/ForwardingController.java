@@ -0,0 +1,45 @@
+package com.devtools.requestbin.controller;
+
+import java.util.List;
+import java.util.Map;
+
+import com.devtools.requestbin.dto.ApiResponse;
+import com.devtools.requestbin.dto.ForwardingDeadLetter;
+import com.devtools.requestbin.service.ForwardingService;
+import com.devtools.requestbin.service.RequestCaptureService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Requests a bin could not forward to its targets, and redriving them
+ */
+@RestController
+@RequestMapping("/api/bins/{uniqueUrl}/forwarding")
+@RequiredArgsConstructor
+public class ForwardingController
+{
+
+  private final ForwardingService forwardingService;
+  private final RequestCaptureService requestCaptureService;
+
+  @GetMapping("/dead-letters")
+  public ResponseEntity<ApiResponse<List<ForwardingDeadLetter>>> getDeadLetters(@PathVariable String uniqueUrl)
+  {
+    Long binId = requestCaptureService.getActiveBinId(uniqueUrl);
+    List<ForwardingDeadLetter> deadLetters = forwardingService.getDeadLetters(binId);
+    return ResponseEntity.ok(ApiResponse.success(deadLetters, "Dead letters retrieved successfully"));
+  }
+
+  @PostMapping("/dead-letters/redrive")
+  public ResponseEntity<ApiResponse<Map<String, Object>>> redrive(@PathVariable String uniqueUrl)
+  {
+    Long binId = requestCaptureService.getActiveBinId(uniqueUrl);
+    int queued = forwardingService.redrive(binId);
+    return ResponseEntity.ok(ApiResponse.success(Map.of("queued", queued), "Dead letters queued for forwarding"));
+  }
+}
@@ -0,0 +1,62 @@
+package com.devtools.requestbin.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import com.devtools.requestbin.dto.ApiResponse;
+import com.devtools.requestbin.dto.ImportProgress;
+import com.devtools.requestbin.service.ImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Bulk import of recorded traffic into a bin, and the progress of running imports
+ */
+@RestController
+@RequestMapping("/api/bins/{uniqueUrl}")
+@RequiredArgsConstructor
+public class ImportController
+{
+
+  private final ImportService importService;
+
+  /**
+   * The request body is the file itself (optionally gzip-encoded), read as it arrives
+   */
+  @PostMapping("/import")
+  public ResponseEntity<ApiResponse<ImportProgress>> importRequests(
+    @PathVariable String uniqueUrl,
+    @RequestParam(required = false) String format,
+    HttpServletRequest request)
+    throws IOException
+  {
+    ImportService.Format importFormat = ImportService.Format.of(format, request.getContentType());
+    InputStream body = request.getInputStream();
+    if ("gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING)))
+    {
+      body = new GZIPInputStream(body, 65536);
+    }
+    try (InputStream upload = body)
+    {
+      ImportProgress progress = importService.importRequests(uniqueUrl, importFormat, upload);
+      return ResponseEntity.ok(ApiResponse.success(progress, "Import " + progress.getStatus().name().toLowerCase()));
+    }
+  }
+
+  @GetMapping("/imports")
+  public ResponseEntity<ApiResponse<List<ImportProgress>>> getImports(@PathVariable String uniqueUrl)
+  {
+    List<ImportProgress> imports = importService.getImports(uniqueUrl);
+    return ResponseEntity.ok(ApiResponse.success(imports, "Imports retrieved successfully"));
+  }
+}
@@ -1,10 +1,14 @@
 package com.devtools.requestbin.controller;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+import com.devtools.requestbin.config.AdmissionControlFilter;
 import com.devtools.requestbin.dto.ApiResponse;
-import com.devtools.requestbin.dto.CapturedRequestResponse;
+import com.devtools.requestbin.dto.CaptureReceipt;
 import com.devtools.requestbin.dto.ReplayRequest;
+import com.devtools.requestbin.service.MockResponse;
+import com.devtools.requestbin.service.MockResponseService;
 import com.devtools.requestbin.service.RequestCaptureService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -22,8 +26,10 @@ public class RequestCaptureController
 {
 
   private final RequestCaptureService requestCaptureService;
+  private final MockResponseService mockResponseService;
 
   // This endpoint captures ALL HTTP methods (GET, POST, PUT, DELETE, PATCH, etc.)
+  // Answers with a ResponseEntity, or a DeferredResult when the bin's template has a latency
   @RequestMapping(value = "/b/{uniqueUrl}", method = {
     RequestMethod.GET,
     RequestMethod.POST,
@@ -33,20 +39,30 @@ public class RequestCaptureController
     RequestMethod.HEAD,
     RequestMethod.OPTIONS
   })
-  public ResponseEntity<Map<String, Object>> captureRequest(
+  public Object captureRequest(
     @PathVariable String uniqueUrl,
     HttpServletRequest request)
   {
 
-    CapturedRequestResponse capturedRequest = requestCaptureService.captureRequest(uniqueUrl, request);
+    CaptureReceipt receipt = requestCaptureService.captureRequest(uniqueUrl, request);
 
-    // Return simple response to the sender
-    Map<String, Object> response = Map.of(
-      "status", "success",
-      "message", "Request captured",
-      "requestId", capturedRequest.getId(),
-      "timestamp", capturedRequest.getTimestamp()
-    );
+    // Bins with a response template answer with it, written as is; its status and delay
+    // are the bin's choice, so they stay out of admission control's feedback
+    MockResponse mockResponse = mockResponseService.responseFor(receipt.getBinId());
+    if (mockResponse != null)
+    {
+      AdmissionControlFilter.releaseEarly(request);
+      return mockResponse.getLatencyMs() > 0
+        ? mockResponseService.respondAfterLatency(mockResponse, receipt)
+        : mockResponse.toResponseEntity(receipt);
+    }
+
+    // Return simple response to the sender (requestId is null when the bin sampled the request out)
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("status", "success");
+    response.put("message", "Request captured");
+    response.put("requestId", receipt.getRequestId());
+    response.put("timestamp", receipt.getTimestamp());
 
     return ResponseEntity.ok(response);
   }
@@ -0,0 +1,54 @@
+package com.devtools.requestbin.controller;
+
+import java.util.List;
+
+import com.devtools.requestbin.dto.ApiResponse;
+import com.devtools.requestbin.dto.SearchResponse;
+import com.devtools.requestbin.service.SearchIndexService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Full-text search over captured bodies, headers and query params
+ */
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+public class SearchController
+{
+
+  private final SearchIndexService searchIndexService;
+
+  /**
+   * Search across the listed bins (there is no search over bins the caller can't name)
+   */
+  @GetMapping("/search")
+  public ResponseEntity<ApiResponse<SearchResponse>> searchBins(
+    @RequestParam String q,
+    @RequestParam List<String> bins,
+    @RequestParam(defaultValue = "0") int page,
+    @RequestParam(defaultValue = "20") int size)
+  {
+    SearchResponse result = searchIndexService.search(q, bins, page, size);
+    return ResponseEntity.ok(ApiResponse.success(result, "Search completed successfully"));
+  }
+
+  /**
+   * Search within one bin
+   */
+  @GetMapping("/bins/{uniqueUrl}/search")
+  public ResponseEntity<ApiResponse<SearchResponse>> searchBin(
+    @PathVariable String uniqueUrl,
+    @RequestParam String q,
+    @RequestParam(defaultValue = "0") int page,
+    @RequestParam(defaultValue = "20") int size)
+  {
+    SearchResponse result = searchIndexService.search(q, List.of(uniqueUrl), page, size);
+    return ResponseEntity.ok(ApiResponse.success(result, "Search completed successfully"));
+  }
+}
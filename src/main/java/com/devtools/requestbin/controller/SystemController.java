@@ -0,0 +1,75 @@
+package com.devtools.requestbin.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.devtools.requestbin.config.ReplicaCopier;
+import com.devtools.requestbin.config.ReplicaLagMonitor;
+import com.devtools.requestbin.dto.ApiResponse;
+import com.devtools.requestbin.service.AdmissionControlService;
+import com.devtools.requestbin.service.CaptureShardService;
+import com.devtools.requestbin.service.DuplicateDetectionService;
+import com.devtools.requestbin.service.ForwardingService;
+import com.devtools.requestbin.service.ImportService;
+import com.devtools.requestbin.service.SamplingService;
+import com.devtools.requestbin.service.SearchIndexService;
+import com.devtools.requestbin.service.MemoryBudgetService;
+import com.devtools.requestbin.storage.HeaderDictionary;
+import com.devtools.requestbin.storage.TieredCapturedRequestStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Runtime load and shedding statistics
+ */
+@RestController
+@RequestMapping("/api/system")
+@RequiredArgsConstructor
+public class SystemController
+{
+
+  private final AdmissionControlService admissionControlService;
+  private final MemoryBudgetService memoryBudgetService;
+  private final CaptureShardService captureShardService;
+  private final HeaderDictionary headerDictionary;
+  private final DuplicateDetectionService duplicateDetectionService;
+  private final ForwardingService forwardingService;
+  private final SamplingService samplingService;
+  private final ImportService importService;
+  private final SearchIndexService searchIndexService;
+  private final ObjectProvider<TieredCapturedRequestStore> tieredStore;
+  private final ObjectProvider<ReplicaLagMonitor> replicaLagMonitor;
+  private final ObjectProvider<ReplicaCopier> replicaCopier;
+
+  @GetMapping("/stats")
+  public ResponseEntity<ApiResponse<Map<String, Object>>> getStats()
+  {
+    Map<String, Object> memory = new LinkedHashMap<>();
+    memory.put("budgetBytes", memoryBudgetService.getBudgetBytes());
+    memory.put("availableBytes", memoryBudgetService.getAvailableBytes());
+    memory.put("rejected", memoryBudgetService.getRejectedCount());
+    memory.put("spilled", memoryBudgetService.getSpilledCount());
+
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("admission", admissionControlService.getStats());
+    stats.put("captureMemory", memory);
+    stats.put("captureShards", Map.of(
+      "queueDepths", captureShardService.getQueueDepths(),
+      "rejected", captureShardService.getRejectedCount()));
+    stats.put("headerDictionary", headerDictionary.getStats());
+    stats.put("duplicates", duplicateDetectionService.getStats());
+    stats.put("forwarding", forwardingService.getStats());
+    stats.put("sampling", samplingService.getStats());
+    stats.put("imports", importService.getStats());
+    stats.put("search", searchIndexService.getStats());
+    tieredStore.ifAvailable(store -> stats.put("hotTier", store.getStats()));
+    replicaLagMonitor.ifAvailable(monitor -> stats.put("readReplica", monitor.getStats()));
+    replicaCopier.ifAvailable(copier -> stats.put("replicaCopy", copier.getStats()));
+
+    return ResponseEntity.ok(ApiResponse.success(stats, "Statistics retrieved successfully"));
+  }
+}
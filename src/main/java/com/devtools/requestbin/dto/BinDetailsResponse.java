@@ -1,5 +1,7 @@
 package com.devtools.requestbin.dto;
 
+import com.devtools.requestbin.entity.DuplicateMode;
+import com.devtools.requestbin.entity.RetentionMode;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -20,5 +22,13 @@ public class BinDetailsResponse {
   private LocalDateTime expiresAt;
   private Integer maxRequests;
   private Integer currentRequestCount;
-  private List<CapturedRequestResponse> requests; // NEW: list of captured requests
+  private Long maxBytes;
+  private Long currentBytes;
+  private Integer maxAgeMinutes;
+  private RetentionMode retentionMode;
+  private DuplicateMode duplicateMode;
+  private List<ForwardTarget> forwardTargets;
+  private SamplingPolicy sampling;
+  private ResponseTemplate responseTemplate;
+  private List<CapturedRequestSummary> requests; // summaries, full request via /api/bins/{id}/requests/{requestId}
 }
\ No newline at end of file
@@ -1,11 +1,14 @@
 package com.devtools.requestbin.dto;
 
+import com.devtools.requestbin.entity.DuplicateMode;
+import com.devtools.requestbin.entity.RetentionMode;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @NoArgsConstructor
@@ -19,4 +22,12 @@ public class BinResponse {
   private LocalDateTime expiresAt;
   private Integer maxRequests;
   private Integer currentRequestCount;
+  private Long maxBytes;
+  private Long currentBytes;
+  private Integer maxAgeMinutes;
+  private RetentionMode retentionMode;
+  private DuplicateMode duplicateMode;
+  private List<ForwardTarget> forwardTargets;
+  private SamplingPolicy sampling;
+  private ResponseTemplate responseTemplate;
 }
\ No newline at end of file
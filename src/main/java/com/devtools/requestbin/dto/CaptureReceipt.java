@@ -0,0 +1,29 @@
+package com.devtools.requestbin.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * What the capture endpoint acknowledges back to the sender
+ * <p>
+ * Deliberately small: headers and query params are stored as JSON and are not parsed
+ * back just to build the acknowledgement.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CaptureReceipt
+{
+
+  private Long binId;
+  private Long requestId;
+  private long sequence;
+  private LocalDateTime timestamp;
+  private Long duplicateOf; // the original request when this delivery was a duplicate
+  private boolean sampledOut; // not stored (yet): dropped or held by the bin's sampling policy, requestId is null
+}
@@ -0,0 +1,25 @@
+package com.devtools.requestbin.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One page of captured requests with a cursor for the next page
+ * <p>
+ * Pass nextCursor back as ?cursor= to continue; it is null on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CapturedRequestPage<T>
+{
+
+  private List<T> requests;
+  private Long nextCursor;
+  private boolean hasMore;
+}
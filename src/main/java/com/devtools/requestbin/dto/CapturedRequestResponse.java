@@ -14,10 +14,14 @@ import java.util.Map;
 @Builder
 public class CapturedRequestResponse {
   private Long id;
+  private Long sequence;
   private String method;
   private Map<String, String> headers;
   private String body;
   private Map<String, String> queryParams;
   private String ipAddress;
   private LocalDateTime timestamp;
+  private Long duplicateOf;
+  private Integer deliveryCount;
+  private LocalDateTime lastDeliveredAt;
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.devtools.requestbin.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Lightweight view of a captured request for list endpoints
+ * <p>
+ * Built directly by the query (constructor projection), so full headers and body
+ * are never loaded. Fetch those from /api/bins/{id}/requests/{requestId}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CapturedRequestSummary
+{
+
+  private Long id;
+  private String method;
+  private LocalDateTime timestamp;
+  private String ipAddress;
+  private Integer bodySize;
+  private String bodyPreview;
+  private Long duplicateOf;
+  private Integer deliveryCount;
+}
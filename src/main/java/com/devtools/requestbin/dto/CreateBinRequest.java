@@ -1,7 +1,13 @@
 package com.devtools.requestbin.dto;
 
+import java.util.List;
+
+import com.devtools.requestbin.entity.DuplicateMode;
+import com.devtools.requestbin.entity.RetentionMode;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 
 @Data
@@ -14,4 +20,33 @@ public class CreateBinRequest {
   @Min(value = 10, message = "Max requests must be at least 10")
   @Max(value = 10000, message = "Max requests cannot exceed 10,000")
   private Integer maxRequests = 1000; // default 1000 requests
+
+  // Optional byte quota for stored bodies (defaults to app.bin.default-max-bytes)
+  @Min(value = 1024, message = "Max bytes must be at least 1024")
+  @Max(value = 1073741824L, message = "Max bytes cannot exceed 1 GB")
+  private Long maxBytes;
+
+  // Optional: drop requests older than this many minutes
+  @Min(value = 1, message = "Max age must be at least 1 minute")
+  @Max(value = 10080, message = "Max age cannot exceed 10080 minutes (7 days)")
+  private Integer maxAgeMinutes;
+
+  // REJECT new requests when full, or KEEP_LATEST by dropping the oldest
+  private RetentionMode retentionMode = RetentionMode.REJECT;
+
+  // KEEP every delivery, FLAG identical ones as duplicates, or COLLAPSE them into a counter
+  private DuplicateMode duplicateMode = DuplicateMode.KEEP;
+
+  // Optional: forward every captured request to these targets
+  @Valid
+  @Size(max = 5, message = "A bin can forward to at most 5 targets")
+  private List<ForwardTarget> forwardTargets;
+
+  // Optional: store only a sample of incoming requests (all are still counted)
+  @Valid
+  private SamplingPolicy sampling;
+
+  // Optional: answer captures with this response instead of the default acknowledgement
+  @Valid
+  private ResponseTemplate responseTemplate;
 }
\ No newline at end of file
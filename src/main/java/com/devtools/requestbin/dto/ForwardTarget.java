@@ -0,0 +1,38 @@
+package com.devtools.requestbin.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A downstream URL that a bin forwards every captured request to
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ForwardTarget
+{
+
+  @NotBlank(message = "Target URL is required")
+  @Pattern(regexp = "^https?://.+", message = "Target URL must be an http or https URL")
+  private String url;
+
+  // Requests per call; above 1 they are POSTed together as a JSON array
+  @Min(value = 1, message = "Batch size must be at least 1")
+  @Max(value = 100, message = "Batch size cannot exceed 100")
+  private Integer batchSize = 1;
+
+  // Calls in flight to this target at once
+  @Min(value = 1, message = "Max concurrency must be at least 1")
+  @Max(value = 64, message = "Max concurrency cannot exceed 64")
+  private Integer maxConcurrency = 4;
+
+  // Calls started per second
+  @Min(value = 1, message = "Rate must be at least 1 call per second")
+  @Max(value = 1000, message = "Rate cannot exceed 1000 calls per second")
+  private Integer ratePerSecond = 10;
+}
@@ -0,0 +1,25 @@
+package com.devtools.requestbin.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A captured request that could not be forwarded to one of its bin's targets
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ForwardingDeadLetter
+{
+
+  private Long requestId;
+  private String targetUrl;
+  private int attempts;
+  private String error;
+  private LocalDateTime failedAt;
+}
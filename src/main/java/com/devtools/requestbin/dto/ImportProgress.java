@@ -0,0 +1,38 @@
+package com.devtools.requestbin.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * State of one bulk import into a bin, while it runs and after it finished
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImportProgress
+{
+
+  public enum Status
+  {
+    RUNNING,
+    COMPLETED,
+    TRUNCATED, // the bin reached its request or byte limit
+    FAILED
+  }
+
+  private String importId;
+  private String format;
+  private Status status;
+  private long imported;
+  private long skipped;    // entries that are not requests (no method) or do not fit the bin at all
+  private long bytesRead;
+  private long requestsPerSecond;
+  private LocalDateTime startedAt;
+  private LocalDateTime finishedAt;
+  private String message;
+}
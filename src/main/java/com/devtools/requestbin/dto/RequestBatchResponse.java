@@ -0,0 +1,27 @@
+package com.devtools.requestbin.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A batch of requests for incremental fetching, oldest first
+ * <p>
+ * Pass lastSequence back as ?after= on the next call to receive only newer requests.
+ * A request already received can come back (with lastSequence unchanged) when a
+ * duplicate was collapsed into it and its deliveryCount went up.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RequestBatchResponse
+{
+
+  private List<CapturedRequestResponse> requests;
+  private long lastSequence;
+  private boolean hasMore;          // true if more requests are immediately available
+}
@@ -0,0 +1,36 @@
+package com.devtools.requestbin.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+/**
+ * Server-side filter for captured requests
+ * <p>
+ * All fields are optional - only the ones provided are applied.
+ * Bound from query parameters, e.g. ?method=POST&from=2025-01-01T00:00:00
+ * <p>
+ * headerName and headerValue are matched ignoring case, like HTTP header names; the value
+ * must still match the whole stored value.
+ */
+@Data
+public class RequestFilter
+{
+
+  private String method;
+
+  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+  private LocalDateTime from;           // Inclusive
+
+  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+  private LocalDateTime to;             // Exclusive
+
+  private String ipAddress;
+
+  private String headerName;            // Match requests carrying this header
+  private String headerValue;           // Optional: whole value for headerName, ignoring case
+
+  private Integer minBodySize;          // Bytes, inclusive
+  private Integer maxBodySize;          // Bytes, inclusive
+}
@@ -0,0 +1,37 @@
+package com.devtools.requestbin.dto;
+
+import java.util.Map;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * What a bin answers to captured requests instead of the default JSON acknowledgement
+ * <p>
+ * Header values and the body may contain {{requestId}}, {{sequence}} and {{timestamp}}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResponseTemplate
+{
+
+  @Min(value = 100, message = "Status must be at least 100")
+  @Max(value = 599, message = "Status cannot exceed 599")
+  private Integer status = 200;
+
+  @Size(max = 50, message = "A response template can have at most 50 headers")
+  private Map<String, String> headers;
+
+  @Size(max = 1048576, message = "Response body cannot exceed 1 MB")
+  private String body;
+
+  // Delay before the response is sent
+  @Min(value = 0, message = "Latency cannot be negative")
+  @Max(value = 60000, message = "Latency cannot exceed 60000 ms")
+  private Integer latencyMs = 0;
+}
@@ -0,0 +1,45 @@
+package com.devtools.requestbin.dto;
+
+import com.devtools.requestbin.entity.SamplingMode;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Which of a bin's incoming requests are stored, for bins receiving more traffic than is worth keeping
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SamplingPolicy
+{
+
+  @NotNull(message = "Sampling mode is required")
+  private SamplingMode mode = SamplingMode.ALL;
+
+  // FIXED_RATE: fraction of requests stored
+  @DecimalMin(value = "0.0001", message = "Sample rate must be at least 0.0001")
+  @DecimalMax(value = "1.0", message = "Sample rate cannot exceed 1")
+  private Double rate;
+
+  // RESERVOIR: requests stored per window
+  @Min(value = 1, message = "Reservoir size must be at least 1")
+  @Max(value = 1000, message = "Reservoir size cannot exceed 1000")
+  private Integer reservoirSize = 100;
+
+  @Min(value = 1, message = "Window must be at least 1 second")
+  @Max(value = 3600, message = "Window cannot exceed 3600 seconds")
+  private Integer windowSeconds = 60;
+
+  // Overrides: always store requests reporting an error status (see app.sampling.error-status-header)
+  private boolean keepErrors;
+
+  // Overrides: always store requests carrying this header (with this value, if given; case-insensitive)
+  private String keepHeaderName;
+  private String keepHeaderValue;
+}
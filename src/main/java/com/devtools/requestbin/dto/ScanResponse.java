@@ -0,0 +1,26 @@
+package com.devtools.requestbin.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Result of a payload scan: matching requests (newest first) plus scan statistics
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ScanResponse
+{
+
+  private String expression;
+  private long scanned;             // Rows evaluated before stopping
+  private int matched;
+  private boolean complete;         // false if the scan stopped early at the limit
+  private long tookMs;
+  private List<CapturedRequestSummary> requests;
+}
@@ -0,0 +1,25 @@
+package com.devtools.requestbin.dto;
+
+import java.time.LocalDateTime;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One full-text search result, ranked by score (higher is better)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SearchHit
+{
+
+  private Long requestId;
+  private String uniqueUrl;
+  private String method;
+  private LocalDateTime timestamp;
+  private double score;
+}
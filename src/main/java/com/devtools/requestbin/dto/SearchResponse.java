@@ -0,0 +1,23 @@
+package com.devtools.requestbin.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SearchResponse
+{
+
+  private String query;
+  private long totalHits;
+  private int page;
+  private int size;
+  private long tookMs;
+  private List<SearchHit> hits;
+}
@@ -7,6 +7,8 @@ import java.util.List;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -45,6 +47,47 @@ public class Bin
   @Column(nullable = false)
   private Integer currentRequestCount;
 
+  // Storage quota: total body bytes this bin may hold, and how much it holds now
+  @Column(nullable = false)
+  private Long maxBytes;
+
+  @Column(nullable = false)
+  private Long currentBytes;
+
+  // Optional age retention: requests older than this are trimmed in the background
+  @Column
+  private Integer maxAgeMinutes;
+
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false, length = 20)
+  private RetentionMode retentionMode;
+
+  // What happens to a request identical to one the bin already holds
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false, length = 20)
+  private DuplicateMode duplicateMode;
+
+  // JSON list of ForwardTarget; null when captured requests are not forwarded
+  @Column(columnDefinition = "TEXT")
+  private String forwardTargets;
+
+  // JSON SamplingPolicy; null when every request is stored
+  @Column(columnDefinition = "TEXT")
+  private String samplingPolicy;
+
+  // JSON ResponseTemplate; null when captures get the default acknowledgement
+  @Column(columnDefinition = "TEXT")
+  private String responseTemplate;
+
+  // Incremented on every capture; together with the count it versions the bin's contents
+  @Column(nullable = false)
+  private Long captureSequence;
+
+  // Incremented when a duplicate is collapsed into a stored request (COLLAPSE), which
+  // changes that request in place; part of the version too. Null on bins that predate it
+  @Column
+  private Long redeliveryCount;
+
   @OneToMany(mappedBy = "bin", cascade = CascadeType.ALL, orphanRemoval = true)
   @Builder.Default
   private List<CapturedRequest> requests = new ArrayList<>();
@@ -54,5 +97,15 @@ public class Bin
   {
     createdAt = LocalDateTime.now();
     currentRequestCount = 0;
+    captureSequence = 0L;
+    currentBytes = 0L;
+    if (retentionMode == null)
+    {
+      retentionMode = RetentionMode.REJECT;
+    }
+    if (duplicateMode == null)
+    {
+      duplicateMode = DuplicateMode.KEEP;
+    }
   }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.devtools.requestbin.entity;
 
+import com.devtools.requestbin.storage.HeaderDictionary;
+import com.devtools.requestbin.storage.HeadersConverter;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -7,9 +9,17 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 @Entity
-@Table(name = "captured_requests")
+@Table(name = "captured_requests", uniqueConstraints = {
+  @UniqueConstraint(name = "uk_captured_bin_sequence", columnNames = { "bin_id", "sequence" })
+}, indexes = {
+  @Index(name = "idx_captured_bin_timestamp", columnList = "bin_id, timestamp"),
+  @Index(name = "idx_captured_bin_method", columnList = "bin_id, method"),
+  @Index(name = "idx_captured_bin_ip", columnList = "bin_id, ip_address"),
+  @Index(name = "idx_captured_bin_body_size", columnList = "bin_id, body_size")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -24,11 +34,20 @@ public class CapturedRequest {
   @JoinColumn(name = "bin_id", nullable = false)
   private Bin bin;
 
+  @Column(nullable = false)
+  private Long sequence; // per-bin, monotonically increasing (1, 2, 3, ...)
+
   @Column(nullable = false, length = 10)
   private String method; // GET, POST, PUT, DELETE, etc.
 
   @Column(columnDefinition = "TEXT")
-  private String headers;
+  @Convert(converter = HeadersConverter.class)
+  private String headers; // JSON object; stored as header dictionary codes
+
+  // Headers as read by a header dictionary store: names and values share the dictionary's
+  // texts, and the JSON above is only built if someone asks for it
+  @Transient
+  private Map<String, String> headerMap;
 
   @Column(columnDefinition = "TEXT")
   private String body;
@@ -36,14 +55,53 @@ public class CapturedRequest {
   @Column(columnDefinition = "TEXT")
   private String queryParams;
 
+  @Column
+  private Integer bodySize; // body length in UTF-8 bytes, used for size filtering
+
+  @Column(length = 200)
+  private String bodyPreview; // first characters of the body, shown in list views
+
   @Column(length = 45)
   private String ipAddress;
 
   @Column(nullable = false)
   private LocalDateTime timestamp;
 
+  // Duplicate detection (see Bin.duplicateMode): the request this one repeats (FLAG), or
+  // how many identical deliveries were collapsed into this one and when the last arrived (COLLAPSE)
+  @Column
+  private Long duplicateOf;
+
+  @Column
+  private Integer deliveryCount;
+
+  @Column
+  private LocalDateTime lastDeliveredAt;
+
+  public String getHeaders() {
+    if (headers == null && headerMap != null) {
+      headers = HeaderDictionary.toJson(headerMap);
+    }
+    return headers;
+  }
+
+  public void setHeaders(String headers) {
+    this.headers = headers;
+    this.headerMap = null;
+  }
+
   @PrePersist
   protected void onCreate() {
-    timestamp = LocalDateTime.now();
+    if (timestamp == null) {
+      timestamp = LocalDateTime.now();
+    }
+  }
+
+  /**
+   * Counts one more identical delivery collapsed into this request
+   */
+  public void recordRedelivery(LocalDateTime at) {
+    deliveryCount = (deliveryCount != null ? deliveryCount : 1) + 1;
+    lastDeliveredAt = at;
   }
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.devtools.requestbin.entity;
+
+/**
+ * What a bin does with a request identical to one it already holds
+ * <p>
+ * Identical means the same fingerprint: method, the configured header subset, query
+ * params and body (see DuplicateDetectionService).
+ */
+public enum DuplicateMode
+{
+  /**
+   * Store every delivery as its own request (no detection)
+   */
+  KEEP,
+
+  /**
+   * Store the delivery, marking it with duplicateOf = the original request's id
+   */
+  FLAG,
+
+  /**
+   * Store nothing; count the delivery on the original request (deliveryCount, lastDeliveredAt)
+   */
+  COLLAPSE
+}
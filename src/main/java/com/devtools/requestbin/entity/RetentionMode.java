@@ -0,0 +1,17 @@
+package com.devtools.requestbin.entity;
+
+/**
+ * What a bin does once it holds maxRequests requests
+ */
+public enum RetentionMode
+{
+  /**
+   * Reject new requests (429) until the bin is deleted or expires
+   */
+  REJECT,
+
+  /**
+   * Keep accepting, dropping the oldest requests so only the latest maxRequests are kept
+   */
+  KEEP_LATEST
+}
@@ -0,0 +1,26 @@
+package com.devtools.requestbin.entity;
+
+/**
+ * Which of a bin's incoming requests are stored (see SamplingService)
+ * <p>
+ * Every request is counted whatever the mode; the keep overrides of the bin's policy
+ * (errors, header match) are stored regardless of it.
+ */
+public enum SamplingMode
+{
+  /**
+   * Store every request (no sampling)
+   */
+  ALL,
+
+  /**
+   * Store each request with probability rate
+   */
+  FIXED_RATE,
+
+  /**
+   * Store a uniform sample of reservoirSize requests out of each window of windowSeconds,
+   * written when the window closes
+   */
+  RESERVOIR
+}
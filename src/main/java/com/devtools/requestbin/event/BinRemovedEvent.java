@@ -0,0 +1,17 @@
+package com.devtools.requestbin.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Published when a bin is deleted by its owner or removed after expiry
+ */
+@Getter
+@RequiredArgsConstructor
+public class BinRemovedEvent
+{
+
+  private final Long binId;
+  private final String uniqueUrl;
+  private final long bytes;          // Body bytes the bin was holding
+}
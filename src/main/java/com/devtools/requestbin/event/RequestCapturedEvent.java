@@ -0,0 +1,20 @@
+package com.devtools.requestbin.event;
+
+import com.devtools.requestbin.entity.CapturedRequest;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Published inside the capture transaction once a request has been saved
+ * <p>
+ * Listeners should use @TransactionalEventListener so they only see committed requests.
+ */
+@Getter
+@RequiredArgsConstructor
+public class RequestCapturedEvent
+{
+
+  private final Long binId;
+  private final String uniqueUrl;
+  private final CapturedRequest request;
+}
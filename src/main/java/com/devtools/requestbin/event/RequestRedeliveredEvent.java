@@ -0,0 +1,21 @@
+package com.devtools.requestbin.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Published inside the capture transaction when a duplicate was collapsed into a stored
+ * request (COLLAPSE bins), whose deliveryCount has just gone up
+ * <p>
+ * Listeners should use @TransactionalEventListener so they only see committed changes.
+ */
+@Getter
+@RequiredArgsConstructor
+public class RequestRedeliveredEvent
+{
+
+  private final Long binId;
+  private final String uniqueUrl;
+  private final Long requestId;
+  private final Long sequence;
+}
@@ -0,0 +1,23 @@
+package com.devtools.requestbin.event;
+
+import java.util.List;
+
+import com.devtools.requestbin.entity.CapturedRequest;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Published for each batch of requests written by a bulk import (see ImportService)
+ * <p>
+ * Imported requests are not captures: they are not forwarded, sampled or checked for
+ * duplicates, so no RequestCapturedEvent is published for them.
+ */
+@Getter
+@RequiredArgsConstructor
+public class RequestsImportedEvent
+{
+
+  private final Long binId;
+  private final String uniqueUrl;
+  private final List<CapturedRequest> requests; // in sequence order
+}
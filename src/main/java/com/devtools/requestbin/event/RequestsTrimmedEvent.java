@@ -0,0 +1,20 @@
+package com.devtools.requestbin.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Published when a bin's oldest requests are removed by its retention policy
+ * <p>
+ * Every request with a sequence number up to and including upToSequence is gone;
+ * bytes is the total body size that was freed.
+ */
+@Getter
+@RequiredArgsConstructor
+public class RequestsTrimmedEvent
+{
+
+  private final Long binId;
+  private final long upToSequence;
+  private final long bytes;
+}
@@ -6,6 +6,7 @@ import java.util.Map;
 import com.devtools.requestbin.dto.ErrorResponse;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -40,6 +41,28 @@ public class GlobalExceptionHandler
     return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
   }
 
+  /**
+   * Handles RequestNotFoundException
+   * Returns 404 Not Found
+   */
+  @ExceptionHandler(RequestNotFoundException.class)
+  public ResponseEntity<ErrorResponse> handleRequestNotFound(
+    RequestNotFoundException ex,
+    HttpServletRequest request)
+  {
+
+    log.error("Request not found: {}", ex.getMessage());
+
+    ErrorResponse error = ErrorResponse.of(
+      HttpStatus.NOT_FOUND.value(),
+      HttpStatus.NOT_FOUND.getReasonPhrase(),
+      ex.getMessage(),
+      request.getRequestURI()
+    );
+
+    return ResponseEntity.status(HttpStatus.NOT_FOUND).body(error);
+  }
+
   /**
    * Handles BinExpiredException
    * Returns 410 Gone (resource existed but no longer available)
@@ -161,6 +184,74 @@ public class GlobalExceptionHandler
     return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(error);
   }
 
+  /**
+   * Handles StorageQuotaExceededException
+   * Returns 507 Insufficient Storage
+   */
+  @ExceptionHandler(StorageQuotaExceededException.class)
+  public ResponseEntity<ErrorResponse> handleStorageQuotaExceeded(
+    StorageQuotaExceededException ex,
+    HttpServletRequest request)
+  {
+
+    log.warn("Storage quota exceeded: {}", ex.getMessage());
+
+    ErrorResponse error = ErrorResponse.of(
+      HttpStatus.INSUFFICIENT_STORAGE.value(),
+      HttpStatus.INSUFFICIENT_STORAGE.getReasonPhrase(),
+      ex.getMessage(),
+      request.getRequestURI()
+    );
+
+    return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).body(error);
+  }
+
+  /**
+   * Handles ServiceOverloadedException
+   * Returns 503 Service Unavailable with Retry-After
+   */
+  @ExceptionHandler(ServiceOverloadedException.class)
+  public ResponseEntity<ErrorResponse> handleServiceOverloaded(
+    ServiceOverloadedException ex,
+    HttpServletRequest request)
+  {
+
+    log.warn("Request shed: {}", ex.getMessage());
+
+    ErrorResponse error = ErrorResponse.of(
+      HttpStatus.SERVICE_UNAVAILABLE.value(),
+      HttpStatus.SERVICE_UNAVAILABLE.getReasonPhrase(),
+      ex.getMessage(),
+      request.getRequestURI()
+    );
+
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+      .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+      .body(error);
+  }
+
+  /**
+   * Handles PayloadTooLargeException
+   * Returns 413 Content Too Large
+   */
+  @ExceptionHandler(PayloadTooLargeException.class)
+  public ResponseEntity<ErrorResponse> handlePayloadTooLarge(
+    PayloadTooLargeException ex,
+    HttpServletRequest request)
+  {
+
+    log.warn("Payload too large: {}", ex.getMessage());
+
+    ErrorResponse error = ErrorResponse.of(
+      HttpStatus.CONTENT_TOO_LARGE.value(),
+      HttpStatus.CONTENT_TOO_LARGE.getReasonPhrase(),
+      ex.getMessage(),
+      request.getRequestURI()
+    );
+
+    return ResponseEntity.status(HttpStatus.CONTENT_TOO_LARGE).body(error);
+  }
+
   /**
    * Catches all other exceptions not handled above
    * Returns 500 Internal Server Error
@@ -0,0 +1,14 @@
+package com.devtools.requestbin.exception;
+
+/**
+ * Throws when a request body is larger than the server can ever buffer
+ */
+public class PayloadTooLargeException
+  extends RuntimeException
+{
+
+  public PayloadTooLargeException(long maxBytes)
+  {
+    super("Request body exceeds the maximum of " + maxBytes + " bytes");
+  }
+}
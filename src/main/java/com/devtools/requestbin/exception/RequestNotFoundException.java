@@ -0,0 +1,14 @@
+package com.devtools.requestbin.exception;
+
+/**
+ * Throws when a captured request with given id doesn't exist
+ */
+public class RequestNotFoundException
+  extends RuntimeException
+{
+
+  public RequestNotFoundException(Long requestId)
+  {
+    super("Request not found with ID: " + requestId);
+  }
+}
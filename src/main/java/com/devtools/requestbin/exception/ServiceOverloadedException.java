@@ -0,0 +1,24 @@
+package com.devtools.requestbin.exception;
+
+/**
+ * Throws when the server sheds a request to protect itself (memory, concurrency)
+ * <p>
+ * Mapped to 503 Service Unavailable with a Retry-After header.
+ */
+public class ServiceOverloadedException
+  extends RuntimeException
+{
+
+  private final long retryAfterSeconds;
+
+  public ServiceOverloadedException(String message, long retryAfterSeconds)
+  {
+    super(message);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public long getRetryAfterSeconds()
+  {
+    return retryAfterSeconds;
+  }
+}
@@ -0,0 +1,14 @@
+package com.devtools.requestbin.exception;
+
+/**
+ * Throws when storing a request would exceed a bin's or the server's byte quota
+ */
+public class StorageQuotaExceededException
+  extends RuntimeException
+{
+
+  public StorageQuotaExceededException(String message)
+  {
+    super(message);
+  }
+}
@@ -1,16 +1,24 @@
 package com.devtools.requestbin.repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 import com.devtools.requestbin.entity.Bin;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface BinRepository
-  extends JpaRepository<Bin, Long>
+  extends JpaRepository<Bin, Long>, BinRepositoryCustom
 {
   Optional<Bin> findByUniqueUrl(String uniqueUrl);
 
   boolean existsByUniqueUrl(String uniqueUrl);
+
+  List<Bin> findByMaxAgeMinutesIsNotNullAndExpiresAtAfter(LocalDateTime now);
+
+  @Query("select coalesce(sum(b.currentBytes), 0) from Bin b")
+  long sumCurrentBytes();
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package com.devtools.requestbin.repository;
+
+import com.devtools.requestbin.entity.Bin;
+
+public interface BinRepositoryCustom
+{
+  /**
+   * Reloads the bin's state and takes a row lock until the transaction ends
+   * <p>
+   * Used by the capture path so per-bin counters and sequence numbers are assigned
+   * one writer at a time.
+   */
+  void lockForUpdate(Bin bin);
+}
@@ -0,0 +1,23 @@
+package com.devtools.requestbin.repository;
+
+import com.devtools.requestbin.entity.Bin;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Picked up by Spring Data as the implementation of BinRepositoryCustom
+ */
+public class BinRepositoryImpl
+  implements BinRepositoryCustom
+{
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Override
+  public void lockForUpdate(Bin bin)
+  {
+    entityManager.refresh(bin, LockModeType.PESSIMISTIC_WRITE);
+  }
+}
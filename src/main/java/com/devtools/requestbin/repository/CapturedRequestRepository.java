@@ -1,16 +1,92 @@
 package com.devtools.requestbin.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
+import com.devtools.requestbin.dto.CapturedRequestSummary;
 import com.devtools.requestbin.entity.CapturedRequest;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface CapturedRequestRepository
-  extends JpaRepository<CapturedRequest, Long>
+  extends JpaRepository<CapturedRequest, Long>, JpaSpecificationExecutor<CapturedRequest>, CapturedRequestRepositoryCustom
 {
   List<CapturedRequest> findByBinIdOrderByTimestampDesc(Long binId);
 
   long countByBinId(Long binId);
-}
\ No newline at end of file
+
+  /**
+   * Requests captured after the given per-bin sequence number, oldest first
+   */
+  List<CapturedRequest> findByBinIdAndSequenceGreaterThanOrderBySequenceAsc(Long binId, Long sequence, Limit limit);
+
+  /**
+   * Oldest requests first with their sizes, to find how far to trim for a byte budget
+   */
+  List<SizeView> findByBinIdOrderBySequenceAsc(Long binId, Limit limit);
+
+  @Query("select coalesce(sum(r.bodySize), 0) from CapturedRequest r "
+    + "where r.bin.id = :binId and r.sequence <= :upToSequence")
+  long sumBodySizeUpToSequence(@Param("binId") Long binId, @Param("upToSequence") long upToSequence);
+
+  @Query("select min(r.sequence) from CapturedRequest r where r.bin.id = :binId")
+  Long findMinSequence(@Param("binId") Long binId);
+
+  /**
+   * See CapturedRequestStore.findExpiredPrefixEnd: the newest request older than the oldest live one
+   */
+  @Query("select max(r.sequence) from CapturedRequest r where r.bin.id = :binId and r.sequence < "
+    + "coalesce((select min(l.sequence) from CapturedRequest l where l.bin.id = :binId and l.timestamp >= :cutoff), "
+    + "r.sequence + 1)")
+  Long findExpiredPrefixEnd(@Param("binId") Long binId, @Param("cutoff") LocalDateTime cutoff);
+
+  /**
+   * Range delete of a bin's oldest requests, backed by the (bin_id, sequence) unique index
+   */
+  @Modifying
+  @Query("delete from CapturedRequest r where r.bin.id = :binId and r.sequence <= :upToSequence")
+  int deleteByBinIdUpToSequence(@Param("binId") Long binId, @Param("upToSequence") long upToSequence);
+
+  @Modifying
+  @Query("update CapturedRequest r set r.deliveryCount = coalesce(r.deliveryCount, 1) + 1, "
+    + "r.lastDeliveredAt = :at where r.id = :id")
+  int incrementDeliveryCount(@Param("id") Long id, @Param("at") LocalDateTime at);
+
+  @Query("select new com.devtools.requestbin.dto.CapturedRequestSummary("
+    + "r.id, r.method, r.timestamp, r.ipAddress, r.bodySize, r.bodyPreview, r.duplicateOf, r.deliveryCount) "
+    + "from CapturedRequest r where r.bin.id = :binId order by r.id desc")
+  List<CapturedRequestSummary> findSummariesByBinId(@Param("binId") Long binId);
+
+  @Query("select new com.devtools.requestbin.dto.CapturedRequestSummary("
+    + "r.id, r.method, r.timestamp, r.ipAddress, r.bodySize, r.bodyPreview, r.duplicateOf, r.deliveryCount) "
+    + "from CapturedRequest r where r.id in :ids order by r.id desc")
+  List<CapturedRequestSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+  /**
+   * Id + body only, newest first, for chunked payload scans (keyset on id)
+   */
+  @Query("select r.id as id, r.body as body from CapturedRequest r "
+    + "where r.bin.id = :binId and r.id < :beforeId order by r.id desc")
+  List<BodyView> findBodyChunk(@Param("binId") Long binId, @Param("beforeId") Long beforeId, Limit limit);
+
+  interface BodyView
+  {
+    Long getId();
+
+    String getBody();
+  }
+
+  interface SizeView
+  {
+    Long getSequence();
+
+    Integer getBodySize();
+  }
+}
@@ -0,0 +1,18 @@
+package com.devtools.requestbin.repository;
+
+import java.util.List;
+
+import com.devtools.requestbin.dto.CapturedRequestSummary;
+import com.devtools.requestbin.entity.CapturedRequest;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Queries that Spring Data can't derive: specification queries projected to summaries
+ */
+public interface CapturedRequestRepositoryCustom
+{
+  /**
+   * Summaries matching the specification, newest (highest id) first
+   */
+  List<CapturedRequestSummary> findSummaries(Specification<CapturedRequest> specification, int limit);
+}
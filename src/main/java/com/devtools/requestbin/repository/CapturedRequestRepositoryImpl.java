@@ -0,0 +1,48 @@
+package com.devtools.requestbin.repository;
+
+import java.util.List;
+
+import com.devtools.requestbin.dto.CapturedRequestSummary;
+import com.devtools.requestbin.entity.CapturedRequest;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Picked up by Spring Data as the implementation of CapturedRequestRepositoryCustom
+ */
+public class CapturedRequestRepositoryImpl
+  implements CapturedRequestRepositoryCustom
+{
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Override
+  public List<CapturedRequestSummary> findSummaries(Specification<CapturedRequest> specification, int limit)
+  {
+    CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+    CriteriaQuery<CapturedRequestSummary> query = cb.createQuery(CapturedRequestSummary.class);
+    Root<CapturedRequest> root = query.from(CapturedRequest.class);
+
+    query.select(cb.construct(
+        CapturedRequestSummary.class,
+        root.get("id"),
+        root.get("method"),
+        root.get("timestamp"),
+        root.get("ipAddress"),
+        root.get("bodySize"),
+        root.get("bodyPreview"),
+        root.get("duplicateOf"),
+        root.get("deliveryCount")))
+      .where(specification.toPredicate(root, query, cb))
+      .orderBy(cb.desc(root.get("id")));
+
+    return entityManager.createQuery(query)
+      .setMaxResults(limit)
+      .getResultList();
+  }
+}
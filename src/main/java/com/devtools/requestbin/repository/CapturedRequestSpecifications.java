@@ -0,0 +1,125 @@
+package com.devtools.requestbin.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.devtools.requestbin.dto.RequestFilter;
+import com.devtools.requestbin.entity.CapturedRequest;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * JPA specifications for server-side filtering of captured requests
+ * <p>
+ * Every query is scoped to a single bin so it can use the (bin_id, ...) indexes
+ * declared on CapturedRequest.
+ */
+public final class CapturedRequestSpecifications
+{
+
+  private static final char LIKE_ESCAPE = '\\';
+
+  private CapturedRequestSpecifications()
+  {
+  }
+
+  /**
+   * Builds a specification for one bin, the given filter and an optional cursor
+   * (only requests with an id lower than the cursor are returned)
+   * <p>
+   * headerNeedles are the lowercase texts any of which satisfies the header filter in the
+   * stored headers column (see HeaderDictionary.headerNeedles), or null without one.
+   */
+  public static Specification<CapturedRequest> matching(Long binId, RequestFilter filter, Long cursor,
+    List<String> headerNeedles)
+  {
+    return (root, query, cb) ->
+    {
+      List<Predicate> predicates = new ArrayList<>();
+      predicates.add(cb.equal(root.get("bin").get("id"), binId));
+
+      if (cursor != null)
+      {
+        predicates.add(cb.lessThan(root.get("id"), cursor));
+      }
+      if (hasText(filter.getMethod()))
+      {
+        predicates.add(cb.equal(root.get("method"), filter.getMethod().toUpperCase()));
+      }
+      if (filter.getFrom() != null)
+      {
+        predicates.add(cb.greaterThanOrEqualTo(root.get("timestamp"), filter.getFrom()));
+      }
+      if (filter.getTo() != null)
+      {
+        predicates.add(cb.lessThan(root.get("timestamp"), filter.getTo()));
+      }
+      if (hasText(filter.getIpAddress()))
+      {
+        predicates.add(cb.equal(root.get("ipAddress"), filter.getIpAddress()));
+      }
+      if (filter.getMinBodySize() != null)
+      {
+        predicates.add(cb.greaterThanOrEqualTo(root.get("bodySize"), filter.getMinBodySize()));
+      }
+      if (filter.getMaxBodySize() != null)
+      {
+        predicates.add(cb.lessThanOrEqualTo(root.get("bodySize"), filter.getMaxBodySize()));
+      }
+      if (headerNeedles != null)
+      {
+        predicates.add(cb.or(headerNeedles.stream()
+          .map(needle -> cb.like(cb.lower(root.get("headers")), containsPattern(needle), LIKE_ESCAPE))
+          .toArray(Predicate[]::new)));
+      }
+
+      return cb.and(predicates.toArray(new Predicate[0]));
+    };
+  }
+
+  /**
+   * The lowercase text a header filter looks for in the headers JSON, or null
+   * <p>
+   * Headers are a JSON object, so "name": (or "name":"value") is matched as text.
+   */
+  public static String headerNeedle(RequestFilter filter)
+  {
+    if (!hasText(filter.getHeaderName()))
+    {
+      return null;
+    }
+    String needle = "\"" + toJsonText(filter.getHeaderName().toLowerCase()) + "\":";
+    if (filter.getHeaderValue() != null)
+    {
+      needle += "\"" + toJsonText(filter.getHeaderValue().toLowerCase()) + "\"";
+    }
+    return needle;
+  }
+
+  /**
+   * LIKE pattern matching values that contain the text, escaped with a backslash
+   */
+  public static String containsPattern(String text)
+  {
+    return "%" + escapeLike(text) + "%";
+  }
+
+  private static boolean hasText(String value)
+  {
+    return value != null && !value.isBlank();
+  }
+
+  private static String toJsonText(String value)
+  {
+    return new String(JsonStringEncoder.getInstance().quoteAsString(value));
+  }
+
+  private static String escapeLike(String value)
+  {
+    return value
+      .replace("\\", "\\\\")
+      .replace("%", "\\%")
+      .replace("_", "\\_");
+  }
+}
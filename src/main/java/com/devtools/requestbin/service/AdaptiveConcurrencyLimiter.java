@@ -0,0 +1,208 @@
+package com.devtools.requestbin.service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AIMD concurrency limit with a FIFO wait queue and per-request queue deadlines
+ * <p>
+ * How the limit moves:
+ * - Every request that completes in time while the limiter is at least half busy
+ *   grows the limit by 1/limit (about +1 per "window" of requests)
+ * - Every request that is slower than the latency threshold, or fails with a 5xx,
+ *   multiplies the limit by the backoff ratio
+ * <p>
+ * Requests above the limit wait in line until a slot frees up or their deadline passes.
+ * Freed slots are handed to the head of the line, and new arrivals queue behind waiting
+ * requests instead of taking a slot that frees up before a waiter wakes.
+ */
+public final class AdaptiveConcurrencyLimiter
+{
+
+  private final String name;
+  private final int minLimit;
+  private final int maxLimit;
+  private final long latencyThresholdNanos;
+  private final double backoffRatio;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+  private double limit;
+  private int inFlight;
+
+  private final AtomicLong admittedCount = new AtomicLong();
+  private final AtomicLong shedCount = new AtomicLong();
+
+  public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+    long latencyThresholdMs, double backoffRatio)
+  {
+    this.name = name;
+    this.minLimit = Math.max(1, minLimit);
+    this.maxLimit = Math.max(this.minLimit, maxLimit);
+    this.limit = Math.clamp(initialLimit, this.minLimit, this.maxLimit);
+    this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMs);
+    this.backoffRatio = backoffRatio;
+  }
+
+  /**
+   * Takes a slot, waiting at most maxWaitNanos for one
+   *
+   * @return false when the deadline passed first (the request should be shed)
+   */
+  public boolean tryAcquire(long maxWaitNanos)
+  {
+    lock.lock();
+    try
+    {
+      if (waiters.isEmpty() && inFlight < (int)limit)
+      {
+        inFlight++;
+        admittedCount.incrementAndGet();
+        return true;
+      }
+
+      Waiter waiter = new Waiter(lock.newCondition());
+      waiters.addLast(waiter);
+      long remaining = maxWaitNanos;
+      try
+      {
+        while (!waiter.granted && remaining > 0)
+        {
+          remaining = waiter.turn.awaitNanos(remaining);
+        }
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+      if (waiter.granted)
+      {
+        // The slot was counted as in flight when it was handed over
+        admittedCount.incrementAndGet();
+        return true;
+      }
+      waiters.remove(waiter);
+      shedCount.incrementAndGet();
+      return false;
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns a slot and feeds the request's outcome into the limit
+   */
+  public void release(long latencyNanos, boolean failed)
+  {
+    lock.lock();
+    try
+    {
+      boolean busy = inFlight * 2 >= limit;
+      inFlight--;
+
+      if (failed || latencyNanos > latencyThresholdNanos)
+      {
+        limit = Math.max(minLimit, limit * backoffRatio);
+      }
+      else if (busy)
+      {
+        limit = Math.min(maxLimit, limit + 1.0 / limit);
+      }
+      grantWaiters();
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Hands free slots to the longest-waiting requests (caller holds the lock)
+   */
+  private void grantWaiters()
+  {
+    while (!waiters.isEmpty() && inFlight < (int)limit)
+    {
+      Waiter waiter = waiters.pollFirst();
+      waiter.granted = true;
+      inFlight++;
+      waiter.turn.signal();
+    }
+  }
+
+  public String getName()
+  {
+    return name;
+  }
+
+  public int getLimit()
+  {
+    lock.lock();
+    try
+    {
+      return (int)limit;
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  public int getInFlight()
+  {
+    lock.lock();
+    try
+    {
+      return inFlight;
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  public int getWaiting()
+  {
+    lock.lock();
+    try
+    {
+      return waiters.size();
+    }
+    finally
+    {
+      lock.unlock();
+    }
+  }
+
+  public long getAdmittedCount()
+  {
+    return admittedCount.get();
+  }
+
+  public long getShedCount()
+  {
+    return shedCount.get();
+  }
+
+  /**
+   * A request waiting in line; guarded by the limiter's lock
+   */
+  private static final class Waiter
+  {
+
+    private final Condition turn;
+    private boolean granted;
+
+    Waiter(Condition turn)
+    {
+      this.turn = turn;
+    }
+  }
+}
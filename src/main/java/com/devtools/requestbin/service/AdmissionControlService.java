@@ -0,0 +1,102 @@
+package com.devtools.requestbin.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Admission control for incoming HTTP traffic
+ * <p>
+ * Traffic is split into two classes, each with its own adaptive limit and queue deadline:
+ * - CAPTURE: webhook traffic to /b/{uniqueUrl}, which can spike far beyond what we can store
+ * - MANAGEMENT: the /api and /replay endpoints used by the UI, which get a longer deadline
+ * <p>
+ * A capture flood therefore sheds captures only, while the UI keeps its own capacity.
+ */
+@Service
+@Slf4j
+public class AdmissionControlService
+{
+
+  public enum TrafficClass
+  {
+    CAPTURE, MANAGEMENT
+  }
+
+  private final AdaptiveConcurrencyLimiter captureLimiter;
+  private final AdaptiveConcurrencyLimiter managementLimiter;
+  private final long captureQueueTimeoutNanos;
+  private final long managementQueueTimeoutNanos;
+  private final long retryAfterSeconds;
+
+  public AdmissionControlService(
+    @Value("${app.admission.capture.initial-limit:50}") int captureInitialLimit,
+    @Value("${app.admission.capture.max-limit:500}") int captureMaxLimit,
+    @Value("${app.admission.capture.queue-timeout-ms:50}") long captureQueueTimeoutMs,
+    @Value("${app.admission.management.initial-limit:20}") int managementInitialLimit,
+    @Value("${app.admission.management.max-limit:100}") int managementMaxLimit,
+    @Value("${app.admission.management.queue-timeout-ms:1000}") long managementQueueTimeoutMs,
+    @Value("${app.admission.min-limit:4}") int minLimit,
+    @Value("${app.admission.latency-threshold-ms:500}") long latencyThresholdMs,
+    @Value("${app.admission.backoff-ratio:0.9}") double backoffRatio,
+    @Value("${app.admission.retry-after-seconds:1}") long retryAfterSeconds)
+  {
+    this.captureLimiter = new AdaptiveConcurrencyLimiter(
+      "capture", captureInitialLimit, minLimit, captureMaxLimit, latencyThresholdMs, backoffRatio);
+    this.managementLimiter = new AdaptiveConcurrencyLimiter(
+      "management", managementInitialLimit, minLimit, managementMaxLimit, latencyThresholdMs, backoffRatio);
+    this.captureQueueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(captureQueueTimeoutMs);
+    this.managementQueueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(managementQueueTimeoutMs);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  /**
+   * Waits for a slot within the class's queue deadline
+   *
+   * @return false when the request should be shed
+   */
+  public boolean tryAdmit(TrafficClass trafficClass)
+  {
+    long timeout = trafficClass == TrafficClass.CAPTURE ? captureQueueTimeoutNanos : managementQueueTimeoutNanos;
+    return limiter(trafficClass).tryAcquire(timeout);
+  }
+
+  public void complete(TrafficClass trafficClass, long latencyNanos, boolean failed)
+  {
+    limiter(trafficClass).release(latencyNanos, failed);
+  }
+
+  public long getRetryAfterSeconds()
+  {
+    return retryAfterSeconds;
+  }
+
+  /**
+   * Current limit, in-flight, queued, admitted and shed counts per traffic class
+   */
+  public Map<String, Object> getStats()
+  {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    for (TrafficClass trafficClass : TrafficClass.values())
+    {
+      AdaptiveConcurrencyLimiter limiter = limiter(trafficClass);
+      Map<String, Object> classStats = new LinkedHashMap<>();
+      classStats.put("limit", limiter.getLimit());
+      classStats.put("inFlight", limiter.getInFlight());
+      classStats.put("waiting", limiter.getWaiting());
+      classStats.put("admitted", limiter.getAdmittedCount());
+      classStats.put("shed", limiter.getShedCount());
+      stats.put(limiter.getName(), classStats);
+    }
+    return stats;
+  }
+
+  private AdaptiveConcurrencyLimiter limiter(TrafficClass trafficClass)
+  {
+    return trafficClass == TrafficClass.CAPTURE ? captureLimiter : managementLimiter;
+  }
+}
@@ -9,19 +9,25 @@ import java.util.stream.Collectors;
 
 import com.devtools.requestbin.dto.BinDetailsResponse;
 import com.devtools.requestbin.dto.BinResponse;
+import com.devtools.requestbin.dto.CapturedRequestPage;
 import com.devtools.requestbin.dto.CapturedRequestResponse;
+import com.devtools.requestbin.dto.CapturedRequestSummary;
 import com.devtools.requestbin.dto.CreateBinRequest;
+import com.devtools.requestbin.dto.RequestFilter;
 import com.devtools.requestbin.entity.Bin;
 import com.devtools.requestbin.entity.CapturedRequest;
+import com.devtools.requestbin.event.BinRemovedEvent;
 import com.devtools.requestbin.exception.BinExpiredException;
 import com.devtools.requestbin.exception.BinNotFoundException;
+import com.devtools.requestbin.exception.InvalidRequestException;
 import com.devtools.requestbin.exception.RateLimitExceededException;
-import com.devtools.requestbin.repository.BinRepository;
-import com.devtools.requestbin.repository.CapturedRequestRepository;
+import com.devtools.requestbin.storage.BinStore;
+import com.devtools.requestbin.storage.CapturedRequestStore;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -31,13 +37,22 @@ import org.springframework.transaction.annotation.Transactional;
 public class BinService
 {
 
-  private final BinRepository binRepository;
-  private final CapturedRequestRepository capturedRequestRepository;
+  private static final int MAX_QUERY_LIMIT = 500;
+
+  private final BinStore binStore;
+  private final CapturedRequestStore requestStore;
   private final RateLimitService rateLimitService;
+  private final ApplicationEventPublisher eventPublisher;
+  private final ForwardingService forwardingService;
+  private final SamplingService samplingService;
+  private final MockResponseService mockResponseService;
 
   @Value("${server.port:8080}")
   private String serverPort;
 
+  @Value("${app.bin.default-max-bytes:52428800}")
+  private long defaultMaxBytes;
+
   @Transactional
   public BinResponse createBin(CreateBinRequest request, String ipAddress)
   {  // ADD ipAddress parameter
@@ -54,9 +69,17 @@ public class BinService
       .expiresAt(LocalDateTime.now().plusHours(request.getExpiryHours()))
       .maxRequests(request.getMaxRequests())
       .currentRequestCount(0)
+      .maxBytes(request.getMaxBytes() != null ? request.getMaxBytes() : defaultMaxBytes)
+      .maxAgeMinutes(request.getMaxAgeMinutes())
+      .retentionMode(request.getRetentionMode())
+      .duplicateMode(request.getDuplicateMode())
+      .forwardTargets(forwardingService.serializeTargets(request.getForwardTargets()))
+      .samplingPolicy(samplingService.serializePolicy(request.getSampling()))
+      .responseTemplate(mockResponseService.serializeTemplate(request.getResponseTemplate()))
       .build();
 
-    Bin savedBin = binRepository.save(bin);
+    Bin savedBin = binStore.save(bin);
+    mockResponseService.register(savedBin);
     log.info("Created new bin with uniqueUrl: {} from IP: {}", uniqueUrl, ipAddress);
 
     return mapToResponse(savedBin);
@@ -65,7 +88,7 @@ public class BinService
   @Transactional(readOnly = true)
   public BinResponse getBinByUniqueUrl(String uniqueUrl)
   {
-    Bin bin = binRepository.findByUniqueUrl(uniqueUrl)
+    Bin bin = binStore.findByUniqueUrl(uniqueUrl)
       .orElseThrow(() -> new BinNotFoundException(uniqueUrl));
 
     // Check if expired
@@ -77,10 +100,28 @@ public class BinService
     return mapToResponse(bin);
   }
 
+  /**
+   * Exact traffic counters of a bin, including requests its sampling policy did not store
+   */
   @Transactional(readOnly = true)
-  public BinDetailsResponse getBinDetailsWithRequests(String uniqueUrl)
+  public Map<String, Object> getSamplingStats(String uniqueUrl)
+  {
+    Bin bin = binStore.findByUniqueUrl(uniqueUrl)
+      .orElseThrow(() -> new BinNotFoundException(uniqueUrl));
+    return samplingService.getBinStats(bin);
+  }
+
+  /**
+   * Cheap version stamp of a bin's contents, used as ETag for conditional GETs
+   * <p>
+   * Only reads the bins row: it changes whenever a request is captured or removed, or a
+   * duplicate is collapsed into one, so an unchanged stamp means the bin's responses are
+   * unchanged too.
+   */
+  @Transactional(readOnly = true)
+  public String getBinVersion(String uniqueUrl)
   {
-    Bin bin = binRepository.findByUniqueUrl(uniqueUrl)
+    Bin bin = binStore.findByUniqueUrl(uniqueUrl)
       .orElseThrow(() -> new BinNotFoundException(uniqueUrl));
 
     if (bin.getExpiresAt().isBefore(LocalDateTime.now()))
@@ -88,13 +129,24 @@ public class BinService
       throw new BinExpiredException(uniqueUrl, bin.getExpiresAt());
     }
 
-    // Get all requests for this bin
-    List<CapturedRequest> requests = capturedRequestRepository.findByBinIdOrderByTimestampDesc(bin.getId());
+    long redeliveries = bin.getRedeliveryCount() != null ? bin.getRedeliveryCount() : 0;
+    return "W/\"" + bin.getId() + "-" + bin.getCaptureSequence() + "-" + bin.getCurrentRequestCount()
+      + "-" + redeliveries + "\"";
+  }
 
-    // Map to response
-    List<CapturedRequestResponse> requestResponses = requests.stream()
-      .map(this::mapRequestToResponse)
-      .collect(Collectors.toList());
+  @Transactional(readOnly = true)
+  public BinDetailsResponse getBinDetailsWithRequests(String uniqueUrl)
+  {
+    Bin bin = binStore.findByUniqueUrl(uniqueUrl)
+      .orElseThrow(() -> new BinNotFoundException(uniqueUrl));
+
+    if (bin.getExpiresAt().isBefore(LocalDateTime.now()))
+    {
+      throw new BinExpiredException(uniqueUrl, bin.getExpiresAt());
+    }
+
+    // Summaries only - full headers/body are loaded per request from /api/bins/{id}/requests/{requestId}
+    List<CapturedRequestSummary> requests = requestStore.findSummaries(bin.getId());
 
     String fullUrl = String.format("http://localhost:%s/b/%s", serverPort, bin.getUniqueUrl());
 
@@ -106,24 +158,78 @@ public class BinService
       .expiresAt(bin.getExpiresAt())
       .maxRequests(bin.getMaxRequests())
       .currentRequestCount(bin.getCurrentRequestCount())
-      .requests(requestResponses)
+      .maxBytes(bin.getMaxBytes())
+      .currentBytes(bin.getCurrentBytes())
+      .maxAgeMinutes(bin.getMaxAgeMinutes())
+      .retentionMode(bin.getRetentionMode())
+      .duplicateMode(bin.getDuplicateMode())
+      .forwardTargets(forwardingService.targetsOf(bin))
+      .sampling(samplingService.policyOf(bin))
+      .responseTemplate(mockResponseService.templateOf(bin))
+      .requests(requests)
+      .build();
+  }
+
+  /**
+   * Filters a bin's requests in the database and returns one page, newest first
+   * <p>
+   * Uses keyset (cursor) pagination on the request id, so deep pages cost the same
+   * as the first one.
+   */
+  @Transactional(readOnly = true)
+  public CapturedRequestPage<CapturedRequestSummary> queryRequests(
+    String uniqueUrl, RequestFilter filter, Long cursor, int limit)
+  {
+    if (limit < 1 || limit > MAX_QUERY_LIMIT)
+    {
+      throw new InvalidRequestException("Limit must be between 1 and " + MAX_QUERY_LIMIT);
+    }
+    if (filter.getFrom() != null && filter.getTo() != null && !filter.getFrom().isBefore(filter.getTo()))
+    {
+      throw new InvalidRequestException("'from' must be before 'to'");
+    }
+
+    Bin bin = binStore.findByUniqueUrl(uniqueUrl)
+      .orElseThrow(() -> new BinNotFoundException(uniqueUrl));
+
+    if (bin.getExpiresAt().isBefore(LocalDateTime.now()))
+    {
+      throw new BinExpiredException(uniqueUrl, bin.getExpiresAt());
+    }
+
+    // Fetch one extra row to know whether another page exists
+    List<CapturedRequestSummary> rows = requestStore.findSummaries(bin.getId(), filter, cursor, limit + 1);
+
+    boolean hasMore = rows.size() > limit;
+    List<CapturedRequestSummary> page = hasMore ? rows.subList(0, limit) : rows;
+
+    return CapturedRequestPage.<CapturedRequestSummary> builder()
+      .requests(page)
+      .nextCursor(hasMore ? page.get(page.size() - 1).getId() : null)
+      .hasMore(hasMore)
       .build();
   }
 
   private CapturedRequestResponse mapRequestToResponse(CapturedRequest request)
   {
     // Parse JSON strings back to maps
-    Map<String, String> headers = parseJson(request.getHeaders());
+    Map<String, String> headers = request.getHeaderMap() != null
+      ? request.getHeaderMap()
+      : parseJson(request.getHeaders());
     Map<String, String> queryParams = parseJson(request.getQueryParams());
 
     return CapturedRequestResponse.builder()
       .id(request.getId())
+      .sequence(request.getSequence())
       .method(request.getMethod())
       .headers(headers)
       .body(request.getBody())
       .queryParams(queryParams)
       .ipAddress(request.getIpAddress())
       .timestamp(request.getTimestamp())
+      .duplicateOf(request.getDuplicateOf())
+      .deliveryCount(request.getDeliveryCount())
+      .lastDeliveredAt(request.getLastDeliveredAt())
       .build();
   }
 
@@ -142,10 +248,11 @@ public class BinService
   @Transactional
   public void deleteBin(String uniqueUrl)
   {
-    Bin bin = binRepository.findByUniqueUrl(uniqueUrl)
+    Bin bin = binStore.findByUniqueUrl(uniqueUrl)
       .orElseThrow(() -> new BinNotFoundException(uniqueUrl));
 
-    binRepository.delete(bin);
+    binStore.delete(bin);
+    eventPublisher.publishEvent(new BinRemovedEvent(bin.getId(), uniqueUrl, bin.getCurrentBytes()));
     log.info("Deleted bin with uniqueUrl: {}", uniqueUrl);
   }
 
@@ -157,7 +264,7 @@ public class BinService
       // Generate 8-character unique code
       uniqueUrl = UUID.randomUUID().toString().replace("-", "").substring(0, 8);
     }
-    while (binRepository.existsByUniqueUrl(uniqueUrl));
+    while (binStore.existsByUniqueUrl(uniqueUrl));
 
     return uniqueUrl;
   }
@@ -165,11 +272,10 @@ public class BinService
   @Transactional(readOnly = true)
   public List<CapturedRequestResponse> getRequestsForExport(String uniqueUrl)
   {
-    Bin bin = binRepository.findByUniqueUrl(uniqueUrl)
+    Bin bin = binStore.findByUniqueUrl(uniqueUrl)
       .orElseThrow(() -> new BinNotFoundException(uniqueUrl));
 
-    List<CapturedRequest> requests = capturedRequestRepository
-      .findByBinIdOrderByTimestampDesc(bin.getId());
+    List<CapturedRequest> requests = requestStore.findByBinNewestFirst(bin.getId());
 
     return requests.stream()
       .map(this::mapRequestToResponse)
@@ -245,6 +351,14 @@ public class BinService
       .expiresAt(bin.getExpiresAt())
       .maxRequests(bin.getMaxRequests())
       .currentRequestCount(bin.getCurrentRequestCount())
+      .maxBytes(bin.getMaxBytes())
+      .currentBytes(bin.getCurrentBytes())
+      .maxAgeMinutes(bin.getMaxAgeMinutes())
+      .retentionMode(bin.getRetentionMode())
+      .duplicateMode(bin.getDuplicateMode())
+      .forwardTargets(forwardingService.targetsOf(bin))
+      .sampling(samplingService.policyOf(bin))
+      .responseTemplate(mockResponseService.templateOf(bin))
       .build();
   }
 }
\ No newline at end of file
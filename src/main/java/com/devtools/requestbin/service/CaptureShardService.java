@@ -0,0 +1,348 @@
+package com.devtools.requestbin.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.event.BinRemovedEvent;
+import com.devtools.requestbin.exception.ServiceOverloadedException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Single-writer shards for capture writes
+ * <p>
+ * - Each bin is pinned to one single-threaded shard by hash of its uniqueUrl, so writes to
+ *   a bin run one at a time, in arrival order, and never wait on each other's row lock
+ * - Bins on different shards are written in parallel
+ * - Each shard has its own bounded queue; a full queue sheds only that shard's captures
+ *   with 503 + Retry-After (a hot bin can't back up the others)
+ * - Each shard owns its bins' per-minute capture windows; only the shard's thread touches
+ *   them, so the per-bin rate limit takes no lock either
+ * - A bin can be held while a bulk import inserts off the shard (submitAndHold / submitAndRelease):
+ *   its tasks are parked, in order and up to queue-capacity of them, and run on release, so
+ *   nothing overtakes the import's reserved sequences while the shard keeps serving other bins;
+ *   the release itself is queued outside the capacity, so a full shard can't keep a bin held
+ * - Sequence numbers are handed out here, on the shard, and never twice: one taken by a
+ *   capture that rolled back stays taken although the bin's committed sequence falls back
+ *   (engines derive request ids from them, and an id must never name two requests)
+ */
+@Service
+@Slf4j
+public class CaptureShardService
+{
+
+  private final ThreadPoolExecutor[] shards;
+  private final Semaphore[] queueSlots;
+  private final List<Map<Long, RateWindow>> rateWindows;
+  private final long[] prunedMinutes;
+  private final List<Map<String, List<Runnable>>> parked;
+  private final Map<Long, Long> takenSequences = new ConcurrentHashMap<>();
+  private final int queueCapacity;
+  private final int capturesPerMinute;
+  private final long retryAfterSeconds;
+  private final AtomicLong rejectedCount = new AtomicLong();
+
+  public CaptureShardService(
+    @Value("${app.capture.shards.count:0}") int shardCount,
+    @Value("${app.capture.shards.queue-capacity:1000}") int queueCapacity,
+    @Value("${app.capture.rate-limit-per-minute:60}") int capturesPerMinute,
+    @Value("${app.capture.retry-after-seconds:5}") long retryAfterSeconds)
+  {
+    int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+    this.shards = new ThreadPoolExecutor[count];
+    this.queueSlots = new Semaphore[count];
+    this.rateWindows = new ArrayList<>(count);
+    this.prunedMinutes = new long[count];
+    this.parked = new ArrayList<>(count);
+    this.queueCapacity = queueCapacity;
+    for (int i = 0; i < count; i++)
+    {
+      rateWindows.add(new HashMap<>());
+      parked.add(new HashMap<>());
+      queueSlots[i] = new Semaphore(queueCapacity);
+      shards[i] = new ThreadPoolExecutor(
+        1, 1, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(),
+        new CustomizableThreadFactory("capture-shard-" + i + "-"),
+        new ThreadPoolExecutor.AbortPolicy());
+    }
+    this.capturesPerMinute = capturesPerMinute;
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  @PreDestroy
+  public void shutdown()
+  {
+    for (ThreadPoolExecutor shard : shards)
+    {
+      shard.shutdown();
+    }
+  }
+
+  /**
+   * Runs the task on the shard that owns the bin, after the bin is released if it is held
+   *
+   * @throws ServiceOverloadedException when that shard's queue is full (the future fails with
+   *                                    it when the held bin has queue-capacity tasks parked)
+   */
+  public <T> CompletableFuture<T> submit(String uniqueUrl, Supplier<T> task)
+  {
+    int shard = shardOf(uniqueUrl);
+    CompletableFuture<T> result = new CompletableFuture<>();
+    execute(shard, () -> {
+      List<Runnable> held = parked.get(shard).get(uniqueUrl);
+      if (held == null)
+      {
+        complete(result, task);
+      }
+      else if (held.size() >= queueCapacity)
+      {
+        rejectedCount.incrementAndGet();
+        result.completeExceptionally(overloaded());
+      }
+      else
+      {
+        held.add(() -> complete(result, task));
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Like submit, and then holds the bin (if the task succeeds) until submitAndRelease
+   */
+  public <T> CompletableFuture<T> submitAndHold(String uniqueUrl, Supplier<T> task)
+  {
+    int shard = shardOf(uniqueUrl);
+    return submit(uniqueUrl, () -> {
+      T value = task.get();
+      parked.get(shard).put(uniqueUrl, new ArrayList<>());
+      return value;
+    });
+  }
+
+  /**
+   * Runs the holder's last task on a held bin, then releases the bin and its parked tasks
+   * <p>
+   * The bin is released even when the task fails, and the task is queued even when the
+   * shard is full.
+   */
+  public <T> CompletableFuture<T> submitAndRelease(String uniqueUrl, Supplier<T> task)
+  {
+    int shard = shardOf(uniqueUrl);
+    CompletableFuture<T> result = new CompletableFuture<>();
+    executeUnbounded(shard, () -> {
+      try
+      {
+        complete(result, task);
+      }
+      finally
+      {
+        release(shard, uniqueUrl);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Runs the bin's parked tasks in order; a parked submitAndHold holds the bin again for the rest
+   */
+  private void release(int shard, String uniqueUrl)
+  {
+    List<Runnable> held = parked.get(shard).remove(uniqueUrl);
+    if (held == null)
+    {
+      return;
+    }
+    for (int i = 0; i < held.size(); i++)
+    {
+      List<Runnable> heldAgain = parked.get(shard).get(uniqueUrl);
+      if (heldAgain != null)
+      {
+        heldAgain.addAll(held.subList(i, held.size()));
+        return;
+      }
+      held.get(i).run();
+    }
+  }
+
+  /**
+   * Queues the task if the shard has fewer than queue-capacity tasks waiting
+   */
+  private void execute(int shard, Runnable task)
+  {
+    Semaphore slots = queueSlots[shard];
+    if (!slots.tryAcquire())
+    {
+      rejectedCount.incrementAndGet();
+      throw overloaded();
+    }
+    try
+    {
+      shards[shard].execute(() -> {
+        slots.release();
+        task.run();
+      });
+    }
+    catch (RejectedExecutionException e)
+    {
+      slots.release();
+      rejectedCount.incrementAndGet();
+      throw overloaded();
+    }
+  }
+
+  private void executeUnbounded(int shard, Runnable task)
+  {
+    try
+    {
+      shards[shard].execute(task);
+    }
+    catch (RejectedExecutionException e)
+    {
+      // Only after shutdown
+      rejectedCount.incrementAndGet();
+      throw overloaded();
+    }
+  }
+
+  private static <T> void complete(CompletableFuture<T> result, Supplier<T> task)
+  {
+    try
+    {
+      result.complete(task.get());
+    }
+    catch (Throwable t)
+    {
+      result.completeExceptionally(t);
+    }
+  }
+
+  private ServiceOverloadedException overloaded()
+  {
+    return new ServiceOverloadedException("Too many captures queued for this bin. Please retry later.",
+      retryAfterSeconds);
+  }
+
+  /**
+   * Counts one capture against the bin's limit for the current minute
+   * <p>
+   * Must be called from a task running on the bin's shard: the windows are plain maps
+   * owned by that shard's thread.
+   *
+   * @return false when the bin has used up this minute's captures
+   */
+  public boolean tryAcquireCapture(String uniqueUrl, Long binId)
+  {
+    int shard = shardOf(uniqueUrl);
+    Map<Long, RateWindow> windows = rateWindows.get(shard);
+    long minute = System.currentTimeMillis() / 60_000;
+    if (prunedMinutes[shard] != minute)
+    {
+      // Once a minute, forget bins that were quiet in the last one (deleted or idle)
+      windows.values().removeIf(stale -> stale.minute < minute - 1);
+      prunedMinutes[shard] = minute;
+    }
+    RateWindow window = windows.get(binId);
+    if (window == null || window.minute != minute)
+    {
+      window = new RateWindow(minute);
+      windows.put(binId, window);
+    }
+    if (window.count >= capturesPerMinute)
+    {
+      return false;
+    }
+    window.count++;
+    return true;
+  }
+
+  /**
+   * Highest sequence number taken for the bin: its committed capture sequence, or above it
+   * while captures are in flight or after some of them rolled back
+   */
+  public long lastSequence(Bin bin)
+  {
+    return Math.max(bin.getCaptureSequence(), takenSequences.getOrDefault(bin.getId(), 0L));
+  }
+
+  /**
+   * Takes the bin's next sequence number; must be called on the bin's shard
+   */
+  public long nextSequence(Bin bin)
+  {
+    long sequence = lastSequence(bin) + 1;
+    takeSequences(bin.getId(), sequence);
+    return sequence;
+  }
+
+  /**
+   * Takes every sequence number of the bin up to the given one (a reserved import batch)
+   */
+  public void takeSequences(Long binId, long upTo)
+  {
+    takenSequences.merge(binId, upTo, Math::max);
+  }
+
+  @EventListener
+  public void onBinRemoved(BinRemovedEvent event)
+  {
+    takenSequences.remove(event.getBinId());
+  }
+
+  public int getCapturesPerMinute()
+  {
+    return capturesPerMinute;
+  }
+
+  /**
+   * Captures waiting in each shard's queue
+   */
+  public List<Integer> getQueueDepths()
+  {
+    List<Integer> depths = new ArrayList<>(shards.length);
+    for (ThreadPoolExecutor shard : shards)
+    {
+      depths.add(shard.getQueue().size());
+    }
+    return depths;
+  }
+
+  public long getRejectedCount()
+  {
+    return rejectedCount.get();
+  }
+
+  private int shardOf(String uniqueUrl)
+  {
+    return Math.floorMod(uniqueUrl.hashCode(), shards.length);
+  }
+
+  private static final class RateWindow
+  {
+
+    private final long minute;
+    private int count;
+
+    private RateWindow(long minute)
+    {
+      this.minute = minute;
+    }
+  }
+}
@@ -0,0 +1,287 @@
+package com.devtools.requestbin.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+import com.devtools.requestbin.entity.DuplicateMode;
+import com.devtools.requestbin.event.BinRemovedEvent;
+import com.devtools.requestbin.event.RequestsTrimmedEvent;
+import com.devtools.requestbin.storage.BinStore;
+import com.devtools.requestbin.storage.CapturedRequestStore;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Detects repeated deliveries of the same request (webhook retries)
+ * <p>
+ * - A fingerprint is a SHA-256 over the method, a normalized header subset (configured names,
+ *   lowercased and sorted; volatile headers such as Date or signatures are left out), the
+ *   query params and the body, truncated to 128 bits
+ * - Each bin with a DuplicateMode other than KEEP has a hash index fingerprint -> original
+ *   request, bounded to its index-size-per-bin most recent originals, so lookups are O(1)
+ * - Originals are registered when their capture commits and dropped when trimmed; the index
+ *   is rebuilt from stored requests on startup
+ */
+@Service
+@Slf4j
+public class DuplicateDetectionService
+{
+
+  /**
+   * 128-bit request fingerprint
+   */
+  public record Fingerprint(long high, long low)
+  {
+  }
+
+  /**
+   * The first stored delivery with a given fingerprint
+   */
+  public record Original(long requestId, long sequence)
+  {
+  }
+
+  private static final TypeReference<Map<String, String>> HEADERS_TYPE = new TypeReference<>()
+  {
+  };
+
+  private final BinStore binStore;
+  private final CapturedRequestStore requestStore;
+  private final Set<String> fingerprintHeaders;
+  private final int indexSizePerBin;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final Map<Long, BinIndex> indexes = new ConcurrentHashMap<>();
+
+  private final AtomicLong flagged = new AtomicLong();
+  private final AtomicLong collapsed = new AtomicLong();
+
+  public DuplicateDetectionService(
+    BinStore binStore,
+    CapturedRequestStore requestStore,
+    @Value("${app.duplicates.fingerprint-headers:content-type,content-encoding}") String[] fingerprintHeaders,
+    @Value("${app.duplicates.index-size-per-bin:1000}") int indexSizePerBin)
+  {
+    this.binStore = binStore;
+    this.requestStore = requestStore;
+    this.fingerprintHeaders = Arrays.stream(fingerprintHeaders)
+      .map(name -> name.trim().toLowerCase(Locale.ROOT))
+      .filter(name -> !name.isEmpty())
+      .collect(Collectors.toUnmodifiableSet());
+    this.indexSizePerBin = Math.max(1, indexSizePerBin);
+  }
+
+  /**
+   * The fingerprinted subset of the headers as one canonical string (cheap; taken on the request thread)
+   */
+  public String normalizeHeaders(Map<String, String> headers)
+  {
+    TreeMap<String, String> subset = new TreeMap<>();
+    headers.forEach((name, value) -> {
+      String key = name.toLowerCase(Locale.ROOT);
+      if (fingerprintHeaders.contains(key))
+      {
+        subset.put(key, value != null ? value.trim() : "");
+      }
+    });
+    StringBuilder normalized = new StringBuilder();
+    subset.forEach((name, value) -> normalized.append(name).append(':').append(value).append('\n'));
+    return normalized.toString();
+  }
+
+  public Fingerprint fingerprint(String method, String normalizedHeaders, String queryParams, String body)
+  {
+    MessageDigest digest = sha256();
+    for (String part : new String[] { method, normalizedHeaders, queryParams, body })
+    {
+      if (part != null)
+      {
+        digest.update(part.getBytes(StandardCharsets.UTF_8));
+      }
+      digest.update((byte)0);
+    }
+    ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+    return new Fingerprint(hash.getLong(), hash.getLong());
+  }
+
+  /**
+   * The stored original with this fingerprint, or null
+   */
+  public Original findOriginal(Long binId, Fingerprint fingerprint)
+  {
+    BinIndex index = indexes.get(binId);
+    return index != null ? index.get(fingerprint) : null;
+  }
+
+  /**
+   * Registers a newly stored original once the current transaction commits
+   */
+  public void registerOriginal(Long binId, Fingerprint fingerprint, long requestId, long sequence)
+  {
+    Runnable register = () -> indexOf(binId).put(fingerprint, new Original(requestId, sequence));
+    if (!TransactionSynchronizationManager.isSynchronizationActive())
+    {
+      register.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+    {
+      @Override
+      public void afterCommit()
+      {
+        register.run();
+      }
+    });
+  }
+
+  public void recordFlagged()
+  {
+    flagged.incrementAndGet();
+  }
+
+  public void recordCollapsed()
+  {
+    collapsed.incrementAndGet();
+  }
+
+  @TransactionalEventListener
+  public void onBinRemoved(BinRemovedEvent event)
+  {
+    indexes.remove(event.getBinId());
+  }
+
+  @TransactionalEventListener
+  public void onRequestsTrimmed(RequestsTrimmedEvent event)
+  {
+    BinIndex index = indexes.get(event.getBinId());
+    if (index != null)
+    {
+      index.removeUpToSequence(event.getUpToSequence());
+    }
+  }
+
+  /**
+   * Rebuilds the indexes from the newest stored originals of each detecting bin
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional(readOnly = true)
+  public void rebuild()
+  {
+    int indexed = 0;
+    for (Bin bin : binStore.findAll())
+    {
+      if (bin.getDuplicateMode() == null || bin.getDuplicateMode() == DuplicateMode.KEEP)
+      {
+        continue;
+      }
+      long after = Math.max(0, bin.getCaptureSequence() - indexSizePerBin);
+      for (CapturedRequest request : requestStore.findAfterSequence(bin.getId(), after, indexSizePerBin))
+      {
+        if (request.getDuplicateOf() == null)
+        {
+          indexOf(bin.getId()).put(fingerprintOf(request), new Original(request.getId(), request.getSequence()));
+          indexed++;
+        }
+      }
+    }
+    log.info("Duplicate index rebuilt with {} requests", indexed);
+  }
+
+  public Map<String, Object> getStats()
+  {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("indexedBins", indexes.size());
+    stats.put("flagged", flagged.get());
+    stats.put("collapsed", collapsed.get());
+    return stats;
+  }
+
+  private Fingerprint fingerprintOf(CapturedRequest request)
+  {
+    Map<String, String> headers;
+    try
+    {
+      headers = request.getHeaders() != null ? objectMapper.readValue(request.getHeaders(), HEADERS_TYPE) : Map.of();
+    }
+    catch (Exception e)
+    {
+      headers = Map.of();
+    }
+    return fingerprint(request.getMethod(), normalizeHeaders(headers), request.getQueryParams(), request.getBody());
+  }
+
+  private BinIndex indexOf(Long binId)
+  {
+    return indexes.computeIfAbsent(binId, id -> new BinIndex(indexSizePerBin));
+  }
+
+  private static MessageDigest sha256()
+  {
+    try
+    {
+      return MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException e)
+    {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  /**
+   * One bin's fingerprints, evicting the oldest original beyond maxSize
+   */
+  private static final class BinIndex
+  {
+
+    private final LinkedHashMap<Fingerprint, Original> originals;
+
+    BinIndex(int maxSize)
+    {
+      this.originals = new LinkedHashMap<>(16, 0.75f, false)
+      {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Fingerprint, Original> eldest)
+        {
+          return size() > maxSize;
+        }
+      };
+    }
+
+    synchronized Original get(Fingerprint fingerprint)
+    {
+      return originals.get(fingerprint);
+    }
+
+    synchronized void put(Fingerprint fingerprint, Original original)
+    {
+      originals.put(fingerprint, original);
+    }
+
+    synchronized void removeUpToSequence(long upToSequence)
+    {
+      originals.values().removeIf(original -> original.sequence() <= upToSequence);
+    }
+  }
+}
@@ -0,0 +1,549 @@
+package com.devtools.requestbin.service;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import com.devtools.requestbin.dto.ForwardTarget;
+import com.devtools.requestbin.dto.ForwardingDeadLetter;
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+import com.devtools.requestbin.event.BinRemovedEvent;
+import com.devtools.requestbin.event.RequestCapturedEvent;
+import com.devtools.requestbin.storage.BinStore;
+import com.devtools.requestbin.storage.CapturedRequestStore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.ConsumptionProbe;
+import io.github.bucket4j.Refill;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Forwards captured requests to their bin's downstream targets (tee proxy)
+ * <p>
+ * - A committed capture is queued for each of the bin's targets; the sender never waits
+ * - Every target has a bounded queue, a cap on calls in flight and a token-bucket rate cap
+ * - Calls go through one pooled, non-blocking HttpClient; targets with batchSize above 1
+ *   receive up to batchSize requests per call as a JSON array
+ * - Failed calls are retried with exponential backoff; 4xx answers other than 408/429 are
+ *   not retried
+ * - Requests that run out of attempts, or find their target's queue full, go to a bounded
+ *   in-memory dead-letter store, from which a bin's entries can be redriven
+ * - Queued and in-flight requests hold their body bytes in the node's memory budget; with
+ *   no room left a request is dead-lettered instead of queued. Dead letters keep only the
+ *   request id, and a redrive loads the request again from the store
+ * - A bin's queues are dropped when it is removed, and never created again for it
+ * <p>
+ * Collapsed duplicates are not captured again, so they are not forwarded again either.
+ */
+@Service
+@Slf4j
+public class ForwardingService
+{
+
+  private static final TypeReference<List<ForwardTarget>> TARGETS_TYPE = new TypeReference<>()
+  {
+  };
+
+  private final RequestCaptureService requestCaptureService;
+  private final MemoryBudgetService memoryBudgetService;
+  private final BinStore binStore;
+  private final CapturedRequestStore requestStore;
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final HttpClient httpClient;
+  private final ScheduledExecutorService scheduler;
+
+  private final int queueCapacity;
+  private final int maxAttempts;
+  private final long initialBackoffMs;
+  private final long maxBackoffMs;
+  private final Duration requestTimeout;
+  private final int deadLetterCapacity;
+
+  private final Map<Long, List<TargetQueue>> targetsByBin = new ConcurrentHashMap<>();
+  private final ArrayDeque<DeadLetter> deadLetters = new ArrayDeque<>();
+
+  private final AtomicLong forwarded = new AtomicLong();
+  private final AtomicLong retries = new AtomicLong();
+  private final AtomicLong deadLettered = new AtomicLong();
+
+  public ForwardingService(
+    RequestCaptureService requestCaptureService,
+    MemoryBudgetService memoryBudgetService,
+    BinStore binStore,
+    CapturedRequestStore requestStore,
+    @Value("${app.forwarding.queue-capacity:1000}") int queueCapacity,
+    @Value("${app.forwarding.max-attempts:6}") int maxAttempts,
+    @Value("${app.forwarding.initial-backoff-ms:500}") long initialBackoffMs,
+    @Value("${app.forwarding.max-backoff-ms:60000}") long maxBackoffMs,
+    @Value("${app.forwarding.connect-timeout-ms:5000}") long connectTimeoutMs,
+    @Value("${app.forwarding.request-timeout-ms:10000}") long requestTimeoutMs,
+    @Value("${app.forwarding.dead-letter-capacity:10000}") int deadLetterCapacity)
+  {
+    this.requestCaptureService = requestCaptureService;
+    this.memoryBudgetService = memoryBudgetService;
+    this.binStore = binStore;
+    this.requestStore = requestStore;
+    this.queueCapacity = queueCapacity;
+    this.maxAttempts = Math.max(1, maxAttempts);
+    this.initialBackoffMs = initialBackoffMs;
+    this.maxBackoffMs = maxBackoffMs;
+    this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+    this.deadLetterCapacity = deadLetterCapacity;
+    this.httpClient = HttpClient.newBuilder()
+      .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+      .followRedirects(HttpClient.Redirect.NEVER)
+      .build();
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "forwarding-scheduler");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @PreDestroy
+  public void shutdown()
+  {
+    scheduler.shutdownNow();
+    httpClient.shutdownNow();
+  }
+
+  /**
+   * Targets stored on a bin
+   */
+  public List<ForwardTarget> targetsOf(Bin bin)
+  {
+    if (bin.getForwardTargets() == null || bin.getForwardTargets().isBlank())
+    {
+      return List.of();
+    }
+    try
+    {
+      return objectMapper.readValue(bin.getForwardTargets(), TARGETS_TYPE);
+    }
+    catch (JsonProcessingException e)
+    {
+      log.error("Invalid forward targets on bin {}", bin.getId(), e);
+      return List.of();
+    }
+  }
+
+  /**
+   * Stored form of a bin's targets, null when there are none
+   */
+  public String serializeTargets(List<ForwardTarget> targets)
+  {
+    if (targets == null || targets.isEmpty())
+    {
+      return null;
+    }
+    try
+    {
+      return objectMapper.writeValueAsString(targets);
+    }
+    catch (JsonProcessingException e)
+    {
+      throw new IllegalStateException("Could not serialize forward targets", e);
+    }
+  }
+
+  @TransactionalEventListener
+  public void onRequestCaptured(RequestCapturedEvent event)
+  {
+    CapturedRequest request = event.getRequest();
+    List<TargetQueue> targets = targetsByBin.computeIfAbsent(event.getBinId(), binId -> {
+      // A capture that committed just before its bin was removed must not bring the queues back
+      if (binStore.findBinById(binId).isEmpty())
+      {
+        return null;
+      }
+      return targetsOf(request.getBin()).stream().map(target -> new TargetQueue(binId, target)).toList();
+    });
+    if (targets == null)
+    {
+      return;
+    }
+    for (TargetQueue target : targets)
+    {
+      target.submit(request);
+    }
+  }
+
+  @TransactionalEventListener
+  public void onBinRemoved(BinRemovedEvent event)
+  {
+    List<TargetQueue> targets = targetsByBin.remove(event.getBinId());
+    if (targets != null)
+    {
+      targets.forEach(TargetQueue::close);
+    }
+    synchronized (deadLetters)
+    {
+      deadLetters.removeIf(deadLetter -> deadLetter.target().binId.equals(event.getBinId()));
+    }
+  }
+
+  public List<ForwardingDeadLetter> getDeadLetters(Long binId)
+  {
+    synchronized (deadLetters)
+    {
+      return deadLetters.stream()
+        .filter(deadLetter -> deadLetter.target().binId.equals(binId))
+        .map(DeadLetter::view)
+        .toList();
+    }
+  }
+
+  /**
+   * Queues a bin's dead letters again with fresh attempts
+   * <p>
+   * Requests trimmed from the bin since they were dead-lettered are dropped.
+   *
+   * @return number of requests queued
+   */
+  public int redrive(Long binId)
+  {
+    List<DeadLetter> redriven = new ArrayList<>();
+    synchronized (deadLetters)
+    {
+      Iterator<DeadLetter> iterator = deadLetters.iterator();
+      while (iterator.hasNext())
+      {
+        DeadLetter deadLetter = iterator.next();
+        if (deadLetter.target().binId.equals(binId) && !deadLetter.target().closed)
+        {
+          redriven.add(deadLetter);
+          iterator.remove();
+        }
+      }
+    }
+    int queued = 0;
+    for (DeadLetter deadLetter : redriven)
+    {
+      Optional<CapturedRequest> request = requestStore.findById(deadLetter.requestId());
+      if (request.isPresent())
+      {
+        deadLetter.target().submit(request.get());
+        queued++;
+      }
+    }
+    return queued;
+  }
+
+  public Map<String, Object> getStats()
+  {
+    List<TargetQueue> targets = targetsByBin.values().stream().flatMap(List::stream).toList();
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("targets", targets.size());
+    stats.put("queued", targets.stream().mapToInt(target -> target.queue.size()).sum());
+    stats.put("inFlight", targets.stream().mapToInt(TargetQueue::inFlight).sum());
+    stats.put("forwarded", forwarded.get());
+    stats.put("retries", retries.get());
+    stats.put("deadLettered", deadLettered.get());
+    synchronized (deadLetters)
+    {
+      stats.put("deadLetters", deadLetters.size());
+    }
+    return stats;
+  }
+
+  private void deadLetter(TargetQueue target, CapturedRequest request, int attempts, String error)
+  {
+    deadLettered.incrementAndGet();
+    log.warn("Giving up forwarding request {} to {} after {} attempts: {}", request.getId(),
+      target.target.getUrl(), attempts, error);
+    synchronized (deadLetters)
+    {
+      if (deadLetters.size() >= deadLetterCapacity)
+      {
+        deadLetters.removeFirst();
+      }
+      deadLetters.addLast(new DeadLetter(target, request.getId(), attempts, error, LocalDateTime.now()));
+    }
+  }
+
+  /**
+   * Bytes a queued request holds in the memory budget
+   */
+  private static long heldBytes(CapturedRequest request)
+  {
+    return request.getBodySize() != null ? request.getBodySize() : 0;
+  }
+
+  private long backoffMs(int attempt)
+  {
+    long backoff = initialBackoffMs << Math.min(attempt - 1, 30);
+    return Math.min(backoff < 0 ? maxBackoffMs : backoff, maxBackoffMs);
+  }
+
+  private static boolean isRetryable(int status)
+  {
+    return status >= 500 || status == 408 || status == 429;
+  }
+
+  private record Delivery(CapturedRequest request, int attempt)
+  {
+  }
+
+  private record DeadLetter(TargetQueue target, Long requestId, int attempts, String error, LocalDateTime failedAt)
+  {
+
+    ForwardingDeadLetter view()
+    {
+      return ForwardingDeadLetter.builder()
+        .requestId(requestId)
+        .targetUrl(target.target.getUrl())
+        .attempts(attempts)
+        .error(error)
+        .failedAt(failedAt)
+        .build();
+    }
+  }
+
+  /**
+   * One target of one bin: queue, concurrency and rate caps
+   * <p>
+   * pump() starts calls while a slot and a rate token are available; it runs whenever a
+   * request is queued, a call completes or the rate limit refills.
+   */
+  private final class TargetQueue
+  {
+
+    final Long binId;
+    final ForwardTarget target;
+    final BlockingQueue<Delivery> queue;
+    final Semaphore slots;
+    final Bucket rate;
+    final AtomicBoolean pumpScheduled = new AtomicBoolean();
+    volatile boolean closed;
+
+    TargetQueue(Long binId, ForwardTarget target)
+    {
+      this.binId = binId;
+      this.target = target;
+      this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+      this.slots = new Semaphore(target.getMaxConcurrency());
+      this.rate = Bucket.builder()
+        .addLimit(Bandwidth.classic(target.getRatePerSecond(),
+          Refill.greedy(target.getRatePerSecond(), Duration.ofSeconds(1))))
+        .build();
+    }
+
+    /**
+     * Queues a request for its first attempt, once the memory budget holds its body
+     */
+    void submit(CapturedRequest request)
+    {
+      if (closed)
+      {
+        return;
+      }
+      if (!memoryBudgetService.tryHold(heldBytes(request)))
+      {
+        deadLetter(this, request, 0, "Forwarding memory budget exhausted");
+        return;
+      }
+      offer(new Delivery(request, 1));
+    }
+
+    void offer(Delivery delivery)
+    {
+      if (closed)
+      {
+        done(delivery);
+        return;
+      }
+      if (!queue.offer(delivery))
+      {
+        deadLetter(this, delivery.request(), delivery.attempt() - 1, "Forwarding queue full");
+        done(delivery);
+        return;
+      }
+      if (closed && queue.remove(delivery))
+      {
+        // Closed while queuing: close() may have drained the queue already
+        done(delivery);
+        return;
+      }
+      pump();
+    }
+
+    void close()
+    {
+      closed = true;
+      List<Delivery> dropped = new ArrayList<>();
+      queue.drainTo(dropped);
+      dropped.forEach(this::done);
+    }
+
+    /**
+     * The delivery leaves the queue for good: its body no longer counts against the budget
+     */
+    private void done(Delivery delivery)
+    {
+      memoryBudgetService.releaseHeld(heldBytes(delivery.request()));
+    }
+
+    int inFlight()
+    {
+      return target.getMaxConcurrency() - slots.availablePermits();
+    }
+
+    void pump()
+    {
+      while (!closed && !queue.isEmpty())
+      {
+        if (!slots.tryAcquire())
+        {
+          // A completing call pumps again
+          return;
+        }
+        ConsumptionProbe probe = rate.tryConsumeAndReturnRemaining(1);
+        if (!probe.isConsumed())
+        {
+          slots.release();
+          schedulePump(probe.getNanosToWaitForRefill());
+          return;
+        }
+        List<Delivery> batch = new ArrayList<>(target.getBatchSize());
+        queue.drainTo(batch, target.getBatchSize());
+        if (batch.isEmpty())
+        {
+          slots.release();
+          return;
+        }
+        send(batch).whenComplete((status, error) -> {
+          slots.release();
+          completed(batch, status, error);
+          pump();
+        });
+      }
+    }
+
+    private void schedulePump(long delayNanos)
+    {
+      if (pumpScheduled.compareAndSet(false, true))
+      {
+        scheduler.schedule(() -> {
+          pumpScheduled.set(false);
+          pump();
+        }, delayNanos, TimeUnit.NANOSECONDS);
+      }
+    }
+
+    private CompletableFuture<Integer> send(List<Delivery> batch)
+    {
+      try
+      {
+        HttpRequest request = batch.size() == 1 && target.getBatchSize() == 1
+          ? single(requestCaptureService.toOutgoing(batch.getFirst().request(), null, null))
+          : batch(batch);
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+          .thenApply(HttpResponse::statusCode);
+      }
+      catch (RuntimeException e)
+      {
+        // Headers or URL the client refuses: retrying cannot help
+        return CompletableFuture.completedFuture(-1);
+      }
+    }
+
+    private HttpRequest single(OutgoingRequest outgoing)
+    {
+      String query = outgoing.queryParams().entrySet().stream()
+        .map(param -> URLEncoder.encode(param.getKey(), StandardCharsets.UTF_8) + "="
+          + URLEncoder.encode(String.valueOf(param.getValue()), StandardCharsets.UTF_8))
+        .collect(Collectors.joining("&"));
+      String url = query.isEmpty()
+        ? target.getUrl()
+        : target.getUrl() + (target.getUrl().contains("?") ? "&" : "?") + query;
+
+      HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+        .timeout(requestTimeout)
+        .method(outgoing.method(), outgoing.body() == null || outgoing.body().isEmpty()
+          ? HttpRequest.BodyPublishers.noBody()
+          : HttpRequest.BodyPublishers.ofString(outgoing.body()));
+      outgoing.headers().forEach(builder::header);
+      builder.setHeader("X-RequestBin-Request-Id", String.valueOf(outgoing.requestId()));
+      return builder.build();
+    }
+
+    private HttpRequest batch(List<Delivery> batch)
+    {
+      List<OutgoingRequest> outgoing = batch.stream()
+        .map(delivery -> requestCaptureService.toOutgoing(delivery.request(), null, null))
+        .toList();
+      try
+      {
+        return HttpRequest.newBuilder(URI.create(target.getUrl()))
+          .timeout(requestTimeout)
+          .header("Content-Type", "application/json")
+          .header("X-RequestBin-Batch-Size", String.valueOf(outgoing.size()))
+          .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(outgoing)))
+          .build();
+      }
+      catch (JsonProcessingException e)
+      {
+        throw new IllegalStateException("Could not serialize forwarding batch", e);
+      }
+    }
+
+    private void completed(List<Delivery> batch, Integer status, Throwable error)
+    {
+      if (error == null && status >= 200 && status < 300)
+      {
+        forwarded.addAndGet(batch.size());
+        batch.forEach(this::done);
+        return;
+      }
+      String reason = error != null ? error.getClass().getSimpleName() + ": " + error.getMessage()
+        : status < 0 ? "Request rejected by the HTTP client" : "HTTP " + status;
+      boolean retryable = error != null || isRetryable(status);
+      for (Delivery delivery : batch)
+      {
+        if (!retryable || delivery.attempt() >= maxAttempts || closed)
+        {
+          if (!closed)
+          {
+            deadLetter(this, delivery.request(), delivery.attempt(), reason);
+          }
+          done(delivery);
+          continue;
+        }
+        retries.incrementAndGet();
+        scheduler.schedule(() -> offer(new Delivery(delivery.request(), delivery.attempt() + 1)),
+          backoffMs(delivery.attempt()), TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+}
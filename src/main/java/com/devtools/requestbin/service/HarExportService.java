@@ -0,0 +1,277 @@
+package com.devtools.requestbin.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import com.devtools.requestbin.dto.RequestFilter;
+import com.devtools.requestbin.dto.ResponseTemplate;
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+import com.devtools.requestbin.exception.BinNotFoundException;
+import com.devtools.requestbin.storage.BinStore;
+import com.devtools.requestbin.storage.CapturedRequestStore;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+/**
+ * Bin export as a HAR 1.2 document, for browser dev tools and HTTP proxies
+ * <p>
+ * - Entries are read from the store's cursor (fetch-size rows at a time) and written by a
+ *   streaming JSON generator as they arrive, so memory stays constant whatever the bin's size
+ * - Optional filter: method, from/to and the other /requests/query conditions
+ * - Responses are not recorded; each entry carries the acknowledgement the bin sends
+ *   (its response template's status and headers, or 200 application/json)
+ * - Request id, sequence and client address go in the custom fields _requestId, _sequence
+ *   and _clientIPAddress, which POST /import reads back
+ */
+@Service
+@Slf4j
+public class HarExportService
+{
+
+  /**
+   * Writes the document once the response body is open
+   */
+  @FunctionalInterface
+  public interface HarWriter
+  {
+    void writeTo(OutputStream out)
+      throws IOException;
+  }
+
+  private static final String HTTP_VERSION = "HTTP/1.1";
+  private static final TypeReference<LinkedHashMap<String, String>> STRING_MAP = new TypeReference<>()
+  {
+  };
+
+  private final BinStore binStore;
+  private final CapturedRequestStore requestStore;
+  private final MockResponseService mockResponseService;
+  private final int fetchSize;
+  private final String serverPort;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  public HarExportService(
+    BinStore binStore,
+    CapturedRequestStore requestStore,
+    MockResponseService mockResponseService,
+    @Value("${app.export.fetch-size:500}") int fetchSize,
+    @Value("${server.port:8080}") String serverPort)
+  {
+    this.binStore = binStore;
+    this.requestStore = requestStore;
+    this.mockResponseService = mockResponseService;
+    this.fetchSize = Math.max(1, fetchSize);
+    this.serverPort = serverPort;
+  }
+
+  /**
+   * Looks the bin up now (so a missing bin is a 404, not a truncated download) and returns
+   * the writer of its HAR document
+   */
+  public HarWriter exportHar(String uniqueUrl, RequestFilter filter)
+  {
+    Bin bin = binStore.findByUniqueUrl(uniqueUrl)
+      .orElseThrow(() -> new BinNotFoundException(uniqueUrl));
+    ResponseTemplate acknowledgement = mockResponseService.templateOf(bin);
+    Long binId = bin.getId();
+
+    return out -> {
+      long started = System.nanoTime();
+      AtomicLong entries = new AtomicLong();
+      try (JsonGenerator json = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8))
+      {
+        json.writeStartObject();
+        json.writeObjectFieldStart("log");
+        json.writeStringField("version", "1.2");
+        json.writeObjectFieldStart("creator");
+        json.writeStringField("name", "RequestBin Clone");
+        json.writeStringField("version", "1.0");
+        json.writeEndObject();
+        json.writeArrayFieldStart("entries");
+        try
+        {
+          requestStore.forEachMatching(binId, filter, fetchSize, request -> {
+            writeEntry(json, uniqueUrl, request, acknowledgement);
+            entries.incrementAndGet();
+          });
+        }
+        catch (UncheckedIOException e)
+        {
+          // Client went away mid-download
+          throw e.getCause();
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+        json.writeEndObject();
+      }
+      log.info("Exported {} requests of bin {} as HAR in {} ms", entries.get(), uniqueUrl,
+        (System.nanoTime() - started) / 1_000_000);
+    };
+  }
+
+  private void writeEntry(JsonGenerator json, String uniqueUrl, CapturedRequest request, ResponseTemplate acknowledgement)
+  {
+    Map<String, String> headers = request.getHeaderMap() != null
+      ? request.getHeaderMap()
+      : parseJson(request.getHeaders());
+    Map<String, String> queryParams = parseJson(request.getQueryParams());
+    try
+    {
+      json.writeStartObject();
+      json.writeStringField("startedDateTime", startedDateTime(request.getTimestamp()));
+      json.writeNumberField("time", 0);
+
+      json.writeObjectFieldStart("request");
+      json.writeStringField("method", request.getMethod());
+      json.writeStringField("url", url(uniqueUrl, headers, queryParams));
+      json.writeStringField("httpVersion", HTTP_VERSION);
+      json.writeArrayFieldStart("cookies");
+      json.writeEndArray();
+      writeNameValues(json, "headers", headers);
+      writeNameValues(json, "queryString", queryParams);
+      if (request.getBody() != null && !request.getBody().isEmpty())
+      {
+        json.writeObjectFieldStart("postData");
+        json.writeStringField("mimeType", headerValue(headers, "Content-Type", ""));
+        json.writeStringField("text", request.getBody());
+        json.writeEndObject();
+      }
+      json.writeNumberField("headersSize", -1);
+      json.writeNumberField("bodySize", request.getBodySize() != null ? request.getBodySize() : 0);
+      json.writeEndObject();
+
+      writeResponse(json, acknowledgement);
+
+      json.writeObjectFieldStart("cache");
+      json.writeEndObject();
+      json.writeObjectFieldStart("timings");
+      json.writeNumberField("send", 0);
+      json.writeNumberField("wait", 0);
+      json.writeNumberField("receive", 0);
+      json.writeEndObject();
+
+      json.writeNumberField("_requestId", request.getId());
+      json.writeNumberField("_sequence", request.getSequence());
+      if (request.getIpAddress() != null)
+      {
+        json.writeStringField("_clientIPAddress", request.getIpAddress());
+      }
+      json.writeEndObject();
+    }
+    catch (IOException e)
+    {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void writeResponse(JsonGenerator json, ResponseTemplate acknowledgement)
+    throws IOException
+  {
+    int status = acknowledgement != null && acknowledgement.getStatus() != null
+      ? acknowledgement.getStatus()
+      : HttpStatus.OK.value();
+    Map<String, String> headers = acknowledgement != null && acknowledgement.getHeaders() != null
+      ? acknowledgement.getHeaders()
+      : Map.of("Content-Type", "application/json");
+    HttpStatus resolved = HttpStatus.resolve(status);
+
+    json.writeObjectFieldStart("response");
+    json.writeNumberField("status", status);
+    json.writeStringField("statusText", resolved != null ? resolved.getReasonPhrase() : "");
+    json.writeStringField("httpVersion", HTTP_VERSION);
+    json.writeArrayFieldStart("cookies");
+    json.writeEndArray();
+    writeNameValues(json, "headers", headers);
+    json.writeObjectFieldStart("content");
+    json.writeNumberField("size", 0);
+    json.writeStringField("mimeType", headerValue(headers, "Content-Type", ""));
+    json.writeEndObject();
+    json.writeStringField("redirectURL", "");
+    json.writeNumberField("headersSize", -1);
+    json.writeNumberField("bodySize", -1);
+    json.writeEndObject();
+  }
+
+  private static void writeNameValues(JsonGenerator json, String field, Map<String, String> values)
+    throws IOException
+  {
+    json.writeArrayFieldStart(field);
+    for (Map.Entry<String, String> value : values.entrySet())
+    {
+      json.writeStartObject();
+      json.writeStringField("name", value.getKey());
+      json.writeStringField("value", value.getValue() != null ? value.getValue() : "");
+      json.writeEndObject();
+    }
+    json.writeEndArray();
+  }
+
+  /**
+   * The capture URL as the client addressed it (its Host header), or as this server publishes it
+   */
+  private String url(String uniqueUrl, Map<String, String> headers, Map<String, String> queryParams)
+  {
+    String host = headerValue(headers, "Host", "localhost:" + serverPort);
+    String url = "http://" + host + "/b/" + uniqueUrl;
+    if (queryParams.isEmpty())
+    {
+      return url;
+    }
+    return url + queryParams.entrySet().stream()
+      .map(param -> encode(param.getKey()) + "=" + encode(param.getValue()))
+      .collect(Collectors.joining("&", "?", ""));
+  }
+
+  private static String startedDateTime(LocalDateTime timestamp)
+  {
+    return timestamp.atZone(ZoneId.systemDefault()).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+  }
+
+  private static String headerValue(Map<String, String> headers, String name, String fallback)
+  {
+    return headers.entrySet().stream()
+      .filter(header -> header.getKey().equalsIgnoreCase(name) && header.getValue() != null)
+      .map(Map.Entry::getValue)
+      .findFirst()
+      .orElse(fallback);
+  }
+
+  private static String encode(String value)
+  {
+    return URLEncoder.encode(value != null ? value : "", StandardCharsets.UTF_8);
+  }
+
+  private Map<String, String> parseJson(String json)
+  {
+    if (json == null || json.isBlank())
+    {
+      return Map.of();
+    }
+    try
+    {
+      return objectMapper.readValue(json, STRING_MAP);
+    }
+    catch (IOException e)
+    {
+      return Map.of();
+    }
+  }
+}
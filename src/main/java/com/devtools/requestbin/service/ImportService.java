@@ -0,0 +1,800 @@
+package com.devtools.requestbin.service;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.devtools.requestbin.dto.ImportProgress;
+import com.devtools.requestbin.dto.ImportProgress.Status;
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+import com.devtools.requestbin.entity.RetentionMode;
+import com.devtools.requestbin.event.RequestsImportedEvent;
+import com.devtools.requestbin.exception.BinExpiredException;
+import com.devtools.requestbin.exception.BinNotFoundException;
+import com.devtools.requestbin.exception.InvalidRequestException;
+import com.devtools.requestbin.storage.BinStore;
+import com.devtools.requestbin.storage.CapturedRequestStore;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Bulk import of recorded traffic into a bin: HAR 1.2, NDJSON (or the /export/json array)
+ * and the /export/csv format
+ * <p>
+ * - The upload is parsed as a stream, one entry at a time; memory is bounded by one batch
+ * - Requests are written in batches of batch-size requests (or batch-bytes of bodies). The
+ *   bin's capture shard only reserves each batch (its sequence block, request count and
+ *   bytes) and afterwards trims a KEEP_LATEST bin back within its limits; the JDBC batch
+ *   insert itself runs in its own transaction on the import executor (app.import.threads),
+ *   so other bins' captures never queue behind an insert and progress is durable as it goes
+ * - The bin is held on its shard from reservation to insert: its own captures wait for the
+ *   batch, so none takes a sequence after the reserved block and is stored before it
+ * - A batch whose insert fails gives its reservation back on the shard; its sequence
+ *   numbers stay unused
+ * - Imports are not captures: no rate limit, sampling, duplicate detection or forwarding;
+ *   the bin's limits still apply (REJECT bins stop when full, KEEP_LATEST bins keep the newest)
+ * - Requests are appended in file order and keep their recorded timestamps; requests already
+ *   older than the bin's maxAgeMinutes are skipped, as age retention would only trim them
+ * - Running and recent imports are kept per bin for progress reporting
+ */
+@Service
+@Slf4j
+public class ImportService
+{
+
+  /**
+   * Upload formats
+   */
+  public enum Format
+  {
+    HAR,
+    JSON, // NDJSON, or a JSON array as written by /export/json
+    CSV;
+
+    /**
+     * The explicit format parameter, or else the one implied by the upload's content type (HAR by default)
+     */
+    public static Format of(String format, String contentType)
+    {
+      if (format != null && !format.isBlank())
+      {
+        try
+        {
+          return valueOf(format.trim().toUpperCase(Locale.ROOT));
+        }
+        catch (IllegalArgumentException e)
+        {
+          throw new InvalidRequestException("Unknown import format: " + format + " (expected har, json or csv)");
+        }
+      }
+      String type = contentType != null ? contentType.toLowerCase(Locale.ROOT) : "";
+      if (type.startsWith("text/csv"))
+      {
+        return CSV;
+      }
+      if (type.contains("ndjson") || type.contains("jsonl"))
+      {
+        return JSON;
+      }
+      return HAR;
+    }
+  }
+
+  private static final int MAX_METHOD_LENGTH = 10;
+  private static final int MAX_IP_LENGTH = 45;
+  private static final int MAX_RECENT_IMPORTS = 100;
+
+  private final BinStore binStore;
+  private final CapturedRequestStore requestStore;
+  private final RetentionService retentionService;
+  private final StorageQuotaService storageQuotaService;
+  private final CaptureShardService captureShardService;
+  private final TransactionTemplate transactionTemplate;
+  private final ApplicationEventPublisher eventPublisher;
+  private final int batchSize;
+  private final long batchBytes;
+  private final ExecutorService importExecutor;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final Map<String, Job> jobs = new LinkedHashMap<>();
+  private final AtomicLong importedTotal = new AtomicLong();
+
+  public ImportService(
+    BinStore binStore,
+    CapturedRequestStore requestStore,
+    RetentionService retentionService,
+    StorageQuotaService storageQuotaService,
+    CaptureShardService captureShardService,
+    TransactionTemplate transactionTemplate,
+    ApplicationEventPublisher eventPublisher,
+    @Value("${app.import.batch-size:5000}") int batchSize,
+    @Value("${app.import.batch-bytes:16777216}") long batchBytes,
+    @Value("${app.import.threads:2}") int threads)
+  {
+    this.binStore = binStore;
+    this.requestStore = requestStore;
+    this.retentionService = retentionService;
+    this.storageQuotaService = storageQuotaService;
+    this.captureShardService = captureShardService;
+    this.transactionTemplate = transactionTemplate;
+    this.eventPublisher = eventPublisher;
+    this.batchSize = Math.max(1, batchSize);
+    this.batchBytes = Math.max(1, batchBytes);
+    // Imports beyond the thread count wait in the queue; each holds only its own caller
+    this.importExecutor = new ThreadPoolExecutor(
+      Math.max(1, threads), Math.max(1, threads), 0L, TimeUnit.MILLISECONDS,
+      new LinkedBlockingQueue<>(),
+      new CustomizableThreadFactory("import-"));
+  }
+
+  @PreDestroy
+  public void shutdown()
+  {
+    importExecutor.shutdown();
+  }
+
+  /**
+   * Imports an upload into the bin, returning when it has been read to the end or the bin is full
+   */
+  public ImportProgress importRequests(String uniqueUrl, Format format, InputStream upload)
+  {
+    activeBin(uniqueUrl);
+    Job job = register(uniqueUrl, format);
+    CountingInputStream in = new CountingInputStream(upload, job.bytesRead);
+    Batch batch = new Batch(job);
+    try
+    {
+      switch (format)
+      {
+        case HAR -> readHar(in, batch);
+        case JSON -> readJson(in, batch);
+        case CSV -> readCsv(in, batch);
+      }
+      batch.flush();
+      job.finish(batch.full ? Status.TRUNCATED : Status.COMPLETED,
+        batch.full ? "Bin reached its request or byte limit" : null);
+    }
+    catch (IOException e)
+    {
+      fail(job, e);
+      throw new InvalidRequestException("Import failed after " + job.imported.get() + " requests: " + e.getMessage());
+    }
+    catch (RuntimeException e)
+    {
+      fail(job, e);
+      throw e;
+    }
+
+    ImportProgress progress = job.toProgress();
+    log.info("Imported {} requests ({} skipped) into bin {} from {} in {} ({} requests/s)", progress.getImported(),
+      progress.getSkipped(), uniqueUrl, format, Duration.between(progress.getStartedAt(), progress.getFinishedAt()),
+      progress.getRequestsPerSecond());
+    return progress;
+  }
+
+  /**
+   * Running and recent imports of a bin, oldest first
+   */
+  public List<ImportProgress> getImports(String uniqueUrl)
+  {
+    activeBin(uniqueUrl);
+    synchronized (jobs)
+    {
+      return jobs.values().stream()
+        .filter(job -> job.uniqueUrl.equals(uniqueUrl))
+        .map(Job::toProgress)
+        .toList();
+    }
+  }
+
+  public Map<String, Object> getStats()
+  {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    synchronized (jobs)
+    {
+      stats.put("running", jobs.values().stream().filter(job -> job.status == Status.RUNNING).count());
+    }
+    stats.put("imported", importedTotal.get());
+    return stats;
+  }
+
+  private void activeBin(String uniqueUrl)
+  {
+    Bin bin = binStore.findByUniqueUrl(uniqueUrl)
+      .orElseThrow(() -> new BinNotFoundException(uniqueUrl));
+    if (bin.getExpiresAt().isBefore(LocalDateTime.now()))
+    {
+      throw new BinExpiredException(uniqueUrl, bin.getExpiresAt());
+    }
+  }
+
+  private Job register(String uniqueUrl, Format format)
+  {
+    Job job = new Job(UUID.randomUUID().toString().replace("-", "").substring(0, 12), uniqueUrl, format);
+    synchronized (jobs)
+    {
+      jobs.put(job.id, job);
+      Iterator<Job> oldest = jobs.values().iterator();
+      while (jobs.size() > MAX_RECENT_IMPORTS && oldest.hasNext())
+      {
+        if (oldest.next().status != Status.RUNNING)
+        {
+          oldest.remove();
+        }
+      }
+    }
+    return job;
+  }
+
+  private static void fail(Job job, Exception e)
+  {
+    job.finish(Status.FAILED, e.getMessage());
+    log.warn("Import {} into bin {} failed after {} requests: {}", job.id, job.uniqueUrl, job.imported.get(),
+      e.getMessage());
+  }
+
+  /**
+   * HAR 1.2: every element of log.entries; the rest of the document (pages, creator, responses) is skipped
+   */
+  private void readHar(InputStream in, Batch batch)
+    throws IOException
+  {
+    try (JsonParser parser = objectMapper.getFactory().createParser(in))
+    {
+      JsonToken token;
+      while ((token = parser.nextToken()) != null)
+      {
+        if (token == JsonToken.FIELD_NAME && "entries".equals(parser.currentName())
+          && "log".equals(parser.getParsingContext().getParent().getCurrentName()))
+        {
+          if (parser.nextToken() != JsonToken.START_ARRAY)
+          {
+            throw new InvalidRequestException("HAR log.entries must be an array");
+          }
+          while (!batch.full && parser.nextToken() == JsonToken.START_OBJECT)
+          {
+            batch.add(fromHarEntry(objectMapper.readTree(parser)));
+          }
+          return;
+        }
+      }
+    }
+    throw new InvalidRequestException("Not a HAR document: log.entries not found");
+  }
+
+  /**
+   * One request object per line (or a JSON array of them), with the fields of /export/json
+   */
+  private void readJson(InputStream in, Batch batch)
+    throws IOException
+  {
+    try (JsonParser parser = objectMapper.getFactory().createParser(in))
+    {
+      JsonToken token = parser.nextToken();
+      if (token == JsonToken.START_ARRAY)
+      {
+        token = parser.nextToken();
+      }
+      while (!batch.full && token == JsonToken.START_OBJECT)
+      {
+        batch.add(fromExported(objectMapper.readTree(parser)));
+        token = parser.nextToken();
+      }
+      if (!batch.full && token != null && token != JsonToken.END_ARRAY)
+      {
+        throw new InvalidRequestException("Expected a JSON object per request, found " + token);
+      }
+    }
+  }
+
+  /**
+   * Rows of /export/csv: Timestamp, Method, IP Address, Query Params, Headers, Body
+   */
+  private void readCsv(InputStream in, Batch batch)
+    throws IOException
+  {
+    Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 65536);
+    List<String> header = readCsvRow(reader);
+    if (header == null || header.isEmpty() || !header.getFirst().strip().equalsIgnoreCase("Timestamp"))
+    {
+      throw new InvalidRequestException("Not a bin CSV export: missing the Timestamp,Method,... header row");
+    }
+    List<String> row;
+    while (!batch.full && (row = readCsvRow(reader)) != null)
+    {
+      if (row.size() == 1 && row.getFirst().isBlank())
+      {
+        continue;
+      }
+      if (row.size() < 6)
+      {
+        batch.add(null);
+        continue;
+      }
+      batch.add(imported(parseTimestamp(row.get(0)), row.get(1), jsonObject(row.get(4)), jsonObject(row.get(3)),
+        row.get(2), row.get(5)));
+    }
+  }
+
+  /**
+   * One RFC 4180 record (quoted fields may span lines), or null at the end of input
+   */
+  private static List<String> readCsvRow(Reader reader)
+    throws IOException
+  {
+    int c = reader.read();
+    if (c == -1)
+    {
+      return null;
+    }
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    while (true)
+    {
+      if (quoted)
+      {
+        if (c == -1)
+        {
+          break;
+        }
+        if (c == '"')
+        {
+          int next = reader.read();
+          if (next != '"')
+          {
+            quoted = false;
+            c = next;
+            continue;
+          }
+        }
+        field.append((char)c);
+      }
+      else if (c == '"' && field.isEmpty())
+      {
+        quoted = true;
+      }
+      else if (c == ',')
+      {
+        fields.add(field.toString());
+        field.setLength(0);
+      }
+      else if (c == '\n' || c == -1)
+      {
+        break;
+      }
+      else if (c != '\r')
+      {
+        field.append((char)c);
+      }
+      c = reader.read();
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+
+  private Imported fromHarEntry(JsonNode entry)
+  {
+    JsonNode request = entry.path("request");
+    Map<String, String> headers = new LinkedHashMap<>();
+    for (JsonNode header : request.path("headers"))
+    {
+      String name = header.path("name").asText("");
+      // HTTP/2 pseudo-headers (:authority, :path, ...) are not request headers
+      if (!name.isEmpty() && !name.startsWith(":"))
+      {
+        headers.merge(name, header.path("value").asText(""), (first, second) -> first + ", " + second);
+      }
+    }
+    Map<String, String> queryParams = new LinkedHashMap<>();
+    for (JsonNode param : request.path("queryString"))
+    {
+      queryParams.putIfAbsent(param.path("name").asText(""), param.path("value").asText(""));
+    }
+    String forwardedFor = headers.entrySet().stream()
+      .filter(header -> header.getKey().equalsIgnoreCase("X-Forwarded-For"))
+      .map(header -> header.getValue().split(",")[0].trim())
+      .findFirst()
+      .orElse(null);
+    // Our own HAR exports carry the client address as a custom field
+    String ipAddress = entry.path("_clientIPAddress").asText(forwardedFor);
+    return imported(parseTimestamp(entry.path("startedDateTime").asText(null)), request.path("method").asText(null),
+      toJson(headers), toJson(queryParams), ipAddress, request.path("postData").path("text").asText(""));
+  }
+
+  private Imported fromExported(JsonNode request)
+  {
+    return imported(parseTimestamp(request.path("timestamp").asText(null)), request.path("method").asText(null),
+      request.path("headers").isObject() ? request.path("headers").toString() : "{}",
+      request.path("queryParams").isObject() ? request.path("queryParams").toString() : "{}",
+      request.path("ipAddress").asText(null), request.path("body").asText(""));
+  }
+
+  /**
+   * An importable request, or null (skipped) without a usable method
+   */
+  private static Imported imported(LocalDateTime timestamp, String method, String headers, String queryParams,
+    String ipAddress, String body)
+  {
+    if (method == null || method.isBlank() || method.strip().length() > MAX_METHOD_LENGTH)
+    {
+      return null;
+    }
+    String ip = ipAddress != null && !ipAddress.isBlank() && ipAddress.length() <= MAX_IP_LENGTH ? ipAddress : null;
+    return new Imported(timestamp, method.strip().toUpperCase(Locale.ROOT), headers, queryParams, ip,
+      body != null ? body : "");
+  }
+
+  /**
+   * ISO date-time with an offset (HAR) or without one (our exports, in server time); now when missing
+   */
+  private static LocalDateTime parseTimestamp(String text)
+  {
+    if (text == null || text.isBlank())
+    {
+      return LocalDateTime.now();
+    }
+    try
+    {
+      return OffsetDateTime.parse(text.strip()).atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+    }
+    catch (DateTimeParseException e)
+    {
+      try
+      {
+        return LocalDateTime.parse(text.strip());
+      }
+      catch (DateTimeParseException notLocal)
+      {
+        return LocalDateTime.now();
+      }
+    }
+  }
+
+  /**
+   * A CSV cell holding a JSON object (empty when the export had none)
+   */
+  private String jsonObject(String cell)
+  {
+    if (cell == null || cell.isBlank())
+    {
+      return "{}";
+    }
+    try
+    {
+      JsonNode node = objectMapper.readTree(cell);
+      return node.isObject() ? node.toString() : "{}";
+    }
+    catch (JsonProcessingException e)
+    {
+      return "{}";
+    }
+  }
+
+  private String toJson(Map<String, String> map)
+  {
+    try
+    {
+      return objectMapper.writeValueAsString(map);
+    }
+    catch (JsonProcessingException e)
+    {
+      return "{}";
+    }
+  }
+
+  /**
+   * Reserves the batch on the bin's shard and holds the bin, inserts the batch on the import
+   * executor and then releases the bin (trimming a KEEP_LATEST one); false when a REJECT bin is full
+   */
+  private boolean write(Job job, List<Imported> batch)
+  {
+    Reserved reserved = join(captureShardService.submitAndHold(job.uniqueUrl,
+      () -> transactionTemplate.execute(status -> reserve(job, batch))));
+    try
+    {
+      if (!reserved.rows().isEmpty())
+      {
+        join(CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+          requestStore.insertAll(reserved.rows());
+          // Search indexing and long-poll wake-ups run after commit
+          eventPublisher.publishEvent(new RequestsImportedEvent(reserved.binId(), job.uniqueUrl, reserved.rows()));
+        }), importExecutor));
+      }
+    }
+    catch (RuntimeException e)
+    {
+      join(captureShardService.submitAndRelease(job.uniqueUrl,
+        () -> transactionTemplate.execute(status -> unreserve(reserved))));
+      throw e;
+    }
+    join(captureShardService.submitAndRelease(job.uniqueUrl,
+      () -> reserved.keepLatest() ? transactionTemplate.execute(status -> trimToLimits(reserved.binId())) : null));
+
+    job.imported.addAndGet(reserved.rows().size());
+    importedTotal.addAndGet(reserved.rows().size());
+    return reserved.hasRoom();
+  }
+
+  private static <T> T join(CompletableFuture<T> future)
+  {
+    try
+    {
+      return future.join();
+    }
+    catch (CompletionException e)
+    {
+      if (e.getCause() instanceof RuntimeException cause)
+      {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Takes the batch's sequence numbers, request count and bytes from the bin
+   * <p>
+   * Runs on the bin's shard, the only writer of its counters, so the bin row is not locked.
+   */
+  private Reserved reserve(Job job, List<Imported> batch)
+  {
+    Bin bin = binStore.findByUniqueUrl(job.uniqueUrl)
+      .orElseThrow(() -> new BinNotFoundException(job.uniqueUrl));
+
+    boolean keepLatest = bin.getRetentionMode() == RetentionMode.KEEP_LATEST;
+    LocalDateTime expiredBefore = bin.getMaxAgeMinutes() != null
+      ? LocalDateTime.now().minusMinutes(bin.getMaxAgeMinutes())
+      : null;
+    long sequence = captureShardService.lastSequence(bin);
+    int count = bin.getCurrentRequestCount();
+    long binBytes = bin.getCurrentBytes();
+    long bytes = 0;
+    boolean hasRoom = true;
+
+    List<CapturedRequest> rows = new ArrayList<>(batch.size());
+    for (Imported request : batch)
+    {
+      int bodySize = request.body().getBytes(StandardCharsets.UTF_8).length;
+      if (bodySize > bin.getMaxBytes() || (expiredBefore != null && request.timestamp().isBefore(expiredBefore)))
+      {
+        job.skipped.incrementAndGet();
+        continue;
+      }
+      if (!keepLatest && (count >= bin.getMaxRequests() || binBytes + bodySize > bin.getMaxBytes()))
+      {
+        hasRoom = false;
+        break;
+      }
+      sequence++;
+      count++;
+      binBytes += bodySize;
+      bytes += bodySize;
+      rows.add(CapturedRequest.builder()
+        .bin(bin)
+        .sequence(sequence)
+        .method(request.method())
+        .headers(request.headers())
+        .body(request.body())
+        .bodySize(bodySize)
+        .bodyPreview(RequestCaptureService.preview(request.body()))
+        .queryParams(request.queryParams())
+        .ipAddress(request.ipAddress())
+        .timestamp(request.timestamp())
+        .build());
+    }
+    if (rows.isEmpty())
+    {
+      return new Reserved(bin.getId(), rows, 0, keepLatest, hasRoom);
+    }
+
+    storageQuotaService.reserve(bytes);
+    captureShardService.takeSequences(bin.getId(), sequence);
+    bin.setCaptureSequence(sequence);
+    bin.setCurrentRequestCount(count);
+    bin.setCurrentBytes(binBytes);
+    binStore.save(bin);
+    return new Reserved(bin.getId(), rows, bytes, keepLatest, hasRoom);
+  }
+
+  /**
+   * Gives a batch that failed to insert back to the bin and the server quota
+   */
+  private Void unreserve(Reserved reserved)
+  {
+    binStore.findBinById(reserved.binId()).ifPresent(bin -> {
+      bin.setCurrentRequestCount(Math.max(0, bin.getCurrentRequestCount() - reserved.rows().size()));
+      bin.setCurrentBytes(Math.max(0, bin.getCurrentBytes() - reserved.bytes()));
+      binStore.save(bin);
+    });
+    storageQuotaService.release(reserved.bytes());
+    return null;
+  }
+
+  private Void trimToLimits(Long binId)
+  {
+    binStore.findBinById(binId).ifPresent(bin -> {
+      retentionService.trimToLimits(bin);
+      binStore.save(bin);
+    });
+    return null;
+  }
+
+  private record Imported(
+    LocalDateTime timestamp, String method, String headers, String queryParams, String ipAddress, String body)
+  {
+  }
+
+  private record Reserved(Long binId, List<CapturedRequest> rows, long bytes, boolean keepLatest, boolean hasRoom)
+  {
+  }
+
+  /**
+   * Requests parsed but not yet written
+   */
+  private final class Batch
+  {
+
+    private final Job job;
+    private final List<Imported> requests = new ArrayList<>();
+    private long chars;
+    private boolean full;
+
+    Batch(Job job)
+    {
+      this.job = job;
+    }
+
+    void add(Imported request)
+    {
+      if (request == null)
+      {
+        job.skipped.incrementAndGet();
+        return;
+      }
+      requests.add(request);
+      chars += request.body().length();
+      if (requests.size() >= batchSize || chars >= batchBytes)
+      {
+        flush();
+      }
+    }
+
+    void flush()
+    {
+      if (requests.isEmpty() || full)
+      {
+        return;
+      }
+      full = !write(job, requests);
+      requests.clear();
+      chars = 0;
+    }
+  }
+
+  /**
+   * One import's progress
+   */
+  private static final class Job
+  {
+
+    private final String id;
+    private final String uniqueUrl;
+    private final Format format;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong imported = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private volatile Status status = Status.RUNNING;
+    private volatile String message;
+    private volatile LocalDateTime finishedAt;
+    private volatile long finishedNanos;
+
+    Job(String id, String uniqueUrl, Format format)
+    {
+      this.id = id;
+      this.uniqueUrl = uniqueUrl;
+      this.format = format;
+    }
+
+    void finish(Status status, String message)
+    {
+      this.finishedNanos = System.nanoTime();
+      this.finishedAt = LocalDateTime.now();
+      this.message = message;
+      this.status = status;
+    }
+
+    ImportProgress toProgress()
+    {
+      long elapsedNanos = (finishedAt != null ? finishedNanos : System.nanoTime()) - startNanos;
+      return ImportProgress.builder()
+        .importId(id)
+        .format(format.name())
+        .status(status)
+        .imported(imported.get())
+        .skipped(skipped.get())
+        .bytesRead(bytesRead.get())
+        .requestsPerSecond(elapsedNanos > 0 ? imported.get() * 1_000_000_000L / elapsedNanos : 0)
+        .startedAt(startedAt)
+        .finishedAt(finishedAt)
+        .message(message)
+        .build();
+    }
+  }
+
+  /**
+   * Counts the bytes read from the upload
+   */
+  private static final class CountingInputStream
+    extends FilterInputStream
+  {
+
+    private final AtomicLong count;
+
+    CountingInputStream(InputStream in, AtomicLong count)
+    {
+      super(in);
+      this.count = count;
+    }
+
+    @Override
+    public int read()
+      throws IOException
+    {
+      int b = super.read();
+      if (b != -1)
+      {
+        count.incrementAndGet();
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length)
+      throws IOException
+    {
+      int read = super.read(buffer, offset, length);
+      if (read > 0)
+      {
+        count.addAndGet(read);
+      }
+      return read;
+    }
+  }
+}
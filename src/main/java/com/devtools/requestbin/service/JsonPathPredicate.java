@@ -0,0 +1,248 @@
+package com.devtools.requestbin.service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.devtools.requestbin.exception.InvalidRequestException;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * A field predicate over JSON payloads, e.g. $.event.type == "invoice.paid"
+ * <p>
+ * Supported syntax:
+ * - Path: $ followed by .name, ['name'] or [index] segments
+ * - Operators: == and !=, or no operator to test that the field exists
+ * - Values: JSON literals (strings, numbers, true, false, null)
+ * <p>
+ * Matching walks the parser's token stream and skips every subtree that is not on
+ * the path, so no JSON tree is ever built. Instances are immutable and thread-safe.
+ */
+public final class JsonPathPredicate
+{
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private static final Pattern EXPRESSION = Pattern.compile("^\\s*(\\$\\S*?)\\s*(?:(==|!=)\\s*(.+?))?\\s*$");
+  private static final Pattern SEGMENT = Pattern.compile("\\.([^.\\[]+)|\\[(\\d+)]|\\['([^']*)']|\\[\"([^\"]*)\"]");
+
+  private enum Operator
+  {
+    EXISTS, EQUALS, NOT_EQUALS
+  }
+
+  private record Segment(String field, int index)
+  {
+  }
+
+  private final String expression;
+  private final List<Segment> segments;
+  private final Operator operator;
+  private final JsonToken expectedToken;
+  private final String expectedText;
+  private final BigDecimal expectedNumber;
+
+  private JsonPathPredicate(String expression, List<Segment> segments, Operator operator,
+    JsonToken expectedToken, String expectedText, BigDecimal expectedNumber)
+  {
+    this.expression = expression;
+    this.segments = segments;
+    this.operator = operator;
+    this.expectedToken = expectedToken;
+    this.expectedText = expectedText;
+    this.expectedNumber = expectedNumber;
+  }
+
+  /**
+   * Parses an expression, throwing InvalidRequestException on bad syntax
+   */
+  public static JsonPathPredicate parse(String expression)
+  {
+    Matcher matcher = expression == null ? null : EXPRESSION.matcher(expression);
+    if (matcher == null || !matcher.matches())
+    {
+      throw new InvalidRequestException("Invalid expression. Expected e.g. $.event.type == \"invoice.paid\"");
+    }
+
+    List<Segment> segments = parsePath(matcher.group(1));
+
+    if (matcher.group(2) == null)
+    {
+      return new JsonPathPredicate(expression, segments, Operator.EXISTS, null, null, null);
+    }
+
+    Operator operator = "==".equals(matcher.group(2)) ? Operator.EQUALS : Operator.NOT_EQUALS;
+    String literal = matcher.group(3);
+
+    try (JsonParser parser = JSON_FACTORY.createParser(literal))
+    {
+      JsonToken token = parser.nextToken();
+      if (token == null || token.isStructStart() || parser.nextToken() != null)
+      {
+        throw new InvalidRequestException("Value must be a single JSON literal: " + literal);
+      }
+      BigDecimal number = token.isNumeric() ? parser.getDecimalValue() : null;
+      return new JsonPathPredicate(expression, segments, operator, token, parser.getText(), number);
+    }
+    catch (IOException e)
+    {
+      throw new InvalidRequestException("Value must be a JSON literal: " + literal);
+    }
+  }
+
+  private static List<Segment> parsePath(String path)
+  {
+    List<Segment> segments = new ArrayList<>();
+    Matcher matcher = SEGMENT.matcher(path);
+    int position = 1; // skip '$'
+
+    while (position < path.length())
+    {
+      if (!matcher.find(position) || matcher.start() != position)
+      {
+        throw new InvalidRequestException("Invalid path: " + path);
+      }
+
+      if (matcher.group(2) != null)
+      {
+        segments.add(new Segment(null, Integer.parseInt(matcher.group(2))));
+      }
+      else
+      {
+        String field = matcher.group(1) != null ? matcher.group(1)
+          : matcher.group(3) != null ? matcher.group(3) : matcher.group(4);
+        segments.add(new Segment(field, -1));
+      }
+      position = matcher.end();
+    }
+    return segments;
+  }
+
+  /**
+   * Tests one payload. Anything that isn't valid JSON simply doesn't match.
+   */
+  public boolean matches(String json)
+  {
+    if (!looksLikeJson(json))
+    {
+      return false;
+    }
+
+    try (JsonParser parser = JSON_FACTORY.createParser(json))
+    {
+      if (parser.nextToken() == null || !locate(parser))
+      {
+        return false;
+      }
+
+      return switch (operator)
+      {
+        case EXISTS -> true;
+        case EQUALS -> valueEquals(parser);
+        case NOT_EQUALS -> !valueEquals(parser);
+      };
+    }
+    catch (IOException e)
+    {
+      return false;
+    }
+  }
+
+  public String getExpression()
+  {
+    return expression;
+  }
+
+  /**
+   * Advances the parser to the value at the path, skipping unrelated subtrees
+   */
+  private boolean locate(JsonParser parser)
+    throws IOException
+  {
+    for (Segment segment : segments)
+    {
+      JsonToken token = parser.currentToken();
+      boolean found = false;
+
+      if (segment.field() != null)
+      {
+        if (token != JsonToken.START_OBJECT)
+        {
+          return false;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME)
+        {
+          String name = parser.currentName();
+          parser.nextToken();
+          if (name.equals(segment.field()))
+          {
+            found = true;
+            break;
+          }
+          parser.skipChildren();
+        }
+      }
+      else
+      {
+        if (token != JsonToken.START_ARRAY)
+        {
+          return false;
+        }
+        int index = 0;
+        JsonToken element;
+        while ((element = parser.nextToken()) != null && element != JsonToken.END_ARRAY)
+        {
+          if (index++ == segment.index())
+          {
+            found = true;
+            break;
+          }
+          parser.skipChildren();
+        }
+      }
+
+      if (!found)
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean valueEquals(JsonParser parser)
+    throws IOException
+  {
+    JsonToken actual = parser.currentToken();
+    if (expectedNumber != null)
+    {
+      return actual.isNumeric() && parser.getDecimalValue().compareTo(expectedNumber) == 0;
+    }
+    if (actual != expectedToken)
+    {
+      return false;
+    }
+    return actual != JsonToken.VALUE_STRING || parser.getText().equals(expectedText);
+  }
+
+  private static boolean looksLikeJson(String body)
+  {
+    if (body == null)
+    {
+      return false;
+    }
+    for (int i = 0; i < body.length(); i++)
+    {
+      char c = body.charAt(i);
+      if (!Character.isWhitespace(c))
+      {
+        return c == '{' || c == '[';
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,219 @@
+package com.devtools.requestbin.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.devtools.requestbin.dto.ApiResponse;
+import com.devtools.requestbin.dto.CapturedRequestResponse;
+import com.devtools.requestbin.dto.RequestBatchResponse;
+import com.devtools.requestbin.event.BinRemovedEvent;
+import com.devtools.requestbin.event.RequestCapturedEvent;
+import com.devtools.requestbin.event.RequestRedeliveredEvent;
+import com.devtools.requestbin.event.RequestsImportedEvent;
+import com.devtools.requestbin.exception.InvalidRequestException;
+import com.devtools.requestbin.exception.RequestNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.async.DeferredResult;
+
+/**
+ * Long-polling for new requests in a bin
+ * <p>
+ * How it works:
+ * - If requests after the caller's sequence exist, they are returned right away
+ * - Otherwise the caller is parked as a DeferredResult - no servlet thread is held
+ * - A committed capture for the bin wakes its parked callers
+ * - So does a duplicate collapsed into a request they have already received: they get
+ *   that request again with its new deliveryCount, and their lastSequence stays put
+ * - Callers still waiting when their timeout passes get an empty batch
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LongPollService
+{
+
+  private static final int MAX_BATCH = 500;
+  private static final Duration MAX_WAIT = Duration.ofSeconds(60);
+
+  private final RequestCaptureService requestCaptureService;
+
+  private final Map<Long, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+
+  private record Waiter(Long binId, long after, int max, DeferredResult<ApiResponse<RequestBatchResponse>> result)
+  {
+  }
+
+  public DeferredResult<ApiResponse<RequestBatchResponse>> poll(String uniqueUrl, long after, int max, Duration wait)
+  {
+    if (after < 0 || max < 1 || max > MAX_BATCH)
+    {
+      throw new InvalidRequestException("'after' must be >= 0 and 'max' between 1 and " + MAX_BATCH);
+    }
+    if (wait.isNegative() || wait.compareTo(MAX_WAIT) > 0)
+    {
+      throw new InvalidRequestException("'wait' must be between 0s and " + MAX_WAIT.toSeconds() + "s");
+    }
+
+    Long binId = requestCaptureService.getActiveBinId(uniqueUrl);
+
+    DeferredResult<ApiResponse<RequestBatchResponse>> result = new DeferredResult<>(wait.toMillis());
+    Waiter waiter = new Waiter(binId, after, max, result);
+
+    if (wait.isZero())
+    {
+      result.setResult(toResponse(fetch(waiter), waiter));
+      return result;
+    }
+
+    waiters.compute(binId, (id, set) ->
+    {
+      Set<Waiter> current = set != null ? set : ConcurrentHashMap.newKeySet();
+      current.add(waiter);
+      return current;
+    });
+    result.onTimeout(() -> result.setResult(toResponse(List.of(), waiter)));
+    result.onCompletion(() -> remove(waiter));
+
+    // Checked after registering, so a capture committed in between can't be missed
+    tryComplete(waiter);
+    return result;
+  }
+
+  @Async
+  @TransactionalEventListener
+  public void onRequestCaptured(RequestCapturedEvent event)
+  {
+    Set<Waiter> parked = waiters.get(event.getBinId());
+    if (parked == null)
+    {
+      return;
+    }
+    for (Waiter waiter : List.copyOf(parked))
+    {
+      if (event.getRequest().getSequence() > waiter.after())
+      {
+        tryComplete(waiter);
+      }
+    }
+  }
+
+  @Async
+  @TransactionalEventListener
+  public void onRequestRedelivered(RequestRedeliveredEvent event)
+  {
+    Set<Waiter> parked = waiters.get(event.getBinId());
+    if (parked == null)
+    {
+      return;
+    }
+    CapturedRequestResponse request = null;
+    for (Waiter waiter : List.copyOf(parked))
+    {
+      // Callers that haven't reached the request yet get it in their next batch anyway
+      if (event.getSequence() > waiter.after() || waiter.result().isSetOrExpired())
+      {
+        continue;
+      }
+      if (request == null)
+      {
+        try
+        {
+          request = requestCaptureService.getRequest(event.getRequestId());
+        }
+        catch (RequestNotFoundException e)
+        {
+          // Trimmed since
+          return;
+        }
+      }
+      RequestBatchResponse response = RequestBatchResponse.builder()
+        .requests(List.of(request))
+        .lastSequence(waiter.after())
+        .build();
+      waiter.result().setResult(ApiResponse.success(response, "Requests retrieved successfully"));
+    }
+  }
+
+  @Async
+  @TransactionalEventListener
+  public void onRequestsImported(RequestsImportedEvent event)
+  {
+    Set<Waiter> parked = waiters.get(event.getBinId());
+    if (parked == null || event.getRequests().isEmpty())
+    {
+      return;
+    }
+    long last = event.getRequests().get(event.getRequests().size() - 1).getSequence();
+    for (Waiter waiter : List.copyOf(parked))
+    {
+      if (last > waiter.after())
+      {
+        tryComplete(waiter);
+      }
+    }
+  }
+
+  @TransactionalEventListener
+  public void onBinRemoved(BinRemovedEvent event)
+  {
+    Set<Waiter> parked = waiters.remove(event.getBinId());
+    if (parked != null)
+    {
+      parked.forEach(waiter -> waiter.result().setResult(toResponse(List.of(), waiter)));
+    }
+  }
+
+  public int getParkedCount()
+  {
+    return waiters.values().stream().mapToInt(Set::size).sum();
+  }
+
+  private void tryComplete(Waiter waiter)
+  {
+    if (waiter.result().isSetOrExpired())
+    {
+      return;
+    }
+    List<CapturedRequestResponse> batch = fetch(waiter);
+    if (!batch.isEmpty())
+    {
+      waiter.result().setResult(toResponse(batch, waiter));
+    }
+  }
+
+  private List<CapturedRequestResponse> fetch(Waiter waiter)
+  {
+    // One extra row tells us whether more are immediately available
+    return requestCaptureService.getRequestsAfter(waiter.binId(), waiter.after(), waiter.max() + 1);
+  }
+
+  private ApiResponse<RequestBatchResponse> toResponse(List<CapturedRequestResponse> fetched, Waiter waiter)
+  {
+    boolean hasMore = fetched.size() > waiter.max();
+    List<CapturedRequestResponse> batch = hasMore ? fetched.subList(0, waiter.max()) : fetched;
+    long lastSequence = batch.isEmpty() ? waiter.after() : batch.get(batch.size() - 1).getSequence();
+
+    RequestBatchResponse response = RequestBatchResponse.builder()
+      .requests(batch)
+      .lastSequence(lastSequence)
+      .hasMore(hasMore)
+      .build();
+    return ApiResponse.success(response, "Requests retrieved successfully");
+  }
+
+  private void remove(Waiter waiter)
+  {
+    waiters.computeIfPresent(waiter.binId(), (id, set) ->
+    {
+      set.remove(waiter);
+      return set.isEmpty() ? null : set;
+    });
+  }
+}
@@ -0,0 +1,393 @@
+package com.devtools.requestbin.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.devtools.requestbin.exception.PayloadTooLargeException;
+import com.devtools.requestbin.exception.ServiceOverloadedException;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Node-wide memory budget for request bodies being captured
+ * <p>
+ * Every capture reserves its body bytes (in KB units) before they are buffered on the heap:
+ * - Content-Length, when present, is reserved up front; chunked bodies reserve as they grow
+ * - When the budget is exhausted the capture is either rejected right away with
+ *   503 + Retry-After (REJECT), or streamed to a temp file and loaded once budget frees
+ *   up within spill-wait-ms (SPILL)
+ * - Reservations are released when the capture transaction completes
+ * - Bodies kept on the heap past their capture (sampling reservoirs, forwarding queues) hold their share
+ *   with tryHold until they are stored or discarded
+ */
+@Service
+@Slf4j
+public class MemoryBudgetService
+{
+
+  public enum OverBudgetMode
+  {
+    REJECT, SPILL
+  }
+
+  private static final int CHUNK_SIZE = 8192;
+  private static final int MAX_INITIAL_BUFFER = 1024 * 1024;
+  private static final int KB = 1024;
+
+  private final Semaphore budget;
+  private final int budgetKb;
+  private final OverBudgetMode mode;
+  private final long spillWaitMs;
+  private final long retryAfterSeconds;
+  private final Path spillDir;
+
+  private final AtomicLong rejectedCount = new AtomicLong();
+  private final AtomicLong spilledCount = new AtomicLong();
+
+  public MemoryBudgetService(
+    @Value("${app.capture.memory-budget-bytes:67108864}") long budgetBytes,
+    @Value("${app.capture.over-budget-mode:REJECT}") OverBudgetMode mode,
+    @Value("${app.capture.spill-wait-ms:5000}") long spillWaitMs,
+    @Value("${app.capture.retry-after-seconds:5}") long retryAfterSeconds,
+    @Value("${app.capture.spill-dir:${java.io.tmpdir}}") String spillDir)
+  {
+    this.budgetKb = (int)Math.min(Integer.MAX_VALUE, budgetBytes / KB);
+    this.budget = new Semaphore(budgetKb);
+    this.mode = mode;
+    this.spillWaitMs = spillWaitMs;
+    this.retryAfterSeconds = retryAfterSeconds;
+    this.spillDir = Path.of(spillDir);
+  }
+
+  /**
+   * Reads the request body within the memory budget
+   * <p>
+   * The caller owns the returned body and must close it (or call releaseAfterTransaction).
+   */
+  public BufferedBody readBody(HttpServletRequest request)
+  {
+    BodyBuffer buffer = openBuffer(request);
+    try
+    {
+      InputStream in = request.getInputStream();
+      if (!buffer.isReserved())
+      {
+        return overBudget(in, buffer);
+      }
+
+      byte[] chunk = new byte[CHUNK_SIZE];
+      int read;
+      while ((read = in.read(chunk)) != -1)
+      {
+        if (!buffer.tryAppend(chunk, 0, read))
+        {
+          buffer.bytes.write(chunk, 0, read);
+          return overBudget(in, buffer);
+        }
+      }
+      return buffer.finish();
+    }
+    catch (IOException e)
+    {
+      log.error("Error reading request body", e);
+      return new BufferedBody("", 0);
+    }
+    finally
+    {
+      buffer.discard();
+    }
+  }
+
+  /**
+   * Starts buffering a body that arrives in chunks (e.g. from a non-blocking ReadListener)
+   * <p>
+   * Content-Length, when present, is reserved up front. Throws PayloadTooLargeException
+   * if the body can never fit, and ServiceOverloadedException if the budget is exhausted
+   * and REJECT mode is on.
+   */
+  public BodyBuffer openBuffer(HttpServletRequest request)
+  {
+    long declared = request.getContentLengthLong();
+    checkSize(declared);
+
+    BodyBuffer buffer = new BodyBuffer(charsetOf(request),
+      declared > 0 ? (int)Math.min(declared, MAX_INITIAL_BUFFER) : CHUNK_SIZE);
+    if (declared > 0 && !buffer.reserve(permits(declared)))
+    {
+      if (mode == OverBudgetMode.REJECT)
+      {
+        throw overloaded();
+      }
+      buffer.reserved = false;
+    }
+    return buffer;
+  }
+
+  /**
+   * The budget is exhausted: reject, or drain the rest of the body to disk and wait for room
+   */
+  private BufferedBody overBudget(InputStream in, BodyBuffer received)
+    throws IOException
+  {
+    received.release();
+    if (mode == OverBudgetMode.REJECT)
+    {
+      throw overloaded();
+    }
+
+    spilledCount.incrementAndGet();
+    Path file = Files.createTempFile(spillDir, "capture-", ".body");
+    try
+    {
+      try (OutputStream out = Files.newOutputStream(file))
+      {
+        received.bytes.writeTo(out);
+        received.bytes = null;
+        in.transferTo(out);
+      }
+      long size = Files.size(file);
+      checkSize(size);
+
+      int permits = permits(size);
+      if (!budget.tryAcquire(permits, spillWaitMs, TimeUnit.MILLISECONDS))
+      {
+        throw overloaded();
+      }
+      return new BufferedBody(new String(Files.readAllBytes(file), received.charset), permits);
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw overloaded();
+    }
+    finally
+    {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Reserves budget for a body kept on the heap after its capture completes
+   *
+   * @return false, reserving nothing, when the budget has no room for it
+   */
+  public boolean tryHold(long bytes)
+  {
+    int permits = permits(bytes);
+    return permits == 0 || budget.tryAcquire(permits);
+  }
+
+  /**
+   * Gives back what tryHold reserved for a body of this size
+   */
+  public void releaseHeld(long bytes)
+  {
+    budget.release(permits(bytes));
+  }
+
+  /**
+   * Counts a rejection and builds the 503 for it
+   */
+  public ServiceOverloadedException overloaded()
+  {
+    rejectedCount.incrementAndGet();
+    return new ServiceOverloadedException(
+      "Server is busy receiving other requests. Please retry later.", retryAfterSeconds);
+  }
+
+  private void checkSize(long bytes)
+  {
+    if (bytes > (long)budgetKb * KB)
+    {
+      throw new PayloadTooLargeException((long)budgetKb * KB);
+    }
+  }
+
+  private static int permits(long bytes)
+  {
+    return (int)((bytes + KB - 1) / KB);
+  }
+
+  private static Charset charsetOf(HttpServletRequest request)
+  {
+    try
+    {
+      return request.getCharacterEncoding() != null
+        ? Charset.forName(request.getCharacterEncoding())
+        : StandardCharsets.UTF_8;
+    }
+    catch (IllegalArgumentException e)
+    {
+      return StandardCharsets.UTF_8;
+    }
+  }
+
+  public long getBudgetBytes()
+  {
+    return (long)budgetKb * KB;
+  }
+
+  public long getAvailableBytes()
+  {
+    return (long)budget.availablePermits() * KB;
+  }
+
+  public long getRejectedCount()
+  {
+    return rejectedCount.get();
+  }
+
+  public long getSpilledCount()
+  {
+    return spilledCount.get();
+  }
+
+  /**
+   * A body still being received, holding budget for the bytes buffered so far
+   * <p>
+   * Not thread-safe: one reader appends, then either finishes or discards it.
+   */
+  public final class BodyBuffer
+  {
+
+    private final Charset charset;
+    private ByteArrayOutputStream bytes;
+    private int held;
+    private boolean reserved = true;
+
+    private BodyBuffer(Charset charset, int initialCapacity)
+    {
+      this.charset = charset;
+      this.bytes = new ByteArrayOutputStream(initialCapacity);
+    }
+
+    /**
+     * False when the up-front Content-Length reservation did not fit (SPILL mode only)
+     */
+    public boolean isReserved()
+    {
+      return reserved;
+    }
+
+    /**
+     * Buffers a chunk if the budget has room for it
+     *
+     * @return false (and buffers nothing) when the budget is exhausted
+     */
+    public boolean tryAppend(byte[] chunk, int offset, int length)
+    {
+      long size = (long)bytes.size() + length;
+      checkSize(size);
+      int needed = permits(size);
+      if (needed > held && !reserve(needed - held))
+      {
+        return false;
+      }
+      bytes.write(chunk, offset, length);
+      return true;
+    }
+
+    /**
+     * Hands the buffered bytes and their reservation over to a BufferedBody
+     */
+    public BufferedBody finish()
+    {
+      BufferedBody body = new BufferedBody(bytes.toString(charset), held);
+      held = 0;
+      bytes = null;
+      return body;
+    }
+
+    /**
+     * Releases whatever is still held; a no-op after finish()
+     */
+    public void discard()
+    {
+      release();
+      bytes = null;
+    }
+
+    private boolean reserve(int permits)
+    {
+      if (!budget.tryAcquire(permits))
+      {
+        return false;
+      }
+      held += permits;
+      return true;
+    }
+
+    private void release()
+    {
+      budget.release(held);
+      held = 0;
+    }
+  }
+
+  /**
+   * A request body held on the heap, with its share of the memory budget
+   */
+  public final class BufferedBody
+    implements AutoCloseable
+  {
+
+    private final String text;
+    private final int permits;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private BufferedBody(String text, int permits)
+    {
+      this.text = text;
+      this.permits = permits;
+    }
+
+    public String getText()
+    {
+      return text;
+    }
+
+    /**
+     * Keeps the reservation until the current transaction completes (the body stays
+     * referenced until the insert is flushed), or releases it now if there is none
+     */
+    public void releaseAfterTransaction()
+    {
+      if (!TransactionSynchronizationManager.isSynchronizationActive())
+      {
+        close();
+        return;
+      }
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+      {
+        @Override
+        public void afterCompletion(int status)
+        {
+          close();
+        }
+      });
+    }
+
+    @Override
+    public void close()
+    {
+      if (released.compareAndSet(false, true))
+      {
+        budget.release(permits);
+      }
+    }
+  }
+}
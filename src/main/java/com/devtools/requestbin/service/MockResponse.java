@@ -0,0 +1,289 @@
+package com.devtools.requestbin.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import com.devtools.requestbin.dto.CaptureReceipt;
+import com.devtools.requestbin.dto.ResponseTemplate;
+import com.devtools.requestbin.exception.InvalidRequestException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * A bin's ResponseTemplate compiled for serving
+ * <p>
+ * - The body is split at its placeholders into immutable UTF-8 segments once, when the bin
+ *   is created; serving writes the segments as they are and renders only the placeholders
+ * - Content-Length is the segments' precomputed length plus the rendered values
+ * - Header values are split the same way into literal parts; values without a placeholder
+ *   are set as they are
+ * <p>
+ * {{requestId}} and {{sequence}} render as null for requests the bin's sampling policy did
+ * not store; {{timestamp}} is an ISO local date-time.
+ */
+public final class MockResponse
+{
+
+  private static final Set<String> RESERVED_HEADERS = Set.of("content-length", "transfer-encoding", "connection");
+  private static final String NULL = "null";
+  private static final byte[] NULL_BYTES = NULL.getBytes(StandardCharsets.US_ASCII);
+
+  private enum Placeholder
+  {
+    REQUEST_ID("{{requestId}}"),
+    SEQUENCE("{{sequence}}"),
+    TIMESTAMP("{{timestamp}}");
+
+    private final String token;
+
+    Placeholder(String token)
+    {
+      this.token = token;
+    }
+
+    static Placeholder at(String text, int index)
+    {
+      for (Placeholder placeholder : values())
+      {
+        if (text.startsWith(placeholder.token, index))
+        {
+          return placeholder;
+        }
+      }
+      return null;
+    }
+
+    String text(CaptureReceipt receipt)
+    {
+      return switch (this)
+      {
+        case REQUEST_ID -> receipt.getRequestId() != null ? Long.toString(receipt.getRequestId()) : NULL;
+        case SEQUENCE -> !receipt.isSampledOut() ? Long.toString(receipt.getSequence()) : NULL;
+        case TIMESTAMP -> DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(receipt.getTimestamp());
+      };
+    }
+
+    byte[] render(CaptureReceipt receipt)
+    {
+      String text = text(receipt);
+      return NULL.equals(text) ? NULL_BYTES : text.getBytes(StandardCharsets.US_ASCII);
+    }
+  }
+
+  private final int status;
+  private final String[] headerNames;
+  private final String[][] headerLiterals;   // like segments: one more literal than placeholders
+  private final Placeholder[][] headerPlaceholders;
+  private final byte[][] segments;           // segments[i] is followed by placeholders[i]; one more segment than placeholders
+  private final Placeholder[] placeholders;
+  private final int fixedLength;
+  private final long latencyMs;
+
+  private MockResponse(int status, String[] headerNames, String[][] headerLiterals,
+    Placeholder[][] headerPlaceholders, byte[][] segments, Placeholder[] placeholders, long latencyMs)
+  {
+    this.status = status;
+    this.headerNames = headerNames;
+    this.headerLiterals = headerLiterals;
+    this.headerPlaceholders = headerPlaceholders;
+    this.segments = segments;
+    this.placeholders = placeholders;
+    int length = 0;
+    for (byte[] segment : segments)
+    {
+      length += segment.length;
+    }
+    this.fixedLength = length;
+    this.latencyMs = latencyMs;
+  }
+
+  /**
+   * Validates and compiles a template
+   */
+  public static MockResponse compile(ResponseTemplate template)
+  {
+    Map<String, String> headers = template.getHeaders() != null ? template.getHeaders() : Map.of();
+    String[] headerNames = new String[headers.size()];
+    String[][] headerLiterals = new String[headers.size()][];
+    Placeholder[][] headerPlaceholders = new Placeholder[headers.size()][];
+    int h = 0;
+    for (Map.Entry<String, String> header : headers.entrySet())
+    {
+      String name = header.getKey() != null ? header.getKey().trim() : "";
+      if (name.isEmpty() || !name.chars().allMatch(c -> c > 32 && c < 127 && c != ':'))
+      {
+        throw new InvalidRequestException("Invalid response header name: " + header.getKey());
+      }
+      if (RESERVED_HEADERS.contains(name.toLowerCase(Locale.ROOT)))
+      {
+        throw new InvalidRequestException("Response header " + name + " is set by the server");
+      }
+      String value = header.getValue() != null ? header.getValue() : "";
+      if (value.indexOf('\r') >= 0 || value.indexOf('\n') >= 0)
+      {
+        throw new InvalidRequestException("Response header " + name + " contains a line break");
+      }
+      List<String> literals = new ArrayList<>();
+      List<Placeholder> placeholders = new ArrayList<>();
+      split(value, literals, placeholders);
+      headerNames[h] = name;
+      headerLiterals[h] = literals.toArray(String[]::new);
+      headerPlaceholders[h] = placeholders.toArray(Placeholder[]::new);
+      h++;
+    }
+
+    String body = template.getBody() != null ? template.getBody() : "";
+    List<String> literals = new ArrayList<>();
+    List<Placeholder> placeholders = new ArrayList<>();
+    split(body, literals, placeholders);
+    byte[][] segments = new byte[literals.size()][];
+    for (int i = 0; i < segments.length; i++)
+    {
+      segments[i] = literals.get(i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    return new MockResponse(
+      template.getStatus() != null ? template.getStatus() : HttpServletResponse.SC_OK,
+      headerNames,
+      headerLiterals,
+      headerPlaceholders,
+      segments,
+      placeholders.toArray(Placeholder[]::new),
+      template.getLatencyMs() != null ? template.getLatencyMs() : 0);
+  }
+
+  /**
+   * Splits text at its placeholders: literals.get(i) is followed by placeholders.get(i),
+   * and there is always one more literal than placeholders
+   * <p>
+   * Anything between {{ and }} that is not a known placeholder stays literal text.
+   */
+  private static void split(String text, List<String> literals, List<Placeholder> placeholders)
+  {
+    int start = 0;
+    int index = text.indexOf("{{");
+    while (index >= 0)
+    {
+      Placeholder placeholder = Placeholder.at(text, index);
+      if (placeholder == null)
+      {
+        index = text.indexOf("{{", index + 2);
+        continue;
+      }
+      literals.add(text.substring(start, index));
+      placeholders.add(placeholder);
+      start = index + placeholder.token.length();
+      index = text.indexOf("{{", start);
+    }
+    literals.add(text.substring(start));
+  }
+
+  public long getLatencyMs()
+  {
+    return latencyMs;
+  }
+
+  public void writeTo(HttpServletResponse response, CaptureReceipt receipt)
+    throws IOException
+  {
+    response.setStatus(status);
+    for (int i = 0; i < headerNames.length; i++)
+    {
+      response.setHeader(headerNames[i], headerValue(i, receipt));
+    }
+
+    ServletOutputStream out = response.getOutputStream();
+    if (placeholders.length == 0)
+    {
+      response.setContentLength(fixedLength);
+      out.write(segments[0]);
+      return;
+    }
+
+    byte[][] values = renderPlaceholders(receipt);
+    response.setContentLength(contentLength(values));
+    for (int i = 0; i < placeholders.length; i++)
+    {
+      out.write(segments[i]);
+      out.write(values[i]);
+    }
+    out.write(segments[placeholders.length]);
+  }
+
+  /**
+   * The same response as writeTo, for handlers that answer through Spring MVC
+   */
+  public ResponseEntity<byte[]> toResponseEntity(CaptureReceipt receipt)
+  {
+    HttpHeaders headers = new HttpHeaders();
+    for (int i = 0; i < headerNames.length; i++)
+    {
+      headers.set(headerNames[i], headerValue(i, receipt));
+    }
+
+    byte[] body;
+    if (placeholders.length == 0)
+    {
+      body = segments[0];
+    }
+    else
+    {
+      byte[][] values = renderPlaceholders(receipt);
+      body = new byte[contentLength(values)];
+      int offset = 0;
+      for (int i = 0; i < placeholders.length; i++)
+      {
+        System.arraycopy(segments[i], 0, body, offset, segments[i].length);
+        offset += segments[i].length;
+        System.arraycopy(values[i], 0, body, offset, values[i].length);
+        offset += values[i].length;
+      }
+      System.arraycopy(segments[placeholders.length], 0, body, offset, segments[placeholders.length].length);
+    }
+    return ResponseEntity.status(status).headers(headers).body(body);
+  }
+
+  private String headerValue(int header, CaptureReceipt receipt)
+  {
+    String[] literals = headerLiterals[header];
+    Placeholder[] valuePlaceholders = headerPlaceholders[header];
+    if (valuePlaceholders.length == 0)
+    {
+      return literals[0];
+    }
+    StringBuilder value = new StringBuilder();
+    for (int i = 0; i < valuePlaceholders.length; i++)
+    {
+      value.append(literals[i]).append(valuePlaceholders[i].text(receipt));
+    }
+    return value.append(literals[valuePlaceholders.length]).toString();
+  }
+
+  private byte[][] renderPlaceholders(CaptureReceipt receipt)
+  {
+    byte[][] values = new byte[placeholders.length][];
+    for (int i = 0; i < placeholders.length; i++)
+    {
+      values[i] = placeholders[i].render(receipt);
+    }
+    return values;
+  }
+
+  private int contentLength(byte[][] values)
+  {
+    int length = fixedLength;
+    for (byte[] value : values)
+    {
+      length += value.length;
+    }
+    return length;
+  }
+}
@@ -0,0 +1,187 @@
+package com.devtools.requestbin.service;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.devtools.requestbin.dto.CaptureReceipt;
+import com.devtools.requestbin.dto.ResponseTemplate;
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.event.BinRemovedEvent;
+import com.devtools.requestbin.storage.BinStore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.async.DeferredResult;
+
+/**
+ * Compiled response templates of bins that answer captures like a mock endpoint
+ * <p>
+ * - A bin's template is compiled into a MockResponse when the bin is created, and for
+ *   every bin on startup; capture only looks its bin id up
+ * - Latency is injected without holding a thread: the request goes async and the
+ *   response is written once the delay has passed: writeAfterLatency on the capture
+ *   filter's AsyncContext, respondAfterLatency as a DeferredResult for Spring MVC handlers
+ */
+@Service
+@Slf4j
+public class MockResponseService
+{
+
+  // How long past its latency a delayed response may take before the container times it out
+  private static final long ASYNC_TIMEOUT_MARGIN_MS = 30_000;
+
+  private final BinStore binStore;
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final Map<Long, MockResponse> responses = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService scheduler;
+
+  public MockResponseService(BinStore binStore)
+  {
+    this.binStore = binStore;
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "mock-response-latency");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @PreDestroy
+  public void shutdown()
+  {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Template stored on a bin, or null when it answers with the default acknowledgement
+   */
+  public ResponseTemplate templateOf(Bin bin)
+  {
+    if (bin.getResponseTemplate() == null || bin.getResponseTemplate().isBlank())
+    {
+      return null;
+    }
+    try
+    {
+      return objectMapper.readValue(bin.getResponseTemplate(), ResponseTemplate.class);
+    }
+    catch (JsonProcessingException e)
+    {
+      log.error("Invalid response template on bin {}", bin.getId(), e);
+      return null;
+    }
+  }
+
+  /**
+   * Stored form of a template, null when there is none; invalid templates are rejected here
+   */
+  public String serializeTemplate(ResponseTemplate template)
+  {
+    if (template == null)
+    {
+      return null;
+    }
+    MockResponse.compile(template);
+    try
+    {
+      return objectMapper.writeValueAsString(template);
+    }
+    catch (JsonProcessingException e)
+    {
+      throw new IllegalStateException("Could not serialize response template", e);
+    }
+  }
+
+  /**
+   * Compiles a bin's template, if it has one
+   */
+  public void register(Bin bin)
+  {
+    ResponseTemplate template = templateOf(bin);
+    if (template != null)
+    {
+      responses.put(bin.getId(), MockResponse.compile(template));
+    }
+  }
+
+  /**
+   * The bin's compiled response, or null when it answers with the default acknowledgement
+   */
+  public MockResponse responseFor(Long binId)
+  {
+    return binId != null ? responses.get(binId) : null;
+  }
+
+  /**
+   * Writes the response once its latency has passed, without a thread waiting for it
+   * <p>
+   * The request must be in async mode; the scheduler only hands the write to a container
+   * thread, so a slow client never holds up other bins' delayed responses.
+   */
+  public void writeAfterLatency(MockResponse response, AsyncContext asyncContext, CaptureReceipt receipt)
+  {
+    asyncContext.setTimeout(response.getLatencyMs() + ASYNC_TIMEOUT_MARGIN_MS);
+    Runnable write = () -> asyncContext.start(() -> {
+      try
+      {
+        response.writeTo((HttpServletResponse)asyncContext.getResponse(), receipt);
+      }
+      catch (IOException | RuntimeException e)
+      {
+        log.debug("Could not write mock response for request {}: {}", receipt.getRequestId(), e.getMessage());
+      }
+      finally
+      {
+        asyncContext.complete();
+      }
+    });
+    if (response.getLatencyMs() <= 0)
+    {
+      write.run();
+      return;
+    }
+    scheduler.schedule(write, response.getLatencyMs(), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * The response as a DeferredResult, completed on the scheduler once its latency has passed
+   * <p>
+   * Spring MVC owns the async request; the scheduled completion is cancelled if the request
+   * times out or the client goes away first.
+   */
+  public DeferredResult<ResponseEntity<byte[]>> respondAfterLatency(MockResponse response, CaptureReceipt receipt)
+  {
+    DeferredResult<ResponseEntity<byte[]>> result = new DeferredResult<>(response.getLatencyMs() + ASYNC_TIMEOUT_MARGIN_MS);
+    ScheduledFuture<?> completion = scheduler.schedule(
+      () -> result.setResult(response.toResponseEntity(receipt)), response.getLatencyMs(), TimeUnit.MILLISECONDS);
+    result.onCompletion(() -> completion.cancel(false));
+    return result;
+  }
+
+  @TransactionalEventListener
+  public void onBinRemoved(BinRemovedEvent event)
+  {
+    responses.remove(event.getBinId());
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional(readOnly = true)
+  public void rebuild()
+  {
+    binStore.findAll().forEach(this::register);
+    log.info("Compiled response templates of {} bins", responses.size());
+  }
+}
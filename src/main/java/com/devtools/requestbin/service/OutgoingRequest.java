@@ -0,0 +1,17 @@
+package com.devtools.requestbin.service;
+
+import java.util.Map;
+
+/**
+ * A captured request prepared to be sent again, by replay and by forwarding
+ * <p>
+ * Hop-by-hop and length headers of the original connection are already removed.
+ */
+public record OutgoingRequest(
+  Long requestId,
+  String method,
+  Map<String, String> headers,
+  Map<String, String> queryParams,
+  String body)
+{
+}
@@ -0,0 +1,150 @@
+package com.devtools.requestbin.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.devtools.requestbin.dto.CapturedRequestSummary;
+import com.devtools.requestbin.dto.ScanResponse;
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.exception.BinExpiredException;
+import com.devtools.requestbin.exception.BinNotFoundException;
+import com.devtools.requestbin.exception.InvalidRequestException;
+import com.devtools.requestbin.storage.BinStore;
+import com.devtools.requestbin.storage.CapturedRequestStore;
+import com.devtools.requestbin.storage.CapturedRequestStore.BodyRow;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Evaluates JSON field predicates against a bin's captured bodies
+ * <p>
+ * Pipeline:
+ * - Rows are read newest first in fixed-size chunks (keyset on id), never the whole bin
+ * - Each chunk is matched in parallel on a dedicated fork-join pool
+ * - The next chunk is fetched while the current one is being evaluated
+ * - Scanning stops as soon as `limit` matches have been found
+ */
+@Service
+@Slf4j
+public class PayloadScanService
+{
+
+  private static final int MAX_LIMIT = 500;
+
+  private final BinStore binStore;
+  private final CapturedRequestStore requestStore;
+  private final ForkJoinPool scanPool;
+  private final int chunkSize;
+
+  public PayloadScanService(
+    BinStore binStore,
+    CapturedRequestStore requestStore,
+    @Value("${app.scan.parallelism:0}") int parallelism,
+    @Value("${app.scan.chunk-size:1000}") int chunkSize)
+  {
+    this.binStore = binStore;
+    this.requestStore = requestStore;
+    this.scanPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    this.chunkSize = chunkSize;
+  }
+
+  @PreDestroy
+  public void shutdown()
+  {
+    scanPool.shutdownNow();
+  }
+
+  @Transactional(readOnly = true)
+  public ScanResponse scan(String uniqueUrl, String expression, int limit)
+  {
+    if (limit < 1 || limit > MAX_LIMIT)
+    {
+      throw new InvalidRequestException("Limit must be between 1 and " + MAX_LIMIT);
+    }
+    JsonPathPredicate predicate = JsonPathPredicate.parse(expression);
+
+    Bin bin = binStore.findByUniqueUrl(uniqueUrl)
+      .orElseThrow(() -> new BinNotFoundException(uniqueUrl));
+
+    if (bin.getExpiresAt().isBefore(LocalDateTime.now()))
+    {
+      throw new BinExpiredException(uniqueUrl, bin.getExpiresAt());
+    }
+
+    long start = System.nanoTime();
+    List<Long> matchedIds = new ArrayList<>();
+    long scanned = 0;
+    boolean truncated = false;
+
+    List<BodyRow> chunk = requestStore.findBodyChunk(bin.getId(), Long.MAX_VALUE, chunkSize);
+    while (!chunk.isEmpty())
+    {
+      List<BodyRow> current = chunk;
+      Future<List<Long>> pending = scanPool.submit(() -> current.parallelStream()
+        .filter(row -> predicate.matches(row.body()))
+        .map(BodyRow::id)
+        .toList());
+
+      // Prefetch the next chunk while this one is being matched
+      chunk = current.size() < chunkSize
+        ? List.of()
+        : requestStore.findBodyChunk(bin.getId(), current.get(current.size() - 1).id(), chunkSize);
+
+      List<Long> chunkMatches = await(pending);
+      scanned += current.size();
+
+      // Chunk results keep stream order, so matches stay newest first
+      int remaining = limit - matchedIds.size();
+      truncated = chunkMatches.size() > remaining;
+      matchedIds.addAll(chunkMatches.subList(0, Math.min(remaining, chunkMatches.size())));
+      if (matchedIds.size() == limit)
+      {
+        break;
+      }
+    }
+    // Complete only if every chunk was read and no match of the last one was dropped
+    boolean complete = chunk.isEmpty() && !truncated;
+
+    List<CapturedRequestSummary> requests = matchedIds.isEmpty()
+      ? List.of()
+      : requestStore.findSummariesByIds(matchedIds);
+
+    long tookMs = (System.nanoTime() - start) / 1_000_000;
+    log.info("Scanned {} requests of bin {} for '{}' in {} ms ({} matches)",
+      scanned, uniqueUrl, predicate.getExpression(), tookMs, requests.size());
+
+    return ScanResponse.builder()
+      .expression(predicate.getExpression())
+      .scanned(scanned)
+      .matched(requests.size())
+      .complete(complete)
+      .tookMs(tookMs)
+      .requests(requests)
+      .build();
+  }
+
+  private List<Long> await(Future<List<Long>> pending)
+  {
+    try
+    {
+      return pending.get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Payload scan interrupted", e);
+    }
+    catch (ExecutionException e)
+    {
+      throw new IllegalStateException("Payload scan failed", e.getCause());
+    }
+  }
+
+}
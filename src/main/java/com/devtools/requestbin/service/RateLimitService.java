@@ -17,6 +17,8 @@ import java.util.concurrent.ConcurrentHashMap;
  * - Each action consumes 1 token
  * - Tokens refill at a fixed rate
  * - If bucket is empty, request is denied
+ * <p>
+ * The per-bin capture limit is kept by the bin's shard (CaptureShardService.tryAcquireCapture).
  */
 @Service
 public class RateLimitService
@@ -24,7 +26,6 @@ public class RateLimitService
 
   // Store buckets for each IP address
   private final Map<String, Bucket> cacheBinCreation = new ConcurrentHashMap<>();
-  private final Map<String, Bucket> cacheRequestCapture = new ConcurrentHashMap<>();
 
   /**
    * Check if IP can create a bin
@@ -36,16 +37,6 @@ public class RateLimitService
     return bucket.tryConsume(1);
   }
 
-  /**
-   * Check if bin can accept more requests
-   * Limit: 60 requests per minute per bin
-   */
-  public boolean allowRequestCapture(String binId)
-  {
-    Bucket bucket = cacheRequestCapture.computeIfAbsent(binId, k -> createRequestCaptureBucket());
-    return bucket.tryConsume(1);
-  }
-
   private Bucket createBinCreationBucket()
   {
     // Allow 10 requests per hour
@@ -54,13 +45,4 @@ public class RateLimitService
       .addLimit(limit)
       .build();
   }
-
-  private Bucket createRequestCaptureBucket()
-  {
-    // Allow 60 requests per minute
-    Bandwidth limit = Bandwidth.classic(60, Refill.intervally(60, Duration.ofMinutes(1)));
-    return Bucket.builder()
-      .addLimit(limit)
-      .build();
-  }
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.devtools.requestbin.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * A received request's details as they are stored, detached from the servlet request
+ * <p>
+ * Headers and query params are JSON objects; fingerprintHeaders is the normalized header
+ * subset used for duplicate detection. receivedAt is stored as the request's timestamp, so a
+ * request held in a sampling reservoir keeps the time it arrived.
+ */
+public record ReceivedRequest(
+  String method,
+  String headers,
+  String fingerprintHeaders,
+  String queryParams,
+  String ipAddress,
+  String body,
+  LocalDateTime receivedAt)
+{
+}
@@ -1,35 +1,49 @@
 package com.devtools.requestbin.service;
 
-import java.io.BufferedReader;
-import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
+import com.devtools.requestbin.dto.CaptureReceipt;
 import com.devtools.requestbin.dto.CapturedRequestResponse;
 import com.devtools.requestbin.dto.ReplayRequest;
 import com.devtools.requestbin.entity.Bin;
 import com.devtools.requestbin.entity.CapturedRequest;
+import com.devtools.requestbin.entity.DuplicateMode;
+import com.devtools.requestbin.entity.RetentionMode;
+import com.devtools.requestbin.event.RequestCapturedEvent;
+import com.devtools.requestbin.event.RequestRedeliveredEvent;
 import com.devtools.requestbin.exception.BinExpiredException;
 import com.devtools.requestbin.exception.BinLimitExceededException;
 import com.devtools.requestbin.exception.BinNotFoundException;
 import com.devtools.requestbin.exception.RateLimitExceededException;
-import com.devtools.requestbin.repository.BinRepository;
-import com.devtools.requestbin.repository.CapturedRequestRepository;
+import com.devtools.requestbin.exception.RequestNotFoundException;
+import com.devtools.requestbin.exception.StorageQuotaExceededException;
+import com.devtools.requestbin.storage.BinStore;
+import com.devtools.requestbin.storage.CapturedRequestStore;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.client.RestTemplate;
 
 @Service
@@ -38,106 +52,366 @@ import org.springframework.web.client.RestTemplate;
 public class RequestCaptureService
 {
 
-  private final BinRepository binRepository;
-  private final CapturedRequestRepository requestRepository;
-  private final RateLimitService rateLimitService;
+  private static final int BODY_PREVIEW_LENGTH = 200;
+  private static final Set<String> HOP_BY_HOP_HEADERS = Set.of("host", "connection", "content-length",
+    "transfer-encoding", "keep-alive", "te", "trailer", "upgrade", "expect", "proxy-connection");
+
+  private final BinStore binStore;
+  private final CapturedRequestStore requestStore;
+  private final ApplicationEventPublisher eventPublisher;
+  private final RetentionService retentionService;
+  private final StorageQuotaService storageQuotaService;
+  private final MemoryBudgetService memoryBudgetService;
+  private final CaptureShardService captureShardService;
+  private final TransactionTemplate transactionTemplate;
+  private final DuplicateDetectionService duplicateDetectionService;
+  private final SamplingService samplingService;
 
   private final ObjectMapper objectMapper = new ObjectMapper();
 
-  @Transactional
-  public CapturedRequestResponse captureRequest(String uniqueUrl, HttpServletRequest request) {
-    // 1. Find the bin
-    Bin bin = binRepository.findByUniqueUrl(uniqueUrl)
-      .orElseThrow(() -> new BinNotFoundException(uniqueUrl));
+  /**
+   * Captures a request, blocking until its shard has stored it
+   */
+  public CaptureReceipt captureRequest(String uniqueUrl, HttpServletRequest request) {
+    // Don't receive a body for a bin that can't take it
+    checkActive(uniqueUrl);
 
-    // 2. Check if bin is expired
-    if (bin.getExpiresAt().isBefore(LocalDateTime.now())) {
-      throw new BinExpiredException(uniqueUrl, bin.getExpiresAt());
+    // The body is buffered within the node's memory budget until the capture transaction completes
+    CompletableFuture<CaptureReceipt> capture =
+      captureRequestAsync(uniqueUrl, request, memoryBudgetService.readBody(request));
+    try {
+      return capture.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Fails fast, before the body is received, when the bin is missing or expired
+   * <p>
+   * The shard checks again when it stores the capture.
+   */
+  public void checkActive(String uniqueUrl) {
+    findActiveBin(uniqueUrl);
+  }
+
+  /**
+   * Captures a request whose body has already been received
+   * <p>
+   * Everything needed from the servlet request is extracted on the calling thread; the
+   * write itself runs on the bin's single-writer shard. The body's budget is released
+   * when the capture completes.
+   */
+  public CompletableFuture<CaptureReceipt> captureRequestAsync(String uniqueUrl, HttpServletRequest request,
+    MemoryBudgetService.BufferedBody body) {
+    try {
+      Map<String, String> headers = extractHeaders(request);
+      IncomingRequest incoming = new IncomingRequest(
+        request.getMethod(),
+        headers,
+        toJson(headers),
+        duplicateDetectionService.normalizeHeaders(headers),
+        extractQueryParams(request),
+        getClientIpAddress(request),
+        body);
+
+      return captureShardService.submit(uniqueUrl, () -> {
+        Captured captured = transactionTemplate.execute(status -> capture(uniqueUrl, incoming));
+        // A closed reservoir window is stored after the capture that closed it commits
+        storeReleased(captured.receipt().getBinId(), uniqueUrl, captured.released());
+        return captured.receipt();
+      });
+    } catch (RuntimeException e) {
+      body.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Stores one capture; runs on the bin's shard inside a transaction
+   *
+   * @return the receipt, and the sample of a reservoir window this request closed
+   */
+  private Captured capture(String uniqueUrl, IncomingRequest incoming) {
+    incoming.body().releaseAfterTransaction();
+
+    // 1-2. Find the bin and check it hasn't expired
+    Bin bin = findActiveBin(uniqueUrl);
+
+    // 3. Apply the bin's sampling policy: a dropped request ends here, counted but never
+    // written, and a reservoir bin holds it until its window closes
+    SamplingService.Decision decision = samplingService.sample(bin, incoming.method(), incoming.headerMap());
+    if (decision == SamplingService.Decision.DROP) {
+      return new Captured(sampledOut(bin), List.of());
+    }
+    if (decision == SamplingService.Decision.HOLD) {
+      return new Captured(sampledOut(bin), samplingService.hold(bin, received(incoming)));
     }
 
-    // 3. Check rate limit (60 requests per minute per bin)
-    if (!rateLimitService.allowRequestCapture(bin.getId().toString())) {
+    // 4. Check rate limit (60 requests per minute per bin by default), kept by the bin's shard
+    if (!captureShardService.tryAcquireCapture(uniqueUrl, bin.getId())) {
       throw new RateLimitExceededException(
-        "Rate limit exceeded for this bin. Maximum 60 requests per minute allowed."
+        "Rate limit exceeded for this bin. Maximum " + captureShardService.getCapturesPerMinute()
+          + " requests per minute allowed."
       );
     }
 
-    // 4. Check if bin has reached max requests
-    if (bin.getCurrentRequestCount() >= bin.getMaxRequests()) {
+    // 5. Request details were extracted on the request thread
+    return new Captured(store(bin, uniqueUrl, received(incoming)), List.of());
+  }
+
+  /**
+   * Stores one request of an active bin (steps 6-10 of a capture)
+   */
+  private CaptureReceipt store(Bin bin, String uniqueUrl, ReceivedRequest request) {
+    String method = request.method();
+    String headers = request.headers();
+    String body = request.body();
+    String queryParams = request.queryParams();
+    String ipAddress = request.ipAddress();
+
+    // 6. Look the request up in the bin's duplicate index; a collapsed duplicate is only
+    // counted on its original and stores nothing (so it passes even when the bin is full)
+    DuplicateDetectionService.Fingerprint fingerprint = null;
+    DuplicateDetectionService.Original original = null;
+    if (bin.getDuplicateMode() != null && bin.getDuplicateMode() != DuplicateMode.KEEP) {
+      fingerprint = duplicateDetectionService.fingerprint(method, request.fingerprintHeaders(), queryParams, body);
+      original = duplicateDetectionService.findOriginal(bin.getId(), fingerprint);
+      if (original != null && bin.getDuplicateMode() == DuplicateMode.COLLAPSE) {
+        LocalDateTime now = LocalDateTime.now();
+        if (requestStore.recordRedelivery(original.requestId(), now)) {
+          // The original changed in place: bump the bin's version and tell pollers
+          bin.setRedeliveryCount((bin.getRedeliveryCount() != null ? bin.getRedeliveryCount() : 0) + 1);
+          binStore.save(bin);
+          eventPublisher.publishEvent(
+            new RequestRedeliveredEvent(bin.getId(), uniqueUrl, original.requestId(), original.sequence()));
+          duplicateDetectionService.recordCollapsed();
+          log.info("Collapsed duplicate {} request for bin: {} into request {}", method, uniqueUrl, original.requestId());
+          return CaptureReceipt.builder()
+            .binId(bin.getId())
+            .requestId(original.requestId())
+            .sequence(original.sequence())
+            .timestamp(now)
+            .duplicateOf(original.requestId())
+            .build();
+        }
+        // The original is gone (trimmed) or the engine cannot update it: store this one instead
+        original = null;
+      }
+    }
+
+    // 7. Check if bin has reached max requests (KEEP_LATEST bins make room instead)
+    if (isFullAndRejecting(bin)) {
       throw new BinLimitExceededException(uniqueUrl, bin.getMaxRequests(), bin.getCurrentRequestCount());
     }
 
-    // 4. Extract request details
-    String method = request.getMethod();
-    String headers = extractHeaders(request);
-    String body = extractBody(request);
-    String queryParams = extractQueryParams(request);
-    String ipAddress = getClientIpAddress(request);
+    int bodySize = body.getBytes(StandardCharsets.UTF_8).length;
+
+    // 8. Admit the request against the bin's count and byte limits (trimming KEEP_LATEST
+    // bins), then against the server-wide byte quota. No row lock: the bin's shard is the
+    // only writer of its counters and sequence (age trims run there too).
+    retentionService.admit(bin, bodySize);
+    storageQuotaService.reserve(bodySize);
+    long sequence = captureShardService.nextSequence(bin);
 
-    // 5. Create and save captured request
+    // 9. Create and save captured request
     CapturedRequest capturedRequest = CapturedRequest.builder()
       .bin(bin)
+      .sequence(sequence)
       .method(method)
       .headers(headers)
       .body(body)
+      .bodySize(bodySize)
+      .bodyPreview(preview(body))
       .queryParams(queryParams)
       .ipAddress(ipAddress)
+      .timestamp(request.receivedAt())
+      .duplicateOf(original != null ? original.requestId() : null)
       .build();
 
-    CapturedRequest saved = requestRepository.save(capturedRequest);
+    CapturedRequest saved = requestStore.save(capturedRequest);
+    if (original != null) {
+      duplicateDetectionService.recordFlagged();
+    } else if (fingerprint != null) {
+      duplicateDetectionService.registerOriginal(bin.getId(), fingerprint, saved.getId(), sequence);
+    }
 
-    // 6. Increment bin request count
+    // 10. Increment bin request count and version
     bin.setCurrentRequestCount(bin.getCurrentRequestCount() + 1);
-    binRepository.save(bin);
+    bin.setCaptureSequence(sequence);
+    bin.setCurrentBytes(bin.getCurrentBytes() + bodySize);
+    binStore.save(bin);
+
+    // Listeners (e.g. search indexing) run after commit
+    eventPublisher.publishEvent(new RequestCapturedEvent(bin.getId(), uniqueUrl, saved));
 
     log.info("Captured {} request for bin: {} from IP: {}", method, uniqueUrl, ipAddress);
 
-    return mapToResponse(saved);
+    return CaptureReceipt.builder()
+      .binId(bin.getId())
+      .requestId(saved.getId())
+      .sequence(sequence)
+      .timestamp(saved.getTimestamp())
+      .duplicateOf(saved.getDuplicateOf())
+      .build();
+  }
+
+  private Bin findActiveBin(String uniqueUrl) {
+    Bin bin = binStore.findByUniqueUrl(uniqueUrl)
+      .orElseThrow(() -> new BinNotFoundException(uniqueUrl));
+    if (bin.getExpiresAt().isBefore(LocalDateTime.now())) {
+      throw new BinExpiredException(uniqueUrl, bin.getExpiresAt());
+    }
+    return bin;
+  }
+
+  /**
+   * Stores the sample of a closed reservoir window; runs on the bin's shard, outside any transaction
+   * <p>
+   * Each request is stored in its own transaction, so one that no longer fits (bin full or
+   * quota exhausted) is counted and skipped without rolling back the others.
+   */
+  private void storeReleased(Long binId, String uniqueUrl, List<ReceivedRequest> sample) {
+    for (ReceivedRequest request : sample) {
+      try {
+        transactionTemplate.executeWithoutResult(status -> binStore.findBinById(binId)
+          .ifPresent(bin -> store(bin, uniqueUrl, request)));
+      } catch (BinLimitExceededException | StorageQuotaExceededException e) {
+        samplingService.recordRejected(binId);
+      } catch (RuntimeException e) {
+        log.warn("Could not store released request of bin {}: {}", uniqueUrl, e.getMessage());
+        samplingService.recordRejected(binId);
+      } finally {
+        samplingService.releaseHeld(request);
+      }
+    }
+  }
+
+  /**
+   * Stores the samples of reservoir windows that closed without a new request arriving
+   */
+  @Scheduled(fixedDelayString = "${app.sampling.release-interval-ms:1000}")
+  public void releaseClosedReservoirs() {
+    for (String uniqueUrl : samplingService.binsWithClosedWindows()) {
+      try {
+        binStore.findByUniqueUrl(uniqueUrl).ifPresent(bin -> captureShardService.submit(uniqueUrl,
+          () -> {
+            storeReleased(bin.getId(), uniqueUrl, samplingService.releaseIfClosed(bin.getId()));
+            return null;
+          }));
+      } catch (RuntimeException e) {
+        // Shard queue full; the window stays closed and is released on the next run
+        log.warn("Could not release reservoir of bin {}: {}", uniqueUrl, e.getMessage());
+      }
+    }
+  }
+
+  private static ReceivedRequest received(IncomingRequest incoming) {
+    return new ReceivedRequest(incoming.method(), incoming.headers(), incoming.fingerprintHeaders(),
+      incoming.queryParams(), incoming.ipAddress(), incoming.body().getText(), LocalDateTime.now());
+  }
+
+  private static CaptureReceipt sampledOut(Bin bin) {
+    return CaptureReceipt.builder()
+      .binId(bin.getId())
+      .timestamp(LocalDateTime.now())
+      .sampledOut(true)
+      .build();
   }
 
   @Transactional(readOnly = true)
   public List<CapturedRequestResponse> getRequestsForBin(String uniqueUrl)
   {
-    Bin bin = binRepository.findByUniqueUrl(uniqueUrl)
+    Bin bin = binStore.findByUniqueUrl(uniqueUrl)
       .orElseThrow(() -> new BinNotFoundException(uniqueUrl));
 
-    List<CapturedRequest> requests = requestRepository.findByBinIdOrderByTimestampDesc(bin.getId());
+    List<CapturedRequest> requests = requestStore.findByBinNewestFirst(bin.getId());
 
     return requests.stream()
       .map(this::mapToResponse)
       .collect(Collectors.toList());
   }
 
+  private boolean isFullAndRejecting(Bin bin)
+  {
+    return bin.getRetentionMode() != RetentionMode.KEEP_LATEST
+      && bin.getCurrentRequestCount() >= bin.getMaxRequests();
+  }
+
+  /**
+   * Resolves a bin that can still be read, returning its id
+   */
   @Transactional(readOnly = true)
-  public Map<String, Object> replayRequest(Long requestId, ReplayRequest replayRequest) {
-    CapturedRequest capturedRequest = requestRepository.findById(requestId)
-      .orElseThrow(() -> new RuntimeException("Request not found with ID: " + requestId));
+  public Long getActiveBinId(String uniqueUrl)
+  {
+    Bin bin = binStore.findByUniqueUrl(uniqueUrl)
+      .orElseThrow(() -> new BinNotFoundException(uniqueUrl));
 
-    try {
-      // Parse headers
-      Map<String, String> headers = parseJsonToMap(capturedRequest.getHeaders());
+    if (bin.getExpiresAt().isBefore(LocalDateTime.now()))
+    {
+      throw new BinExpiredException(uniqueUrl, bin.getExpiresAt());
+    }
+    return bin.getId();
+  }
 
-      // Add or override headers if provided
-      if (replayRequest.getAdditionalHeaders() != null) {
-        headers.putAll(replayRequest.getAdditionalHeaders());
-      }
+  /**
+   * Incremental fetch: up to max requests with a sequence number above `after`, oldest first
+   */
+  @Transactional(readOnly = true)
+  public List<CapturedRequestResponse> getRequestsAfter(Long binId, long after, int max)
+  {
+    return requestStore.findAfterSequence(binId, after, max)
+      .stream()
+      .map(this::mapToResponse)
+      .collect(Collectors.toList());
+  }
+
+  /**
+   * A request of the given bin; ids of other bins' requests are not found here
+   */
+  @Transactional(readOnly = true)
+  public CapturedRequestResponse getRequest(String uniqueUrl, Long requestId)
+  {
+    Long binId = getActiveBinId(uniqueUrl);
+    return requestStore.findById(requestId)
+      .filter(request -> binId.equals(request.getBin().getId()))
+      .map(this::mapToResponse)
+      .orElseThrow(() -> new RequestNotFoundException(requestId));
+  }
 
-      // Use override body if provided, otherwise use original
-      String body = replayRequest.getOverrideBody() != null ?
-        replayRequest.getOverrideBody() : capturedRequest.getBody();
+  @Transactional(readOnly = true)
+  public CapturedRequestResponse getRequest(Long requestId)
+  {
+    return requestStore.findById(requestId)
+      .map(this::mapToResponse)
+      .orElseThrow(() -> new RequestNotFoundException(requestId));
+  }
+
+  @Transactional(readOnly = true)
+  public Map<String, Object> replayRequest(Long requestId, ReplayRequest replayRequest) {
+    CapturedRequest capturedRequest = requestStore.findById(requestId)
+      .orElseThrow(() -> new RequestNotFoundException(requestId));
+
+    try {
+      // Original headers and body, with the overrides if provided
+      OutgoingRequest outgoing = toOutgoing(capturedRequest, replayRequest.getAdditionalHeaders(),
+        replayRequest.getOverrideBody());
 
       // Make HTTP request using RestTemplate
       RestTemplate restTemplate = new RestTemplate();
 
       HttpHeaders httpHeaders = new HttpHeaders();
-      headers.forEach(httpHeaders::add);
+      outgoing.headers().forEach(httpHeaders::add);
 
-      HttpEntity<String> entity = new HttpEntity<>(body, httpHeaders);
+      HttpEntity<String> entity = new HttpEntity<>(outgoing.body(), httpHeaders);
 
       ResponseEntity<String> response;
 
       // Call based on original method
-      switch (capturedRequest.getMethod()) {
+      switch (outgoing.method()) {
         case "POST":
           response = restTemplate.postForEntity(replayRequest.getTargetUrl(), entity, String.class);
           break;
@@ -182,7 +456,32 @@ public class RequestCaptureService
     }
   }
 
-  private String extractHeaders(HttpServletRequest request)
+  /**
+   * A captured request as it is sent again (replay and forwarding)
+   * <p>
+   * Headers describing the original connection and body length are dropped, since the
+   * new request has its own; additionalHeaders and overrideBody are optional.
+   */
+  public OutgoingRequest toOutgoing(CapturedRequest capturedRequest, Map<String, String> additionalHeaders,
+    String overrideBody)
+  {
+    Map<String, String> headers = new LinkedHashMap<>();
+    headersOf(capturedRequest).forEach((name, value) -> {
+      if (!HOP_BY_HOP_HEADERS.contains(name.toLowerCase(Locale.ROOT)))
+      {
+        headers.put(name, value);
+      }
+    });
+    if (additionalHeaders != null)
+    {
+      headers.putAll(additionalHeaders);
+    }
+    String body = overrideBody != null ? overrideBody : capturedRequest.getBody();
+    return new OutgoingRequest(capturedRequest.getId(), capturedRequest.getMethod(), headers,
+      parseJsonToMap(capturedRequest.getQueryParams()), body);
+  }
+
+  private Map<String, String> extractHeaders(HttpServletRequest request)
   {
     Map<String, String> headersMap = new HashMap<>();
     Enumeration<String> headerNames = request.getHeaderNames();
@@ -193,7 +492,11 @@ public class RequestCaptureService
       String headerValue = request.getHeader(headerName);
       headersMap.put(headerName, headerValue);
     }
+    return headersMap;
+  }
 
+  private String toJson(Map<String, String> headersMap)
+  {
     try
     {
       return objectMapper.writeValueAsString(headersMap);
@@ -205,18 +508,15 @@ public class RequestCaptureService
     }
   }
 
-  private String extractBody(HttpServletRequest request)
+  static String preview(String body)
   {
-    try
+    if (body.length() <= BODY_PREVIEW_LENGTH)
     {
-      BufferedReader reader = request.getReader();
-      return reader.lines().collect(Collectors.joining("\n"));
-    }
-    catch (IOException e)
-    {
-      log.error("Error reading request body", e);
-      return "";
+      return body;
     }
+    // Don't split a surrogate pair
+    int end = Character.isHighSurrogate(body.charAt(BODY_PREVIEW_LENGTH - 1)) ? BODY_PREVIEW_LENGTH - 1 : BODY_PREVIEW_LENGTH;
+    return body.substring(0, end);
   }
 
   private String extractQueryParams(HttpServletRequest request)
@@ -262,20 +562,48 @@ public class RequestCaptureService
 
   private CapturedRequestResponse mapToResponse(CapturedRequest request)
   {
-    Map<String, String> headersMap = parseJsonToMap(request.getHeaders());
+    Map<String, String> headersMap = headersOf(request);
     Map<String, String> queryParamsMap = parseJsonToMap(request.getQueryParams());
 
     return CapturedRequestResponse.builder()
       .id(request.getId())
+      .sequence(request.getSequence())
       .method(request.getMethod())
       .headers(headersMap)
       .body(request.getBody())
       .queryParams(queryParamsMap)
       .ipAddress(request.getIpAddress())
       .timestamp(request.getTimestamp())
+      .duplicateOf(request.getDuplicateOf())
+      .deliveryCount(request.getDeliveryCount())
+      .lastDeliveredAt(request.getLastDeliveredAt())
       .build();
   }
 
+  /**
+   * Everything a capture needs from the servlet request, taken before it leaves the request thread
+   */
+  private record IncomingRequest(
+    String method, Map<String, String> headerMap, String headers, String fingerprintHeaders, String queryParams, String ipAddress,
+    MemoryBudgetService.BufferedBody body)
+  {
+  }
+
+  /**
+   * A capture's receipt, and the reservoir sample it released (stored once it commits)
+   */
+  private record Captured(CaptureReceipt receipt, List<ReceivedRequest> released)
+  {
+  }
+
+  /**
+   * Headers as decoded by the store, parsed from their JSON otherwise
+   */
+  private Map<String, String> headersOf(CapturedRequest request)
+  {
+    return request.getHeaderMap() != null ? request.getHeaderMap() : parseJsonToMap(request.getHeaders());
+  }
+
   private Map<String, String> parseJsonToMap(String json)
   {
     try
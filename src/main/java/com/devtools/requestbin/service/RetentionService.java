@@ -0,0 +1,197 @@
+package com.devtools.requestbin.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.RetentionMode;
+import com.devtools.requestbin.event.RequestsTrimmedEvent;
+import com.devtools.requestbin.exception.BinLimitExceededException;
+import com.devtools.requestbin.exception.StorageQuotaExceededException;
+import com.devtools.requestbin.storage.BinStore;
+import com.devtools.requestbin.storage.CapturedRequestStore;
+import com.devtools.requestbin.storage.CapturedRequestStore.SizeRow;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Admission control and trimming of old requests, per bin
+ * <p>
+ * Limits enforced on capture:
+ * - maxRequests: REJECT bins refuse new requests, KEEP_LATEST bins drop their oldest batch
+ *   (10% of maxRequests by default) in one range delete on (bin_id, sequence), so the next
+ *   inserts need no delete at all and writes stay amortized O(1)
+ * - maxBytes: REJECT bins refuse, KEEP_LATEST bins drop just enough of their oldest requests
+ * <p>
+ * maxAgeMinutes is enforced in the background by trimByAge, in bounded batches. It only
+ * trims the expired prefix of the log, so it never deletes a request younger than the bin's
+ * max age; an expired request behind a newer one (imported with its original timestamp)
+ * goes once the requests before it have expired too.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RetentionService
+{
+
+  private static final int EVICTION_SCAN_BATCH = 500;
+
+  private final BinStore binStore;
+  private final CapturedRequestStore requestStore;
+  private final ApplicationEventPublisher eventPublisher;
+
+  @Value("${app.retention.trim-batch-percent:10}")
+  private int trimBatchPercent;
+
+  /**
+   * Makes sure the bin can take one more request of the given size, trimming or throwing
+   * <p>
+   * Must be called inside the capture transaction, on the bin's capture shard.
+   */
+  @Transactional
+  public void admit(Bin bin, long bytes)
+  {
+    boolean keepLatest = bin.getRetentionMode() == RetentionMode.KEEP_LATEST;
+
+    if (bin.getCurrentRequestCount() >= bin.getMaxRequests())
+    {
+      if (!keepLatest)
+      {
+        throw new BinLimitExceededException(bin.getUniqueUrl(), bin.getMaxRequests(), bin.getCurrentRequestCount());
+      }
+      int batch = Math.max(1, bin.getMaxRequests() * trimBatchPercent / 100);
+      trimOldest(bin, bin.getCurrentRequestCount() - bin.getMaxRequests() + batch);
+    }
+
+    if (bytes > bin.getMaxBytes())
+    {
+      throw new StorageQuotaExceededException(String.format(
+        "Request body of %d bytes exceeds the bin's storage quota of %d bytes", bytes, bin.getMaxBytes()));
+    }
+    if (bin.getCurrentBytes() + bytes > bin.getMaxBytes())
+    {
+      if (!keepLatest)
+      {
+        throw new StorageQuotaExceededException(String.format(
+          "Bin storage quota exceeded. Max: %d bytes, Used: %d bytes (URL: %s)",
+          bin.getMaxBytes(), bin.getCurrentBytes(), bin.getUniqueUrl()));
+      }
+      evictBytes(bin, bin.getCurrentBytes() + bytes - bin.getMaxBytes());
+    }
+  }
+
+  /**
+   * Brings a KEEP_LATEST bin back within its limits after a bulk insert (see ImportService)
+   * <p>
+   * Must be called in a transaction on the bin's capture shard.
+   */
+  @Transactional
+  public void trimToLimits(Bin bin)
+  {
+    if (bin.getCurrentRequestCount() > bin.getMaxRequests())
+    {
+      trimOldest(bin, bin.getCurrentRequestCount() - bin.getMaxRequests());
+    }
+    if (bin.getCurrentBytes() > bin.getMaxBytes())
+    {
+      evictBytes(bin, bin.getCurrentBytes() - bin.getMaxBytes());
+    }
+  }
+
+  /**
+   * Trims up to batchSize requests older than the bin's maxAgeMinutes
+   * <p>
+   * Runs in its own short transaction on the bin's capture shard, the only writer of the
+   * bin's counters (see ScheduledTasksService.trimAgedRequests).
+   *
+   * @return number of requests deleted
+   */
+  @Transactional
+  public int trimByAge(Long binId, int batchSize)
+  {
+    Bin bin = binStore.findBinById(binId).orElse(null);
+    if (bin == null || bin.getMaxAgeMinutes() == null)
+    {
+      return 0;
+    }
+    LocalDateTime cutoff = LocalDateTime.now().minusMinutes(bin.getMaxAgeMinutes());
+    Long expiredUpTo = requestStore.findExpiredPrefixEnd(binId, cutoff);
+    if (expiredUpTo == null)
+    {
+      return 0;
+    }
+    // Sequences have gaps (trims, rollbacks), so the batch ends at the batchSize-th oldest request
+    List<SizeRow> oldest = requestStore.findOldestSizes(binId, batchSize);
+    if (oldest.isEmpty())
+    {
+      return 0;
+    }
+    return trimUpTo(bin, Math.min(expiredUpTo, oldest.getLast().sequence()));
+  }
+
+  /**
+   * Deletes every request of the bin with a sequence number up to upToSequence
+   */
+  @Transactional
+  public int trimUpTo(Bin bin, long upToSequence)
+  {
+    long bytes = requestStore.sumBodySizeUpToSequence(bin.getId(), upToSequence);
+    int deleted = requestStore.deleteUpToSequence(bin.getId(), upToSequence);
+    if (deleted > 0)
+    {
+      bin.setCurrentRequestCount(Math.max(0, bin.getCurrentRequestCount() - deleted));
+      bin.setCurrentBytes(Math.max(0, bin.getCurrentBytes() - bytes));
+      eventPublisher.publishEvent(new RequestsTrimmedEvent(bin.getId(), upToSequence, bytes));
+      log.debug("Trimmed {} requests ({} bytes) up to sequence {} from bin: {}",
+        deleted, bytes, upToSequence, bin.getUniqueUrl());
+    }
+    return deleted;
+  }
+
+  /**
+   * Deletes the bin's count oldest requests; sequences have gaps, so the last one is looked up
+   */
+  private void trimOldest(Bin bin, int count)
+  {
+    List<SizeRow> oldest = requestStore.findOldestSizes(bin.getId(), count);
+    if (!oldest.isEmpty())
+    {
+      trimUpTo(bin, oldest.getLast().sequence());
+    }
+  }
+
+  /**
+   * Drops the bin's oldest requests until at least `needed` bytes are freed
+   */
+  private void evictBytes(Bin bin, long needed)
+  {
+    long freed = 0;
+    Long upTo = null;
+    while (freed < needed)
+    {
+      List<SizeRow> oldest = requestStore.findOldestSizes(bin.getId(), EVICTION_SCAN_BATCH);
+      for (SizeRow row : oldest)
+      {
+        freed += row.bodySize();
+        upTo = row.sequence();
+        if (freed >= needed)
+        {
+          break;
+        }
+      }
+      if (upTo == null)
+      {
+        return;
+      }
+      trimUpTo(bin, upTo);
+      if (oldest.size() < EVICTION_SCAN_BATCH)
+      {
+        return;
+      }
+    }
+  }
+}
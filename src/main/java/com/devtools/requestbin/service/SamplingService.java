@@ -0,0 +1,458 @@
+package com.devtools.requestbin.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.devtools.requestbin.dto.SamplingPolicy;
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.SamplingMode;
+import com.devtools.requestbin.event.BinRemovedEvent;
+import com.devtools.requestbin.exception.InvalidRequestException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Decides which of a bin's incoming requests are stored (per-bin SamplingPolicy)
+ * <p>
+ * - Every request is counted, sampled or not: received, per method, kept, dropped, held
+ * - FIXED_RATE stores each request with probability rate
+ * - RESERVOIR holds a uniform sample of reservoirSize requests per window on the heap
+ *   (Algorithm R) and releases it for storage when the window closes; stored requests
+ *   keep the time they were received
+ * - Held bodies count against the capture memory budget until they are stored
+ *   (releaseHeld); a request the budget has no room for is dropped instead of held
+ * - Requests reporting an error status, or carrying the bin's keep header, are stored in any mode
+ * - A dropped request costs a header scan and counter increments; nothing is written
+ * <p>
+ * Counters and open reservoirs live on the heap: counters start over on restart, and
+ * reservoirs still open at shutdown are lost.
+ */
+@Service
+@Slf4j
+public class SamplingService
+{
+
+  /**
+   * What happens to one incoming request
+   */
+  public enum Decision
+  {
+    STORE,
+    DROP,
+    HOLD // in the bin's reservoir until its window closes
+  }
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final MemoryBudgetService memoryBudgetService;
+  private final String errorStatusHeader;
+  private final Map<Long, BinSampler> samplers = new ConcurrentHashMap<>();
+
+  public SamplingService(
+    MemoryBudgetService memoryBudgetService,
+    @Value("${app.sampling.error-status-header:X-Response-Status}") String errorStatusHeader)
+  {
+    this.memoryBudgetService = memoryBudgetService;
+    this.errorStatusHeader = errorStatusHeader;
+  }
+
+  /**
+   * Policy stored on a bin, or null when it stores everything
+   */
+  public SamplingPolicy policyOf(Bin bin)
+  {
+    if (bin.getSamplingPolicy() == null || bin.getSamplingPolicy().isBlank())
+    {
+      return null;
+    }
+    try
+    {
+      return objectMapper.readValue(bin.getSamplingPolicy(), SamplingPolicy.class);
+    }
+    catch (JsonProcessingException e)
+    {
+      log.error("Invalid sampling policy on bin {}", bin.getId(), e);
+      return null;
+    }
+  }
+
+  /**
+   * Stored form of a policy, null when there is none
+   */
+  public String serializePolicy(SamplingPolicy policy)
+  {
+    if (policy == null)
+    {
+      return null;
+    }
+    if (policy.getMode() == SamplingMode.FIXED_RATE && policy.getRate() == null)
+    {
+      throw new InvalidRequestException("Sample rate is required for FIXED_RATE sampling");
+    }
+    if (policy.getMode() == SamplingMode.RESERVOIR && (policy.getReservoirSize() == null || policy.getWindowSeconds() == null))
+    {
+      throw new InvalidRequestException("Reservoir size and window are required for RESERVOIR sampling");
+    }
+    if (policy.getKeepHeaderValue() != null && (policy.getKeepHeaderName() == null || policy.getKeepHeaderName().isBlank()))
+    {
+      throw new InvalidRequestException("keepHeaderValue requires keepHeaderName");
+    }
+    try
+    {
+      return objectMapper.writeValueAsString(policy);
+    }
+    catch (JsonProcessingException e)
+    {
+      throw new IllegalStateException("Could not serialize sampling policy", e);
+    }
+  }
+
+  /**
+   * Counts a request and decides whether it is stored now, dropped or held
+   */
+  public Decision sample(Bin bin, String method, Map<String, String> headers)
+  {
+    return samplerOf(bin).sample(method, headers);
+  }
+
+  /**
+   * Puts a request into the bin's reservoir (after a HOLD decision)
+   *
+   * @return the sample of the previous window, when this request opened a new one; each
+   *   of its requests still holds memory budget until passed to releaseHeld
+   */
+  public List<ReceivedRequest> hold(Bin bin, ReceivedRequest request)
+  {
+    return samplerOf(bin).reservoir.offer(request, System.nanoTime());
+  }
+
+  /**
+   * Unique URLs of bins whose reservoir window has closed without a request opening the next
+   */
+  public List<String> binsWithClosedWindows()
+  {
+    long now = System.nanoTime();
+    return samplers.values().stream()
+      .filter(sampler -> sampler.reservoir != null && sampler.reservoir.isClosed(now))
+      .map(sampler -> sampler.uniqueUrl)
+      .toList();
+  }
+
+  /**
+   * The sample of the bin's closed window, or an empty list while it is still open
+   */
+  public List<ReceivedRequest> releaseIfClosed(Long binId)
+  {
+    BinSampler sampler = samplers.get(binId);
+    if (sampler == null || sampler.reservoir == null)
+    {
+      return List.of();
+    }
+    return sampler.reservoir.releaseIfClosed(System.nanoTime());
+  }
+
+  /**
+   * Gives back the memory budget of a released request once it is stored (or given up on)
+   */
+  public void releaseHeld(ReceivedRequest request)
+  {
+    memoryBudgetService.releaseHeld(heldBytes(request));
+  }
+
+  /**
+   * Counts released requests that could not be stored (bin full or quota exhausted)
+   */
+  public void recordRejected(Long binId)
+  {
+    BinSampler sampler = samplers.get(binId);
+    if (sampler != null)
+    {
+      sampler.rejected.increment();
+    }
+  }
+
+  @TransactionalEventListener
+  public void onBinRemoved(BinRemovedEvent event)
+  {
+    BinSampler sampler = samplers.remove(event.getBinId());
+    if (sampler != null && sampler.reservoir != null)
+    {
+      sampler.reservoir.clear();
+    }
+  }
+
+  /**
+   * Exact counters of one bin's traffic since startup
+   */
+  public Map<String, Object> getBinStats(Bin bin)
+  {
+    BinSampler sampler = samplerOf(bin);
+    Map<String, Long> byMethod = new TreeMap<>();
+    sampler.byMethod.forEach((method, count) -> byMethod.put(method, count.sum()));
+
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("mode", sampler.mode);
+    stats.put("received", sampler.received.sum());
+    stats.put("byMethod", byMethod);
+    stats.put("kept", sampler.kept.sum());
+    stats.put("keptByOverride", sampler.overrides.sum());
+    stats.put("dropped", sampler.dropped.sum());
+    stats.put("held", sampler.reservoir != null ? sampler.reservoir.held() : 0);
+    stats.put("released", sampler.reservoir != null ? sampler.reservoir.released.sum() : 0);
+    stats.put("rejected", sampler.rejected.sum());
+    return stats;
+  }
+
+  public Map<String, Object> getStats()
+  {
+    long received = 0;
+    long dropped = 0;
+    long held = 0;
+    for (BinSampler sampler : samplers.values())
+    {
+      received += sampler.received.sum();
+      dropped += sampler.dropped.sum();
+      held += sampler.reservoir != null ? sampler.reservoir.held() : 0;
+    }
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("bins", samplers.size());
+    stats.put("received", received);
+    stats.put("dropped", dropped);
+    stats.put("held", held);
+    return stats;
+  }
+
+  private BinSampler samplerOf(Bin bin)
+  {
+    return samplers.computeIfAbsent(bin.getId(), binId -> new BinSampler(bin.getUniqueUrl(), policyOf(bin)));
+  }
+
+  /**
+   * One bin's compiled policy and counters
+   */
+  private final class BinSampler
+  {
+
+    private final String uniqueUrl;
+    private final SamplingMode mode;
+    private final double rate;
+    private final boolean keepErrors;
+    private final String keepHeaderName;
+    private final String keepHeaderValue;
+    private final Reservoir reservoir;
+
+    private final LongAdder received = new LongAdder();
+    private final Map<String, LongAdder> byMethod = new ConcurrentHashMap<>();
+    private final LongAdder kept = new LongAdder();
+    private final LongAdder overrides = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    BinSampler(String uniqueUrl, SamplingPolicy policy)
+    {
+      this.uniqueUrl = uniqueUrl;
+      this.mode = policy != null ? policy.getMode() : SamplingMode.ALL;
+      this.rate = policy != null && policy.getRate() != null ? policy.getRate() : 1.0;
+      this.keepErrors = policy != null && policy.isKeepErrors();
+      this.keepHeaderName = policy != null && policy.getKeepHeaderName() != null && !policy.getKeepHeaderName().isBlank()
+        ? policy.getKeepHeaderName().trim()
+        : null;
+      this.keepHeaderValue = policy != null && policy.getKeepHeaderValue() != null ? policy.getKeepHeaderValue().trim() : null;
+      this.reservoir = mode == SamplingMode.RESERVOIR
+        ? new Reservoir(policy.getReservoirSize(), TimeUnit.SECONDS.toNanos(policy.getWindowSeconds()), dropped,
+          memoryBudgetService)
+        : null;
+    }
+
+    Decision sample(String method, Map<String, String> headers)
+    {
+      received.increment();
+      byMethod.computeIfAbsent(method, key -> new LongAdder()).increment();
+
+      if (mode == SamplingMode.ALL)
+      {
+        kept.increment();
+        return Decision.STORE;
+      }
+      if (isKept(headers))
+      {
+        kept.increment();
+        overrides.increment();
+        return Decision.STORE;
+      }
+      if (mode == SamplingMode.RESERVOIR)
+      {
+        return Decision.HOLD;
+      }
+      if (ThreadLocalRandom.current().nextDouble() < rate)
+      {
+        kept.increment();
+        return Decision.STORE;
+      }
+      dropped.increment();
+      return Decision.DROP;
+    }
+
+    /**
+     * Whether a keep override matches; one pass over the headers, names compared ignoring case
+     */
+    private boolean isKept(Map<String, String> headers)
+    {
+      if (!keepErrors && keepHeaderName == null)
+      {
+        return false;
+      }
+      for (Map.Entry<String, String> header : headers.entrySet())
+      {
+        String name = header.getKey();
+        String value = header.getValue() != null ? header.getValue().trim() : "";
+        if (keepErrors && name.equalsIgnoreCase(errorStatusHeader) && isErrorStatus(value))
+        {
+          return true;
+        }
+        if (keepHeaderName != null && name.equalsIgnoreCase(keepHeaderName)
+          && (keepHeaderValue == null || keepHeaderValue.equalsIgnoreCase(value)))
+        {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static boolean isErrorStatus(String value)
+    {
+      try
+      {
+        return Integer.parseInt(value) >= 400;
+      }
+      catch (NumberFormatException e)
+      {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Uniform sample of up to size requests out of the current window
+   * <p>
+   * A window opens with the first request after the previous one was released. Request n
+   * of a window replaces a random slot with probability size / n; every request that is
+   * not part of the final sample is counted as dropped.
+   * <p>
+   * Each held request holds budget for its body; one that does not fit is dropped (its
+   * slot stays empty or keeps the request it would have replaced).
+   */
+  static final class Reservoir
+  {
+
+    private final ReceivedRequest[] slots;
+    private final long windowNanos;
+    private final LongAdder dropped;
+    private final MemoryBudgetService memoryBudgetService;
+    private final LongAdder released = new LongAdder();
+
+    private long windowStart;
+    private long seen;
+
+    Reservoir(int size, long windowNanos, LongAdder dropped, MemoryBudgetService memoryBudgetService)
+    {
+      this.slots = new ReceivedRequest[size];
+      this.windowNanos = windowNanos;
+      this.dropped = dropped;
+      this.memoryBudgetService = memoryBudgetService;
+    }
+
+    synchronized List<ReceivedRequest> offer(ReceivedRequest request, long now)
+    {
+      List<ReceivedRequest> closed = releaseIfClosed(now);
+      if (seen == 0)
+      {
+        windowStart = now;
+      }
+      seen++;
+      long slot = seen <= slots.length ? seen - 1 : ThreadLocalRandom.current().nextLong(seen);
+      if (slot < slots.length && memoryBudgetService.tryHold(heldBytes(request)))
+      {
+        ReceivedRequest replaced = slots[(int)slot];
+        slots[(int)slot] = request;
+        if (replaced != null)
+        {
+          memoryBudgetService.releaseHeld(heldBytes(replaced));
+          dropped.increment();
+        }
+        return closed;
+      }
+      dropped.increment();
+      return closed;
+    }
+
+    synchronized boolean isClosed(long now)
+    {
+      return seen > 0 && now - windowStart >= windowNanos;
+    }
+
+    synchronized List<ReceivedRequest> releaseIfClosed(long now)
+    {
+      if (!isClosed(now))
+      {
+        return List.of();
+      }
+      List<ReceivedRequest> sample = new ArrayList<>(slots.length);
+      for (int i = 0; i < slots.length; i++)
+      {
+        if (slots[i] != null)
+        {
+          sample.add(slots[i]);
+          slots[i] = null;
+        }
+      }
+      seen = 0;
+      released.add(sample.size());
+      return sample;
+    }
+
+    /**
+     * Discards the held requests (the bin is gone) and gives back their budget
+     */
+    synchronized void clear()
+    {
+      for (int i = 0; i < slots.length; i++)
+      {
+        if (slots[i] != null)
+        {
+          memoryBudgetService.releaseHeld(heldBytes(slots[i]));
+          slots[i] = null;
+        }
+      }
+      seen = 0;
+    }
+
+    synchronized int held()
+    {
+      int held = 0;
+      for (ReceivedRequest slot : slots)
+      {
+        held += slot != null ? 1 : 0;
+      }
+      return held;
+    }
+  }
+
+  /**
+   * Heap held by a request's body (its length in chars, one byte each for Latin-1 text)
+   */
+  private static long heldBytes(ReceivedRequest request)
+  {
+    return request.body() != null ? request.body().length() : 0;
+  }
+}
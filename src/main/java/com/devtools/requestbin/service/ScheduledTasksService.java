@@ -1,15 +1,20 @@
 package com.devtools.requestbin.service;
 
 import com.devtools.requestbin.entity.Bin;
-import com.devtools.requestbin.repository.BinRepository;
+import com.devtools.requestbin.event.BinRemovedEvent;
+import com.devtools.requestbin.exception.ServiceOverloadedException;
+import com.devtools.requestbin.storage.BinStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletionException;
 
 /**
  * Service for scheduled background tasks
@@ -20,7 +25,14 @@ import java.util.List;
 public class ScheduledTasksService
 {
 
-  private final BinRepository binRepository;
+  private final BinStore binStore;
+  private final ApplicationEventPublisher eventPublisher;
+  private final RetentionService retentionService;
+  private final AdmissionControlService admissionControlService;
+  private final CaptureShardService captureShardService;
+
+  @Value("${app.retention.age-trim-batch-size:1000}")
+  private int ageTrimBatchSize;
 
   /**
    * Deletes expired bins every hour
@@ -37,7 +49,7 @@ public class ScheduledTasksService
     LocalDateTime now = LocalDateTime.now();
 
     // Find all bins that have expired
-    List<Bin> expiredBins = binRepository.findAll().stream()
+    List<Bin> expiredBins = binStore.findAll().stream()
       .filter(bin -> bin.getExpiresAt().isBefore(now))
       .toList();
 
@@ -48,11 +60,59 @@ public class ScheduledTasksService
     }
 
     // Delete them
-    binRepository.deleteAll(expiredBins);
+    binStore.deleteAll(expiredBins);
+    expiredBins.forEach(bin -> eventPublisher.publishEvent(
+      new BinRemovedEvent(bin.getId(), bin.getUniqueUrl(), bin.getCurrentBytes())));
 
     log.info("Deleted {} expired bins", expiredBins.size());
   }
 
+  /**
+   * Trims requests older than their bin's maxAgeMinutes every minute
+   * <p>
+   * Each batch is its own short transaction, run on the bin's capture shard (the only
+   * writer of the bin's counters), so captures are never blocked for long.
+   */
+  @Scheduled(fixedRate = 60000, initialDelay = 60000)
+  public void trimAgedRequests()
+  {
+    int trimmed = 0;
+    for (Bin bin : binStore.findAgeLimitedActiveAt(LocalDateTime.now()))
+    {
+      int deleted;
+      do
+      {
+        try
+        {
+          deleted = captureShardService.submit(bin.getUniqueUrl(),
+            () -> retentionService.trimByAge(bin.getId(), ageTrimBatchSize)).join();
+        }
+        catch (ServiceOverloadedException e)
+        {
+          // The shard is busy with captures; the next run catches up
+          break;
+        }
+        catch (CompletionException e)
+        {
+          // Parked behind an import, or the trim failed: the other bins are still trimmed
+          Throwable cause = e.getCause() != null ? e.getCause() : e;
+          if (!(cause instanceof ServiceOverloadedException))
+          {
+            log.warn("Could not trim aged requests of bin {}: {}", bin.getUniqueUrl(), cause.toString());
+          }
+          break;
+        }
+        trimmed += deleted;
+      }
+      while (deleted == ageTrimBatchSize);
+    }
+
+    if (trimmed > 0)
+    {
+      log.info("Trimmed {} requests past their bin's max age", trimmed);
+    }
+  }
+
   /**
    * Logs statistics every 30 minutes (for monitoring)
    */
@@ -61,13 +121,14 @@ public class ScheduledTasksService
 
   public void logStatistics()
   {
-    long totalBins = binRepository.count();
+    long totalBins = binStore.count();
     LocalDateTime now = LocalDateTime.now();
-    long activeBins = binRepository.findAll().stream()
+    long activeBins = binStore.findAll().stream()
       .filter(bin -> bin.getExpiresAt().isAfter(now))
       .count();
     log.info(
       "Statistics - Total bins: {}, Active bins: {}, Expired: {}",
       totalBins, activeBins, totalBins - activeBins);
+    log.info("Admission control - {}", admissionControlService.getStats());
   }
 }
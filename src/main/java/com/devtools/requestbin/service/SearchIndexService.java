@@ -0,0 +1,424 @@
+package com.devtools.requestbin.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.devtools.requestbin.dto.SearchHit;
+import com.devtools.requestbin.dto.SearchResponse;
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+import com.devtools.requestbin.event.BinRemovedEvent;
+import com.devtools.requestbin.event.RequestCapturedEvent;
+import com.devtools.requestbin.event.RequestsImportedEvent;
+import com.devtools.requestbin.event.RequestsTrimmedEvent;
+import com.devtools.requestbin.exception.BinNotFoundException;
+import com.devtools.requestbin.exception.InvalidRequestException;
+import com.devtools.requestbin.storage.BinStore;
+import com.devtools.requestbin.storage.CapturedRequestStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * In-process full-text index over captured request bodies, headers and query params
+ * <p>
+ * Inverted index:
+ * - Each bin has its own postings table: term -> (requestId -> term frequency)
+ * - Requests are indexed asynchronously after the capture transaction commits
+ * - Deleting or expiring a bin drops its whole table in O(1), and a removed bin's table is
+ *   never created again by a capture indexed after the removal
+ * - Results are ranked with BM25 and every query term must match (AND)
+ * <p>
+ * All tables together hold at most app.search.max-index-bytes (estimated); requests
+ * captured once that is reached are not indexed (counted as skipped) until trims and
+ * removals free space.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SearchIndexService
+{
+
+  private static final double K1 = 1.2;
+  private static final double B = 0.75;
+  private static final int MAX_TERM_LENGTH = 64;
+  private static final int MAX_PAGE_SIZE = 100;
+  private static final int MAX_BINS_PER_SEARCH = 50;
+
+  // Rough heap cost of a document and of each of its terms (strings, map entries, boxing)
+  private static final int DOCUMENT_BYTES = 160;
+  private static final int TERM_BYTES = 120;
+
+  private final BinStore binStore;
+  private final CapturedRequestStore requestStore;
+
+  // Only the first N characters of each field are indexed, so huge payloads can't blow up the heap
+  @Value("${app.search.max-indexed-chars:65536}")
+  private int maxIndexedChars;
+
+  @Value("${app.search.max-index-bytes:134217728}")
+  private long maxIndexBytes;
+
+  private final Map<Long, BinIndex> indexes = new ConcurrentHashMap<>();
+  private final AtomicLong indexBytes = new AtomicLong();
+  private final AtomicLong skippedCount = new AtomicLong();
+
+  @Async
+  @TransactionalEventListener
+  public void onRequestCaptured(RequestCapturedEvent event)
+  {
+    index(event.getBinId(), event.getUniqueUrl(), event.getRequest());
+  }
+
+  @Async
+  @TransactionalEventListener
+  public void onRequestsImported(RequestsImportedEvent event)
+  {
+    event.getRequests().forEach(request -> index(event.getBinId(), event.getUniqueUrl(), request));
+  }
+
+  @TransactionalEventListener
+  public void onBinRemoved(BinRemovedEvent event)
+  {
+    BinIndex index = indexes.remove(event.getBinId());
+    if (index != null)
+    {
+      indexBytes.addAndGet(-index.close());
+    }
+  }
+
+  @TransactionalEventListener
+  public void onRequestsTrimmed(RequestsTrimmedEvent event)
+  {
+    BinIndex index = indexes.get(event.getBinId());
+    if (index != null)
+    {
+      indexBytes.addAndGet(-index.removeUpToSequence(event.getUpToSequence()));
+    }
+  }
+
+  /**
+   * Rebuilds the index from the database on startup
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  @Transactional(readOnly = true)
+  public void rebuild()
+  {
+    int indexed = 0;
+    for (Bin bin : binStore.findAll())
+    {
+      for (CapturedRequest request : requestStore.findByBinNewestFirst(bin.getId()))
+      {
+        index(bin.getId(), bin.getUniqueUrl(), request);
+        indexed++;
+      }
+    }
+    log.info("Search index rebuilt with {} requests", indexed);
+  }
+
+  public Map<String, Object> getStats()
+  {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("bins", indexes.size());
+    stats.put("estimatedBytes", indexBytes.get());
+    stats.put("maxBytes", maxIndexBytes);
+    stats.put("skipped", skippedCount.get());
+    return stats;
+  }
+
+  /**
+   * Searches the given bins only: a bin's URL is what grants access to it, so a search never
+   * reaches (or names) a bin the caller did not pass
+   */
+  public SearchResponse search(String query, List<String> uniqueUrls, int page, int size)
+  {
+    if (query == null || query.isBlank())
+    {
+      throw new InvalidRequestException("Search query is required");
+    }
+    if (page < 0 || size < 1 || size > MAX_PAGE_SIZE)
+    {
+      throw new InvalidRequestException("Page must be >= 0 and size between 1 and " + MAX_PAGE_SIZE);
+    }
+    if (uniqueUrls.isEmpty() || uniqueUrls.size() > MAX_BINS_PER_SEARCH)
+    {
+      throw new InvalidRequestException("Between 1 and " + MAX_BINS_PER_SEARCH + " bins can be searched at once");
+    }
+
+    long start = System.nanoTime();
+    List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query, query.length())));
+
+    List<SearchHit> hits = new ArrayList<>();
+    if (!terms.isEmpty())
+    {
+      for (String uniqueUrl : new LinkedHashSet<>(uniqueUrls))
+      {
+        Bin bin = binStore.findByUniqueUrl(uniqueUrl)
+          .orElseThrow(() -> new BinNotFoundException(uniqueUrl));
+        BinIndex index = indexes.get(bin.getId());
+        if (index != null)
+        {
+          hits.addAll(index.search(terms));
+        }
+      }
+    }
+
+    hits.sort(Comparator.comparingDouble(SearchHit::getScore).reversed()
+      .thenComparing(SearchHit::getRequestId, Comparator.reverseOrder()));
+
+    int from = (int)Math.min((long)page * size, hits.size());
+    int to = Math.min(from + size, hits.size());
+
+    return SearchResponse.builder()
+      .query(query)
+      .totalHits(hits.size())
+      .page(page)
+      .size(size)
+      .tookMs((System.nanoTime() - start) / 1_000_000)
+      .hits(new ArrayList<>(hits.subList(from, to)))
+      .build();
+  }
+
+  private void index(Long binId, String uniqueUrl, CapturedRequest request)
+  {
+    Map<String, Integer> termFrequencies = new HashMap<>();
+    int length = 0;
+    long bytes = DOCUMENT_BYTES;
+    for (String field : new String[] { request.getBody(), request.getHeaders(), request.getQueryParams() })
+    {
+      for (String term : tokenize(field, maxIndexedChars))
+      {
+        if (termFrequencies.merge(term, 1, Integer::sum) == 1)
+        {
+          bytes += TERM_BYTES + 2L * term.length();
+        }
+        length++;
+      }
+    }
+
+    BinIndex index = indexes.computeIfAbsent(binId, id -> {
+      // A capture that committed just before its bin was removed must not bring the index back
+      if (binStore.findBinById(id).isEmpty())
+      {
+        return null;
+      }
+      return new BinIndex(uniqueUrl);
+    });
+    if (index == null)
+    {
+      return;
+    }
+    if (indexBytes.addAndGet(bytes) > maxIndexBytes)
+    {
+      indexBytes.addAndGet(-bytes);
+      if (skippedCount.getAndIncrement() == 0)
+      {
+        log.warn("Search index is full ({} bytes), newly captured requests are not indexed", maxIndexBytes);
+      }
+      return;
+    }
+
+    IndexedDocument document = new IndexedDocument(
+      request.getId(),
+      request.getSequence(),
+      request.getMethod(),
+      request.getTimestamp(),
+      length,
+      bytes,
+      termFrequencies.keySet().toArray(new String[0]));
+
+    if (!index.add(document, termFrequencies))
+    {
+      indexBytes.addAndGet(-bytes);
+    }
+  }
+
+  /**
+   * Splits text into lowercase alphanumeric terms
+   */
+  static List<String> tokenize(String text, int maxChars)
+  {
+    List<String> tokens = new ArrayList<>();
+    if (text == null)
+    {
+      return tokens;
+    }
+
+    int end = Math.min(text.length(), maxChars);
+    int start = -1;
+    for (int i = 0; i <= end; i++)
+    {
+      boolean wordChar = i < end && Character.isLetterOrDigit(text.charAt(i));
+      if (wordChar && start < 0)
+      {
+        start = i;
+      }
+      else if (!wordChar && start >= 0)
+      {
+        if (i - start <= MAX_TERM_LENGTH)
+        {
+          tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+        }
+        start = -1;
+      }
+    }
+    return tokens;
+  }
+
+  private record IndexedDocument(
+    Long requestId, long sequence, String method, LocalDateTime timestamp, int length, long bytes,
+    String[] terms)
+  {
+  }
+
+  /**
+   * Postings for a single bin, guarded by its own monitor
+   */
+  private static final class BinIndex
+  {
+
+    private final String uniqueUrl;
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    private final Map<Long, IndexedDocument> documents = new HashMap<>();
+    private long totalLength;
+    private long bytes;
+    private boolean closed;
+
+    BinIndex(String uniqueUrl)
+    {
+      this.uniqueUrl = uniqueUrl;
+    }
+
+    /**
+     * Adds a document unless it is already indexed or the index was closed
+     */
+    synchronized boolean add(IndexedDocument document, Map<String, Integer> termFrequencies)
+    {
+      if (closed || documents.putIfAbsent(document.requestId(), document) != null)
+      {
+        return false;
+      }
+      termFrequencies.forEach((term, tf) ->
+        postings.computeIfAbsent(term, t -> new HashMap<>()).put(document.requestId(), tf));
+      totalLength += document.length();
+      bytes += document.bytes();
+      return true;
+    }
+
+    /**
+     * Stops further adds, returning the bytes the index held
+     */
+    synchronized long close()
+    {
+      closed = true;
+      return bytes;
+    }
+
+    private long remove(Long requestId)
+    {
+      IndexedDocument document = documents.remove(requestId);
+      if (document == null)
+      {
+        return 0;
+      }
+      for (String term : document.terms())
+      {
+        Map<Long, Integer> list = postings.get(term);
+        if (list != null)
+        {
+          list.remove(requestId);
+          if (list.isEmpty())
+          {
+            postings.remove(term);
+          }
+        }
+      }
+      totalLength -= document.length();
+      bytes -= document.bytes();
+      return document.bytes();
+    }
+
+    /**
+     * Removes the documents up to upToSequence, returning the bytes they held
+     */
+    synchronized long removeUpToSequence(long upToSequence)
+    {
+      if (closed)
+      {
+        return 0;
+      }
+      List<Long> trimmed = documents.values().stream()
+        .filter(document -> document.sequence() <= upToSequence)
+        .map(IndexedDocument::requestId)
+        .toList();
+      long freed = 0;
+      for (Long requestId : trimmed)
+      {
+        freed += remove(requestId);
+      }
+      return freed;
+    }
+
+    synchronized List<SearchHit> search(List<String> terms)
+    {
+      List<Map<Long, Integer>> lists = new ArrayList<>();
+      for (String term : terms)
+      {
+        Map<Long, Integer> list = postings.get(term);
+        if (list == null)
+        {
+          return List.of();
+        }
+        lists.add(list);
+      }
+
+      // Walk the rarest term's postings and probe the others
+      lists.sort(Comparator.comparingInt(Map::size));
+
+      int documentCount = documents.size();
+      double averageLength = Math.max(1.0, (double)totalLength / documentCount);
+
+      List<SearchHit> hits = new ArrayList<>();
+      candidates:
+      for (Long requestId : lists.get(0).keySet())
+      {
+        IndexedDocument document = documents.get(requestId);
+        double score = 0;
+        for (Map<Long, Integer> list : lists)
+        {
+          Integer tf = list.get(requestId);
+          if (tf == null)
+          {
+            continue candidates;
+          }
+          double idf = Math.log(1 + (documentCount - list.size() + 0.5) / (list.size() + 0.5));
+          score += idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * document.length() / averageLength));
+        }
+
+        hits.add(SearchHit.builder()
+          .requestId(requestId)
+          .uniqueUrl(uniqueUrl)
+          .method(document.method())
+          .timestamp(document.timestamp())
+          .score(score)
+          .build());
+      }
+      return hits;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package com.devtools.requestbin.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.devtools.requestbin.event.BinRemovedEvent;
+import com.devtools.requestbin.event.RequestsTrimmedEvent;
+import com.devtools.requestbin.exception.StorageQuotaExceededException;
+import com.devtools.requestbin.storage.BinStore;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Server-wide byte quota for stored request bodies
+ * <p>
+ * - Usage is an atomic counter, loaded from the bins table on startup
+ * - Captures reserve their body size before inserting; the reservation is given back
+ *   if the transaction rolls back
+ * - Trimmed requests and removed bins give their bytes back after commit
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StorageQuotaService
+{
+
+  private final BinStore binStore;
+
+  @Value("${app.storage.max-total-bytes:1073741824}")
+  private long maxTotalBytes;
+
+  private final AtomicLong usedBytes = new AtomicLong();
+
+  @PostConstruct
+  public void init()
+  {
+    usedBytes.set(binStore.sumCurrentBytes());
+    log.info("Storage quota: {} of {} bytes in use", usedBytes.get(), maxTotalBytes);
+  }
+
+  /**
+   * Reserves bytes against the global quota or throws StorageQuotaExceededException
+   */
+  public void reserve(long bytes)
+  {
+    long current;
+    do
+    {
+      current = usedBytes.get();
+      if (current + bytes > maxTotalBytes)
+      {
+        throw new StorageQuotaExceededException("Server storage quota exhausted. Please try again later.");
+      }
+    }
+    while (!usedBytes.compareAndSet(current, current + bytes));
+
+    if (TransactionSynchronizationManager.isSynchronizationActive())
+    {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+      {
+        @Override
+        public void afterCompletion(int status)
+        {
+          if (status != STATUS_COMMITTED)
+          {
+            release(bytes);
+          }
+        }
+      });
+    }
+  }
+
+  public void release(long bytes)
+  {
+    usedBytes.addAndGet(-bytes);
+  }
+
+  @TransactionalEventListener
+  public void onRequestsTrimmed(RequestsTrimmedEvent event)
+  {
+    release(event.getBytes());
+  }
+
+  @TransactionalEventListener
+  public void onBinRemoved(BinRemovedEvent event)
+  {
+    release(event.getBytes());
+  }
+
+  public long getUsedBytes()
+  {
+    return usedBytes.get();
+  }
+
+  public long getMaxTotalBytes()
+  {
+    return maxTotalBytes;
+  }
+}
@@ -0,0 +1,440 @@
+package com.devtools.requestbin.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * One bin's request log: an ordered list of segments in its own directory
+ * <p>
+ * - Only the last segment takes appends. A transaction's records are written together when it
+ *   commits, and the tail is rolled (sealed) only before such a batch, so until the batch is
+ *   published it lies in the unsealed tail and can be cut off again
+ * - Readers only see records up to the published sequence, raised once the transaction commits
+ * - Sequences only grow; appending one that is already in the log is a bug, not a retry
+ * - Trimming never rewrites files: it raises the trim watermark (persisted in "trim"),
+ *   hides every record at or below it, and deletes sealed segments lying entirely below it
+ * <p>
+ * Reads and structural changes synchronize on the log; writeLock serializes writers for
+ * the duration of their transaction. A closed log (idle, see LogStructuredRequestStore)
+ * must be opened again.
+ */
+@Slf4j
+final class BinLog
+{
+
+  private static final String TRIM_FILE = "trim";
+
+  /**
+   * One record of a committing transaction
+   */
+  record Append(long sequence, ByteBuffer record)
+  {
+  }
+
+  final ReentrantLock writeLock = new ReentrantLock();
+  volatile long lastAccess = System.nanoTime();
+
+  private final Path dir;
+  private final int segmentBytes;
+  private final int indexInterval;
+  private final List<LogSegment> segments = new ArrayList<>();
+
+  private long watermark;
+  private long published;
+  private boolean closed;
+
+  private BinLog(Path dir, int segmentBytes, int indexInterval)
+  {
+    this.dir = dir;
+    this.segmentBytes = segmentBytes;
+    this.indexInterval = indexInterval;
+  }
+
+  /**
+   * Opens the bin's directory, recovering the tail segment, or creates it
+   */
+  static BinLog open(Path dir, int segmentBytes, int indexInterval)
+    throws IOException
+  {
+    BinLog binLog = new BinLog(dir, segmentBytes, indexInterval);
+    Files.createDirectories(dir);
+
+    List<Path> files;
+    try (Stream<Path> listing = Files.list(dir))
+    {
+      files = listing
+        .filter(file -> file.getFileName().toString().endsWith(LogSegment.LOG_SUFFIX))
+        .sorted(Comparator.comparing(file -> file.getFileName().toString()))
+        .toList();
+    }
+    for (int i = 0; i < files.size(); i++)
+    {
+      LogSegment segment = LogSegment.open(files.get(i), indexInterval);
+      // A crash between rolling and writing the index leaves an unsealed segment behind the tail
+      if (i < files.size() - 1 && !segment.isSealed())
+      {
+        segment.seal();
+      }
+      binLog.segments.add(segment);
+    }
+
+    Path trimFile = dir.resolve(TRIM_FILE);
+    if (Files.exists(trimFile))
+    {
+      binLog.watermark = Long.parseLong(Files.readString(trimFile, StandardCharsets.UTF_8).trim());
+    }
+    binLog.published = binLog.lastSequence();
+    return binLog;
+  }
+
+  /**
+   * Writes a committing transaction's records, in sequence order, to the tail segment
+   * <p>
+   * They stay hidden until publish; on failure the caller cuts them off with truncateFrom.
+   *
+   * @return the channel to fsync before the records count as durable
+   */
+  synchronized FileChannel append(List<Append> appends)
+    throws IOException
+  {
+    long sequence = appends.getFirst().sequence();
+    if (sequence <= lastSequence())
+    {
+      throw new IllegalStateException("Sequence " + sequence + " is already in " + dir);
+    }
+    int bytes = 0;
+    for (Append append : appends)
+    {
+      bytes += append.record().remaining();
+    }
+
+    LogSegment tail = segments.isEmpty() ? null : segments.getLast();
+    if (tail != null && !tail.isSealed() && tail.isEmpty() && sequence < tail.getFirstSequence())
+    {
+      segments.removeLast().delete();
+      tail = null;
+    }
+    if (tail != null && !tail.isSealed() && !tail.isEmpty() && tail.getSize() + bytes > segmentBytes)
+    {
+      tail.seal();
+    }
+    if (tail == null || tail.isSealed())
+    {
+      tail = LogSegment.create(dir, sequence, indexInterval);
+      segments.add(tail);
+    }
+
+    for (Append append : appends)
+    {
+      if (append.sequence() <= tail.getLastSequence())
+      {
+        throw new IllegalStateException("Sequence " + append.sequence() + " is out of order in " + dir);
+      }
+      tail.append(append.record());
+    }
+    return tail.getChannel();
+  }
+
+  /**
+   * Makes every record written so far visible (its transaction committed)
+   */
+  synchronized void publish()
+  {
+    published = lastSequence();
+  }
+
+  /**
+   * Cuts off records above the database's committed capture sequence: they were written
+   * by a transaction that crashed before its commit, so no reader has ever seen them
+   */
+  synchronized void discardAfter(long committedSequence)
+    throws IOException
+  {
+    if (lastSequence() > committedSequence)
+    {
+      log.warn("Discarding uncommitted log tail of {} after sequence {}", dir, committedSequence);
+      truncateFrom(committedSequence + 1);
+      published = lastSequence();
+    }
+  }
+
+  /**
+   * Removes every record with a sequence at or above the given one from the tail
+   */
+  synchronized void truncateFrom(long sequence)
+    throws IOException
+  {
+    while (segments.size() > 1 && segments.getLast().getFirstSequence() >= sequence)
+    {
+      segments.removeLast().delete();
+    }
+    if (segments.isEmpty())
+    {
+      return;
+    }
+    LogSegment tail = segments.getLast();
+    if (tail.getLastSequence() >= sequence)
+    {
+      if (tail.isSealed())
+      {
+        throw new IllegalStateException("Cannot truncate sealed segment in " + dir);
+      }
+      tail.truncate(tail.offsetOf(sequence));
+    }
+    published = Math.min(published, lastSequence());
+  }
+
+  /**
+   * Visits visible records oldest first, starting above afterSequence, until the visitor returns false
+   */
+  synchronized void forward(long afterSequence, Predicate<ByteBuffer> visitor)
+  {
+    long from = Math.max(afterSequence, watermark) + 1;
+    for (LogSegment segment : segments)
+    {
+      if (segment.getLastSequence() < from)
+      {
+        continue;
+      }
+      long offset = segment.offsetOf(from);
+      while (offset < segment.getSize())
+      {
+        ByteBuffer payload = segment.payloadAt(offset);
+        if (LogRecordCodec.sequence(payload) > published || !visitor.test(payload))
+        {
+          return;
+        }
+        offset = segment.nextOffset(offset, payload);
+      }
+    }
+  }
+
+  /**
+   * Visits visible records newest first, starting below beforeSequence, until the visitor returns false
+   */
+  synchronized void backward(long beforeSequence, Predicate<ByteBuffer> visitor)
+  {
+    beforeSequence = Math.min(beforeSequence, published + 1);
+    for (LogSegment segment : segments.reversed())
+    {
+      if (segment.getFirstSequence() >= beforeSequence || segment.isEmpty())
+      {
+        continue;
+      }
+      long end = segment.getLastSequence() < beforeSequence ? segment.getSize() : segment.offsetOf(beforeSequence);
+      while (end > 0)
+      {
+        long offset = segment.previousOffset(end);
+        ByteBuffer payload = segment.payloadAt(offset);
+        if (LogRecordCodec.sequence(payload) <= watermark || !visitor.test(payload))
+        {
+          return;
+        }
+        end = offset;
+      }
+    }
+  }
+
+  /**
+   * Hides every record up to the sequence (capped at the last one written)
+   *
+   * @return number of records newly hidden
+   */
+  synchronized int trimUpTo(long upToSequence)
+  {
+    long target = Math.min(upToSequence, published);
+    if (target <= watermark)
+    {
+      return 0;
+    }
+    int[] count = {0};
+    forward(watermark, payload -> {
+      if (LogRecordCodec.sequence(payload) > target)
+      {
+        return false;
+      }
+      count[0]++;
+      return true;
+    });
+    watermark = target;
+    return count[0];
+  }
+
+  /**
+   * Body bytes of the visible records up to the sequence
+   */
+  synchronized long sumBodySizeUpTo(long upToSequence)
+  {
+    long last = Math.min(upToSequence, published);
+    long sum = 0;
+    for (LogSegment segment : segments)
+    {
+      if (segment.getFirstSequence() > last)
+      {
+        break;
+      }
+      if (segment.isEmpty() || segment.getLastSequence() <= watermark)
+      {
+        continue;
+      }
+      long from = segment.offsetOf(watermark + 1);
+      long to = segment.offsetOf(last + 1);
+      sum += segment.bodyBytesBefore(to) - segment.bodyBytesBefore(from);
+    }
+    return sum;
+  }
+
+  /**
+   * Sequence of the last record of the visible prefix older than the cutoff (null if the
+   * oldest visible record is not), skipping index blocks that are older throughout
+   */
+  synchronized Long expiredPrefixEnd(LocalDateTime cutoff)
+  {
+    Long end = null;
+    for (LogSegment segment : segments)
+    {
+      if (segment.getFirstSequence() > published)
+      {
+        break;
+      }
+      if (segment.isEmpty() || segment.getLastSequence() <= watermark)
+      {
+        continue;
+      }
+      long from = segment.offsetOf(watermark + 1);
+      long visibleEnd = segment.getLastSequence() <= published ? segment.getSize() : segment.offsetOf(published + 1);
+      long notBefore = Math.min(segment.offsetNotBefore(from, cutoff), visibleEnd);
+      if (notBefore > from)
+      {
+        end = LogRecordCodec.sequence(segment.payloadAt(segment.previousOffset(notBefore)));
+      }
+      if (notBefore < segment.getSize())
+      {
+        break;
+      }
+    }
+    return end;
+  }
+
+  synchronized long getWatermark()
+  {
+    return watermark;
+  }
+
+  synchronized void restoreWatermark(long previous)
+  {
+    watermark = previous;
+    persistWatermark();
+  }
+
+  /**
+   * Writes the watermark to disk atomically
+   */
+  synchronized void persistWatermark()
+  {
+    try
+    {
+      Path tmp = dir.resolve(TRIM_FILE + ".tmp");
+      Files.writeString(tmp, Long.toString(watermark), StandardCharsets.UTF_8);
+      Files.move(tmp, dir.resolve(TRIM_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (IOException e)
+    {
+      throw new UncheckedIOException("Could not persist trim watermark of " + dir, e);
+    }
+  }
+
+  /**
+   * Deletes sealed segments whose records are all below the watermark
+   */
+  synchronized void deleteTrimmedSegments()
+  {
+    while (segments.size() > 1 && segments.getFirst().isSealed() && segments.getFirst().getLastSequence() <= watermark)
+    {
+      try
+      {
+        segments.removeFirst().delete();
+      }
+      catch (IOException e)
+      {
+        log.warn("Could not delete trimmed segment in {}", dir, e);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Closes every segment and removes the bin's directory
+   */
+  synchronized void deleteAll()
+    throws IOException
+  {
+    close();
+    segments.clear();
+    deleteDirectory(dir);
+  }
+
+  /**
+   * Releases the tail's file handle and the sealed segments' mappings
+   */
+  synchronized void close()
+  {
+    segments.forEach(LogSegment::close);
+    closed = true;
+  }
+
+  synchronized boolean isClosed()
+  {
+    return closed;
+  }
+
+  @Override
+  public String toString()
+  {
+    return dir.toString();
+  }
+
+  static void deleteDirectory(Path dir)
+    throws IOException
+  {
+    if (!Files.exists(dir))
+    {
+      return;
+    }
+    try (Stream<Path> files = Files.list(dir))
+    {
+      for (Path file : files.toList())
+      {
+        Files.deleteIfExists(file);
+      }
+    }
+    Files.deleteIfExists(dir);
+  }
+
+  private long lastSequence()
+  {
+    for (LogSegment segment : segments.reversed())
+    {
+      if (!segment.isEmpty())
+      {
+        return segment.getLastSequence();
+      }
+    }
+    return 0;
+  }
+}
@@ -0,0 +1,57 @@
+package com.devtools.requestbin.storage;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import com.devtools.requestbin.entity.Bin;
+
+/**
+ * Storage SPI for bins
+ * <p>
+ * Services depend on this instead of a Spring Data repository, so the storage engine can be
+ * swapped by profile: JPA by default, in-memory with the "memory" profile.
+ * Bins returned by an implementation are live objects: changes made to them inside the
+ * current transaction are persisted on save() or, for JPA, on commit.
+ */
+public interface BinStore
+{
+
+  /**
+   * Inserts a new bin (assigning id, createdAt and zeroed counters) or updates an existing one
+   */
+  Bin save(Bin bin);
+
+  Optional<Bin> findBinById(Long id);
+
+  Optional<Bin> findByUniqueUrl(String uniqueUrl);
+
+  boolean existsByUniqueUrl(String uniqueUrl);
+
+  List<Bin> findAll();
+
+  /**
+   * Bins with a maxAgeMinutes setting that are still active at the given time
+   */
+  List<Bin> findAgeLimitedActiveAt(LocalDateTime now);
+
+  /**
+   * Deletes the bin together with all of its captured requests
+   */
+  void delete(Bin bin);
+
+  void deleteAll(Collection<Bin> bins);
+
+  long count();
+
+  /**
+   * Stored body bytes across all bins
+   */
+  long sumCurrentBytes();
+
+  /**
+   * Reloads the bin's state and keeps other writers out of it until the transaction ends
+   */
+  void lockForUpdate(Bin bin);
+}
@@ -0,0 +1,54 @@
+package com.devtools.requestbin.storage;
+
+import java.util.function.Predicate;
+
+import com.devtools.requestbin.dto.CapturedRequestSummary;
+import com.devtools.requestbin.dto.RequestFilter;
+import com.devtools.requestbin.entity.CapturedRequest;
+import com.devtools.requestbin.repository.CapturedRequestSpecifications;
+
+/**
+ * Request filtering for storage engines that evaluate queries in Java rather than SQL
+ */
+final class CapturedRequestMatcher
+{
+
+  private CapturedRequestMatcher()
+  {
+  }
+
+  /**
+   * The same conditions as CapturedRequestSpecifications (except the cursor)
+   */
+  static Predicate<CapturedRequest> matching(RequestFilter filter)
+  {
+    String method = hasText(filter.getMethod()) ? filter.getMethod().toUpperCase() : null;
+    String headerNeedle = CapturedRequestSpecifications.headerNeedle(filter);
+
+    return request -> (method == null || method.equals(request.getMethod()))
+      && (filter.getFrom() == null || !request.getTimestamp().isBefore(filter.getFrom()))
+      && (filter.getTo() == null || request.getTimestamp().isBefore(filter.getTo()))
+      && (!hasText(filter.getIpAddress()) || filter.getIpAddress().equals(request.getIpAddress()))
+      && (filter.getMinBodySize() == null || sizeOf(request) >= filter.getMinBodySize())
+      && (filter.getMaxBodySize() == null || sizeOf(request) <= filter.getMaxBodySize())
+      && (headerNeedle == null
+        || (request.getHeaders() != null && request.getHeaders().toLowerCase().contains(headerNeedle)));
+  }
+
+  static int sizeOf(CapturedRequest request)
+  {
+    return request.getBodySize() != null ? request.getBodySize() : 0;
+  }
+
+  static CapturedRequestSummary toSummary(CapturedRequest request)
+  {
+    return new CapturedRequestSummary(request.getId(), request.getMethod(), request.getTimestamp(),
+      request.getIpAddress(), request.getBodySize(), request.getBodyPreview(), request.getDuplicateOf(),
+      request.getDeliveryCount());
+  }
+
+  private static boolean hasText(String value)
+  {
+    return value != null && !value.isBlank();
+  }
+}
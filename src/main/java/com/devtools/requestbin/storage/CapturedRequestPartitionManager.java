@@ -0,0 +1,211 @@
+package com.devtools.requestbin.storage;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Time partitions of captured requests ("partitioned" profile)
+ * <p>
+ * Every bin's requests go into one table, chosen by the bucket its expiresAt falls into
+ * (captured_requests_pYYYYMMDDHH, bucket-hours wide). Once a bucket has ended, every bin in
+ * it has expired, so expiry is a DROP TABLE whose cost does not depend on the row count.
+ * <p>
+ * DDL commits implicitly, so tables are created ahead of time (premake-hours into the
+ * future, covering the longest bin expiry) and only as a fallback on first use, always in
+ * a separate transaction.
+ */
+@Component
+@Profile("partitioned")
+@Slf4j
+public class CapturedRequestPartitionManager
+{
+
+  static final String TABLE_PREFIX = "captured_requests_p";
+
+  private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMddHH");
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate ddlTransaction;
+  private final int bucketHours;
+  private final int premakeHours;
+
+  private final Set<String> tables = ConcurrentHashMap.newKeySet();
+
+  public CapturedRequestPartitionManager(
+    JdbcTemplate jdbcTemplate,
+    PlatformTransactionManager transactionManager,
+    @Value("${app.storage.partitioned.bucket-hours:1}") int bucketHours,
+    @Value("${app.storage.partitioned.premake-hours:170}") int premakeHours)
+  {
+    this.jdbcTemplate = jdbcTemplate;
+    this.ddlTransaction = new TransactionTemplate(transactionManager);
+    this.ddlTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    this.bucketHours = Math.max(1, bucketHours);
+    this.premakeHours = premakeHours;
+  }
+
+  @PostConstruct
+  public void init()
+  {
+    List<String> existing = jdbcTemplate.queryForList(
+      "select lower(table_name) from information_schema.tables where lower(table_name) like ?",
+      String.class, TABLE_PREFIX + "%");
+    tables.addAll(existing);
+    existing.forEach(this::upgrade);
+    maintain();
+    log.info("Captured requests partitioned into {}-hour tables ({} present)", bucketHours, tables.size());
+  }
+
+  /**
+   * Drops partitions whose bucket has ended and creates the upcoming ones
+   */
+  @Scheduled(fixedRateString = "${app.storage.partitioned.maintenance-interval-ms:300000}",
+    initialDelayString = "${app.storage.partitioned.maintenance-interval-ms:300000}")
+  public void maintain()
+  {
+    LocalDateTime now = LocalDateTime.now();
+
+    int dropped = 0;
+    for (String table : List.copyOf(tables))
+    {
+      LocalDateTime bucketStart = LocalDateTime.parse(table.substring(TABLE_PREFIX.length()), SUFFIX);
+      if (!bucketStart.plusHours(bucketHours).isAfter(now))
+      {
+        drop(table);
+        dropped++;
+      }
+    }
+
+    LocalDateTime bucket = bucketStart(now);
+    LocalDateTime horizon = now.plusHours(premakeHours);
+    while (!bucket.isAfter(horizon))
+    {
+      create(tableName(bucket));
+      bucket = bucket.plusHours(bucketHours);
+    }
+
+    if (dropped > 0)
+    {
+      log.info("Dropped {} expired request partitions", dropped);
+    }
+  }
+
+  /**
+   * Table holding the requests of bins expiring at expiresAt, created if missing
+   */
+  public String tableFor(LocalDateTime expiresAt)
+  {
+    String table = tableName(bucketStart(expiresAt));
+    if (!tables.contains(table))
+    {
+      create(table);
+    }
+    return table;
+  }
+
+  /**
+   * Table holding the requests of bins expiring at expiresAt, or null once it was dropped
+   */
+  public String existingTableFor(LocalDateTime expiresAt)
+  {
+    String table = tableName(bucketStart(expiresAt));
+    return tables.contains(table) ? table : null;
+  }
+
+  public int getPartitionCount()
+  {
+    return tables.size();
+  }
+
+  private synchronized void create(String table)
+  {
+    if (tables.contains(table))
+    {
+      return;
+    }
+    ddlTransaction.executeWithoutResult(status -> {
+      jdbcTemplate.execute("create table if not exists " + table + " ("
+        + "id bigint primary key, "
+        + "bin_id bigint not null, "
+        + "sequence bigint not null, "
+        + "method varchar(10) not null, "
+        + "headers text, "
+        + "body text, "
+        + "query_params text, "
+        + "body_size integer, "
+        + "body_preview varchar(200), "
+        + "ip_address varchar(45), "
+        + "timestamp timestamp not null, "
+        + "duplicate_of bigint, "
+        + "delivery_count integer, "
+        + "last_delivered_at timestamp, "
+        + "constraint uk_" + table + "_bin_sequence unique (bin_id, sequence))");
+      createIndexes(table);
+    });
+    tables.add(table);
+  }
+
+  /**
+   * The (bin_id, ...) indexes of captured_requests, so filtered bin queries stay index scans
+   */
+  private void createIndexes(String table)
+  {
+    jdbcTemplate.execute("create index if not exists idx_" + table + "_bin_timestamp on " + table
+      + " (bin_id, timestamp)");
+    jdbcTemplate.execute("create index if not exists idx_" + table + "_bin_method on " + table
+      + " (bin_id, method)");
+    jdbcTemplate.execute("create index if not exists idx_" + table + "_bin_ip on " + table
+      + " (bin_id, ip_address)");
+    jdbcTemplate.execute("create index if not exists idx_" + table + "_bin_body_size on " + table
+      + " (bin_id, body_size)");
+  }
+
+  /**
+   * Brings a partition created by an earlier version up to the current columns and indexes
+   */
+  private void upgrade(String table)
+  {
+    ddlTransaction.executeWithoutResult(status -> {
+      jdbcTemplate.execute("alter table " + table + " add column if not exists duplicate_of bigint");
+      jdbcTemplate.execute("alter table " + table + " add column if not exists delivery_count integer");
+      jdbcTemplate.execute("alter table " + table + " add column if not exists last_delivered_at timestamp");
+      createIndexes(table);
+    });
+  }
+
+  private synchronized void drop(String table)
+  {
+    tables.remove(table);
+    ddlTransaction.executeWithoutResult(status -> jdbcTemplate.execute("drop table if exists " + table));
+  }
+
+  private LocalDateTime bucketStart(LocalDateTime time)
+  {
+    long hours = Duration.between(LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC),
+      time.truncatedTo(ChronoUnit.HOURS)).toHours();
+    return LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC).plusHours(hours - Math.floorMod(hours, bucketHours));
+  }
+
+  private static String tableName(LocalDateTime bucketStart)
+  {
+    return (TABLE_PREFIX + bucketStart.format(SUFFIX)).toLowerCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,133 @@
+package com.devtools.requestbin.storage;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import com.devtools.requestbin.dto.CapturedRequestSummary;
+import com.devtools.requestbin.dto.RequestFilter;
+import com.devtools.requestbin.entity.CapturedRequest;
+
+/**
+ * Storage SPI for captured requests
+ * <p>
+ * Requests of a bin form an append-only log ordered by their per-bin sequence number;
+ * the only deletion is trimming a prefix of that log (plus dropping a whole bin, see BinStore),
+ * and the only update is counting collapsed duplicate deliveries.
+ * Summary queries return newest (highest id) first.
+ */
+public interface CapturedRequestStore
+{
+
+  /**
+   * Appends a request, assigning its id and its timestamp unless it carries one (a
+   * request released from a sampling reservoir keeps the time it was received)
+   */
+  CapturedRequest save(CapturedRequest request);
+
+  /**
+   * Inserts requests that already carry their timestamp, in sequence order per bin
+   * <p>
+   * Requests with an id keep it (write-behind from the hot tier, see TieredCapturedRequestStore);
+   * the others get one as save would assign it (bulk import, see ImportService).
+   */
+  void insertAll(List<CapturedRequest> requests);
+
+  /**
+   * Counts one more identical delivery of a stored request (duplicate collapsing)
+   *
+   * @return false when the request is gone or the engine cannot update stored requests
+   */
+  boolean recordRedelivery(Long id, LocalDateTime at);
+
+  Optional<CapturedRequest> findById(Long id);
+
+  /**
+   * All requests of the bin, newest first
+   */
+  List<CapturedRequest> findByBinNewestFirst(Long binId);
+
+  /**
+   * Up to limit requests with a sequence number above afterSequence, oldest first
+   */
+  List<CapturedRequest> findAfterSequence(Long binId, long afterSequence, int limit);
+
+  /**
+   * Passes every request of the bin matching the filter to the action, oldest first,
+   * holding at most fetchSize of them at a time (streaming exports)
+   * <p>
+   * By default pages through findAfterSequence; SQL engines may read a single cursor instead.
+   */
+  default void forEachMatching(Long binId, RequestFilter filter, int fetchSize, Consumer<CapturedRequest> action)
+  {
+    Predicate<CapturedRequest> matching = CapturedRequestMatcher.matching(filter);
+    long afterSequence = 0;
+    List<CapturedRequest> page;
+    do
+    {
+      page = findAfterSequence(binId, afterSequence, fetchSize);
+      for (CapturedRequest request : page)
+      {
+        if (matching.test(request))
+        {
+          action.accept(request);
+        }
+      }
+      if (!page.isEmpty())
+      {
+        afterSequence = page.getLast().getSequence();
+      }
+    }
+    while (page.size() == fetchSize);
+  }
+
+  /**
+   * Sequence numbers and body sizes of the bin's oldest requests
+   */
+  List<SizeRow> findOldestSizes(Long binId, int limit);
+
+  long sumBodySizeUpToSequence(Long binId, long upToSequence);
+
+  Long findMinSequence(Long binId);
+
+  /**
+   * End of the bin's expired prefix: the highest sequence number such that it and every
+   * request before it were captured before the cutoff, or null when the oldest was not
+   * <p>
+   * Timestamps need not follow sequence order (imported requests keep their own), so an
+   * expired request behind a newer one is not part of the prefix.
+   */
+  Long findExpiredPrefixEnd(Long binId, LocalDateTime cutoff);
+
+  /**
+   * Deletes every request of the bin with a sequence number up to upToSequence
+   *
+   * @return number of requests deleted
+   */
+  int deleteUpToSequence(Long binId, long upToSequence);
+
+  List<CapturedRequestSummary> findSummaries(Long binId);
+
+  /**
+   * Summaries matching the filter, optionally only those with an id below the cursor
+   */
+  List<CapturedRequestSummary> findSummaries(Long binId, RequestFilter filter, Long cursor, int limit);
+
+  List<CapturedRequestSummary> findSummariesByIds(Collection<Long> ids);
+
+  /**
+   * Id + body of up to limit requests with an id below beforeId, newest first
+   */
+  List<BodyRow> findBodyChunk(Long binId, long beforeId, int limit);
+
+  record SizeRow(long sequence, int bodySize)
+  {
+  }
+
+  record BodyRow(Long id, String body)
+  {
+  }
+}
@@ -0,0 +1,144 @@
+package com.devtools.requestbin.storage;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Group commit for log appends
+ * <p>
+ * Writers enqueue the channel they appended to and wait on the returned future. A single
+ * thread takes everything queued since its last round and fsyncs each distinct channel
+ * once, so N concurrent captures cost one fsync per touched segment instead of N.
+ */
+@Slf4j
+final class GroupCommitter
+{
+
+  private record Pending(FileChannel channel, CompletableFuture<Void> synced)
+  {
+  }
+
+  private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+  private final Thread thread;
+  private volatile boolean running = true;
+
+  private final AtomicLong fsyncCount = new AtomicLong();
+  private final AtomicLong recordCount = new AtomicLong();
+
+  GroupCommitter(String name)
+  {
+    this.thread = Thread.ofPlatform().name(name).daemon().start(this::run);
+  }
+
+  /**
+   * Completes once everything appended to the channel so far is on disk
+   */
+  CompletableFuture<Void> sync(FileChannel channel)
+  {
+    CompletableFuture<Void> synced = new CompletableFuture<>();
+    if (!running)
+    {
+      synced.completeExceptionally(new IllegalStateException("Log storage is shutting down"));
+      return synced;
+    }
+    queue.add(new Pending(channel, synced));
+    return synced;
+  }
+
+  void shutdown()
+  {
+    running = false;
+    try
+    {
+      thread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+    log.info("Group committer stopped after {} fsyncs for {} records", fsyncCount.get(), recordCount.get());
+  }
+
+  private void run()
+  {
+    List<Pending> batch = new ArrayList<>();
+    while (running || !queue.isEmpty())
+    {
+      try
+      {
+        Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null)
+        {
+          continue;
+        }
+        batch.add(first);
+        queue.drainTo(batch);
+        commit(batch);
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      finally
+      {
+        batch.clear();
+      }
+    }
+  }
+
+  private void commit(List<Pending> batch)
+  {
+    Map<FileChannel, IOException> outcomes = new IdentityHashMap<>();
+    for (Pending pending : batch)
+    {
+      FileChannel channel = pending.channel();
+      if (outcomes.containsKey(channel))
+      {
+        continue;
+      }
+      try
+      {
+        channel.force(false);
+        fsyncCount.incrementAndGet();
+        outcomes.put(channel, null);
+      }
+      catch (ClosedChannelException e)
+      {
+        // Sealed (forced before closing) or deleted in the meantime
+        outcomes.put(channel, null);
+      }
+      catch (IOException e)
+      {
+        log.error("fsync of log segment failed", e);
+        outcomes.put(channel, e);
+      }
+    }
+
+    for (Pending pending : batch)
+    {
+      IOException failure = outcomes.get(pending.channel());
+      if (failure != null)
+      {
+        pending.synced().completeExceptionally(failure);
+      }
+      else
+      {
+        pending.synced().complete(null);
+      }
+    }
+    recordCount.addAndGet(batch.size());
+  }
+}
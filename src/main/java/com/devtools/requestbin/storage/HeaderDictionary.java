@@ -0,0 +1,462 @@
+package com.devtools.requestbin.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.devtools.requestbin.dto.RequestFilter;
+import com.devtools.requestbin.repository.CapturedRequestSpecifications;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Shared dictionary of header names and values, stored as integer codes
+ * <p>
+ * - Captured headers arrive as a JSON object; stored rows hold a code sequence instead:
+ *   ~;name=value;name=value; where each token is #code (base 36) or an escaped literal
+ * - A text gets a code the second time it is seen, so repeated names and values are
+ *   shared while one-off values (request ids, signatures) stay literal
+ * - Codes are assigned on the heap (a short lock, no I/O). Until a transaction that stored
+ *   a code commits, every transaction using it merges it into header_dictionary on its own
+ *   connection, so a row never commits without its codes and a capture never waits for a
+ *   second connection. One instance owns the table; without a database the dictionary
+ *   lives on the heap only
+ * <p>
+ * Rows written before the dictionary existed still hold JSON and are returned unchanged.
+ * Stores that read rows themselves take decodeHeaders: the map holds the dictionary's own
+ * name and value strings, so reading a page of rows adds no copies of shared texts.
+ */
+@Component
+@Slf4j
+public class HeaderDictionary
+{
+
+  private static final char ENCODED = '~';
+  private static final char SEPARATOR = ';';
+  private static final char ASSIGN = '=';
+  private static final char CODE = '#';
+  private static final char ESCAPE = '\\';
+
+  private static final TypeReference<LinkedHashMap<String, String>> HEADERS_TYPE = new TypeReference<>()
+  {
+  };
+
+  private static final ObjectMapper JSON = new ObjectMapper();
+  private final JdbcTemplate jdbcTemplate;
+  private final int maxEntries;
+  private final int maxTextLength;
+
+  private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+  private final Map<String, List<Integer>> codesByLowerText = new ConcurrentHashMap<>();
+  private final Set<String> seenOnce = ConcurrentHashMap.newKeySet();
+  private final Set<Integer> uncommitted = ConcurrentHashMap.newKeySet();
+  private volatile String[] texts = new String[256];
+  private volatile int size;
+
+  private final AtomicLong encodedRows = new AtomicLong();
+  private final AtomicLong jsonChars = new AtomicLong();
+  private final AtomicLong encodedChars = new AtomicLong();
+
+  public HeaderDictionary(
+    ObjectProvider<JdbcTemplate> jdbcTemplate,
+    @Value("${app.headers.dictionary.max-entries:65536}") int maxEntries,
+    @Value("${app.headers.dictionary.max-text-length:256}") int maxTextLength)
+  {
+    this.jdbcTemplate = jdbcTemplate.getIfAvailable();
+    this.maxEntries = maxEntries;
+    this.maxTextLength = maxTextLength;
+  }
+
+  @PostConstruct
+  public void init()
+  {
+    if (jdbcTemplate == null)
+    {
+      return;
+    }
+    jdbcTemplate.execute("create table if not exists header_dictionary (code integer primary key, text varchar("
+      + maxTextLength + ") not null)");
+    load();
+    log.info("Header dictionary loaded with {} entries", size);
+  }
+
+  /**
+   * Stored form of a headers JSON object; anything else (null, already encoded) is returned as is
+   */
+  public String encode(String headersJson)
+  {
+    if (headersJson == null || !headersJson.startsWith("{"))
+    {
+      return headersJson;
+    }
+    Map<String, String> headers;
+    try
+    {
+      headers = JSON.readValue(headersJson, HEADERS_TYPE);
+    }
+    catch (JsonProcessingException e)
+    {
+      return headersJson;
+    }
+
+    StringBuilder encoded = new StringBuilder(headersJson.length() / 2).append(ENCODED).append(SEPARATOR);
+    headers.forEach((name, value) -> {
+      appendToken(encoded, name);
+      encoded.append(ASSIGN);
+      appendToken(encoded, value != null ? value : "");
+      encoded.append(SEPARATOR);
+    });
+
+    encodedRows.incrementAndGet();
+    jsonChars.addAndGet(headersJson.length());
+    encodedChars.addAndGet(encoded.length());
+    return encoded.toString();
+  }
+
+  /**
+   * Headers JSON object of a stored value; JSON written before the dictionary is returned as is
+   */
+  public String decode(String stored)
+  {
+    Map<String, String> headers = decodeHeaders(stored);
+    return headers != null ? toJson(headers) : stored;
+  }
+
+  /**
+   * Headers of an encoded value, coded names and values being the dictionary's canonical
+   * strings; null when the value is not encoded (JSON written before the dictionary, null)
+   */
+  public Map<String, String> decodeHeaders(String stored)
+  {
+    if (stored == null || stored.isEmpty() || stored.charAt(0) != ENCODED)
+    {
+      return null;
+    }
+    return decodeToMap(stored);
+  }
+
+  /**
+   * Headers JSON object of a decoded map
+   */
+  public static String toJson(Map<String, String> headers)
+  {
+    try
+    {
+      return JSON.writeValueAsString(headers);
+    }
+    catch (JsonProcessingException e)
+    {
+      log.error("Error serializing decoded headers", e);
+      return "{}";
+    }
+  }
+
+  /**
+   * Lowercase texts that a header filter looks for in stored headers, or null without a header filter
+   * <p>
+   * Covers rows still holding JSON as well as encoded rows, for every code whose text matches
+   * the filter ignoring case and for the literal form.
+   */
+  public List<String> headerNeedles(RequestFilter filter)
+  {
+    String jsonNeedle = CapturedRequestSpecifications.headerNeedle(filter);
+    if (jsonNeedle == null)
+    {
+      return null;
+    }
+    List<String> needles = new ArrayList<>();
+    needles.add(jsonNeedle);
+
+    List<String> names = tokensIgnoringCase(filter.getHeaderName().toLowerCase());
+    if (filter.getHeaderValue() == null)
+    {
+      names.forEach(name -> needles.add(SEPARATOR + name + ASSIGN));
+      return needles;
+    }
+    List<String> values = tokensIgnoringCase(filter.getHeaderValue().toLowerCase());
+    for (String name : names)
+    {
+      for (String value : values)
+      {
+        needles.add(SEPARATOR + name + ASSIGN + value + SEPARATOR);
+      }
+    }
+    return needles;
+  }
+
+  public Map<String, Object> getStats()
+  {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("entries", size);
+    stats.put("maxEntries", maxEntries);
+    stats.put("candidates", seenOnce.size());
+    stats.put("uncommitted", uncommitted.size());
+    stats.put("encodedRows", encodedRows.get());
+    stats.put("jsonChars", jsonChars.get());
+    stats.put("encodedChars", encodedChars.get());
+    return stats;
+  }
+
+  private Map<String, String> decodeToMap(String stored)
+  {
+    Map<String, String> headers = new LinkedHashMap<>();
+    int[] position = { 2 };
+    while (position[0] < stored.length())
+    {
+      String name = readToken(stored, position, ASSIGN);
+      String value = readToken(stored, position, SEPARATOR);
+      headers.put(name, value);
+    }
+    return headers;
+  }
+
+  /**
+   * Reads one token starting at position[0] up to the unescaped terminator, and moves past it
+   */
+  private String readToken(String stored, int[] position, char terminator)
+  {
+    int start = position[0];
+    if (start < stored.length() && stored.charAt(start) == CODE)
+    {
+      int end = stored.indexOf(terminator, start);
+      end = end < 0 ? stored.length() : end;
+      position[0] = end + 1;
+      return textOf(Integer.parseInt(stored, start + 1, end, Character.MAX_RADIX));
+    }
+
+    StringBuilder literal = new StringBuilder();
+    int i = start;
+    while (i < stored.length() && stored.charAt(i) != terminator)
+    {
+      char c = stored.charAt(i);
+      if (c == ESCAPE && i + 1 < stored.length())
+      {
+        c = stored.charAt(++i);
+      }
+      literal.append(c);
+      i++;
+    }
+    position[0] = i + 1;
+    return literal.toString();
+  }
+
+  private void appendToken(StringBuilder encoded, String text)
+  {
+    int code = codeFor(text);
+    if (code >= 0)
+    {
+      encoded.append(CODE).append(Integer.toString(code, Character.MAX_RADIX));
+    }
+    else
+    {
+      appendLiteral(encoded, text);
+    }
+  }
+
+  private static void appendLiteral(StringBuilder encoded, String text)
+  {
+    for (int i = 0; i < text.length(); i++)
+    {
+      char c = text.charAt(i);
+      if (c == SEPARATOR || c == ASSIGN || c == CODE || c == ESCAPE)
+      {
+        encoded.append(ESCAPE);
+      }
+      encoded.append(c);
+    }
+  }
+
+  /**
+   * Tokens that may stand for lowerText in a stored row: each matching code and the literal
+   */
+  private List<String> tokensIgnoringCase(String lowerText)
+  {
+    List<String> tokens = new ArrayList<>();
+    for (int code : codesByLowerText.getOrDefault(lowerText, List.of()))
+    {
+      tokens.add(CODE + Integer.toString(code, Character.MAX_RADIX));
+    }
+    StringBuilder literal = new StringBuilder();
+    appendLiteral(literal, lowerText);
+    tokens.add(literal.toString());
+    return tokens;
+  }
+
+  /**
+   * Code of text, assigning one on its second sighting; -1 when it stays literal
+   */
+  private int codeFor(String text)
+  {
+    Integer code = codes.get(text);
+    if (code != null)
+    {
+      return uncommitted.contains(code) ? store(code, text) : code;
+    }
+    if (text.length() > maxTextLength || size >= maxEntries)
+    {
+      return -1;
+    }
+    if (seenOnce.add(text))
+    {
+      if (seenOnce.size() > maxEntries)
+      {
+        seenOnce.clear();
+      }
+      return -1;
+    }
+    return assign(text);
+  }
+
+  private int assign(String text)
+  {
+    int code;
+    synchronized (this)
+    {
+      Integer existing = codes.get(text);
+      if (existing != null)
+      {
+        code = existing;
+      }
+      else if (size >= maxEntries)
+      {
+        return -1;
+      }
+      else
+      {
+        code = size;
+        if (jdbcTemplate != null)
+        {
+          uncommitted.add(code);
+        }
+        register(code, text);
+        seenOnce.remove(text);
+      }
+    }
+    return uncommitted.contains(code) ? store(code, text) : code;
+  }
+
+  /**
+   * Writes a code that no committed transaction has stored yet, in the caller's transaction
+   * (once per transaction), or right away without one
+   *
+   * @return the code, or -1 to write the text literally when the write fails
+   */
+  private int store(int code, String text)
+  {
+    CommittingCodes committing = null;
+    if (TransactionSynchronizationManager.isSynchronizationActive())
+    {
+      committing = (CommittingCodes)TransactionSynchronizationManager.getResource(this);
+      if (committing == null)
+      {
+        committing = new CommittingCodes();
+        TransactionSynchronizationManager.bindResource(this, committing);
+        TransactionSynchronizationManager.registerSynchronization(committing);
+      }
+      if (committing.codes.contains(code))
+      {
+        return code;
+      }
+    }
+    try
+    {
+      jdbcTemplate.update("merge into header_dictionary key (code) values (?, ?)", code, text);
+    }
+    catch (DataAccessException e)
+    {
+      log.warn("Could not store header dictionary entry {}: {}", code, e.getMessage());
+      return -1;
+    }
+    if (committing != null)
+    {
+      committing.codes.add(code);
+    }
+    else
+    {
+      uncommitted.remove(code);
+    }
+    return code;
+  }
+
+  private String textOf(int code)
+  {
+    String[] current = texts;
+    String text = code < current.length ? current[code] : null;
+    if (text == null && jdbcTemplate != null)
+    {
+      load();
+      current = texts;
+      text = code < current.length ? current[code] : null;
+    }
+    if (text == null)
+    {
+      log.warn("Unknown header dictionary code {}", code);
+      return "";
+    }
+    return text;
+  }
+
+  private synchronized void load()
+  {
+    jdbcTemplate.query("select code, text from header_dictionary order by code", rs -> {
+      int code = rs.getInt("code");
+      if (code >= size || texts[code] == null)
+      {
+        register(code, rs.getString("text"));
+      }
+    });
+  }
+
+  private synchronized void register(int code, String text)
+  {
+    String[] current = texts;
+    if (code >= current.length)
+    {
+      current = Arrays.copyOf(current, Math.max(code + 1, current.length * 2));
+    }
+    current[code] = text;
+    texts = current;
+    size = Math.max(size, code + 1);
+    codes.put(text, code);
+    codesByLowerText.computeIfAbsent(text.toLowerCase(), key -> new CopyOnWriteArrayList<>()).add(code);
+  }
+
+  /**
+   * Codes a transaction stored; they are committed along with the rows using them
+   */
+  private final class CommittingCodes
+    implements TransactionSynchronization
+  {
+
+    private final Set<Integer> codes = new HashSet<>();
+
+    @Override
+    public void afterCommit()
+    {
+      uncommitted.removeAll(codes);
+    }
+
+    @Override
+    public void afterCompletion(int status)
+    {
+      TransactionSynchronizationManager.unbindResourceIfPossible(HeaderDictionary.this);
+    }
+  }
+}
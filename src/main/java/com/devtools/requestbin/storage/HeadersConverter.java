@@ -0,0 +1,31 @@
+package com.devtools.requestbin.storage;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Stores CapturedRequest.headers as a HeaderDictionary code sequence
+ * <p>
+ * Instantiated by Hibernate through Spring's bean container, so the dictionary is injected.
+ */
+@Converter
+@RequiredArgsConstructor
+public class HeadersConverter
+  implements AttributeConverter<String, String>
+{
+
+  private final HeaderDictionary headerDictionary;
+
+  @Override
+  public String convertToDatabaseColumn(String headersJson)
+  {
+    return headerDictionary.encode(headersJson);
+  }
+
+  @Override
+  public String convertToEntityAttribute(String stored)
+  {
+    return headerDictionary.decode(stored);
+  }
+}
@@ -0,0 +1,252 @@
+package com.devtools.requestbin.storage;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import com.devtools.requestbin.entity.CapturedRequest;
+
+/**
+ * The last K requests of recently active bins, kept as encoded byte arrays
+ * <p>
+ * - Each bin holds a contiguous, newest suffix of its log (at most requestsPerBin records)
+ * - All bins together stay under maxBytes; the least recently used bins are evicted whole
+ * - A bin is "complete" while it holds its entire log (it was filled from sequence 1 and
+ *   never overflowed), so reads past its oldest entry need no database query
+ * <p>
+ * Thread-safe; every operation is short and synchronized on the tier.
+ */
+final class HotTier
+{
+
+  /**
+   * Newest-first matches from the hot tier; complete when no older match can exist elsewhere
+   */
+  record Page(List<CapturedRequest> requests, boolean complete)
+  {
+  }
+
+  private record Entry(long id, long sequence, byte[] record)
+  {
+  }
+
+  private static final class HotBin
+  {
+
+    final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    boolean complete;
+    long bytes;
+
+    HotBin(boolean complete)
+    {
+      this.complete = complete;
+    }
+  }
+
+  private final int requestsPerBin;
+  private final long maxBytes;
+
+  private final LinkedHashMap<Long, HotBin> bins = new LinkedHashMap<>(16, 0.75f, true);
+  private long usedBytes;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  HotTier(int requestsPerBin, long maxBytes)
+  {
+    this.requestsPerBin = Math.max(1, requestsPerBin);
+    this.maxBytes = maxBytes;
+  }
+
+  synchronized void add(CapturedRequest request)
+  {
+    Long binId = request.getBin().getId();
+    HotBin bin = bins.get(binId);
+    if (bin != null && !bin.entries.isEmpty() && request.getSequence() != bin.entries.getLast().sequence() + 1)
+    {
+      // Out of order or with a gap: the bin no longer holds a contiguous suffix
+      remove(binId);
+      bin = null;
+    }
+    if (bin == null)
+    {
+      bin = new HotBin(request.getSequence() == 1);
+      bins.put(binId, bin);
+    }
+
+    byte[] record = LogRecordCodec.encode(request).array();
+    bin.entries.addLast(new Entry(request.getId(), request.getSequence(), record));
+    bin.bytes += record.length;
+    usedBytes += record.length;
+    if (bin.entries.size() > requestsPerBin)
+    {
+      dropOldest(bin);
+      bin.complete = false;
+    }
+
+    Iterator<Map.Entry<Long, HotBin>> eldest = bins.entrySet().iterator();
+    while (usedBytes > maxBytes && eldest.hasNext())
+    {
+      usedBytes -= eldest.next().getValue().bytes;
+      eldest.remove();
+      evictions.incrementAndGet();
+    }
+  }
+
+  /**
+   * Matches with an id below beforeId, newest first, or null when the bin is not hot
+   */
+  synchronized Page newestFirst(Long binId, Predicate<CapturedRequest> filter, long beforeId, int limit,
+    boolean withBody)
+  {
+    HotBin bin = lookup(binId);
+    if (bin == null)
+    {
+      return null;
+    }
+    List<CapturedRequest> result = new ArrayList<>();
+    Iterator<Entry> newest = bin.entries.descendingIterator();
+    while (newest.hasNext() && result.size() < limit)
+    {
+      Entry entry = newest.next();
+      if (entry.id() < beforeId)
+      {
+        CapturedRequest request = LogRecordCodec.decode(LogRecordCodec.payloadOf(entry.record()), binId, withBody);
+        if (filter.test(request))
+        {
+          result.add(request);
+        }
+      }
+    }
+    return new Page(result, result.size() >= limit || bin.complete);
+  }
+
+  /**
+   * Up to limit requests above afterSequence, oldest first, or null unless the tier has all of them
+   */
+  synchronized List<CapturedRequest> afterSequence(Long binId, long afterSequence, int limit)
+  {
+    HotBin bin = lookup(binId);
+    if (bin == null || (!bin.complete && (bin.entries.isEmpty() || bin.entries.getFirst().sequence() > afterSequence + 1)))
+    {
+      return null;
+    }
+    List<CapturedRequest> result = new ArrayList<>();
+    for (Entry entry : bin.entries)
+    {
+      if (result.size() >= limit)
+      {
+        break;
+      }
+      if (entry.sequence() > afterSequence)
+      {
+        result.add(LogRecordCodec.decode(LogRecordCodec.payloadOf(entry.record()), binId, true));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Re-encodes a hot request with one more collapsed delivery
+   */
+  synchronized void recordRedelivery(long id, LocalDateTime at)
+  {
+    Long binId = RequestIds.binOf(id);
+    HotBin bin = bins.get(binId);
+    if (bin == null)
+    {
+      return;
+    }
+    List<Entry> entries = new ArrayList<>(bin.entries);
+    for (int i = 0; i < entries.size(); i++)
+    {
+      Entry entry = entries.get(i);
+      if (entry.id() == id)
+      {
+        CapturedRequest request = LogRecordCodec.decode(LogRecordCodec.payloadOf(entry.record()), binId, true);
+        request.recordRedelivery(at);
+        byte[] record = LogRecordCodec.encode(request).array();
+        bin.bytes += record.length - entry.record().length;
+        usedBytes += record.length - entry.record().length;
+        entries.set(i, new Entry(id, entry.sequence(), record));
+        bin.entries.clear();
+        bin.entries.addAll(entries);
+        return;
+      }
+    }
+  }
+
+  synchronized Optional<CapturedRequest> findById(long id)
+  {
+    Long binId = RequestIds.binOf(id);
+    HotBin bin = bins.get(binId);
+    if (bin != null)
+    {
+      for (Entry entry : bin.entries)
+      {
+        if (entry.id() == id)
+        {
+          hits.incrementAndGet();
+          return Optional.of(LogRecordCodec.decode(LogRecordCodec.payloadOf(entry.record()), binId, true));
+        }
+      }
+    }
+    misses.incrementAndGet();
+    return Optional.empty();
+  }
+
+  /**
+   * Drops trimmed requests; the bin stays complete relative to what is left
+   */
+  synchronized void removeUpTo(Long binId, long upToSequence)
+  {
+    HotBin bin = bins.get(binId);
+    while (bin != null && !bin.entries.isEmpty() && bin.entries.getFirst().sequence() <= upToSequence)
+    {
+      dropOldest(bin);
+    }
+  }
+
+  synchronized void remove(Long binId)
+  {
+    HotBin bin = bins.remove(binId);
+    if (bin != null)
+    {
+      usedBytes -= bin.bytes;
+    }
+  }
+
+  synchronized Map<String, Object> getStats()
+  {
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("bins", bins.size());
+    stats.put("usedBytes", usedBytes);
+    stats.put("maxBytes", maxBytes);
+    stats.put("hits", hits.get());
+    stats.put("misses", misses.get());
+    stats.put("evictions", evictions.get());
+    return stats;
+  }
+
+  private HotBin lookup(Long binId)
+  {
+    HotBin bin = bins.get(binId);
+    (bin != null ? hits : misses).incrementAndGet();
+    return bin;
+  }
+
+  private void dropOldest(HotBin bin)
+  {
+    Entry oldest = bin.entries.removeFirst();
+    bin.bytes -= oldest.record().length;
+    usedBytes -= oldest.record().length;
+  }
+}
@@ -0,0 +1,33 @@
+package com.devtools.requestbin.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Puts the hot tier in front of whichever storage engine the active profile selected
+ * <p>
+ * Enabled with app.storage.hot-tier.enabled=true. The engine bean is injected as the
+ * delegate (a @Bean method is never a candidate for its own parameters), and every
+ * service gets the tiered store as the primary CapturedRequestStore.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.storage.hot-tier.enabled", havingValue = "true")
+public class HotTierConfig
+{
+
+  @Bean
+  @Primary
+  public TieredCapturedRequestStore tieredCapturedRequestStore(
+    CapturedRequestStore engine,
+    BinStore binStore,
+    TransactionTemplate transactionTemplate,
+    @Value("${app.storage.hot-tier.requests-per-bin:50}") int requestsPerBin,
+    @Value("${app.storage.hot-tier.max-bytes:67108864}") long maxBytes)
+  {
+    return new TieredCapturedRequestStore(engine, binStore, transactionTemplate, requestsPerBin, maxBytes);
+  }
+}
@@ -0,0 +1,664 @@
+package com.devtools.requestbin.storage;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import com.devtools.requestbin.dto.CapturedRequestSummary;
+import com.devtools.requestbin.dto.RequestFilter;
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+import com.devtools.requestbin.entity.DuplicateMode;
+import com.devtools.requestbin.entity.RetentionMode;
+import com.devtools.requestbin.exception.StorageQuotaExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Heap-only storage engine for ephemeral environments ("memory" profile)
+ * <p>
+ * Layout:
+ * - Each bin owns an append-only array of its requests in sequence order; trims advance
+ *   the array's head, and lookups by sequence or id are binary searches on positions
+ * - A global id -> request map serves /api/bins/{id}/requests/{requestId}
+ * - Deleting or expiring a bin drops its array in one step
+ * <p>
+ * Memory is bounded by the number of bins (app.storage.memory.max-bins), each bin's
+ * maxRequests/maxBytes and the server-wide byte quota.
+ * <p>
+ * Transactions (see InMemoryTransactionManager):
+ * - Writes are visible as soon as they are made (read uncommitted), and each one registers
+ *   an undo step; a rollback runs the transaction's steps newest first
+ * - A bin read in a transaction is snapshotted first, so a rollback also restores the
+ *   counters and settings changed on it; a deleted bin's requests are only dropped on commit
+ * - Bin locks are held until the transaction completes; lockForUpdate outside one fails
+ *   like a JPA pessimistic lock does
+ */
+@Component
+@Profile("memory")
+@Slf4j
+public class InMemoryStorage
+  implements BinStore, CapturedRequestStore
+{
+
+  private final AtomicLong binIds = new AtomicLong();
+  private final AtomicLong requestIds = new AtomicLong();
+
+  private final Map<Long, Bin> binsById = new ConcurrentHashMap<>();
+  private final Map<String, Bin> binsByUrl = new ConcurrentHashMap<>();
+  private final Map<Long, RequestLog> logs = new ConcurrentHashMap<>();
+  private final Map<Long, CapturedRequest> requestsById = new ConcurrentHashMap<>();
+
+  private final int maxBins;
+
+  public InMemoryStorage(@Value("${app.storage.memory.max-bins:10000}") int maxBins)
+  {
+    this.maxBins = maxBins;
+    log.info("Using in-memory storage (max {} bins)", maxBins);
+  }
+
+  // ---------------------------------------------------------------- bins
+
+  @Override
+  public Bin save(Bin bin)
+  {
+    if (bin.getId() == null)
+    {
+      if (binsById.size() >= maxBins)
+      {
+        throw new StorageQuotaExceededException("In-memory storage is full. Maximum " + maxBins + " bins.");
+      }
+      bin.setId(binIds.incrementAndGet());
+      bin.setCreatedAt(LocalDateTime.now());
+      bin.setCurrentRequestCount(0);
+      bin.setCaptureSequence(0L);
+      bin.setCurrentBytes(0L);
+      if (bin.getRetentionMode() == null)
+      {
+        bin.setRetentionMode(RetentionMode.REJECT);
+      }
+      if (bin.getDuplicateMode() == null)
+      {
+        bin.setDuplicateMode(DuplicateMode.KEEP);
+      }
+      logs.put(bin.getId(), new RequestLog());
+      binsByUrl.put(bin.getUniqueUrl(), bin);
+      binsById.put(bin.getId(), bin);
+      onRollback(() -> {
+        binsById.remove(bin.getId());
+        binsByUrl.remove(bin.getUniqueUrl());
+        logs.remove(bin.getId());
+      });
+    }
+    else
+    {
+      snapshot(bin);
+    }
+    return bin;
+  }
+
+  @Override
+  public Optional<Bin> findBinById(Long id)
+  {
+    return Optional.ofNullable(snapshot(binsById.get(id)));
+  }
+
+  @Override
+  public Optional<Bin> findByUniqueUrl(String uniqueUrl)
+  {
+    return Optional.ofNullable(snapshot(binsByUrl.get(uniqueUrl)));
+  }
+
+  @Override
+  public boolean existsByUniqueUrl(String uniqueUrl)
+  {
+    return binsByUrl.containsKey(uniqueUrl);
+  }
+
+  @Override
+  public List<Bin> findAll()
+  {
+    return new ArrayList<>(binsById.values());
+  }
+
+  @Override
+  public List<Bin> findAgeLimitedActiveAt(LocalDateTime now)
+  {
+    return binsById.values().stream()
+      .filter(bin -> bin.getMaxAgeMinutes() != null && bin.getExpiresAt().isAfter(now))
+      .toList();
+  }
+
+  @Override
+  public void delete(Bin bin)
+  {
+    Bin removedBin = binsById.remove(bin.getId());
+    binsByUrl.remove(bin.getUniqueUrl());
+    RequestLog removed = logs.remove(bin.getId());
+    if (removedBin == null)
+    {
+      return;
+    }
+    onRollback(() -> {
+      binsById.put(removedBin.getId(), removedBin);
+      binsByUrl.put(removedBin.getUniqueUrl(), removedBin);
+      if (removed != null)
+      {
+        logs.put(removedBin.getId(), removed);
+      }
+    });
+    if (removed != null)
+    {
+      afterCommit(() -> removed.clear().forEach(request -> requestsById.remove(request.getId())));
+    }
+  }
+
+  @Override
+  public void deleteAll(Collection<Bin> bins)
+  {
+    bins.forEach(this::delete);
+  }
+
+  @Override
+  public long count()
+  {
+    return binsById.size();
+  }
+
+  @Override
+  public long sumCurrentBytes()
+  {
+    return binsById.values().stream().mapToLong(Bin::getCurrentBytes).sum();
+  }
+
+  /**
+   * Takes the bin's write lock until the current transaction completes
+   *
+   * @throws IllegalStateException outside a transaction, where the lock could not be held
+   */
+  @Override
+  public void lockForUpdate(Bin bin)
+  {
+    if (!TransactionSynchronizationManager.isSynchronizationActive())
+    {
+      throw new IllegalStateException("Locking bin " + bin.getId() + " requires a transaction");
+    }
+    RequestLog requestLog = logs.get(bin.getId());
+    if (requestLog == null || requestLog.writeLock.isHeldByCurrentThread())
+    {
+      return;
+    }
+    requestLog.writeLock.lock();
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+    {
+      @Override
+      public void afterCompletion(int status)
+      {
+        requestLog.writeLock.unlock();
+      }
+    });
+  }
+
+  // ---------------------------------------------------------------- captured requests
+
+  @Override
+  public CapturedRequest save(CapturedRequest request)
+  {
+    RequestLog requestLog = logs.get(request.getBin().getId());
+    if (requestLog == null)
+    {
+      throw new IllegalStateException("Bin " + request.getBin().getId() + " does not exist");
+    }
+    if (request.getId() == null)
+    {
+      request.setId(requestIds.incrementAndGet());
+      if (request.getTimestamp() == null)
+      {
+        request.setTimestamp(LocalDateTime.now());
+      }
+      append(requestLog, request);
+    }
+    return request;
+  }
+
+  @Override
+  public void insertAll(List<CapturedRequest> requests)
+  {
+    for (CapturedRequest request : requests)
+    {
+      RequestLog requestLog = logs.get(request.getBin().getId());
+      if (requestLog != null)
+      {
+        if (request.getId() == null)
+        {
+          request.setId(requestIds.incrementAndGet());
+        }
+        append(requestLog, request);
+      }
+    }
+  }
+
+  private void append(RequestLog requestLog, CapturedRequest request)
+  {
+    requestLog.append(request);
+    requestsById.put(request.getId(), request);
+    onRollback(() -> {
+      requestLog.remove(request);
+      requestsById.remove(request.getId());
+    });
+  }
+
+  @Override
+  public boolean recordRedelivery(Long id, LocalDateTime at)
+  {
+    CapturedRequest request = requestsById.get(id);
+    if (request == null)
+    {
+      return false;
+    }
+    synchronized (logOf(request.getBin().getId()))
+    {
+      Integer deliveryCount = request.getDeliveryCount();
+      LocalDateTime lastDeliveredAt = request.getLastDeliveredAt();
+      request.recordRedelivery(at);
+      onRollback(() -> {
+        synchronized (logOf(request.getBin().getId()))
+        {
+          request.setDeliveryCount(deliveryCount);
+          request.setLastDeliveredAt(lastDeliveredAt);
+        }
+      });
+    }
+    return true;
+  }
+
+  @Override
+  public Optional<CapturedRequest> findById(Long id)
+  {
+    return Optional.ofNullable(requestsById.get(id));
+  }
+
+  @Override
+  public List<CapturedRequest> findByBinNewestFirst(Long binId)
+  {
+    return logOf(binId).newestFirst(request -> true, Long.MAX_VALUE, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public List<CapturedRequest> findAfterSequence(Long binId, long afterSequence, int limit)
+  {
+    return logOf(binId).afterSequence(afterSequence, limit);
+  }
+
+  @Override
+  public List<SizeRow> findOldestSizes(Long binId, int limit)
+  {
+    return logOf(binId).afterSequence(Long.MIN_VALUE, limit).stream()
+      .map(request -> new SizeRow(request.getSequence(), CapturedRequestMatcher.sizeOf(request)))
+      .toList();
+  }
+
+  @Override
+  public long sumBodySizeUpToSequence(Long binId, long upToSequence)
+  {
+    return logOf(binId).sumBodySizeUpTo(upToSequence);
+  }
+
+  @Override
+  public Long findMinSequence(Long binId)
+  {
+    return logOf(binId).minSequence();
+  }
+
+  @Override
+  public Long findExpiredPrefixEnd(Long binId, LocalDateTime cutoff)
+  {
+    return logOf(binId).expiredPrefixEnd(cutoff);
+  }
+
+  @Override
+  public int deleteUpToSequence(Long binId, long upToSequence)
+  {
+    RequestLog requestLog = logOf(binId);
+    List<CapturedRequest> removed = requestLog.removeUpTo(upToSequence);
+    removed.forEach(request -> requestsById.remove(request.getId()));
+    if (!removed.isEmpty())
+    {
+      onRollback(() -> {
+        requestLog.restoreHead(removed);
+        removed.forEach(request -> requestsById.put(request.getId(), request));
+      });
+    }
+    return removed.size();
+  }
+
+  @Override
+  public List<CapturedRequestSummary> findSummaries(Long binId)
+  {
+    return logOf(binId).newestFirst(request -> true, Long.MAX_VALUE, Integer.MAX_VALUE).stream()
+      .map(CapturedRequestMatcher::toSummary)
+      .toList();
+  }
+
+  @Override
+  public List<CapturedRequestSummary> findSummaries(Long binId, RequestFilter filter, Long cursor, int limit)
+  {
+    long beforeId = cursor != null ? cursor : Long.MAX_VALUE;
+    return logOf(binId).newestFirst(CapturedRequestMatcher.matching(filter), beforeId, limit).stream()
+      .map(CapturedRequestMatcher::toSummary)
+      .toList();
+  }
+
+  @Override
+  public List<CapturedRequestSummary> findSummariesByIds(Collection<Long> ids)
+  {
+    return ids.stream()
+      .map(requestsById::get)
+      .filter(Objects::nonNull)
+      .sorted(Comparator.comparing(CapturedRequest::getId).reversed())
+      .map(CapturedRequestMatcher::toSummary)
+      .toList();
+  }
+
+  @Override
+  public List<BodyRow> findBodyChunk(Long binId, long beforeId, int limit)
+  {
+    return logOf(binId).newestFirst(request -> true, beforeId, limit).stream()
+      .map(request -> new BodyRow(request.getId(), request.getBody()))
+      .toList();
+  }
+
+  private RequestLog logOf(Long binId)
+  {
+    RequestLog requestLog = logs.get(binId);
+    return requestLog != null ? requestLog : RequestLog.EMPTY;
+  }
+
+  // ---------------------------------------------------------------- transactions
+
+  /**
+   * Keeps a copy of the bin to restore if the current transaction rolls back (once per transaction)
+   */
+  private Bin snapshot(Bin bin)
+  {
+    UndoLog undoLog = bin != null ? undoLog() : null;
+    if (undoLog != null && !undoLog.snapshots.containsKey(bin))
+    {
+      Bin copy = new Bin();
+      BeanUtils.copyProperties(bin, copy);
+      undoLog.snapshots.put(bin, copy);
+      undoLog.steps.addFirst(() -> BeanUtils.copyProperties(copy, bin));
+    }
+    return bin;
+  }
+
+  private void onRollback(Runnable step)
+  {
+    UndoLog undoLog = undoLog();
+    if (undoLog != null)
+    {
+      undoLog.steps.addFirst(step);
+    }
+  }
+
+  private static void afterCommit(Runnable action)
+  {
+    if (!TransactionSynchronizationManager.isSynchronizationActive())
+    {
+      action.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+    {
+      @Override
+      public void afterCommit()
+      {
+        action.run();
+      }
+    });
+  }
+
+  /**
+   * The current transaction's undo log, or null outside a transaction
+   */
+  private UndoLog undoLog()
+  {
+    if (!TransactionSynchronizationManager.isSynchronizationActive())
+    {
+      return null;
+    }
+    UndoLog undoLog = (UndoLog)TransactionSynchronizationManager.getResource(this);
+    if (undoLog == null)
+    {
+      UndoLog created = new UndoLog();
+      TransactionSynchronizationManager.bindResource(this, created);
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+      {
+        @Override
+        public void suspend()
+        {
+          TransactionSynchronizationManager.unbindResource(InMemoryStorage.this);
+        }
+
+        @Override
+        public void resume()
+        {
+          TransactionSynchronizationManager.bindResource(InMemoryStorage.this, created);
+        }
+
+        @Override
+        public void afterCompletion(int status)
+        {
+          TransactionSynchronizationManager.unbindResourceIfPossible(InMemoryStorage.this);
+          if (status != STATUS_COMMITTED)
+          {
+            created.steps.forEach(Runnable::run);
+          }
+        }
+      });
+      undoLog = created;
+    }
+    return undoLog;
+  }
+
+  /**
+   * Undo steps of one transaction, newest first, and the bins it has snapshotted
+   */
+  private static final class UndoLog
+  {
+
+    private final Deque<Runnable> steps = new ArrayDeque<>();
+    private final Map<Bin, Bin> snapshots = new IdentityHashMap<>();
+  }
+
+  /**
+   * One bin's requests in sequence (and therefore id) order
+   * <p>
+   * Live entries occupy [head, tail); trimming only moves head, and the array is
+   * compacted once more than half of it is dead.
+   */
+  private static final class RequestLog
+  {
+
+    static final RequestLog EMPTY = new RequestLog();
+
+    final ReentrantLock writeLock = new ReentrantLock();
+
+    private CapturedRequest[] entries = new CapturedRequest[16];
+    private int head;
+    private int tail;
+
+    synchronized void append(CapturedRequest request)
+    {
+      if (tail == entries.length)
+      {
+        int live = tail - head;
+        CapturedRequest[] target = live * 2 > entries.length ? new CapturedRequest[entries.length * 2] : entries;
+        System.arraycopy(entries, head, target, 0, live);
+        if (target == entries)
+        {
+          Arrays.fill(entries, live, tail, null);
+        }
+        entries = target;
+        head = 0;
+        tail = live;
+      }
+      entries[tail++] = request;
+    }
+
+    synchronized List<CapturedRequest> afterSequence(long afterSequence, int limit)
+    {
+      List<CapturedRequest> result = new ArrayList<>();
+      for (int i = firstAboveSequence(afterSequence); i < tail && result.size() < limit; i++)
+      {
+        result.add(entries[i]);
+      }
+      return result;
+    }
+
+    /**
+     * Newest first, only ids below beforeId, stopping after limit matches
+     */
+    synchronized List<CapturedRequest> newestFirst(Predicate<CapturedRequest> filter, long beforeId, int limit)
+    {
+      List<CapturedRequest> result = new ArrayList<>();
+      for (int i = firstAtOrAboveId(beforeId) - 1; i >= head && result.size() < limit; i--)
+      {
+        if (filter.test(entries[i]))
+        {
+          result.add(entries[i]);
+        }
+      }
+      return result;
+    }
+
+    synchronized long sumBodySizeUpTo(long upToSequence)
+    {
+      long sum = 0;
+      for (int i = head; i < tail && entries[i].getSequence() <= upToSequence; i++)
+      {
+        sum += CapturedRequestMatcher.sizeOf(entries[i]);
+      }
+      return sum;
+    }
+
+    synchronized Long minSequence()
+    {
+      return head < tail ? entries[head].getSequence() : null;
+    }
+
+    synchronized Long expiredPrefixEnd(LocalDateTime cutoff)
+    {
+      Long result = null;
+      for (int i = head; i < tail && entries[i].getTimestamp().isBefore(cutoff); i++)
+      {
+        result = entries[i].getSequence();
+      }
+      return result;
+    }
+
+    synchronized List<CapturedRequest> removeUpTo(long upToSequence)
+    {
+      int end = firstAboveSequence(upToSequence);
+      List<CapturedRequest> removed = new ArrayList<>(Arrays.asList(entries).subList(head, end));
+      Arrays.fill(entries, head, end, null);
+      head = end;
+      return removed;
+    }
+
+    synchronized List<CapturedRequest> clear()
+    {
+      return removeUpTo(Long.MAX_VALUE);
+    }
+
+    /**
+     * Takes one request out of the live range (a rolled-back append)
+     */
+    synchronized void remove(CapturedRequest request)
+    {
+      int index = firstAboveSequence(request.getSequence() - 1);
+      if (index < tail && entries[index] == request)
+      {
+        System.arraycopy(entries, index + 1, entries, index, tail - index - 1);
+        entries[--tail] = null;
+      }
+    }
+
+    /**
+     * Puts trimmed requests back in front of the live range (a rolled-back trim)
+     */
+    synchronized void restoreHead(List<CapturedRequest> removed)
+    {
+      if (removed.size() > head)
+      {
+        int live = tail - head;
+        CapturedRequest[] target = new CapturedRequest[Math.max(entries.length, (removed.size() + live) * 2)];
+        System.arraycopy(entries, head, target, removed.size(), live);
+        entries = target;
+        head = removed.size();
+        tail = head + live;
+      }
+      head -= removed.size();
+      for (int i = 0; i < removed.size(); i++)
+      {
+        entries[head + i] = removed.get(i);
+      }
+    }
+
+    private int firstAboveSequence(long sequence)
+    {
+      int low = head;
+      int high = tail;
+      while (low < high)
+      {
+        int mid = (low + high) >>> 1;
+        if (entries[mid].getSequence() <= sequence)
+        {
+          low = mid + 1;
+        }
+        else
+        {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    private int firstAtOrAboveId(long id)
+    {
+      int low = head;
+      int high = tail;
+      while (low < high)
+      {
+        int mid = (low + high) >>> 1;
+        if (entries[mid].getId() < id)
+        {
+          low = mid + 1;
+        }
+        else
+        {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+}
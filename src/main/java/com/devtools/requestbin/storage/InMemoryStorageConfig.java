@@ -0,0 +1,22 @@
+package com.devtools.requestbin.storage;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Wiring for the "memory" profile, which runs without a DataSource or JPA
+ * (see application-memory.properties)
+ */
+@Configuration
+@Profile("memory")
+public class InMemoryStorageConfig
+{
+
+  @Bean
+  public PlatformTransactionManager transactionManager()
+  {
+    return new InMemoryTransactionManager();
+  }
+}
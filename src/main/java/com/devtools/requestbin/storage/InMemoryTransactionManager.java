@@ -0,0 +1,56 @@
+package com.devtools.requestbin.storage;
+
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Transaction manager for the in-memory storage engine
+ * <p>
+ * There is no resource to commit or roll back; it only demarcates transactions so that
+ * synchronizations keep working: bin locks, after-commit events, budget and quota releases,
+ * and the storage's undo log, which a rollback replays (see InMemoryStorage).
+ */
+public class InMemoryTransactionManager
+  extends AbstractPlatformTransactionManager
+{
+
+  @Override
+  protected Object doGetTransaction()
+  {
+    return new Object();
+  }
+
+  @Override
+  protected boolean isExistingTransaction(Object transaction)
+  {
+    return TransactionSynchronizationManager.isActualTransactionActive();
+  }
+
+  @Override
+  protected void doBegin(Object transaction, TransactionDefinition definition)
+  {
+  }
+
+  @Override
+  protected Object doSuspend(Object transaction)
+  {
+    return transaction;
+  }
+
+  @Override
+  protected void doResume(Object transaction, Object suspendedResources)
+  {
+  }
+
+  @Override
+  protected void doCommit(DefaultTransactionStatus status)
+  {
+  }
+
+  @Override
+  protected void doRollback(DefaultTransactionStatus status)
+  {
+  }
+}
@@ -0,0 +1,91 @@
+package com.devtools.requestbin.storage;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.repository.BinRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Default BinStore, backed by Spring Data JPA
+ */
+@Component
+@Profile("!memory")
+@RequiredArgsConstructor
+public class JpaBinStore
+  implements BinStore
+{
+
+  private final BinRepository binRepository;
+
+  @Override
+  public Bin save(Bin bin)
+  {
+    return binRepository.save(bin);
+  }
+
+  @Override
+  public Optional<Bin> findBinById(Long id)
+  {
+    return binRepository.findById(id);
+  }
+
+  @Override
+  public Optional<Bin> findByUniqueUrl(String uniqueUrl)
+  {
+    return binRepository.findByUniqueUrl(uniqueUrl);
+  }
+
+  @Override
+  public boolean existsByUniqueUrl(String uniqueUrl)
+  {
+    return binRepository.existsByUniqueUrl(uniqueUrl);
+  }
+
+  @Override
+  public List<Bin> findAll()
+  {
+    return binRepository.findAll();
+  }
+
+  @Override
+  public List<Bin> findAgeLimitedActiveAt(LocalDateTime now)
+  {
+    return binRepository.findByMaxAgeMinutesIsNotNullAndExpiresAtAfter(now);
+  }
+
+  @Override
+  public void delete(Bin bin)
+  {
+    binRepository.delete(bin);
+  }
+
+  @Override
+  public void deleteAll(Collection<Bin> bins)
+  {
+    binRepository.deleteAll(bins);
+  }
+
+  @Override
+  public long count()
+  {
+    return binRepository.count();
+  }
+
+  @Override
+  public long sumCurrentBytes()
+  {
+    return binRepository.sumCurrentBytes();
+  }
+
+  @Override
+  public void lockForUpdate(Bin bin)
+  {
+    binRepository.lockForUpdate(bin);
+  }
+}
@@ -0,0 +1,272 @@
+package com.devtools.requestbin.storage;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import com.devtools.requestbin.dto.CapturedRequestSummary;
+import com.devtools.requestbin.dto.RequestFilter;
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+import com.devtools.requestbin.repository.CapturedRequestRepository;
+import com.devtools.requestbin.repository.CapturedRequestSpecifications;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Default CapturedRequestStore, backed by Spring Data JPA
+ */
+@Component
+@Profile("!memory & !log & !partitioned")
+@RequiredArgsConstructor
+public class JpaCapturedRequestStore
+  implements CapturedRequestStore
+{
+
+  private static final String COLUMNS = "bin_id, sequence, method, headers, body, query_params, body_size, "
+    + "body_preview, ip_address, timestamp, duplicate_of, delivery_count, last_delivered_at";
+  private static final String PARAMETERS = "?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?";
+
+  private final CapturedRequestRepository requestRepository;
+  private final JdbcTemplate jdbcTemplate;
+  private final HeaderDictionary headerDictionary;
+
+  @Override
+  public CapturedRequest save(CapturedRequest request)
+  {
+    return requestRepository.save(request);
+  }
+
+  /**
+   * Plain JDBC batches, since the entity's identity generator would replace the given ids;
+   * requests without one get theirs from the identity column, read back as generated keys
+   */
+  @Override
+  public void insertAll(List<CapturedRequest> requests)
+  {
+    List<CapturedRequest> withIds = requests.stream().filter(request -> request.getId() != null).toList();
+    List<CapturedRequest> withoutIds = requests.stream().filter(request -> request.getId() == null).toList();
+
+    if (!withIds.isEmpty())
+    {
+      jdbcTemplate.batchUpdate("insert into captured_requests (id, " + COLUMNS + ") values (?, " + PARAMETERS + ")",
+        withIds, withIds.size(), (ps, request) -> {
+          ps.setLong(1, request.getId());
+          bind(ps, 2, request);
+        });
+    }
+    if (!withoutIds.isEmpty())
+    {
+      jdbcTemplate.execute((ConnectionCallback<Void>)connection -> {
+        try (PreparedStatement ps = connection.prepareStatement(
+          "insert into captured_requests (" + COLUMNS + ") values (" + PARAMETERS + ")", new String[] { "id" }))
+        {
+          for (CapturedRequest request : withoutIds)
+          {
+            bind(ps, 1, request);
+            ps.addBatch();
+          }
+          ps.executeBatch();
+          try (ResultSet keys = ps.getGeneratedKeys())
+          {
+            for (int i = 0; i < withoutIds.size() && keys.next(); i++)
+            {
+              withoutIds.get(i).setId(keys.getLong(1));
+            }
+          }
+        }
+        return null;
+      });
+    }
+  }
+
+  /**
+   * Binds every column but the id, starting at parameter index first
+   */
+  private void bind(PreparedStatement ps, int first, CapturedRequest request)
+    throws SQLException
+  {
+    ps.setLong(first, request.getBin().getId());
+    ps.setLong(first + 1, request.getSequence());
+    ps.setString(first + 2, request.getMethod());
+    ps.setString(first + 3, headerDictionary.encode(request.getHeaders()));
+    ps.setString(first + 4, request.getBody());
+    ps.setString(first + 5, request.getQueryParams());
+    ps.setObject(first + 6, request.getBodySize());
+    ps.setString(first + 7, request.getBodyPreview());
+    ps.setString(first + 8, request.getIpAddress());
+    ps.setTimestamp(first + 9, Timestamp.valueOf(request.getTimestamp()));
+    ps.setObject(first + 10, request.getDuplicateOf());
+    ps.setObject(first + 11, request.getDeliveryCount());
+    ps.setTimestamp(first + 12, request.getLastDeliveredAt() != null ? Timestamp.valueOf(request.getLastDeliveredAt()) : null);
+  }
+
+  private CapturedRequest mapRequest(ResultSet rs)
+    throws SQLException
+  {
+    String headers = rs.getString("headers");
+    Map<String, String> headerMap = headerDictionary.decodeHeaders(headers);
+    return CapturedRequest.builder()
+      .id(rs.getLong("id"))
+      .bin(Bin.builder().id(rs.getLong("bin_id")).build())
+      .sequence(rs.getLong("sequence"))
+      .method(rs.getString("method"))
+      .headers(headerMap == null ? headers : null)
+      .headerMap(headerMap)
+      .body(rs.getString("body"))
+      .queryParams(rs.getString("query_params"))
+      .bodySize((Integer)rs.getObject("body_size"))
+      .bodyPreview(rs.getString("body_preview"))
+      .ipAddress(rs.getString("ip_address"))
+      .timestamp(rs.getTimestamp("timestamp").toLocalDateTime())
+      .duplicateOf((Long)rs.getObject("duplicate_of"))
+      .deliveryCount((Integer)rs.getObject("delivery_count"))
+      .lastDeliveredAt(rs.getTimestamp("last_delivered_at") != null
+        ? rs.getTimestamp("last_delivered_at").toLocalDateTime()
+        : null)
+      .build();
+  }
+
+  @Override
+  public boolean recordRedelivery(Long id, LocalDateTime at)
+  {
+    return requestRepository.incrementDeliveryCount(id, at) > 0;
+  }
+
+  @Override
+  public Optional<CapturedRequest> findById(Long id)
+  {
+    return requestRepository.findById(id);
+  }
+
+  @Override
+  public List<CapturedRequest> findByBinNewestFirst(Long binId)
+  {
+    return requestRepository.findByBinIdOrderByTimestampDesc(binId);
+  }
+
+  @Override
+  public List<CapturedRequest> findAfterSequence(Long binId, long afterSequence, int limit)
+  {
+    return requestRepository.findByBinIdAndSequenceGreaterThanOrderBySequenceAsc(binId, afterSequence, Limit.of(limit));
+  }
+
+  /**
+   * One forward-only JDBC cursor over the bin, fetchSize rows per round trip; rows are mapped
+   * without the persistence context, which would otherwise keep every exported entity
+   */
+  @Override
+  public void forEachMatching(Long binId, RequestFilter filter, int fetchSize, Consumer<CapturedRequest> action)
+  {
+    StringBuilder sql = new StringBuilder("select id, " + COLUMNS + " from captured_requests where bin_id = ?");
+    List<Object> args = new ArrayList<>();
+    args.add(binId);
+    if (filter.getMethod() != null && !filter.getMethod().isBlank())
+    {
+      sql.append(" and method = ?");
+      args.add(filter.getMethod().toUpperCase());
+    }
+    if (filter.getFrom() != null)
+    {
+      sql.append(" and timestamp >= ?");
+      args.add(Timestamp.valueOf(filter.getFrom()));
+    }
+    if (filter.getTo() != null)
+    {
+      sql.append(" and timestamp < ?");
+      args.add(Timestamp.valueOf(filter.getTo()));
+    }
+    sql.append(" order by sequence asc");
+
+    // Header, address and size conditions are checked on the decoded rows
+    Predicate<CapturedRequest> matching = CapturedRequestMatcher.matching(filter);
+    jdbcTemplate.query(connection -> {
+      PreparedStatement ps = connection.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY,
+        ResultSet.CONCUR_READ_ONLY);
+      ps.setFetchSize(fetchSize);
+      for (int i = 0; i < args.size(); i++)
+      {
+        ps.setObject(i + 1, args.get(i));
+      }
+      return ps;
+    }, rs -> {
+      CapturedRequest request = mapRequest(rs);
+      if (matching.test(request))
+      {
+        action.accept(request);
+      }
+    });
+  }
+
+  @Override
+  public List<SizeRow> findOldestSizes(Long binId, int limit)
+  {
+    return requestRepository.findByBinIdOrderBySequenceAsc(binId, Limit.of(limit)).stream()
+      .map(row -> new SizeRow(row.getSequence(), row.getBodySize() != null ? row.getBodySize() : 0))
+      .toList();
+  }
+
+  @Override
+  public long sumBodySizeUpToSequence(Long binId, long upToSequence)
+  {
+    return requestRepository.sumBodySizeUpToSequence(binId, upToSequence);
+  }
+
+  @Override
+  public Long findMinSequence(Long binId)
+  {
+    return requestRepository.findMinSequence(binId);
+  }
+
+  @Override
+  public Long findExpiredPrefixEnd(Long binId, LocalDateTime cutoff)
+  {
+    return requestRepository.findExpiredPrefixEnd(binId, cutoff);
+  }
+
+  @Override
+  public int deleteUpToSequence(Long binId, long upToSequence)
+  {
+    return requestRepository.deleteByBinIdUpToSequence(binId, upToSequence);
+  }
+
+  @Override
+  public List<CapturedRequestSummary> findSummaries(Long binId)
+  {
+    return requestRepository.findSummariesByBinId(binId);
+  }
+
+  @Override
+  public List<CapturedRequestSummary> findSummaries(Long binId, RequestFilter filter, Long cursor, int limit)
+  {
+    return requestRepository.findSummaries(CapturedRequestSpecifications.matching(binId, filter, cursor,
+      headerDictionary.headerNeedles(filter)), limit);
+  }
+
+  @Override
+  public List<CapturedRequestSummary> findSummariesByIds(Collection<Long> ids)
+  {
+    return requestRepository.findSummariesByIdIn(ids);
+  }
+
+  @Override
+  public List<BodyRow> findBodyChunk(Long binId, long beforeId, int limit)
+  {
+    return requestRepository.findBodyChunk(binId, beforeId, Limit.of(limit)).stream()
+      .map(row -> new BodyRow(row.getId(), row.getBody()))
+      .toList();
+  }
+}
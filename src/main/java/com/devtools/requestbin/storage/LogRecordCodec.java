@@ -0,0 +1,191 @@
+package com.devtools.requestbin.storage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32;
+
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+
+/**
+ * Binary layout of one captured request in a log segment, also used as the compact
+ * in-memory form of the hot tier
+ * <p>
+ * Record: [int payloadLength][int crc32(payload)][payload][int payloadLength]
+ * The trailing length lets segments be read backwards (newest first).
+ * <p>
+ * Payload: fixed fields first, so sizes, sequences and timestamps can be read without
+ * decoding any strings:
+ * - long id, long sequence, long epochSecond (UTC), int nano, int bodySize
+ * - method, ipAddress, headers, queryParams, body, bodyPreview as [int length][UTF-8], -1 for null
+ * - long duplicateOf, int deliveryCount, long lastDeliveredEpochSecond, int nano (0/-1 for null);
+ *   absent in records written before duplicate detection
+ */
+final class LogRecordCodec
+{
+
+  static final int HEADER_BYTES = 8;
+  static final int TRAILER_BYTES = 4;
+
+  private static final int ID = 0;
+  private static final int SEQUENCE = 8;
+  private static final int EPOCH_SECOND = 16;
+  private static final int NANO = 24;
+  private static final int BODY_SIZE = 28;
+  private static final int STRINGS = 32;
+  private static final int DUPLICATE_FIELDS = 24;
+
+  private LogRecordCodec()
+  {
+  }
+
+  static ByteBuffer encode(CapturedRequest request)
+  {
+    byte[][] strings = {
+      utf8(request.getMethod()),
+      utf8(request.getIpAddress()),
+      utf8(request.getHeaders()),
+      utf8(request.getQueryParams()),
+      utf8(request.getBody()),
+      utf8(request.getBodyPreview())
+    };
+
+    int payloadLength = STRINGS + DUPLICATE_FIELDS;
+    for (byte[] string : strings)
+    {
+      payloadLength += 4 + (string != null ? string.length : 0);
+    }
+
+    ByteBuffer record = ByteBuffer.allocate(recordLength(payloadLength));
+    record.putInt(payloadLength).putInt(0);
+    record.putLong(request.getId())
+      .putLong(request.getSequence())
+      .putLong(request.getTimestamp().toEpochSecond(ZoneOffset.UTC))
+      .putInt(request.getTimestamp().getNano())
+      .putInt(request.getBodySize() != null ? request.getBodySize() : 0);
+    for (byte[] string : strings)
+    {
+      if (string == null)
+      {
+        record.putInt(-1);
+      }
+      else
+      {
+        record.putInt(string.length).put(string);
+      }
+    }
+    LocalDateTime lastDeliveredAt = request.getLastDeliveredAt();
+    record.putLong(request.getDuplicateOf() != null ? request.getDuplicateOf() : 0)
+      .putInt(request.getDeliveryCount() != null ? request.getDeliveryCount() : 0)
+      .putLong(lastDeliveredAt != null ? lastDeliveredAt.toEpochSecond(ZoneOffset.UTC) : 0)
+      .putInt(lastDeliveredAt != null ? lastDeliveredAt.getNano() : -1);
+    record.putInt(payloadLength);
+
+    CRC32 crc = new CRC32();
+    crc.update(record.array(), HEADER_BYTES, payloadLength);
+    record.putInt(4, (int)crc.getValue());
+    return record.flip();
+  }
+
+  /**
+   * Payload of a record held as a byte array (hot tier)
+   */
+  static ByteBuffer payloadOf(byte[] record)
+  {
+    return ByteBuffer.wrap(record, HEADER_BYTES, record.length - HEADER_BYTES - TRAILER_BYTES).slice();
+  }
+
+  static int recordLength(int payloadLength)
+  {
+    return HEADER_BYTES + payloadLength + TRAILER_BYTES;
+  }
+
+  static boolean checksumMatches(ByteBuffer payload, int expectedCrc)
+  {
+    CRC32 crc = new CRC32();
+    crc.update(payload.duplicate());
+    return (int)crc.getValue() == expectedCrc;
+  }
+
+  static long id(ByteBuffer payload)
+  {
+    return payload.getLong(ID);
+  }
+
+  static long sequence(ByteBuffer payload)
+  {
+    return payload.getLong(SEQUENCE);
+  }
+
+  static LocalDateTime timestamp(ByteBuffer payload)
+  {
+    return LocalDateTime.ofEpochSecond(payload.getLong(EPOCH_SECOND), payload.getInt(NANO), ZoneOffset.UTC);
+  }
+
+  static int bodySize(ByteBuffer payload)
+  {
+    return payload.getInt(BODY_SIZE);
+  }
+
+  /**
+   * Decodes the request; the bin is a reference carrying only its id
+   *
+   * @param withBody false skips decoding the body (summaries and filters never need it)
+   */
+  static CapturedRequest decode(ByteBuffer payload, Long binId, boolean withBody)
+  {
+    ByteBuffer strings = payload.duplicate().position(STRINGS);
+    CapturedRequest request = CapturedRequest.builder()
+      .id(id(payload))
+      .bin(Bin.builder().id(binId).build())
+      .sequence(sequence(payload))
+      .timestamp(timestamp(payload))
+      .bodySize(bodySize(payload))
+      .method(readString(strings))
+      .ipAddress(readString(strings))
+      .headers(readString(strings))
+      .queryParams(readString(strings))
+      .body(withBody ? readString(strings) : skipString(strings))
+      .bodyPreview(readString(strings))
+      .build();
+    if (strings.remaining() >= DUPLICATE_FIELDS)
+    {
+      long duplicateOf = strings.getLong();
+      int deliveryCount = strings.getInt();
+      long lastDeliveredSecond = strings.getLong();
+      int lastDeliveredNano = strings.getInt();
+      request.setDuplicateOf(duplicateOf != 0 ? duplicateOf : null);
+      request.setDeliveryCount(deliveryCount != 0 ? deliveryCount : null);
+      request.setLastDeliveredAt(lastDeliveredNano >= 0
+        ? LocalDateTime.ofEpochSecond(lastDeliveredSecond, lastDeliveredNano, ZoneOffset.UTC)
+        : null);
+    }
+    return request;
+  }
+
+  private static String readString(ByteBuffer buffer)
+  {
+    int length = buffer.getInt();
+    if (length < 0)
+    {
+      return null;
+    }
+    String value = StandardCharsets.UTF_8.decode(buffer.slice(buffer.position(), length)).toString();
+    buffer.position(buffer.position() + length);
+    return value;
+  }
+
+  private static String skipString(ByteBuffer buffer)
+  {
+    int length = buffer.getInt();
+    buffer.position(buffer.position() + Math.max(0, length));
+    return null;
+  }
+
+  private static byte[] utf8(String value)
+  {
+    return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+  }
+}
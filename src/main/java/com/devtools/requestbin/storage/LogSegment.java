@@ -0,0 +1,468 @@
+package com.devtools.requestbin.storage;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * One append-only segment file of a bin's request log
+ * <p>
+ * - Records are appended sequentially; every indexInterval-th record starts an index block.
+ *   Each block's entry holds its first (sequence, offset) for seeking, the body bytes of
+ *   the segment before it and the newest timestamp inside it, so size sums and expiry
+ *   scans read at most one partial block at each end instead of every record
+ * - When the segment is full it is sealed: the sparse index is written next to it
+ *   (.idx), the file is memory-mapped read-only for all further reads and its file
+ *   handle is closed, so a bin keeps only its tail segment open
+ * - A segment without .idx is the tail of the log; on startup it is scanned and
+ *   truncated at the first torn or corrupt record
+ * <p>
+ * Not thread-safe; guarded by the owning bin log.
+ */
+@Slf4j
+final class LogSegment
+{
+
+  static final String LOG_SUFFIX = ".log";
+  static final String INDEX_SUFFIX = ".idx";
+
+  private final Path file;
+  private final long firstSequence;
+  private final int indexInterval;
+  private final FileChannel channel;
+
+  private MappedByteBuffer mapped;
+  private long size;
+  private long lastSequence;
+  private int recordCount;
+
+  private long[] indexSequences = new long[16];
+  private long[] indexOffsets = new long[16];
+  private long[] indexBodyBytes = new long[16];
+  private long[] indexMaxSeconds = new long[16];
+  private int indexSize;
+  private long bodyBytes;
+
+  private LogSegment(Path file, long firstSequence, int indexInterval, FileChannel channel)
+  {
+    this.file = file;
+    this.firstSequence = firstSequence;
+    this.indexInterval = indexInterval;
+    this.channel = channel;
+    this.lastSequence = firstSequence - 1;
+  }
+
+  static LogSegment create(Path dir, long firstSequence, int indexInterval)
+    throws IOException
+  {
+    Path file = dir.resolve(fileName(firstSequence));
+    FileChannel channel = FileChannel.open(file,
+      StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    return new LogSegment(file, firstSequence, indexInterval, channel);
+  }
+
+  /**
+   * Opens an existing segment: sealed ones load their index, the tail is scanned and repaired
+   */
+  static LogSegment open(Path file, int indexInterval)
+    throws IOException
+  {
+    String name = file.getFileName().toString();
+    long firstSequence = Long.parseLong(name.substring(0, name.length() - LOG_SUFFIX.length()));
+    Path indexFile = indexFile(file);
+
+    if (Files.exists(indexFile))
+    {
+      LogSegment segment = new LogSegment(file, firstSequence, indexInterval,
+        FileChannel.open(file, StandardOpenOption.READ));
+      segment.loadIndex(indexFile);
+      segment.mapped = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+      segment.channel.close();
+      return segment;
+    }
+
+    LogSegment segment = new LogSegment(file, firstSequence, indexInterval,
+      FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    segment.recover();
+    return segment;
+  }
+
+  static String fileName(long firstSequence)
+  {
+    return String.format("%020d%s", firstSequence, LOG_SUFFIX);
+  }
+
+  /**
+   * Writes the record at the end of the file (not yet fsynced, see GroupCommitter)
+   */
+  void append(ByteBuffer record)
+    throws IOException
+  {
+    ByteBuffer payload = record.slice(record.position() + LogRecordCodec.HEADER_BYTES,
+      record.getInt(record.position()));
+    long offset = size;
+    while (record.hasRemaining())
+    {
+      offset += channel.write(record, offset);
+    }
+    track(payload, size);
+    size = offset;
+  }
+
+  /**
+   * Persists the sparse index and switches the segment to memory-mapped reads
+   */
+  void seal()
+    throws IOException
+  {
+    if (isSealed())
+    {
+      return;
+    }
+    channel.force(true);
+
+    Path indexFile = indexFile(file);
+    Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp)))
+    {
+      out.writeLong(size);
+      out.writeLong(lastSequence);
+      out.writeInt(recordCount);
+      out.writeLong(bodyBytes);
+      out.writeInt(indexSize);
+      for (int i = 0; i < indexSize; i++)
+      {
+        out.writeLong(indexSequences[i]);
+        out.writeLong(indexOffsets[i]);
+        out.writeLong(indexBodyBytes[i]);
+        out.writeLong(indexMaxSeconds[i]);
+      }
+    }
+    Files.move(tmp, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    channel.close();
+  }
+
+  /**
+   * Cuts the segment at the offset and rebuilds the in-memory state from what is left
+   */
+  void truncate(long offset)
+    throws IOException
+  {
+    channel.truncate(offset);
+    channel.force(true);
+    size = 0;
+    lastSequence = firstSequence - 1;
+    recordCount = 0;
+    indexSize = 0;
+    bodyBytes = 0;
+    recover();
+  }
+
+  boolean isSealed()
+  {
+    return mapped != null;
+  }
+
+  boolean isEmpty()
+  {
+    return recordCount == 0;
+  }
+
+  long getFirstSequence()
+  {
+    return firstSequence;
+  }
+
+  long getLastSequence()
+  {
+    return lastSequence;
+  }
+
+  long getSize()
+  {
+    return size;
+  }
+
+  /**
+   * Channel of the tail segment, for fsync; already closed (and forced) once sealed
+   */
+  FileChannel getChannel()
+  {
+    return channel;
+  }
+
+  /**
+   * Offset of the last indexed record with a sequence at or below the given one
+   */
+  long seek(long sequence)
+  {
+    int block = blockOf(indexSequences, sequence);
+    return block >= 0 ? indexOffsets[block] : 0;
+  }
+
+  /**
+   * Body bytes of the records before the offset (a record boundary)
+   */
+  long bodyBytesBefore(long offset)
+  {
+    if (offset >= size)
+    {
+      return bodyBytes;
+    }
+    int block = blockOf(indexOffsets, offset);
+    if (block < 0)
+    {
+      return 0;
+    }
+    long sum = indexBodyBytes[block];
+    for (long at = indexOffsets[block]; at < offset; )
+    {
+      ByteBuffer payload = payloadAt(at);
+      sum += LogRecordCodec.bodySize(payload);
+      at = nextOffset(at, payload);
+    }
+    return sum;
+  }
+
+  /**
+   * Offset of the first record at or after fromOffset (a record boundary) that is not older
+   * than the cutoff, or size if there is none; blocks that are older throughout are skipped unread
+   */
+  long offsetNotBefore(long fromOffset, LocalDateTime cutoff)
+  {
+    long cutoffSecond = cutoff.toEpochSecond(ZoneOffset.UTC);
+    long offset = fromOffset;
+    for (int block = Math.max(0, blockOf(indexOffsets, fromOffset)); block < indexSize && offset < size; block++)
+    {
+      long blockEnd = block + 1 < indexSize ? indexOffsets[block + 1] : size;
+      if (indexMaxSeconds[block] < cutoffSecond)
+      {
+        offset = Math.max(offset, blockEnd);
+        continue;
+      }
+      while (offset < blockEnd)
+      {
+        ByteBuffer payload = payloadAt(offset);
+        if (!LogRecordCodec.timestamp(payload).isBefore(cutoff))
+        {
+          return offset;
+        }
+        offset = nextOffset(offset, payload);
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Offset of the first record with a sequence at or above the given one (size if none)
+   */
+  long offsetOf(long sequence)
+  {
+    long offset = seek(sequence);
+    while (offset < size)
+    {
+      ByteBuffer payload = payloadAt(offset);
+      if (LogRecordCodec.sequence(payload) >= sequence)
+      {
+        return offset;
+      }
+      offset = nextOffset(offset, payload);
+    }
+    return size;
+  }
+
+  /**
+   * Payload of the record starting at the offset
+   */
+  ByteBuffer payloadAt(long offset)
+  {
+    return read(offset + LogRecordCodec.HEADER_BYTES, readInt(offset));
+  }
+
+  /**
+   * Offset of the record that ends right before endOffset (for backward scans)
+   */
+  long previousOffset(long endOffset)
+  {
+    int payloadLength = readInt(endOffset - LogRecordCodec.TRAILER_BYTES);
+    return endOffset - LogRecordCodec.recordLength(payloadLength);
+  }
+
+  long nextOffset(long offset, ByteBuffer payload)
+  {
+    return offset + LogRecordCodec.recordLength(payload.limit());
+  }
+
+  void close()
+  {
+    try
+    {
+      if (channel.isOpen())
+      {
+        channel.close();
+      }
+    }
+    catch (IOException e)
+    {
+      log.warn("Could not close log segment {}", file, e);
+    }
+    mapped = null;
+  }
+
+  void delete()
+    throws IOException
+  {
+    close();
+    Files.deleteIfExists(indexFile(file));
+    Files.deleteIfExists(file);
+  }
+
+  private int readInt(long offset)
+  {
+    return read(offset, 4).getInt(0);
+  }
+
+  private ByteBuffer read(long offset, int length)
+  {
+    if (mapped != null)
+    {
+      return mapped.slice((int)offset, length);
+    }
+    try
+    {
+      ByteBuffer buffer = ByteBuffer.allocate(length);
+      while (buffer.hasRemaining())
+      {
+        if (channel.read(buffer, offset + buffer.position()) < 0)
+        {
+          throw new IOException("Unexpected end of log segment " + file);
+        }
+      }
+      return buffer.flip();
+    }
+    catch (IOException e)
+    {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void loadIndex(Path indexFile)
+    throws IOException
+  {
+    try (DataInputStream in = new DataInputStream(Files.newInputStream(indexFile)))
+    {
+      size = in.readLong();
+      lastSequence = in.readLong();
+      recordCount = in.readInt();
+      bodyBytes = in.readLong();
+      indexSize = in.readInt();
+      indexSequences = new long[Math.max(16, indexSize)];
+      indexOffsets = new long[Math.max(16, indexSize)];
+      indexBodyBytes = new long[Math.max(16, indexSize)];
+      indexMaxSeconds = new long[Math.max(16, indexSize)];
+      for (int i = 0; i < indexSize; i++)
+      {
+        indexSequences[i] = in.readLong();
+        indexOffsets[i] = in.readLong();
+        indexBodyBytes[i] = in.readLong();
+        indexMaxSeconds[i] = in.readLong();
+      }
+    }
+  }
+
+  /**
+   * Scans the tail segment, keeping every intact record and truncating the rest
+   */
+  private void recover()
+    throws IOException
+  {
+    long fileSize = channel.size();
+    long offset = 0;
+    while (offset + LogRecordCodec.HEADER_BYTES + LogRecordCodec.TRAILER_BYTES <= fileSize)
+    {
+      ByteBuffer header = ByteBuffer.allocate(LogRecordCodec.HEADER_BYTES);
+      channel.read(header, offset);
+      int payloadLength = header.getInt(0);
+      long end = offset + (payloadLength >= 0 ? LogRecordCodec.recordLength(payloadLength) : 0);
+      if (payloadLength <= 0 || end > fileSize)
+      {
+        break;
+      }
+
+      ByteBuffer payload = read(offset + LogRecordCodec.HEADER_BYTES, payloadLength);
+      if (!LogRecordCodec.checksumMatches(payload, header.getInt(4))
+        || readInt(end - LogRecordCodec.TRAILER_BYTES) != payloadLength)
+      {
+        break;
+      }
+
+      track(payload, offset);
+      offset = end;
+    }
+
+    size = offset;
+    if (offset < fileSize)
+    {
+      log.warn("Truncating torn tail of {} at offset {} ({} bytes dropped)", file, offset, fileSize - offset);
+      channel.truncate(offset);
+      channel.force(true);
+    }
+  }
+
+  /**
+   * Counts the record written at the offset, starting a new index block every indexInterval records
+   */
+  private void track(ByteBuffer payload, long offset)
+  {
+    if (recordCount % indexInterval == 0)
+    {
+      if (indexSize == indexSequences.length)
+      {
+        indexSequences = Arrays.copyOf(indexSequences, indexSize * 2);
+        indexOffsets = Arrays.copyOf(indexOffsets, indexSize * 2);
+        indexBodyBytes = Arrays.copyOf(indexBodyBytes, indexSize * 2);
+        indexMaxSeconds = Arrays.copyOf(indexMaxSeconds, indexSize * 2);
+      }
+      indexSequences[indexSize] = LogRecordCodec.sequence(payload);
+      indexOffsets[indexSize] = offset;
+      indexBodyBytes[indexSize] = bodyBytes;
+      indexMaxSeconds[indexSize] = Long.MIN_VALUE;
+      indexSize++;
+    }
+    long second = LogRecordCodec.timestamp(payload).toEpochSecond(ZoneOffset.UTC);
+    indexMaxSeconds[indexSize - 1] = Math.max(indexMaxSeconds[indexSize - 1], second);
+    bodyBytes += LogRecordCodec.bodySize(payload);
+    lastSequence = LogRecordCodec.sequence(payload);
+    recordCount++;
+  }
+
+  /**
+   * Index block whose first entry is the last one at or below the key (-1 if before the first)
+   */
+  private int blockOf(long[] keys, long key)
+  {
+    int position = Arrays.binarySearch(keys, 0, indexSize, key);
+    return position >= 0 ? position : -position - 2;
+  }
+
+  private static Path indexFile(Path file)
+  {
+    String name = file.getFileName().toString();
+    return file.resolveSibling(name.substring(0, name.length() - LOG_SUFFIX.length()) + INDEX_SUFFIX);
+  }
+}
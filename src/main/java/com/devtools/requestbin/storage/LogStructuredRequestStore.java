@@ -0,0 +1,648 @@
+package com.devtools.requestbin.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.devtools.requestbin.dto.CapturedRequestSummary;
+import com.devtools.requestbin.dto.RequestFilter;
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+import com.devtools.requestbin.event.BinRemovedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Append-only, log-structured storage for captured requests ("log" profile)
+ * <p>
+ * Layout (see BinLog, LogSegment, LogRecordCodec):
+ * - Every bin has a directory of segment files under app.storage.log.dir, named after
+ *   their first sequence number, with a sparse sequence -> offset index per segment
+ * - Sealed segments are memory-mapped; only the tail segment of a bin is written
+ * - At most app.storage.log.max-open-bins logs stay open; the least recently used idle ones
+ *   are closed (file handle and mappings released) and reopened on their next access
+ * - Request ids encode bin and sequence (RequestIds), so an id locates its record directly
+ * <p>
+ * Durability and consistency with the bins table (which stays in the database):
+ * - A transaction's appends are buffered and written when it commits, fsynced by the group
+ *   committer before the database commit (so an acknowledged capture is on disk) and
+ *   published to readers after it; a rolled-back transaction writes nothing
+ * - If the database commit fails after the write, the records are cut off the tail again;
+ *   after a crash in between, records above the bin's committed capture sequence are
+ *   discarded when the log is first opened. Neither was ever visible, and sequences only
+ *   grow (CaptureShardService.nextSequence), so a request id never names two requests
+ * - Trims raise a persisted watermark; whole segments below it are deleted, as is the
+ *   bin's directory once the bin is deleted or expires
+ * - Size sums and age trims skip whole index blocks (see LogSegment) instead of reading
+ *   every record from the start of the log
+ */
+@Component
+@Profile("log")
+@Slf4j
+public class LogStructuredRequestStore
+  implements CapturedRequestStore
+{
+
+  private final Path dir;
+  private final int segmentBytes;
+  private final int indexInterval;
+  private final int maxOpenBins;
+  private final BinStore binStore;
+
+  private final Map<Long, BinLog> logs = new ConcurrentHashMap<>();
+  private final Set<Long> recovered = ConcurrentHashMap.newKeySet();
+  private final GroupCommitter groupCommitter = new GroupCommitter("log-group-commit");
+
+  public LogStructuredRequestStore(
+    @Value("${app.storage.log.dir:./data/log}") String dir,
+    @Value("${app.storage.log.segment-bytes:16777216}") int segmentBytes,
+    @Value("${app.storage.log.index-interval:64}") int indexInterval,
+    @Value("${app.storage.log.max-open-bins:1000}") int maxOpenBins,
+    BinStore binStore)
+    throws IOException
+  {
+    this.dir = Path.of(dir);
+    this.segmentBytes = segmentBytes;
+    this.indexInterval = Math.max(1, indexInterval);
+    this.maxOpenBins = Math.max(1, maxOpenBins);
+    this.binStore = binStore;
+    Files.createDirectories(this.dir);
+    log.info("Using log-structured request storage in {} ({} byte segments)", this.dir.toAbsolutePath(), segmentBytes);
+  }
+
+  /**
+   * Removes directories of bins that were deleted while the server was down
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void removeOrphanedLogs()
+    throws IOException
+  {
+    Set<String> binIds = binStore.findAll().stream()
+      .map(bin -> bin.getId().toString())
+      .collect(Collectors.toSet());
+    List<Path> orphans;
+    try (Stream<Path> listing = Files.list(dir))
+    {
+      orphans = listing
+        .filter(Files::isDirectory)
+        .filter(binDir -> !binIds.contains(binDir.getFileName().toString()))
+        .toList();
+    }
+    for (Path orphan : orphans)
+    {
+      BinLog.deleteDirectory(orphan);
+    }
+    if (!orphans.isEmpty())
+    {
+      log.info("Removed {} orphaned bin logs", orphans.size());
+    }
+  }
+
+  @TransactionalEventListener
+  public void onBinRemoved(BinRemovedEvent event)
+  {
+    try
+    {
+      BinLog removed = logs.remove(event.getBinId());
+      if (removed != null)
+      {
+        removed.deleteAll();
+      }
+      else
+      {
+        BinLog.deleteDirectory(binDir(event.getBinId()));
+      }
+    }
+    catch (IOException e)
+    {
+      log.warn("Could not delete log of bin {}", event.getBinId(), e);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown()
+  {
+    groupCommitter.shutdown();
+    logs.values().forEach(BinLog::close);
+  }
+
+  @Override
+  public CapturedRequest save(CapturedRequest request)
+  {
+    if (request.getId() != null)
+    {
+      return request;
+    }
+    request.setId(RequestIds.of(request.getBin().getId(), request.getSequence()));
+    if (request.getTimestamp() == null)
+    {
+      request.setTimestamp(LocalDateTime.now());
+    }
+    return append(request);
+  }
+
+  @Override
+  public void insertAll(List<CapturedRequest> requests)
+  {
+    for (CapturedRequest request : requests)
+    {
+      if (request.getId() == null)
+      {
+        request.setId(RequestIds.of(request.getBin().getId(), request.getSequence()));
+      }
+      append(request);
+    }
+  }
+
+  /**
+   * Records are immutable once appended, so duplicates cannot be collapsed (they are flagged instead)
+   */
+  @Override
+  public boolean recordRedelivery(Long id, LocalDateTime at)
+  {
+    return false;
+  }
+
+  @Override
+  public Optional<CapturedRequest> findById(Long id)
+  {
+    Long binId = RequestIds.binOf(id);
+    long sequence = RequestIds.sequenceOf(id);
+    List<CapturedRequest> found = new ArrayList<>(1);
+    visit(binId, binLog -> binLog.forward(sequence - 1, payload -> {
+      if (LogRecordCodec.sequence(payload) == sequence)
+      {
+        found.add(LogRecordCodec.decode(payload, binId, true));
+      }
+      return false;
+    }));
+    return found.stream().findFirst();
+  }
+
+  @Override
+  public List<CapturedRequest> findByBinNewestFirst(Long binId)
+  {
+    return newestFirst(binId, Long.MAX_VALUE, request -> true, Integer.MAX_VALUE, true);
+  }
+
+  @Override
+  public List<CapturedRequest> findAfterSequence(Long binId, long afterSequence, int limit)
+  {
+    List<CapturedRequest> result = new ArrayList<>();
+    if (limit > 0)
+    {
+      visit(binId, binLog -> binLog.forward(afterSequence, payload -> {
+        result.add(LogRecordCodec.decode(payload, binId, true));
+        return result.size() < limit;
+      }));
+    }
+    return result;
+  }
+
+  @Override
+  public List<SizeRow> findOldestSizes(Long binId, int limit)
+  {
+    List<SizeRow> result = new ArrayList<>();
+    if (limit > 0)
+    {
+      visit(binId, binLog -> binLog.forward(Long.MIN_VALUE, payload -> {
+        result.add(new SizeRow(LogRecordCodec.sequence(payload), LogRecordCodec.bodySize(payload)));
+        return result.size() < limit;
+      }));
+    }
+    return result;
+  }
+
+  @Override
+  public long sumBodySizeUpToSequence(Long binId, long upToSequence)
+  {
+    Long sum = read(binId, binLog -> binLog.sumBodySizeUpTo(upToSequence));
+    return sum != null ? sum : 0;
+  }
+
+  @Override
+  public Long findMinSequence(Long binId)
+  {
+    List<SizeRow> oldest = findOldestSizes(binId, 1);
+    return oldest.isEmpty() ? null : oldest.getFirst().sequence();
+  }
+
+  @Override
+  public Long findExpiredPrefixEnd(Long binId, LocalDateTime cutoff)
+  {
+    return read(binId, binLog -> binLog.expiredPrefixEnd(cutoff));
+  }
+
+  @Override
+  public int deleteUpToSequence(Long binId, long upToSequence)
+  {
+    Integer count = write(binId, false, transaction -> {
+      BinLog binLog = transaction.binLog;
+      long previous = binLog.getWatermark();
+      int trimmed = binLog.trimUpTo(upToSequence);
+      if (trimmed > 0)
+      {
+        transaction.onRollback(() -> binLog.restoreWatermark(previous));
+        transaction.trimmed = true;
+      }
+      return trimmed;
+    });
+    return count != null ? count : 0;
+  }
+
+  @Override
+  public List<CapturedRequestSummary> findSummaries(Long binId)
+  {
+    return newestFirst(binId, Long.MAX_VALUE, request -> true, Integer.MAX_VALUE, false).stream()
+      .map(CapturedRequestMatcher::toSummary)
+      .toList();
+  }
+
+  @Override
+  public List<CapturedRequestSummary> findSummaries(Long binId, RequestFilter filter, Long cursor, int limit)
+  {
+    long beforeSequence = cursor != null ? RequestIds.sequenceBefore(binId, cursor) : Long.MAX_VALUE;
+    return newestFirst(binId, beforeSequence, CapturedRequestMatcher.matching(filter), limit, false).stream()
+      .map(CapturedRequestMatcher::toSummary)
+      .toList();
+  }
+
+  @Override
+  public List<CapturedRequestSummary> findSummariesByIds(Collection<Long> ids)
+  {
+    return ids.stream()
+      .map(this::findById)
+      .flatMap(Optional::stream)
+      .sorted(Comparator.comparing(CapturedRequest::getId).reversed())
+      .map(CapturedRequestMatcher::toSummary)
+      .toList();
+  }
+
+  @Override
+  public List<BodyRow> findBodyChunk(Long binId, long beforeId, int limit)
+  {
+    return newestFirst(binId, RequestIds.sequenceBefore(binId, beforeId), request -> true, limit, true).stream()
+      .map(request -> new BodyRow(request.getId(), request.getBody()))
+      .toList();
+  }
+
+  private List<CapturedRequest> newestFirst(Long binId, long beforeSequence, Predicate<CapturedRequest> filter,
+    int limit, boolean withBody)
+  {
+    List<CapturedRequest> result = new ArrayList<>();
+    if (limit > 0)
+    {
+      visit(binId, binLog -> binLog.backward(beforeSequence, payload -> {
+        CapturedRequest request = LogRecordCodec.decode(payload, binId, withBody);
+        if (filter.test(request))
+        {
+          result.add(request);
+        }
+        return result.size() < limit;
+      }));
+    }
+    return result;
+  }
+
+  /**
+   * Queues the request in the transaction's appends; it is written when the transaction commits
+   */
+  private CapturedRequest append(CapturedRequest request)
+  {
+    return write(request.getBin().getId(), true, transaction -> {
+      transaction.appends.add(new BinLog.Append(request.getSequence(), LogRecordCodec.encode(request)));
+      return request;
+    });
+  }
+
+  /**
+   * Runs a read on the bin's log (null when it has none), opening it again if it was
+   * closed as idle in the meantime
+   */
+  private <T> T read(Long binId, Function<BinLog, T> reader)
+  {
+    while (true)
+    {
+      BinLog binLog = logOf(binId, false);
+      if (binLog == null)
+      {
+        return null;
+      }
+      synchronized (binLog)
+      {
+        if (!binLog.isClosed())
+        {
+          return reader.apply(binLog);
+        }
+      }
+      if (logs.get(binId) == binLog)
+      {
+        // Closed by shutdown rather than as idle
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Like read, for visitors that collect their own results
+   */
+  private void visit(Long binId, Consumer<BinLog> visitor)
+  {
+    read(binId, binLog -> {
+      visitor.accept(binLog);
+      return null;
+    });
+  }
+
+  /**
+   * Takes the write lock of the bin's open log (null when it has none)
+   */
+  private BinLog lock(Long binId, boolean create)
+  {
+    while (true)
+    {
+      BinLog binLog = logOf(binId, create);
+      if (binLog == null)
+      {
+        return null;
+      }
+      binLog.writeLock.lock();
+      if (!binLog.isClosed())
+      {
+        return binLog;
+      }
+      binLog.writeLock.unlock();
+      if (logs.get(binId) == binLog)
+      {
+        throw new IllegalStateException("Log storage is shutting down");
+      }
+    }
+  }
+
+  private BinLog logOf(Long binId, boolean create)
+  {
+    boolean[] opened = {false};
+    BinLog binLog = logs.computeIfAbsent(binId, id -> {
+      BinLog created = open(id, create);
+      opened[0] = created != null;
+      return created;
+    });
+    if (binLog != null)
+    {
+      binLog.lastAccess = System.nanoTime();
+    }
+    if (opened[0] && logs.size() > maxOpenBins)
+    {
+      closeIdleLogs();
+    }
+    return binLog;
+  }
+
+  /**
+   * Opens the bin's log; the first time after startup, also discards what a crash left
+   * uncommitted
+   */
+  private BinLog open(Long binId, boolean create)
+  {
+    Path binDir = binDir(binId);
+    if (!create && !Files.isDirectory(binDir))
+    {
+      return null;
+    }
+    try
+    {
+      BinLog binLog = BinLog.open(binDir, segmentBytes, indexInterval);
+      if (recovered.add(binId))
+      {
+        Long committed = binStore.findBinById(binId).map(Bin::getCaptureSequence).orElse(null);
+        if (committed != null)
+        {
+          binLog.discardAfter(committed);
+        }
+      }
+      return binLog;
+    }
+    catch (IOException e)
+    {
+      throw new UncheckedIOException("Could not open log of bin " + binId, e);
+    }
+  }
+
+  /**
+   * Closes the least recently used logs beyond max-open-bins; logs being written are skipped
+   */
+  private synchronized void closeIdleLogs()
+  {
+    int excess = logs.size() - maxOpenBins;
+    List<Map.Entry<Long, BinLog>> idle = logs.entrySet().stream()
+      .sorted(Comparator.comparingLong(entry -> entry.getValue().lastAccess))
+      .toList();
+    for (Map.Entry<Long, BinLog> entry : idle)
+    {
+      if (excess <= 0)
+      {
+        return;
+      }
+      BinLog binLog = entry.getValue();
+      if (binLog.writeLock.isHeldByCurrentThread() || !binLog.writeLock.tryLock())
+      {
+        continue;
+      }
+      try
+      {
+        if (logs.remove(entry.getKey(), binLog))
+        {
+          binLog.close();
+          excess--;
+        }
+      }
+      finally
+      {
+        binLog.writeLock.unlock();
+      }
+    }
+  }
+
+  private Path binDir(Long binId)
+  {
+    return dir.resolve(binId.toString());
+  }
+
+  private static void truncate(BinLog binLog, long sequence)
+  {
+    try
+    {
+      binLog.truncateFrom(sequence);
+    }
+    catch (IOException e)
+    {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Runs a write under the bin's write lock, held until the surrounding transaction
+   * completes (or just for the call when there is none)
+   *
+   * @return null without running the action when the bin has no log and create is false
+   */
+  private <T> T write(Long binId, boolean create, Function<LogTransaction, T> action)
+  {
+    if (TransactionSynchronizationManager.isSynchronizationActive())
+    {
+      // A log this transaction already writes to is locked, so it cannot have been closed
+      BinLog binLog = logOf(binId, create);
+      LogTransaction transaction = binLog != null
+        ? (LogTransaction)TransactionSynchronizationManager.getResource(binLog)
+        : null;
+      if (transaction == null)
+      {
+        binLog = lock(binId, create);
+        if (binLog == null)
+        {
+          return null;
+        }
+        transaction = new LogTransaction(binLog, groupCommitter);
+        TransactionSynchronizationManager.bindResource(binLog, transaction);
+        TransactionSynchronizationManager.registerSynchronization(transaction);
+      }
+      return action.apply(transaction);
+    }
+
+    BinLog binLog = lock(binId, create);
+    if (binLog == null)
+    {
+      return null;
+    }
+    LogTransaction transaction = new LogTransaction(binLog, groupCommitter);
+    try
+    {
+      T result = action.apply(transaction);
+      transaction.beforeCommit(false);
+      transaction.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+      return result;
+    }
+    catch (RuntimeException e)
+    {
+      transaction.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+      throw e;
+    }
+  }
+
+  /**
+   * Pending log writes of one transaction on one bin
+   */
+  private static final class LogTransaction
+    implements TransactionSynchronization
+  {
+
+    private final BinLog binLog;
+    private final GroupCommitter groupCommitter;
+    private final List<BinLog.Append> appends = new ArrayList<>();
+    private final List<Runnable> rollbackActions = new ArrayList<>();
+    private boolean trimmed;
+    private boolean written;
+
+    LogTransaction(BinLog binLog, GroupCommitter groupCommitter)
+    {
+      this.binLog = binLog;
+      this.groupCommitter = groupCommitter;
+    }
+
+    void onRollback(Runnable action)
+    {
+      rollbackActions.add(action);
+    }
+
+    /**
+     * Writes the buffered appends and waits until they are on disk
+     */
+    @Override
+    public void beforeCommit(boolean readOnly)
+    {
+      try
+      {
+        if (!appends.isEmpty())
+        {
+          written = true;
+          groupCommitter.sync(binLog.append(appends)).get();
+        }
+      }
+      catch (IOException e)
+      {
+        throw new UncheckedIOException("Could not append to log " + binLog, e);
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for log fsync", e);
+      }
+      catch (ExecutionException e)
+      {
+        throw new UncheckedIOException("Log fsync failed", e.getCause() instanceof IOException io ? io
+          : new IOException(e.getCause()));
+      }
+      if (trimmed)
+      {
+        binLog.persistWatermark();
+      }
+    }
+
+    @Override
+    public void afterCompletion(int status)
+    {
+      TransactionSynchronizationManager.unbindResourceIfPossible(binLog);
+      try
+      {
+        if (status == STATUS_COMMITTED)
+        {
+          binLog.publish();
+          if (trimmed)
+          {
+            binLog.deleteTrimmedSegments();
+          }
+        }
+        else
+        {
+          if (written)
+          {
+            truncate(binLog, appends.getFirst().sequence());
+          }
+          rollbackActions.reversed().forEach(Runnable::run);
+        }
+      }
+      catch (RuntimeException e)
+      {
+        log.error("Could not roll back log writes", e);
+      }
+      finally
+      {
+        binLog.writeLock.unlock();
+      }
+    }
+  }
+}
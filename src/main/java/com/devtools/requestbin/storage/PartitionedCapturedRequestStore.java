@@ -0,0 +1,398 @@
+package com.devtools.requestbin.storage;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import com.devtools.requestbin.dto.CapturedRequestSummary;
+import com.devtools.requestbin.dto.RequestFilter;
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+import com.devtools.requestbin.event.BinRemovedEvent;
+import com.devtools.requestbin.repository.CapturedRequestSpecifications;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+/**
+ * CapturedRequestStore over time-partitioned tables ("partitioned" profile)
+ * <p>
+ * All requests of a bin live in the partition of its expiresAt bucket (see
+ * CapturedRequestPartitionManager), so every query is routed to exactly one table and
+ * keeps using the (bin_id, ...) indexes. Ids encode the bin (RequestIds), which routes
+ * lookups by id the same way.
+ * <p>
+ * Expired bins cost nothing here: their partition is dropped as a whole. Only bins deleted
+ * by their owner before expiry have their rows deleted.
+ */
+@Component
+@Profile("partitioned")
+@RequiredArgsConstructor
+public class PartitionedCapturedRequestStore
+  implements CapturedRequestStore
+{
+
+  private static final String COLUMNS =
+    "id, bin_id, sequence, method, headers, body, query_params, body_size, body_preview, ip_address, timestamp, "
+      + "duplicate_of, delivery_count, last_delivered_at";
+  private static final String SUMMARY_COLUMNS =
+    "id, method, timestamp, ip_address, body_size, body_preview, duplicate_of, delivery_count";
+
+  private static final RowMapper<CapturedRequestSummary> SUMMARY_MAPPER = (rs, row) -> new CapturedRequestSummary(
+    rs.getLong("id"), rs.getString("method"), rs.getTimestamp("timestamp").toLocalDateTime(),
+    rs.getString("ip_address"), (Integer)rs.getObject("body_size"), rs.getString("body_preview"),
+    (Long)rs.getObject("duplicate_of"), (Integer)rs.getObject("delivery_count"));
+
+  private final JdbcTemplate jdbcTemplate;
+  private final CapturedRequestPartitionManager partitionManager;
+  private final BinStore binStore;
+  private final HeaderDictionary headerDictionary;
+
+  // Bins never change their expiry, so the routing can be cached for their lifetime
+  private final Map<Long, LocalDateTime> expiries = new ConcurrentHashMap<>();
+
+  /**
+   * Deletes the rows of bins removed before they expired, in the removing transaction
+   */
+  @EventListener
+  public void onBinRemoved(BinRemovedEvent event)
+  {
+    LocalDateTime expiresAt = expiries.remove(event.getBinId());
+    String table = expiresAt != null && expiresAt.isAfter(LocalDateTime.now())
+      ? partitionManager.existingTableFor(expiresAt)
+      : null;
+    if (table != null)
+    {
+      jdbcTemplate.update("delete from " + table + " where bin_id = ?", event.getBinId());
+    }
+  }
+
+  @Override
+  public CapturedRequest save(CapturedRequest request)
+  {
+    if (request.getId() != null)
+    {
+      return request;
+    }
+    request.setId(RequestIds.of(request.getBin().getId(), request.getSequence()));
+    if (request.getTimestamp() == null)
+    {
+      request.setTimestamp(LocalDateTime.now());
+    }
+    insertAll(List.of(request));
+    return request;
+  }
+
+  @Override
+  public void insertAll(List<CapturedRequest> requests)
+  {
+    for (CapturedRequest request : requests)
+    {
+      if (request.getId() == null)
+      {
+        request.setId(RequestIds.of(request.getBin().getId(), request.getSequence()));
+      }
+    }
+    Map<String, List<CapturedRequest>> byTable = requests.stream().collect(Collectors.groupingBy(request -> {
+      Bin bin = request.getBin();
+      expiries.putIfAbsent(bin.getId(), bin.getExpiresAt());
+      return partitionManager.tableFor(bin.getExpiresAt());
+    }));
+    byTable.forEach((table, rows) -> jdbcTemplate.batchUpdate("insert into " + table + " (" + COLUMNS + ") "
+        + "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+      rows, rows.size(), (ps, request) -> {
+        ps.setLong(1, request.getId());
+        ps.setLong(2, request.getBin().getId());
+        ps.setLong(3, request.getSequence());
+        ps.setString(4, request.getMethod());
+        ps.setString(5, headerDictionary.encode(request.getHeaders()));
+        ps.setString(6, request.getBody());
+        ps.setString(7, request.getQueryParams());
+        ps.setObject(8, request.getBodySize());
+        ps.setString(9, request.getBodyPreview());
+        ps.setString(10, request.getIpAddress());
+        ps.setTimestamp(11, Timestamp.valueOf(request.getTimestamp()));
+        ps.setObject(12, request.getDuplicateOf());
+        ps.setObject(13, request.getDeliveryCount());
+        ps.setTimestamp(14, request.getLastDeliveredAt() != null ? Timestamp.valueOf(request.getLastDeliveredAt()) : null);
+      }));
+  }
+
+  @Override
+  public boolean recordRedelivery(Long id, LocalDateTime at)
+  {
+    String table = tableOf(RequestIds.binOf(id));
+    return table != null && jdbcTemplate.update("update " + table
+      + " set delivery_count = coalesce(delivery_count, 1) + 1, last_delivered_at = ? where id = ?",
+      Timestamp.valueOf(at), id) > 0;
+  }
+
+  @Override
+  public Optional<CapturedRequest> findById(Long id)
+  {
+    Long binId = RequestIds.binOf(id);
+    String table = tableOf(binId);
+    if (table == null)
+    {
+      return Optional.empty();
+    }
+    return jdbcTemplate.query("select " + COLUMNS + " from " + table + " where id = ?", this::mapRequest, id)
+      .stream()
+      .findFirst();
+  }
+
+  @Override
+  public List<CapturedRequest> findByBinNewestFirst(Long binId)
+  {
+    String table = tableOf(binId);
+    if (table == null)
+    {
+      return Collections.emptyList();
+    }
+    return jdbcTemplate.query("select " + COLUMNS + " from " + table + " where bin_id = ? order by sequence desc",
+      this::mapRequest, binId);
+  }
+
+  @Override
+  public List<CapturedRequest> findAfterSequence(Long binId, long afterSequence, int limit)
+  {
+    String table = tableOf(binId);
+    if (table == null)
+    {
+      return Collections.emptyList();
+    }
+    return jdbcTemplate.query("select " + COLUMNS + " from " + table
+        + " where bin_id = ? and sequence > ? order by sequence asc limit ?",
+      this::mapRequest, binId, afterSequence, limit);
+  }
+
+  @Override
+  public List<SizeRow> findOldestSizes(Long binId, int limit)
+  {
+    String table = tableOf(binId);
+    if (table == null)
+    {
+      return Collections.emptyList();
+    }
+    return jdbcTemplate.query("select sequence, body_size from " + table
+        + " where bin_id = ? order by sequence asc limit ?",
+      (rs, row) -> new SizeRow(rs.getLong("sequence"), rs.getInt("body_size")), binId, limit);
+  }
+
+  @Override
+  public long sumBodySizeUpToSequence(Long binId, long upToSequence)
+  {
+    String table = tableOf(binId);
+    if (table == null)
+    {
+      return 0;
+    }
+    Long sum = jdbcTemplate.queryForObject("select coalesce(sum(body_size), 0) from " + table
+      + " where bin_id = ? and sequence <= ?", Long.class, binId, upToSequence);
+    return sum != null ? sum : 0;
+  }
+
+  @Override
+  public Long findMinSequence(Long binId)
+  {
+    String table = tableOf(binId);
+    if (table == null)
+    {
+      return null;
+    }
+    return jdbcTemplate.queryForObject("select min(sequence) from " + table + " where bin_id = ?", Long.class, binId);
+  }
+
+  @Override
+  public Long findExpiredPrefixEnd(Long binId, LocalDateTime cutoff)
+  {
+    String table = tableOf(binId);
+    if (table == null)
+    {
+      return null;
+    }
+    return jdbcTemplate.queryForObject("select max(sequence) from " + table + " where bin_id = ? and sequence < "
+        + "coalesce((select min(sequence) from " + table + " where bin_id = ? and timestamp >= ?), sequence + 1)",
+      Long.class, binId, binId, Timestamp.valueOf(cutoff));
+  }
+
+  @Override
+  public int deleteUpToSequence(Long binId, long upToSequence)
+  {
+    String table = tableOf(binId);
+    if (table == null)
+    {
+      return 0;
+    }
+    return jdbcTemplate.update("delete from " + table + " where bin_id = ? and sequence <= ?", binId, upToSequence);
+  }
+
+  @Override
+  public List<CapturedRequestSummary> findSummaries(Long binId)
+  {
+    String table = tableOf(binId);
+    if (table == null)
+    {
+      return Collections.emptyList();
+    }
+    return jdbcTemplate.query("select " + SUMMARY_COLUMNS + " from " + table + " where bin_id = ? order by id desc",
+      SUMMARY_MAPPER, binId);
+  }
+
+  /**
+   * The same conditions as CapturedRequestSpecifications, as SQL on the bin's partition
+   */
+  @Override
+  public List<CapturedRequestSummary> findSummaries(Long binId, RequestFilter filter, Long cursor, int limit)
+  {
+    String table = tableOf(binId);
+    if (table == null)
+    {
+      return Collections.emptyList();
+    }
+
+    StringBuilder sql = new StringBuilder("select " + SUMMARY_COLUMNS + " from " + table + " where bin_id = ?");
+    List<Object> args = new ArrayList<>();
+    args.add(binId);
+
+    if (cursor != null)
+    {
+      sql.append(" and id < ?");
+      args.add(cursor);
+    }
+    if (hasText(filter.getMethod()))
+    {
+      sql.append(" and method = ?");
+      args.add(filter.getMethod().toUpperCase());
+    }
+    if (filter.getFrom() != null)
+    {
+      sql.append(" and timestamp >= ?");
+      args.add(Timestamp.valueOf(filter.getFrom()));
+    }
+    if (filter.getTo() != null)
+    {
+      sql.append(" and timestamp < ?");
+      args.add(Timestamp.valueOf(filter.getTo()));
+    }
+    if (hasText(filter.getIpAddress()))
+    {
+      sql.append(" and ip_address = ?");
+      args.add(filter.getIpAddress());
+    }
+    if (filter.getMinBodySize() != null)
+    {
+      sql.append(" and body_size >= ?");
+      args.add(filter.getMinBodySize());
+    }
+    if (filter.getMaxBodySize() != null)
+    {
+      sql.append(" and body_size <= ?");
+      args.add(filter.getMaxBodySize());
+    }
+    List<String> headerNeedles = headerDictionary.headerNeedles(filter);
+    if (headerNeedles != null)
+    {
+      sql.append(headerNeedles.stream()
+        .map(needle -> "lower(headers) like ? escape '\\'")
+        .collect(Collectors.joining(" or ", " and (", ")")));
+      headerNeedles.forEach(needle -> args.add(CapturedRequestSpecifications.containsPattern(needle)));
+    }
+
+    sql.append(" order by id desc limit ?");
+    args.add(limit);
+    return jdbcTemplate.query(sql.toString(), SUMMARY_MAPPER, args.toArray());
+  }
+
+  @Override
+  public List<CapturedRequestSummary> findSummariesByIds(Collection<Long> ids)
+  {
+    List<CapturedRequestSummary> result = new ArrayList<>();
+    Map<Long, List<Long>> idsByBin = ids.stream().collect(Collectors.groupingBy(RequestIds::binOf));
+    idsByBin.forEach((binId, binIds) -> {
+      String table = tableOf(binId);
+      if (table != null)
+      {
+        String placeholders = binIds.stream().map(id -> "?").collect(Collectors.joining(", "));
+        result.addAll(jdbcTemplate.query("select " + SUMMARY_COLUMNS + " from " + table
+          + " where id in (" + placeholders + ")", SUMMARY_MAPPER, binIds.toArray()));
+      }
+    });
+    result.sort(Comparator.comparing(CapturedRequestSummary::getId).reversed());
+    return result;
+  }
+
+  @Override
+  public List<BodyRow> findBodyChunk(Long binId, long beforeId, int limit)
+  {
+    String table = tableOf(binId);
+    if (table == null)
+    {
+      return Collections.emptyList();
+    }
+    return jdbcTemplate.query("select id, body from " + table + " where bin_id = ? and id < ? order by id desc limit ?",
+      (rs, row) -> new BodyRow(rs.getLong("id"), rs.getString("body")), binId, beforeId, limit);
+  }
+
+  /**
+   * Partition of the bin, or null when the bin is gone or its partition was dropped
+   */
+  private String tableOf(Long binId)
+  {
+    LocalDateTime expiresAt = expiries.get(binId);
+    if (expiresAt == null)
+    {
+      expiresAt = binStore.findBinById(binId).map(Bin::getExpiresAt).orElse(null);
+      if (expiresAt == null)
+      {
+        return null;
+      }
+      expiries.put(binId, expiresAt);
+    }
+    return partitionManager.existingTableFor(expiresAt);
+  }
+
+  private CapturedRequest mapRequest(ResultSet rs, int row)
+    throws SQLException
+  {
+    String headers = rs.getString("headers");
+    Map<String, String> headerMap = headerDictionary.decodeHeaders(headers);
+    return CapturedRequest.builder()
+      .id(rs.getLong("id"))
+      .bin(Bin.builder().id(rs.getLong("bin_id")).build())
+      .sequence(rs.getLong("sequence"))
+      .method(rs.getString("method"))
+      .headers(headerMap == null ? headers : null)
+      .headerMap(headerMap)
+      .body(rs.getString("body"))
+      .queryParams(rs.getString("query_params"))
+      .bodySize((Integer)rs.getObject("body_size"))
+      .bodyPreview(rs.getString("body_preview"))
+      .ipAddress(rs.getString("ip_address"))
+      .timestamp(rs.getTimestamp("timestamp").toLocalDateTime())
+      .duplicateOf((Long)rs.getObject("duplicate_of"))
+      .deliveryCount((Integer)rs.getObject("delivery_count"))
+      .lastDeliveredAt(rs.getTimestamp("last_delivered_at") != null
+        ? rs.getTimestamp("last_delivered_at").toLocalDateTime()
+        : null)
+      .build();
+  }
+
+  private static boolean hasText(String value)
+  {
+    return value != null && !value.isBlank();
+  }
+}
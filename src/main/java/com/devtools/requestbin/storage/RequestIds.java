@@ -0,0 +1,46 @@
+package com.devtools.requestbin.storage;
+
+/**
+ * Request ids for storage engines that keep each bin's requests together
+ * <p>
+ * The id is (binId << 32) | sequence: unique without a global counter, ordered like the
+ * sequence within a bin, and an id alone tells which bin (and so which files or partition)
+ * holds the request.
+ */
+final class RequestIds
+{
+
+  private static final long SEQUENCE_MASK = 0xFFFFFFFFL;
+
+  private RequestIds()
+  {
+  }
+
+  static long of(long binId, long sequence)
+  {
+    return (binId << 32) | sequence;
+  }
+
+  static long binOf(long id)
+  {
+    return id >>> 32;
+  }
+
+  static long sequenceOf(long id)
+  {
+    return id & SEQUENCE_MASK;
+  }
+
+  /**
+   * Translates an exclusive id bound into an exclusive sequence bound within the bin
+   */
+  static long sequenceBefore(long binId, long beforeId)
+  {
+    long idBin = binOf(beforeId);
+    if (idBin > binId)
+    {
+      return Long.MAX_VALUE;
+    }
+    return idBin < binId ? Long.MIN_VALUE : sequenceOf(beforeId);
+  }
+}
@@ -0,0 +1,529 @@
+package com.devtools.requestbin.storage;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.devtools.requestbin.dto.CapturedRequestSummary;
+import com.devtools.requestbin.dto.RequestFilter;
+import com.devtools.requestbin.entity.CapturedRequest;
+import com.devtools.requestbin.event.BinRemovedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Hot/cold tiering in front of the storage engine (app.storage.hot-tier.enabled)
+ * <p>
+ * Writes:
+ * - A committed capture goes into the hot tier right away and into a write-behind queue
+ * - The queue is flushed to the engine in batches (insertAll) every flush-interval-ms
+ * - Ids are assigned here (RequestIds), so captures never wait for the engine
+ * <p>
+ * Reads:
+ * - Detail reads and first pages come from the hot tier when it can answer them alone
+ * - Everything else reads the engine and adds requests still waiting in the queue
+ * - Retention (trims and size scans) first writes the bin's queued requests in its own
+ *   transaction, so the engine sees the bin's full log; the flusher skips that bin (and
+ *   only that bin) until the transaction completes
+ * <p>
+ * A committed capture is added to the hot tier before it is queued, in the same callback,
+ * and the engine only receives requests from the queue. A trim can therefore only remove
+ * requests the hot tier has already seen, so its after-commit removeUpTo never runs ahead
+ * of the matching add.
+ * <p>
+ * Requests still queued when the process dies are lost; keep the flush interval short.
+ */
+@Slf4j
+public class TieredCapturedRequestStore
+  implements CapturedRequestStore
+{
+
+  private final CapturedRequestStore engine;
+  private final HotTier hotTier;
+  private final BinStore binStore;
+  private final TransactionTemplate transactionTemplate;
+
+  // Requests committed but not yet written to the engine, per bin in sequence order
+  private final Map<Long, List<CapturedRequest>> pending = new LinkedHashMap<>();
+  // Per bin: held by the flusher while it writes the bin, or by a retention transaction until it completes
+  private final Map<Long, ReentrantLock> flushLocks = new ConcurrentHashMap<>();
+
+  public TieredCapturedRequestStore(CapturedRequestStore engine, BinStore binStore,
+    TransactionTemplate transactionTemplate, int requestsPerBin, long maxBytes)
+  {
+    this.engine = engine;
+    this.binStore = binStore;
+    this.transactionTemplate = transactionTemplate;
+    this.hotTier = new HotTier(requestsPerBin, maxBytes);
+    log.info("Hot tier enabled: last {} requests per bin, {} bytes in total", requestsPerBin, maxBytes);
+  }
+
+  @Override
+  public CapturedRequest save(CapturedRequest request)
+  {
+    if (request.getId() != null)
+    {
+      return request;
+    }
+    request.setId(RequestIds.of(request.getBin().getId(), request.getSequence()));
+    if (request.getTimestamp() == null)
+    {
+      request.setTimestamp(LocalDateTime.now());
+    }
+
+    afterCommit(() -> {
+      // Hot tier first: once queued, the request can reach the engine and be trimmed
+      hotTier.add(request);
+      synchronized (pending)
+      {
+        pending.computeIfAbsent(request.getBin().getId(), binId -> new ArrayList<>()).add(request);
+      }
+    });
+    return request;
+  }
+
+  /**
+   * Bulk writes go straight to the engine, after the bin's queued requests; the bin's hot
+   * requests are dropped on commit, since they no longer form the tail of its log
+   */
+  @Override
+  public void insertAll(List<CapturedRequest> requests)
+  {
+    Set<Long> binIds = requests.stream().map(request -> request.getBin().getId()).collect(Collectors.toSet());
+    binIds.forEach(this::flushForRetention);
+    for (CapturedRequest request : requests)
+    {
+      if (request.getId() == null)
+      {
+        request.setId(RequestIds.of(request.getBin().getId(), request.getSequence()));
+      }
+    }
+    engine.insertAll(requests);
+    afterCommit(() -> binIds.forEach(hotTier::remove));
+  }
+
+  /**
+   * Writes the bin's queued requests first, so the engine holds the request to update
+   */
+  @Override
+  public boolean recordRedelivery(Long id, LocalDateTime at)
+  {
+    flushForRetention(RequestIds.binOf(id));
+    if (!engine.recordRedelivery(id, at))
+    {
+      return false;
+    }
+    afterCommit(() -> hotTier.recordRedelivery(id, at));
+    return true;
+  }
+
+  /**
+   * Writes queued requests to the engine; bins held by a retention transaction wait for the next round
+   */
+  @Scheduled(fixedDelayString = "${app.storage.hot-tier.flush-interval-ms:200}")
+  public void flush()
+  {
+    List<Long> binIds;
+    synchronized (pending)
+    {
+      binIds = new ArrayList<>(pending.keySet());
+    }
+
+    List<ReentrantLock> held = new ArrayList<>();
+    try
+    {
+      Map<Long, List<CapturedRequest>> batch = new LinkedHashMap<>();
+      for (Long binId : binIds)
+      {
+        ReentrantLock lock = flushLockOf(binId);
+        if (lock.tryLock())
+        {
+          held.add(lock);
+          // Read under the lock: a retention transaction may have written the bin's queue meanwhile
+          List<CapturedRequest> requests = pendingOf(binId);
+          if (!requests.isEmpty())
+          {
+            batch.put(binId, requests);
+          }
+        }
+      }
+      if (batch.isEmpty())
+      {
+        return;
+      }
+
+      try
+      {
+        transactionTemplate.executeWithoutResult(
+          status -> engine.insertAll(batch.values().stream().flatMap(List::stream).toList()));
+        batch.forEach(this::removePending);
+      }
+      catch (RuntimeException e)
+      {
+        // Retry bin by bin, so one deleted bin does not hold back the others
+        batch.forEach(this::flushBin);
+      }
+    }
+    finally
+    {
+      held.forEach(ReentrantLock::unlock);
+    }
+  }
+
+  /**
+   * Drops queued and hot requests of a deleted bin, within the deleting transaction
+   */
+  @EventListener
+  public void onBinRemoved(BinRemovedEvent event)
+  {
+    hotTier.remove(event.getBinId());
+    synchronized (pending)
+    {
+      pending.remove(event.getBinId());
+    }
+    flushLocks.remove(event.getBinId());
+  }
+
+  public Map<String, Object> getStats()
+  {
+    Map<String, Object> stats = hotTier.getStats();
+    synchronized (pending)
+    {
+      stats.put("pendingWrites", pending.values().stream().mapToInt(List::size).sum());
+    }
+    return stats;
+  }
+
+  @Override
+  public Optional<CapturedRequest> findById(Long id)
+  {
+    Optional<CapturedRequest> hot = hotTier.findById(id);
+    if (hot.isPresent())
+    {
+      return hot;
+    }
+    Optional<CapturedRequest> queued = pendingOf(RequestIds.binOf(id)).stream()
+      .filter(request -> request.getId().equals(id))
+      .findFirst();
+    return queued.isPresent() ? queued : engine.findById(id);
+  }
+
+  @Override
+  public List<CapturedRequest> findByBinNewestFirst(Long binId)
+  {
+    return newestFirst(engine.findByBinNewestFirst(binId), pendingOf(binId), request -> true, Long.MAX_VALUE,
+      Integer.MAX_VALUE);
+  }
+
+  @Override
+  public List<CapturedRequest> findAfterSequence(Long binId, long afterSequence, int limit)
+  {
+    List<CapturedRequest> hot = hotTier.afterSequence(binId, afterSequence, limit);
+    if (hot != null)
+    {
+      return hot;
+    }
+    return Stream.concat(engine.findAfterSequence(binId, afterSequence, limit).stream(), pendingOf(binId).stream())
+      .filter(request -> request.getSequence() > afterSequence)
+      .collect(Collectors.toMap(CapturedRequest::getId, Function.identity(), (first, second) -> first,
+        LinkedHashMap::new))
+      .values().stream()
+      .sorted(Comparator.comparing(CapturedRequest::getSequence))
+      .limit(limit)
+      .toList();
+  }
+
+  /**
+   * Queued requests are written first, so the engine's cursor sees the whole bin
+   */
+  @Override
+  public void forEachMatching(Long binId, RequestFilter filter, int fetchSize, Consumer<CapturedRequest> action)
+  {
+    flushForRetention(binId);
+    engine.forEachMatching(binId, filter, fetchSize, action);
+  }
+
+  @Override
+  public List<SizeRow> findOldestSizes(Long binId, int limit)
+  {
+    flushForRetention(binId);
+    return engine.findOldestSizes(binId, limit);
+  }
+
+  @Override
+  public long sumBodySizeUpToSequence(Long binId, long upToSequence)
+  {
+    flushForRetention(binId);
+    return engine.sumBodySizeUpToSequence(binId, upToSequence);
+  }
+
+  @Override
+  public Long findMinSequence(Long binId)
+  {
+    flushForRetention(binId);
+    return engine.findMinSequence(binId);
+  }
+
+  @Override
+  public Long findExpiredPrefixEnd(Long binId, LocalDateTime cutoff)
+  {
+    flushForRetention(binId);
+    return engine.findExpiredPrefixEnd(binId, cutoff);
+  }
+
+  @Override
+  public int deleteUpToSequence(Long binId, long upToSequence)
+  {
+    flushForRetention(binId);
+    int deleted = engine.deleteUpToSequence(binId, upToSequence);
+    afterCommit(() -> hotTier.removeUpTo(binId, upToSequence));
+    return deleted;
+  }
+
+  @Override
+  public List<CapturedRequestSummary> findSummaries(Long binId)
+  {
+    List<CapturedRequestSummary> queued = pendingOf(binId).reversed().stream()
+      .map(CapturedRequestMatcher::toSummary)
+      .toList();
+    return mergeSummaries(queued, engine.findSummaries(binId), Integer.MAX_VALUE);
+  }
+
+  /**
+   * First pages come from the hot tier when it holds enough matches (or the bin's whole log)
+   */
+  @Override
+  public List<CapturedRequestSummary> findSummaries(Long binId, RequestFilter filter, Long cursor, int limit)
+  {
+    long beforeId = cursor != null ? cursor : Long.MAX_VALUE;
+    Predicate<CapturedRequest> matching = CapturedRequestMatcher.matching(filter);
+
+    HotTier.Page page = hotTier.newestFirst(binId, matching, beforeId, limit, false);
+    if (page != null && page.complete())
+    {
+      return page.requests().stream().map(CapturedRequestMatcher::toSummary).toList();
+    }
+
+    List<CapturedRequestSummary> queued = newestFirst(List.of(), pendingOf(binId), matching, beforeId, limit).stream()
+      .map(CapturedRequestMatcher::toSummary)
+      .toList();
+    return mergeSummaries(queued, engine.findSummaries(binId, filter, cursor, limit), limit);
+  }
+
+  @Override
+  public List<CapturedRequestSummary> findSummariesByIds(Collection<Long> ids)
+  {
+    List<CapturedRequestSummary> found = new ArrayList<>();
+    List<Long> cold = new ArrayList<>();
+    for (Long id : ids)
+    {
+      Optional<CapturedRequest> hot = hotTier.findById(id);
+      if (hot.isPresent())
+      {
+        found.add(CapturedRequestMatcher.toSummary(hot.get()));
+      }
+      else
+      {
+        cold.add(id);
+      }
+    }
+    return mergeSummaries(found, cold.isEmpty() ? List.of() : engine.findSummariesByIds(cold), Integer.MAX_VALUE);
+  }
+
+  @Override
+  public List<BodyRow> findBodyChunk(Long binId, long beforeId, int limit)
+  {
+    List<BodyRow> rows = new ArrayList<>();
+    newestFirst(List.of(), pendingOf(binId), request -> true, beforeId, limit)
+      .forEach(request -> rows.add(new BodyRow(request.getId(), request.getBody())));
+    Set<Long> seen = rows.stream().map(BodyRow::id).collect(Collectors.toSet());
+    engine.findBodyChunk(binId, beforeId, limit).stream()
+      .filter(row -> !seen.contains(row.id()))
+      .forEach(rows::add);
+    rows.sort(Comparator.comparing(BodyRow::id).reversed());
+    return rows.size() > limit ? rows.subList(0, limit) : rows;
+  }
+
+  /**
+   * Writes the bin's queued requests in the current transaction and keeps the flusher
+   * away from the bin until it completes; on rollback they go back into the queue
+   */
+  private void flushForRetention(Long binId)
+  {
+    ReentrantLock flushLock = flushLockOf(binId);
+    if (!TransactionSynchronizationManager.isSynchronizationActive())
+    {
+      flushLock.lock();
+      try
+      {
+        flushBin(binId, pendingOf(binId));
+      }
+      finally
+      {
+        flushLock.unlock();
+      }
+      return;
+    }
+
+    if (!flushLock.isHeldByCurrentThread())
+    {
+      flushLock.lock();
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+      {
+        @Override
+        public void afterCompletion(int status)
+        {
+          flushLock.unlock();
+        }
+      });
+    }
+
+    List<CapturedRequest> queued = takePending(binId);
+    if (queued.isEmpty())
+    {
+      return;
+    }
+    engine.insertAll(queued);
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+    {
+      @Override
+      public void afterCompletion(int status)
+      {
+        if (status != STATUS_COMMITTED)
+        {
+          restorePending(binId, queued);
+        }
+      }
+    });
+  }
+
+  private void flushBin(Long binId, List<CapturedRequest> requests)
+  {
+    if (requests.isEmpty())
+    {
+      return;
+    }
+    try
+    {
+      transactionTemplate.executeWithoutResult(status -> engine.insertAll(requests));
+      removePending(binId, requests);
+    }
+    catch (RuntimeException e)
+    {
+      if (binStore.findBinById(binId).isEmpty())
+      {
+        log.debug("Discarding {} queued requests of deleted bin {}", requests.size(), binId);
+        removePending(binId, requests);
+      }
+      else
+      {
+        log.warn("Write-behind of {} requests of bin {} failed, will retry", requests.size(), binId, e);
+      }
+    }
+  }
+
+  private ReentrantLock flushLockOf(Long binId)
+  {
+    return flushLocks.computeIfAbsent(binId, id -> new ReentrantLock());
+  }
+
+  private List<CapturedRequest> pendingOf(Long binId)
+  {
+    synchronized (pending)
+    {
+      List<CapturedRequest> queued = pending.get(binId);
+      return queued != null ? List.copyOf(queued) : List.of();
+    }
+  }
+
+  private List<CapturedRequest> takePending(Long binId)
+  {
+    synchronized (pending)
+    {
+      List<CapturedRequest> queued = pending.remove(binId);
+      return queued != null ? queued : List.of();
+    }
+  }
+
+  private void restorePending(Long binId, List<CapturedRequest> requests)
+  {
+    synchronized (pending)
+    {
+      List<CapturedRequest> queued = pending.computeIfAbsent(binId, id -> new ArrayList<>());
+      queued.addAll(0, requests);
+    }
+  }
+
+  private void removePending(Long binId, List<CapturedRequest> written)
+  {
+    synchronized (pending)
+    {
+      List<CapturedRequest> queued = pending.get(binId);
+      if (queued != null)
+      {
+        queued.subList(0, Math.min(written.size(), queued.size())).clear();
+        if (queued.isEmpty())
+        {
+          pending.remove(binId);
+        }
+      }
+    }
+  }
+
+  /**
+   * Newest first: the queued requests (always the newest) ahead of the engine's, without duplicates
+   */
+  private static List<CapturedRequest> newestFirst(List<CapturedRequest> stored, List<CapturedRequest> queued,
+    Predicate<CapturedRequest> filter, long beforeId, int limit)
+  {
+    Set<Long> queuedIds = queued.stream().map(CapturedRequest::getId).collect(Collectors.toSet());
+    return Stream.concat(queued.reversed().stream(), stored.stream().filter(request -> !queuedIds.contains(request.getId())))
+      .filter(request -> request.getId() < beforeId && filter.test(request))
+      .limit(limit)
+      .toList();
+  }
+
+  private static List<CapturedRequestSummary> mergeSummaries(List<CapturedRequestSummary> first,
+    List<CapturedRequestSummary> second, int limit)
+  {
+    Set<Long> seen = first.stream().map(CapturedRequestSummary::getId).collect(Collectors.toSet());
+    return Stream.concat(first.stream(), second.stream().filter(summary -> !seen.contains(summary.getId())))
+      .sorted(Comparator.comparing(CapturedRequestSummary::getId).reversed())
+      .limit(limit)
+      .toList();
+  }
+
+  private static void afterCommit(Runnable action)
+  {
+    if (!TransactionSynchronizationManager.isSynchronizationActive())
+    {
+      action.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization()
+    {
+      @Override
+      public void afterCommit()
+      {
+        action.run();
+      }
+    });
+  }
+}
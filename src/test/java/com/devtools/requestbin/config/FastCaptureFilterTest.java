@@ -0,0 +1,308 @@
+package com.devtools.requestbin.config;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.devtools.requestbin.dto.CaptureReceipt;
+import com.devtools.requestbin.exception.BinNotFoundException;
+import com.devtools.requestbin.exception.ServiceOverloadedException;
+import com.devtools.requestbin.service.MemoryBudgetService;
+import com.devtools.requestbin.service.MemoryBudgetService.BufferedBody;
+import com.devtools.requestbin.service.MockResponseService;
+import com.devtools.requestbin.service.RequestCaptureService;
+import org.junit.jupiter.api.Test;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.ModelAndView;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class FastCaptureFilterTest
+{
+
+  private final RequestCaptureService requestCaptureService = mock(RequestCaptureService.class);
+  private final MemoryBudgetService memoryBudgetService = mock(MemoryBudgetService.class);
+  private final HandlerExceptionResolver exceptionResolver = mock(HandlerExceptionResolver.class);
+  private final FastCaptureFilter filter = new FastCaptureFilter(requestCaptureService,
+    memoryBudgetService, mock(MockResponseService.class), exceptionResolver, false);
+
+  private final MemoryBudgetService budget =
+    new MemoryBudgetService(4 * 1024, MemoryBudgetService.OverBudgetMode.REJECT, 0, 1, "/tmp");
+  private final FastCaptureFilter nonBlockingFilter = new FastCaptureFilter(requestCaptureService,
+    budget, mock(MockResponseService.class), exceptionResolver, true);
+
+  @Test
+  void corsPreflightFallsThroughWithoutCapturing()
+    throws Exception
+  {
+    MockHttpServletRequest request = new MockHttpServletRequest("OPTIONS", "/b/abc123");
+    request.addHeader(HttpHeaders.ORIGIN, "http://localhost:3000");
+    request.addHeader(HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD, "POST");
+    MockFilterChain chain = new MockFilterChain();
+
+    filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+    assertThat(chain.getRequest()).isSameAs(request);
+    verifyNoInteractions(requestCaptureService);
+  }
+
+  @Test
+  void pathsThatAreNotAPlainBinFallThrough()
+    throws Exception
+  {
+    for (String uri : new String[] { "/b/", "/b/abc/extra", "/b/abc%2Fx", "/api/bins" })
+    {
+      MockFilterChain chain = new MockFilterChain();
+      filter.doFilter(new MockHttpServletRequest("POST", uri), new MockHttpServletResponse(), chain);
+      assertThat(chain.getRequest()).as(uri).isNotNull();
+    }
+    verifyNoInteractions(requestCaptureService);
+  }
+
+  @Test
+  void missingBinIsRejectedBeforeTheBodyIsRead()
+    throws Exception
+  {
+    BinNotFoundException notFound = new BinNotFoundException("gone");
+    doThrow(notFound).when(requestCaptureService).checkActive("gone");
+    when(exceptionResolver.resolveException(any(), any(), any(), any())).thenReturn(new ModelAndView());
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/b/gone");
+    request.setAsyncSupported(true);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    filter.doFilter(request, response, new MockFilterChain());
+
+    verify(exceptionResolver).resolveException(request, response, null, notFound);
+    verifyNoInteractions(memoryBudgetService);
+    assertThat(request.isAsyncStarted()).isFalse();
+  }
+
+  @Test
+  void acknowledgementIsWrittenOnAContainerThreadOnceStored()
+    throws Exception
+  {
+    CompletableFuture<CaptureReceipt> stored = new CompletableFuture<>();
+    when(requestCaptureService.captureRequestAsync(eq("abc123"), any(), any())).thenReturn(stored);
+    AtomicInteger containerTasks = new AtomicInteger();
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/b/abc123")
+    {
+      @Override
+      public AsyncContext startAsync()
+      {
+        MockAsyncContext asyncContext = new MockAsyncContext(this, response)
+        {
+          @Override
+          public void start(Runnable runnable)
+          {
+            containerTasks.incrementAndGet();
+            super.start(runnable);
+          }
+        };
+        setAsyncStarted(true);
+        setAsyncContext(asyncContext);
+        return asyncContext;
+      }
+    };
+    request.setAsyncSupported(true);
+
+    filter.doFilter(request, response, new MockFilterChain());
+    // The request thread is handed back while the shard works
+    assertThat(request.isAsyncStarted()).isTrue();
+    assertThat(response.getContentLength()).isZero();
+
+    stored.complete(CaptureReceipt.builder().binId(1L).requestId(7L).timestamp(LocalDateTime.of(2026, 1, 2, 3, 4, 5)).build());
+
+    assertThat(containerTasks.get()).isEqualTo(1);
+    assertThat(response.getContentAsString())
+      .isEqualTo("{\"status\":\"success\",\"message\":\"Request captured\",\"requestId\":7,\"timestamp\":\"2026-01-02T03:04:05\"}");
+  }
+
+  @Test
+  void nonBlockingBodyIsCapturedOnceFullyReceived()
+    throws Exception
+  {
+    CompletableFuture<CaptureReceipt> stored = new CompletableFuture<>();
+    ArgumentCaptor<BufferedBody> body = ArgumentCaptor.forClass(BufferedBody.class);
+    when(requestCaptureService.captureRequestAsync(eq("abc123"), any(), body.capture())).thenReturn(stored);
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    ChunkedRequest request = new ChunkedRequest(response, "hello ", "world");
+
+    nonBlockingFilter.doFilter(request, response, new MockFilterChain());
+    request.deliver();
+    assertThat(budget.getAvailableBytes()).isEqualTo(3 * 1024);
+    request.deliver();
+    request.listener.onAllDataRead();
+
+    assertThat(body.getValue().getText()).isEqualTo("hello world");
+    stored.complete(CaptureReceipt.builder().binId(1L).requestId(7L).timestamp(LocalDateTime.of(2026, 1, 2, 3, 4, 5)).build());
+    assertThat(response.getContentAsString()).contains("\"requestId\":7");
+  }
+
+  @Test
+  void nonBlockingBodyOverTheBudgetIsShed()
+    throws Exception
+  {
+    when(exceptionResolver.resolveException(any(), any(), any(), any())).thenReturn(new ModelAndView());
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    ChunkedRequest request = new ChunkedRequest(response, "x".repeat(2 * 1024), "x".repeat(2 * 1024));
+    budget.tryHold(1024);
+
+    nonBlockingFilter.doFilter(request, response, new MockFilterChain());
+    request.deliver();
+    request.deliver();
+    request.listener.onAllDataRead();
+
+    verify(exceptionResolver).resolveException(eq(request), eq(response), eq(null), isA(ServiceOverloadedException.class));
+    verify(requestCaptureService, never()).captureRequestAsync(any(), any(), any());
+    assertThat(budget.getAvailableBytes()).isEqualTo(3 * 1024);
+  }
+
+  @Test
+  void senderTimedOutMidBodyIsAnsweredAndGivesItsBudgetBack()
+    throws Exception
+  {
+    when(exceptionResolver.resolveException(any(), any(), any(), any())).thenReturn(new ModelAndView());
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    ChunkedRequest request = new ChunkedRequest(response, "x".repeat(2 * 1024), "rest");
+
+    nonBlockingFilter.doFilter(request, response, new MockFilterChain());
+    request.deliver();
+    assertThat(budget.getAvailableBytes()).isEqualTo(2 * 1024);
+
+    request.timeOut();
+    request.listener.onAllDataRead();
+
+    verify(exceptionResolver).resolveException(eq(request), eq(response), eq(null), isA(ServiceOverloadedException.class));
+    verify(requestCaptureService, never()).captureRequestAsync(any(), any(), any());
+    assertThat(budget.getAvailableBytes()).isEqualTo(4 * 1024);
+  }
+
+  @Test
+  void captureTimedOutOnItsShardIsAnswered()
+    throws Exception
+  {
+    when(requestCaptureService.captureRequestAsync(eq("abc123"), any(), any())).thenReturn(new CompletableFuture<>());
+    when(exceptionResolver.resolveException(any(), any(), any(), any())).thenReturn(new ModelAndView());
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    ChunkedRequest request = new ChunkedRequest(response);
+
+    filter.doFilter(request, response, new MockFilterChain());
+    request.timeOut();
+
+    verify(exceptionResolver).resolveException(eq(request), eq(response), eq(null), isA(ServiceOverloadedException.class));
+  }
+
+  /**
+   * An async request whose body arrives in the given chunks, one per deliver()
+   */
+  private static final class ChunkedRequest
+    extends MockHttpServletRequest
+  {
+
+    private final MockHttpServletResponse response;
+    private final String[] chunks;
+    private int next;
+    private ByteArrayInputStream current = new ByteArrayInputStream(new byte[0]);
+    private ReadListener listener;
+    private MockAsyncContext asyncContext;
+
+    ChunkedRequest(MockHttpServletResponse response, String... chunks)
+    {
+      super("POST", "/b/abc123");
+      this.response = response;
+      this.chunks = chunks;
+      setAsyncSupported(true);
+    }
+
+    @Override
+    public long getContentLengthLong()
+    {
+      return -1;
+    }
+
+    @Override
+    public AsyncContext startAsync()
+    {
+      asyncContext = new MockAsyncContext(this, response);
+      setAsyncStarted(true);
+      setAsyncContext(asyncContext);
+      return asyncContext;
+    }
+
+    @Override
+    public ServletInputStream getInputStream()
+    {
+      return new ServletInputStream()
+      {
+        @Override
+        public boolean isFinished()
+        {
+          return next == chunks.length && current.available() == 0;
+        }
+
+        @Override
+        public boolean isReady()
+        {
+          return current.available() > 0 || next == chunks.length;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener)
+        {
+          listener = readListener;
+        }
+
+        @Override
+        public int read()
+        {
+          return current.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+          return current.available() > 0 || next < chunks.length ? current.read(b, off, len) : -1;
+        }
+      };
+    }
+
+    void deliver()
+      throws Exception
+    {
+      current = new ByteArrayInputStream(chunks[next++].getBytes(StandardCharsets.UTF_8));
+      listener.onDataAvailable();
+    }
+
+    void timeOut()
+      throws Exception
+    {
+      for (AsyncListener asyncListener : asyncContext.getListeners())
+      {
+        asyncListener.onTimeout(new AsyncEvent(asyncContext));
+      }
+    }
+  }
+}
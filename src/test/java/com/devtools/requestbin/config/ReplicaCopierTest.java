@@ -0,0 +1,90 @@
+package com.devtools.requestbin.config;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaCopierTest
+{
+
+  private final JdbcDataSource primary = dataSource();
+  private final JdbcDataSource replica = dataSource();
+  private final ReplicaCopier copier = new ReplicaCopier(primary, replica);
+  private final ReplicaLagMonitor lagMonitor = new ReplicaLagMonitor(primary, replica, 60_000);
+
+  @AfterEach
+  void clear()
+  {
+    ReplicaRoutingDataSource.clearPrimaryRequired();
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+  }
+
+  @Test
+  void separateReplicaIsUsableOnceCopied()
+  {
+    lagMonitor.init();
+    assertThat(lagMonitor.isReplicaUsable()).isFalse();
+
+    copier.copy();
+    lagMonitor.heartbeat();
+
+    assertThat(lagMonitor.isReplicaUsable()).isTrue();
+    assertThat(copier.getStats()).containsEntry("copies", 1L);
+  }
+
+  @Test
+  void copyFollowsThePrimarysRowsAndTables()
+  {
+    JdbcTemplate source = new JdbcTemplate(primary);
+    JdbcTemplate target = new JdbcTemplate(replica);
+    source.execute("create table bins (id bigint primary key, body clob)");
+    source.execute("create index idx_bins_id on bins (id)");
+    source.update("insert into bins values (1, 'one'), (2, 'two')");
+
+    copier.copy();
+    assertThat(target.queryForList("select body from bins order by id", String.class)).containsExactly("one", "two");
+
+    source.update("delete from bins where id = 1");
+    copier.copy();
+    assertThat(target.queryForList("select body from bins order by id", String.class)).containsExactly("two");
+
+    source.execute("drop table bins");
+    copier.copy();
+    assertThat(target.queryForObject("select count(*) from information_schema.tables where table_name = 'BINS'",
+      Integer.class)).isZero();
+  }
+
+  @Test
+  void asyncTaskRoutesLikeTheSubmittingThread()
+  {
+    lagMonitor.init();
+    copier.copy();
+    lagMonitor.heartbeat();
+    ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(lagMonitor);
+    ReplicaRoutingDataSource.requirePrimary();
+
+    Object[] target = new Object[1];
+    Runnable task = ReplicaRoutingDataSource.withCurrentRouting(() -> {
+      TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+      target[0] = routing.determineCurrentLookupKey();
+      TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    });
+    CompletableFuture.runAsync(task).join();
+
+    assertThat(target[0]).isEqualTo(ReplicaRoutingDataSource.Target.PRIMARY);
+  }
+
+  private static JdbcDataSource dataSource()
+  {
+    JdbcDataSource dataSource = new JdbcDataSource();
+    dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+    return dataSource;
+  }
+}
@@ -0,0 +1,144 @@
+package com.devtools.requestbin.controller;
+
+import java.nio.charset.StandardCharsets;
+
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.DuplicateMode;
+import com.devtools.requestbin.service.BinService;
+import com.devtools.requestbin.service.CaptureShardService;
+import com.devtools.requestbin.service.DuplicateDetectionService;
+import com.devtools.requestbin.service.ForwardingService;
+import com.devtools.requestbin.service.HarExportService;
+import com.devtools.requestbin.service.LongPollService;
+import com.devtools.requestbin.service.MemoryBudgetService;
+import com.devtools.requestbin.service.MockResponseService;
+import com.devtools.requestbin.service.PayloadScanService;
+import com.devtools.requestbin.service.RateLimitService;
+import com.devtools.requestbin.service.RequestCaptureService;
+import com.devtools.requestbin.service.RetentionService;
+import com.devtools.requestbin.service.SamplingService;
+import com.devtools.requestbin.service.StorageQuotaService;
+import com.devtools.requestbin.storage.InMemoryStorage;
+import com.devtools.requestbin.storage.InMemoryTransactionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import static com.devtools.requestbin.storage.StorageFixtures.bin;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class BinControllerTest
+{
+
+  private final InMemoryStorage storage = new InMemoryStorage(10);
+  private final TransactionTemplate transactionTemplate = new TransactionTemplate(new InMemoryTransactionManager());
+  private final CaptureShardService captureShardService = new CaptureShardService(1, 10, 60, 5);
+  private final RetentionService retentionService =
+    new RetentionService(storage, storage, mock(ApplicationEventPublisher.class));
+  private final RequestCaptureService requestCaptureService = new RequestCaptureService(storage, storage,
+    mock(ApplicationEventPublisher.class), retentionService, mock(StorageQuotaService.class),
+    new MemoryBudgetService(1024 * 1024, MemoryBudgetService.OverBudgetMode.REJECT, 0, 1, "/tmp"),
+    captureShardService, transactionTemplate,
+    new DuplicateDetectionService(storage, storage, new String[] {"content-type"}, 100),
+    mock(SamplingService.class));
+  private final BinController controller = new BinController(
+    new BinService(storage, storage, mock(RateLimitService.class), mock(ApplicationEventPublisher.class),
+      mock(ForwardingService.class), mock(SamplingService.class), mock(MockResponseService.class)),
+    mock(PayloadScanService.class), mock(LongPollService.class), mock(HarExportService.class));
+
+  @AfterEach
+  void shutdown()
+  {
+    captureShardService.shutdown();
+  }
+
+  @Test
+  void unchangedBinIsNotModified()
+  {
+    bin(storage, "same");
+    String etag = controller.getBin("same", webRequest(null)).getHeaders().getETag();
+    assertThat(etag).startsWith("W/");
+
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    assertThat(controller.getBin("same", webRequest(etag, response))).isNull();
+    assertThat(response.getStatus()).isEqualTo(304);
+
+    assertThat(controller.getBinDetails("same", webRequest(etag))).isNull();
+  }
+
+  @Test
+  void captureChangesTheETag()
+  {
+    bin(storage, "capture");
+    String etag = controller.getBin("capture", webRequest(null)).getHeaders().getETag();
+
+    capture("capture", "first");
+
+    assertChanged(controller.getBin("capture", webRequest(etag)), etag);
+    assertChanged(controller.getBinDetails("capture", webRequest(etag)), etag);
+  }
+
+  @Test
+  void trimChangesTheETag()
+  {
+    Bin bin = bin(storage, "trim");
+    capture("trim", "first");
+    capture("trim", "second");
+    String etag = controller.getBinDetails("trim", webRequest(null)).getHeaders().getETag();
+
+    transactionTemplate.executeWithoutResult(status -> retentionService.trimUpTo(bin, 1));
+
+    assertChanged(controller.getBinDetails("trim", webRequest(etag)), etag);
+  }
+
+  @Test
+  void collapsedRedeliveryChangesTheETag()
+  {
+    Bin bin = bin(storage, "redelivery");
+    bin.setDuplicateMode(DuplicateMode.COLLAPSE);
+    capture("redelivery", "same");
+    String etag = controller.getBinDetails("redelivery", webRequest(null)).getHeaders().getETag();
+
+    capture("redelivery", "same");
+
+    assertThat(bin.getCurrentRequestCount()).isEqualTo(1);
+    assertChanged(controller.getBinDetails("redelivery", webRequest(etag)), etag);
+  }
+
+  private void capture(String uniqueUrl, String body)
+  {
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/b/" + uniqueUrl);
+    request.setContentType("text/plain");
+    request.setContent(body.getBytes(StandardCharsets.UTF_8));
+    requestCaptureService.captureRequest(uniqueUrl, request);
+  }
+
+  private static void assertChanged(ResponseEntity<?> response, String etag)
+  {
+    assertThat(response).isNotNull();
+    assertThat(response.getStatusCode().value()).isEqualTo(200);
+    assertThat(response.getHeaders().getETag()).isNotEqualTo(etag);
+  }
+
+  private static ServletWebRequest webRequest(String ifNoneMatch)
+  {
+    return webRequest(ifNoneMatch, new MockHttpServletResponse());
+  }
+
+  private static ServletWebRequest webRequest(String ifNoneMatch, MockHttpServletResponse response)
+  {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/bins/bin");
+    if (ifNoneMatch != null)
+    {
+      request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+    }
+    return new ServletWebRequest(request, response);
+  }
+}
@@ -0,0 +1,60 @@
+package com.devtools.requestbin.controller;
+
+import com.devtools.requestbin.dto.CapturedRequestResponse;
+import com.devtools.requestbin.exception.RequestNotFoundException;
+import com.devtools.requestbin.service.RequestCaptureService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CapturedRequestControllerTest
+{
+
+  private final RequestCaptureService requestCaptureService = mock(RequestCaptureService.class);
+  private final CapturedRequestController controller = new CapturedRequestController(requestCaptureService);
+
+  @Test
+  void collapsedDeliveryChangesTheETag()
+  {
+    when(requestCaptureService.getRequest("bin", 42L))
+      .thenReturn(CapturedRequestResponse.builder().id(42L).deliveryCount(1).build());
+    ResponseEntity<?> first = controller.getRequest("bin", 42L, webRequest(null));
+    String etag = first.getHeaders().getETag();
+    assertThat(first.getHeaders().getCacheControl()).contains("no-cache");
+
+    assertThat(controller.getRequest("bin", 42L, webRequest(etag))).isNull();
+
+    when(requestCaptureService.getRequest("bin", 42L))
+      .thenReturn(CapturedRequestResponse.builder().id(42L).deliveryCount(2).build());
+    ResponseEntity<?> changed = controller.getRequest("bin", 42L, webRequest(etag));
+    assertThat(changed.getStatusCode().value()).isEqualTo(200);
+    assertThat(changed.getHeaders().getETag()).isNotEqualTo(etag);
+  }
+
+  @Test
+  void removedRequestIsNotRevalidated()
+  {
+    when(requestCaptureService.getRequest("bin", 42L)).thenThrow(new RequestNotFoundException(42L));
+
+    assertThatThrownBy(() -> controller.getRequest("bin", 42L, webRequest("\"request-42-1\"")))
+      .isInstanceOf(RequestNotFoundException.class);
+  }
+
+  private static ServletWebRequest webRequest(String ifNoneMatch)
+  {
+    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/bins/bin/requests/42");
+    if (ifNoneMatch != null)
+    {
+      request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+    }
+    return new ServletWebRequest(request, new MockHttpServletResponse());
+  }
+}
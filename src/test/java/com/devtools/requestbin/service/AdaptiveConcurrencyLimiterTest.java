@@ -0,0 +1,90 @@
+package com.devtools.requestbin.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimiterTest
+{
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test
+  void admitsUpToTheLimitAndShedsAfterTheDeadline()
+  {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 2, 1, 10, 500, 0.5);
+
+    assertThat(limiter.tryAcquire(0)).isTrue();
+    assertThat(limiter.tryAcquire(0)).isTrue();
+    assertThat(limiter.tryAcquire(TimeUnit.MILLISECONDS.toNanos(10))).isFalse();
+    assertThat(limiter.getShedCount()).isEqualTo(1);
+    assertThat(limiter.getWaiting()).isZero();
+  }
+
+  @Test
+  void freedSlotGoesToTheWaiterNotToANewArrival()
+    throws Exception
+  {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 1, 1, 500, 0.5);
+    assertThat(limiter.tryAcquire(0)).isTrue();
+
+    CompletableFuture<Boolean> waiter = CompletableFuture.supplyAsync(() -> limiter.tryAcquire(5 * SECOND));
+    while (limiter.getWaiting() == 0)
+    {
+      Thread.onSpinWait();
+    }
+
+    limiter.release(0, false);
+    // The slot was handed to the waiter on release, so a newcomer has nothing to take
+    assertThat(limiter.tryAcquire(0)).isFalse();
+    assertThat(waiter.get(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(limiter.getInFlight()).isEqualTo(1);
+  }
+
+  @Test
+  void newArrivalsQueueBehindWaiters()
+    throws Exception
+  {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 1, 1, 500, 0.5);
+    assertThat(limiter.tryAcquire(0)).isTrue();
+
+    CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> limiter.tryAcquire(5 * SECOND));
+    while (limiter.getWaiting() < 1)
+    {
+      Thread.onSpinWait();
+    }
+    CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> limiter.tryAcquire(5 * SECOND));
+    while (limiter.getWaiting() < 2)
+    {
+      Thread.onSpinWait();
+    }
+
+    limiter.release(0, false);
+    assertThat(first.get(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(second).isNotDone();
+
+    limiter.release(0, false);
+    assertThat(second.get(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  void failuresAndSlowRequestsBackOffTheLimit()
+  {
+    AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 8, 2, 10, 500, 0.5);
+
+    limiter.tryAcquire(0);
+    limiter.release(0, true);
+    assertThat(limiter.getLimit()).isEqualTo(4);
+
+    limiter.tryAcquire(0);
+    limiter.release(TimeUnit.MILLISECONDS.toNanos(600), false);
+    assertThat(limiter.getLimit()).isEqualTo(2);
+
+    limiter.tryAcquire(0);
+    limiter.release(0, true);
+    assertThat(limiter.getLimit()).isEqualTo(2);
+  }
+}
@@ -0,0 +1,154 @@
+package com.devtools.requestbin.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.event.BinRemovedEvent;
+import com.devtools.requestbin.exception.ServiceOverloadedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CaptureShardServiceTest
+{
+
+  private CaptureShardService shards;
+
+  @AfterEach
+  void shutdown()
+  {
+    shards.shutdown();
+  }
+
+  @Test
+  void binRunsItsTasksOneAtATimeInOrder()
+  {
+    shards = new CaptureShardService(4, 100, 60, 5);
+    List<Integer> order = new ArrayList<>();
+    List<CompletableFuture<Boolean>> tasks = new ArrayList<>();
+    for (int i = 0; i < 50; i++)
+    {
+      int task = i;
+      tasks.add(shards.submit("bin", () -> order.add(task)));
+    }
+    tasks.forEach(CompletableFuture::join);
+
+    assertThat(order).hasSize(50).isSorted();
+  }
+
+  @Test
+  void rateWindowIsKeptPerBinOnItsShard()
+  {
+    shards = new CaptureShardService(2, 100, 3, 5);
+
+    List<Boolean> hot = new ArrayList<>();
+    for (int i = 0; i < 4; i++)
+    {
+      hot.add(shards.submit("hot", () -> shards.tryAcquireCapture("hot", 1L)).join());
+    }
+    boolean quiet = shards.submit("quiet", () -> shards.tryAcquireCapture("quiet", 2L)).join();
+
+    assertThat(hot).containsExactly(true, true, true, false);
+    assertThat(quiet).isTrue();
+  }
+
+  @Test
+  void heldBinParksItsTasksWhileOtherBinsRun()
+  {
+    shards = new CaptureShardService(1, 100, 60, 5);
+    List<String> order = new ArrayList<>();
+    shards.submitAndHold("importing", () -> order.add("reserve")).join();
+
+    CompletableFuture<Boolean> capture = shards.submit("importing", () -> order.add("capture"));
+    shards.submit("other", () -> order.add("other")).join();
+    assertThat(capture).isNotDone();
+
+    shards.submitAndRelease("importing", () -> order.add("release")).join();
+    capture.join();
+    assertThat(order).containsExactly("reserve", "other", "release", "capture");
+  }
+
+  @Test
+  void parkedHoldHoldsTheBinAgain()
+  {
+    shards = new CaptureShardService(1, 100, 60, 5);
+    List<String> order = new ArrayList<>();
+    shards.submitAndHold("bin", () -> order.add("first")).join();
+    CompletableFuture<Boolean> second = shards.submitAndHold("bin", () -> order.add("second"));
+    CompletableFuture<Boolean> capture = shards.submit("bin", () -> order.add("capture"));
+
+    shards.submitAndRelease("bin", () -> order.add("first done")).join();
+    second.join();
+    assertThat(capture).isNotDone();
+
+    shards.submitAndRelease("bin", () -> order.add("second done")).join();
+    capture.join();
+    assertThat(order).containsExactly("first", "first done", "second", "second done", "capture");
+  }
+
+  @Test
+  void fullShardQueueSheds()
+  {
+    shards = new CaptureShardService(1, 1, 60, 5);
+    CompletableFuture<Void> started = new CompletableFuture<>();
+    CompletableFuture<Void> gate = new CompletableFuture<>();
+    shards.submit("bin", () -> {
+      started.complete(null);
+      return gate.join();
+    });
+    started.join();
+    shards.submit("bin", () -> null);
+
+    assertThatThrownBy(() -> shards.submit("bin", () -> null))
+      .isInstanceOf(ServiceOverloadedException.class);
+    assertThat(shards.getRejectedCount()).isEqualTo(1);
+    gate.complete(null);
+  }
+
+  @Test
+  void heldBinIsReleasedWhenTheShardQueueIsFull()
+  {
+    shards = new CaptureShardService(1, 1, 60, 5);
+    List<String> order = new ArrayList<>();
+    shards.submitAndHold("importing", () -> order.add("reserve")).join();
+    CompletableFuture<Void> started = new CompletableFuture<>();
+    CompletableFuture<Void> gate = new CompletableFuture<>();
+    shards.submit("other", () -> {
+      started.complete(null);
+      return gate.join();
+    });
+    started.join();
+    CompletableFuture<Boolean> capture = shards.submit("importing", () -> order.add("capture"));
+    assertThatThrownBy(() -> shards.submit("other", () -> null))
+      .isInstanceOf(ServiceOverloadedException.class);
+
+    CompletableFuture<Boolean> release = shards.submitAndRelease("importing", () -> order.add("release"));
+    gate.complete(null);
+    release.join();
+    capture.join();
+
+    assertThat(order).containsExactly("reserve", "release", "capture");
+    assertThat(shards.submit("importing", () -> order.add("after")).join()).isTrue();
+  }
+
+  @Test
+  void sequenceOfARolledBackCaptureIsNotHandedOutAgain()
+  {
+    shards = new CaptureShardService(1, 1, 60, 5);
+    Bin bin = Bin.builder().id(1L).captureSequence(4L).build();
+
+    assertThat(shards.nextSequence(bin)).isEqualTo(5);
+    // The capture rolled back: the bin's committed sequence is still 4
+    assertThat(shards.nextSequence(bin)).isEqualTo(6);
+
+    shards.takeSequences(1L, 10);
+    assertThat(shards.lastSequence(bin)).isEqualTo(10);
+
+    shards.onBinRemoved(new BinRemovedEvent(1L, "bin", 0));
+    assertThat(shards.lastSequence(bin)).isEqualTo(4);
+  }
+}
@@ -0,0 +1,92 @@
+package com.devtools.requestbin.service;
+
+import java.util.Optional;
+
+import com.devtools.requestbin.dto.ForwardingDeadLetter;
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+import com.devtools.requestbin.event.BinRemovedEvent;
+import com.devtools.requestbin.event.RequestCapturedEvent;
+import com.devtools.requestbin.storage.BinStore;
+import com.devtools.requestbin.storage.CapturedRequestStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ForwardingServiceTest
+{
+
+  private final MemoryBudgetService memoryBudgetService = mock(MemoryBudgetService.class);
+  private final BinStore binStore = mock(BinStore.class);
+  private final CapturedRequestStore requestStore = mock(CapturedRequestStore.class);
+  private final ForwardingService forwardingService = new ForwardingService(mock(RequestCaptureService.class),
+    memoryBudgetService, binStore, requestStore, 10, 3, 10, 100, 100, 100, 10);
+
+  private final Bin bin = Bin.builder()
+    .id(1L)
+    .uniqueUrl("bin")
+    .forwardTargets("[{\"url\":\"http://127.0.0.1:9/\",\"batchSize\":1,\"maxConcurrency\":1,\"ratePerSecond\":1}]")
+    .build();
+
+  @AfterEach
+  void shutdown()
+  {
+    forwardingService.shutdown();
+  }
+
+  @Test
+  void overBudgetRequestIsDeadLetteredByIdAndRedrivenFromTheStore()
+  {
+    when(binStore.findBinById(1L)).thenReturn(Optional.of(bin));
+    when(memoryBudgetService.tryHold(anyLong())).thenReturn(false);
+    CapturedRequest kept = request(10L);
+    CapturedRequest trimmed = request(11L);
+
+    forwardingService.onRequestCaptured(new RequestCapturedEvent(1L, "bin", kept));
+    forwardingService.onRequestCaptured(new RequestCapturedEvent(1L, "bin", trimmed));
+
+    assertThat(forwardingService.getDeadLetters(1L))
+      .extracting(ForwardingDeadLetter::getRequestId, ForwardingDeadLetter::getAttempts, ForwardingDeadLetter::getError)
+      .containsExactly(
+        tuple(10L, 0, "Forwarding memory budget exhausted"),
+        tuple(11L, 0, "Forwarding memory budget exhausted"));
+    assertThat(forwardingService.getStats()).containsEntry("queued", 0);
+
+    when(requestStore.findById(10L)).thenReturn(Optional.of(kept));
+    when(requestStore.findById(11L)).thenReturn(Optional.empty());
+    assertThat(forwardingService.redrive(1L)).isEqualTo(1);
+  }
+
+  @Test
+  void removedBinGetsNoNewQueues()
+  {
+    when(binStore.findBinById(1L)).thenReturn(Optional.of(bin));
+    when(memoryBudgetService.tryHold(anyLong())).thenReturn(false);
+    forwardingService.onRequestCaptured(new RequestCapturedEvent(1L, "bin", request(10L)));
+    assertThat(forwardingService.getStats()).containsEntry("targets", 1);
+
+    forwardingService.onBinRemoved(new BinRemovedEvent(1L, "bin", 0));
+    when(binStore.findBinById(1L)).thenReturn(Optional.empty());
+    // Committed before the removal, delivered after it
+    forwardingService.onRequestCaptured(new RequestCapturedEvent(1L, "bin", request(11L)));
+
+    assertThat(forwardingService.getStats()).containsEntry("targets", 0);
+    assertThat(forwardingService.getDeadLetters(1L)).isEmpty();
+  }
+
+  private CapturedRequest request(Long id)
+  {
+    return CapturedRequest.builder()
+      .id(id)
+      .bin(bin)
+      .method("POST")
+      .body("body")
+      .bodySize(4)
+      .build();
+  }
+}
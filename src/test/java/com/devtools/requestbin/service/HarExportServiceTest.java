@@ -0,0 +1,173 @@
+package com.devtools.requestbin.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.devtools.requestbin.dto.ImportProgress;
+import com.devtools.requestbin.dto.RequestFilter;
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+import com.devtools.requestbin.storage.InMemoryStorage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static com.devtools.requestbin.storage.StorageFixtures.bin;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class HarExportServiceTest
+{
+
+  private static final LocalDateTime START = LocalDateTime.of(2026, 1, 2, 3, 0, 0);
+
+  private final InMemoryStorage storage = new InMemoryStorage(10);
+  private final HarExportService harExportService =
+    new HarExportService(storage, storage, mock(MockResponseService.class), 2, "8080");
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final CaptureShardService captureShardService = new CaptureShardService(1, 100, 60, 5);
+  private final ImportService importService;
+
+  HarExportServiceTest()
+  {
+    ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    RetentionService retentionService = new RetentionService(storage, storage, eventPublisher);
+    ReflectionTestUtils.setField(retentionService, "trimBatchPercent", 10);
+    StorageQuotaService storageQuotaService = new StorageQuotaService(storage);
+    ReflectionTestUtils.setField(storageQuotaService, "maxTotalBytes", 1_000_000L);
+    importService = new ImportService(storage, storage, retentionService, storageQuotaService, captureShardService,
+      new TransactionTemplate(mock(PlatformTransactionManager.class)), eventPublisher, 2, 1_000_000, 1);
+  }
+
+  @AfterEach
+  void shutdown()
+  {
+    importService.shutdown();
+    captureShardService.shutdown();
+  }
+
+  @Test
+  void multiPageBinIsExportedAsAHar12Document()
+    throws Exception
+  {
+    Bin bin = bin(storage, "export");
+    List<CapturedRequest> requests = fill(bin, 5);
+
+    JsonNode log = export("export", new RequestFilter()).get("log");
+
+    assertThat(log.get("version").asText()).isEqualTo("1.2");
+    assertThat(log.get("creator").get("name").asText()).isNotEmpty();
+    JsonNode entries = log.get("entries");
+    assertThat(entries).hasSize(5);
+    for (int i = 0; i < 5; i++)
+    {
+      JsonNode entry = entries.get(i);
+      CapturedRequest request = requests.get(i);
+      assertThat(entry.get("startedDateTime").asText()).startsWith("2026-01-02T03:0" + i + ":00");
+      assertThat(entry.get("_requestId").asLong()).isEqualTo(request.getId());
+      assertThat(entry.get("_sequence").asLong()).isEqualTo(request.getSequence());
+      assertThat(entry.get("_clientIPAddress").asText()).isEqualTo("10.0.0." + i);
+
+      JsonNode harRequest = entry.get("request");
+      assertThat(harRequest.get("method").asText()).isEqualTo(request.getMethod());
+      assertThat(harRequest.get("url").asText()).isEqualTo("http://example.test/b/export?page=" + i);
+      assertThat(harRequest.get("httpVersion").asText()).isEqualTo("HTTP/1.1");
+      assertThat(harRequest.get("headers").get(0).get("name").asText()).isEqualTo("Host");
+      assertThat(harRequest.get("queryString").get(0).get("value").asText()).isEqualTo(Integer.toString(i));
+      assertThat(harRequest.get("postData").get("mimeType").asText()).isEqualTo("text/plain");
+      assertThat(harRequest.get("postData").get("text").asText()).isEqualTo("body " + i);
+
+      assertThat(entry.get("response").get("status").asInt()).isEqualTo(200);
+      assertThat(entry.get("response").get("content").get("mimeType").asText()).isEqualTo("application/json");
+      assertThat(entry.has("cache")).isTrue();
+      assertThat(entry.get("timings").get("wait").asInt()).isZero();
+    }
+  }
+
+  @Test
+  void exportAppliesTheMethodAndTimeFilter()
+    throws Exception
+  {
+    Bin bin = bin(storage, "filtered");
+    fill(bin, 6);
+    RequestFilter filter = new RequestFilter();
+    filter.setMethod("post");
+    filter.setFrom(START.plusMinutes(2));
+    filter.setTo(START.plusMinutes(5));
+
+    JsonNode entries = export("filtered", filter).get("log").get("entries");
+
+    // POST requests are the odd minutes: minute 1 is before from, minute 5 is not before to
+    List<Long> sequences = new ArrayList<>();
+    entries.forEach(entry -> sequences.add(entry.get("_sequence").asLong()));
+    assertThat(sequences).containsExactly(4L);
+  }
+
+  @Test
+  void exportedHarImportsBackWithClientAddresses()
+    throws Exception
+  {
+    Bin source = bin(storage, "source");
+    List<CapturedRequest> requests = fill(source, 3);
+    Bin target = bin(storage, "target");
+
+    ByteArrayOutputStream har = new ByteArrayOutputStream();
+    harExportService.exportHar("source", new RequestFilter()).writeTo(har);
+    ImportProgress progress = importService.importRequests("target", ImportService.Format.HAR,
+      new ByteArrayInputStream(har.toByteArray()));
+
+    assertThat(progress.getStatus()).isEqualTo(ImportProgress.Status.COMPLETED);
+    List<CapturedRequest> imported = storage.findAfterSequence(target.getId(), 0, 10);
+    assertThat(imported).hasSize(3);
+    for (int i = 0; i < 3; i++)
+    {
+      assertThat(imported.get(i).getMethod()).isEqualTo(requests.get(i).getMethod());
+      assertThat(imported.get(i).getIpAddress()).isEqualTo("10.0.0." + i);
+      assertThat(imported.get(i).getBody()).isEqualTo("body " + i);
+      assertThat(imported.get(i).getQueryParams()).isEqualTo("{\"page\":\"" + i + "\"}");
+      assertThat(imported.get(i).getTimestamp()).isEqualTo(requests.get(i).getTimestamp());
+    }
+  }
+
+  private JsonNode export(String uniqueUrl, RequestFilter filter)
+    throws Exception
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    harExportService.exportHar(uniqueUrl, filter).writeTo(out);
+    return objectMapper.readTree(out.toByteArray());
+  }
+
+  /**
+   * One request a minute from START, alternating POST and GET, each from its own address
+   */
+  private List<CapturedRequest> fill(Bin bin, int count)
+  {
+    List<CapturedRequest> requests = new ArrayList<>();
+    for (int i = 0; i < count; i++)
+    {
+      String body = "body " + i;
+      requests.add(CapturedRequest.builder()
+        .bin(bin)
+        .sequence(i + 1L)
+        .method(i % 2 == 0 ? "GET" : "POST")
+        .headers("{\"Host\":\"example.test\",\"Content-Type\":\"text/plain\"}")
+        .queryParams("{\"page\":\"" + i + "\"}")
+        .body(body)
+        .bodySize(body.length())
+        .ipAddress("10.0.0." + i)
+        .timestamp(START.plusMinutes(i))
+        .build());
+    }
+    storage.insertAll(requests);
+    return requests;
+  }
+}
@@ -0,0 +1,182 @@
+package com.devtools.requestbin.service;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.devtools.requestbin.dto.ImportProgress;
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+import com.devtools.requestbin.entity.RetentionMode;
+import com.devtools.requestbin.exception.InvalidRequestException;
+import com.devtools.requestbin.storage.InMemoryStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class ImportServiceTest
+{
+
+  private final InMemoryStorage storage = new InMemoryStorage(10);
+  private final CaptureShardService captureShardService = new CaptureShardService(1, 100, 60, 5);
+  private final ImportService importService;
+
+  ImportServiceTest()
+  {
+    ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    RetentionService retentionService = new RetentionService(storage, storage, eventPublisher);
+    ReflectionTestUtils.setField(retentionService, "trimBatchPercent", 10);
+    StorageQuotaService storageQuotaService = new StorageQuotaService(storage);
+    ReflectionTestUtils.setField(storageQuotaService, "maxTotalBytes", 1_000_000L);
+    importService = new ImportService(storage, storage, retentionService, storageQuotaService, captureShardService,
+      new TransactionTemplate(mock(PlatformTransactionManager.class)), eventPublisher, 2, 1_000_000, 1);
+  }
+
+  @AfterEach
+  void shutdown()
+  {
+    importService.shutdown();
+    captureShardService.shutdown();
+  }
+
+  @Test
+  void harEntriesKeepHeadersQueryAndClientAddress()
+  {
+    Bin bin = bin(RetentionMode.REJECT, 100, null);
+    String har = """
+      {"log": {"version": "1.2", "entries": [
+        {"startedDateTime": "2026-01-02T03:04:05.000Z", "_clientIPAddress": "10.0.0.1",
+         "request": {"method": "post", "headers": [{"name": ":authority", "value": "x"},
+           {"name": "Accept", "value": "a"}, {"name": "Accept", "value": "b"}],
+           "queryString": [{"name": "q", "value": "1"}], "postData": {"text": "hello"}}},
+        {"request": {"headers": []}},
+        {"request": {"method": "GET"}}
+      ]}}""";
+
+    ImportProgress progress = importService.importRequests(bin.getUniqueUrl(), ImportService.Format.HAR, upload(har));
+
+    assertThat(progress.getStatus()).isEqualTo(ImportProgress.Status.COMPLETED);
+    assertThat(progress.getImported()).isEqualTo(2);
+    assertThat(progress.getSkipped()).isEqualTo(1);
+    CapturedRequest first = requests(bin).get(0);
+    assertThat(first.getMethod()).isEqualTo("POST");
+    assertThat(first.getHeaders()).isEqualTo("{\"Accept\":\"a, b\"}");
+    assertThat(first.getQueryParams()).isEqualTo("{\"q\":\"1\"}");
+    assertThat(first.getIpAddress()).isEqualTo("10.0.0.1");
+    assertThat(first.getBody()).isEqualTo("hello");
+    assertThat(bin.getCurrentRequestCount()).isEqualTo(2);
+    assertThat(bin.getCaptureSequence()).isEqualTo(2);
+  }
+
+  @Test
+  void csvRowsMayHoldQuotedLineBreaks()
+  {
+    Bin bin = bin(RetentionMode.REJECT, 100, null);
+    String csv = "Timestamp,Method,IP Address,Query Params,Headers,Body\r\n"
+      + "2026-01-02T03:04:05,PUT,10.0.0.2,{},\"{\"\"A\"\":\"\"1\"\"}\",\"line one\nline, two\"\r\n"
+      + "\r\n"
+      + "too,short\r\n";
+
+    ImportProgress progress = importService.importRequests(bin.getUniqueUrl(), ImportService.Format.CSV, upload(csv));
+
+    assertThat(progress.getImported()).isEqualTo(1);
+    assertThat(progress.getSkipped()).isEqualTo(1);
+    CapturedRequest request = requests(bin).get(0);
+    assertThat(request.getHeaders()).isEqualTo("{\"A\":\"1\"}");
+    assertThat(request.getBody()).isEqualTo("line one\nline, two");
+    assertThat(request.getTimestamp()).isEqualTo(LocalDateTime.of(2026, 1, 2, 3, 4, 5));
+  }
+
+  @Test
+  void fullRejectBinTruncatesTheImport()
+  {
+    Bin bin = bin(RetentionMode.REJECT, 3, null);
+
+    ImportProgress progress = importService.importRequests(bin.getUniqueUrl(), ImportService.Format.JSON,
+      upload(ndjson(5)));
+
+    assertThat(progress.getStatus()).isEqualTo(ImportProgress.Status.TRUNCATED);
+    assertThat(progress.getImported()).isEqualTo(3);
+    assertThat(requests(bin)).hasSize(3);
+  }
+
+  @Test
+  void keepLatestBinKeepsTheNewestImported()
+  {
+    Bin bin = bin(RetentionMode.KEEP_LATEST, 3, null);
+
+    ImportProgress progress = importService.importRequests(bin.getUniqueUrl(), ImportService.Format.JSON,
+      upload(ndjson(5)));
+
+    assertThat(progress.getStatus()).isEqualTo(ImportProgress.Status.COMPLETED);
+    assertThat(requests(bin)).extracting(CapturedRequest::getBody).containsExactly("2", "3", "4");
+    assertThat(bin.getCurrentRequestCount()).isEqualTo(3);
+  }
+
+  @Test
+  void requestsOlderThanTheBinsMaxAgeAreSkipped()
+  {
+    Bin bin = bin(RetentionMode.REJECT, 100, 60);
+    String json = "{\"method\":\"GET\",\"timestamp\":\"" + LocalDateTime.now().minusDays(1) + "\"}\n"
+      + "{\"method\":\"GET\",\"timestamp\":\"" + LocalDateTime.now().minusMinutes(5) + "\"}\n";
+
+    ImportProgress progress = importService.importRequests(bin.getUniqueUrl(), ImportService.Format.JSON, upload(json));
+
+    assertThat(progress.getImported()).isEqualTo(1);
+    assertThat(progress.getSkipped()).isEqualTo(1);
+  }
+
+  @Test
+  void malformedUploadFailsTheImport()
+  {
+    Bin bin = bin(RetentionMode.REJECT, 100, null);
+
+    assertThatThrownBy(() -> importService.importRequests(bin.getUniqueUrl(), ImportService.Format.JSON,
+      upload("{\"method\":\"GET\"}\n{\"method\": ")))
+      .isInstanceOf(InvalidRequestException.class)
+      .hasMessageContaining("after 0 requests");
+    assertThat(importService.getImports(bin.getUniqueUrl()))
+      .extracting(ImportProgress::getStatus)
+      .containsExactly(ImportProgress.Status.FAILED);
+  }
+
+  private Bin bin(RetentionMode mode, int maxRequests, Integer maxAgeMinutes)
+  {
+    return storage.save(Bin.builder()
+      .uniqueUrl("bin-" + mode + "-" + maxRequests + "-" + maxAgeMinutes)
+      .expiresAt(LocalDateTime.now().plusDays(1))
+      .maxRequests(maxRequests)
+      .maxBytes(1_000_000L)
+      .maxAgeMinutes(maxAgeMinutes)
+      .retentionMode(mode)
+      .build());
+  }
+
+  private static String ndjson(int count)
+  {
+    StringBuilder json = new StringBuilder();
+    for (int i = 0; i < count; i++)
+    {
+      json.append("{\"method\":\"POST\",\"body\":\"").append(i).append("\"}\n");
+    }
+    return json.toString();
+  }
+
+  private static ByteArrayInputStream upload(String text)
+  {
+    return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private List<CapturedRequest> requests(Bin bin)
+  {
+    return storage.findAfterSequence(bin.getId(), 0, 100);
+  }
+}
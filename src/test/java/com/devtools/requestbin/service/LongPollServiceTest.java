@@ -0,0 +1,46 @@
+package com.devtools.requestbin.service;
+
+import java.time.Duration;
+import java.util.List;
+
+import com.devtools.requestbin.dto.ApiResponse;
+import com.devtools.requestbin.dto.CapturedRequestResponse;
+import com.devtools.requestbin.dto.RequestBatchResponse;
+import com.devtools.requestbin.event.RequestRedeliveredEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LongPollServiceTest
+{
+
+  private final RequestCaptureService requestCaptureService = mock(RequestCaptureService.class);
+  private final LongPollService longPollService = new LongPollService(requestCaptureService);
+
+  @Test
+  void redeliveryWakesCallersThatAlreadyHaveTheRequest()
+  {
+    when(requestCaptureService.getActiveBinId("bin")).thenReturn(1L);
+    when(requestCaptureService.getRequestsAfter(eq(1L), anyLong(), anyInt())).thenReturn(List.of());
+    CapturedRequestResponse original = CapturedRequestResponse.builder().id(42L).sequence(5L).deliveryCount(2).build();
+    when(requestCaptureService.getRequest(42L)).thenReturn(original);
+
+    DeferredResult<ApiResponse<RequestBatchResponse>> caughtUp = longPollService.poll("bin", 7, 10, Duration.ofSeconds(30));
+    DeferredResult<ApiResponse<RequestBatchResponse>> behind = longPollService.poll("bin", 3, 10, Duration.ofSeconds(30));
+
+    longPollService.onRequestRedelivered(new RequestRedeliveredEvent(1L, "bin", 42L, 5L));
+
+    @SuppressWarnings("unchecked")
+    RequestBatchResponse batch = ((ApiResponse<RequestBatchResponse>)caughtUp.getResult()).getData();
+    assertThat(batch.getRequests()).containsExactly(original);
+    assertThat(batch.getLastSequence()).isEqualTo(7);
+    // It reaches sequence 5 in its own next batch
+    assertThat(behind.hasResult()).isFalse();
+  }
+}
@@ -0,0 +1,201 @@
+package com.devtools.requestbin.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.devtools.requestbin.exception.PayloadTooLargeException;
+import com.devtools.requestbin.exception.ServiceOverloadedException;
+import com.devtools.requestbin.service.MemoryBudgetService.BodyBuffer;
+import com.devtools.requestbin.service.MemoryBudgetService.BufferedBody;
+import com.devtools.requestbin.service.MemoryBudgetService.OverBudgetMode;
+import com.devtools.requestbin.storage.InMemoryTransactionManager;
+import jakarta.servlet.ServletInputStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.DelegatingServletInputStream;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemoryBudgetServiceTest
+{
+
+  private static final int KB = 1024;
+
+  @Test
+  void declaredBodyOverTheRemainingBudgetIsRejectedUpFront()
+  {
+    MemoryBudgetService service = service(OverBudgetMode.REJECT, 0);
+    BufferedBody held = service.readBody(request(3 * KB));
+
+    assertThatThrownBy(() -> service.readBody(request(2 * KB)))
+      .isInstanceOf(ServiceOverloadedException.class);
+    assertThat(service.getRejectedCount()).isEqualTo(1);
+    assertThat(service.getAvailableBytes()).isEqualTo(KB);
+
+    held.close();
+    assertThat(service.getAvailableBytes()).isEqualTo(4 * KB);
+  }
+
+  @Test
+  void chunkedBodyThatOutgrowsTheBudgetIsRejectedAndGivesItsShareBack()
+  {
+    MemoryBudgetService service = service(OverBudgetMode.REJECT, 0);
+    BufferedBody held = service.readBody(request(2 * KB));
+
+    assertThatThrownBy(() -> service.readBody(chunked(new byte[3 * KB])))
+      .isInstanceOf(ServiceOverloadedException.class);
+    assertThat(service.getAvailableBytes()).isEqualTo(2 * KB);
+
+    held.close();
+  }
+
+  @Test
+  void bodyLargerThanTheWholeBudgetIsTooLarge()
+  {
+    MemoryBudgetService service = service(OverBudgetMode.SPILL, 0);
+
+    assertThatThrownBy(() -> service.readBody(request(5 * KB))).isInstanceOf(PayloadTooLargeException.class);
+    assertThatThrownBy(() -> service.readBody(chunked(new byte[5 * KB])))
+      .isInstanceOf(PayloadTooLargeException.class);
+    assertThat(service.getAvailableBytes()).isEqualTo(4 * KB);
+  }
+
+  @Test
+  void spilledBodyIsLoadedOnceBudgetFreesUp() throws Exception
+  {
+    MemoryBudgetService service = service(OverBudgetMode.SPILL, 5_000);
+    BufferedBody held = service.readBody(request(3 * KB));
+
+    CompletableFuture<BufferedBody> spilled = CompletableFuture.supplyAsync(() -> service.readBody(request(2 * KB)));
+    Thread.sleep(100);
+    assertThat(spilled).isNotDone();
+    held.close();
+
+    BufferedBody body = spilled.get(5, TimeUnit.SECONDS);
+    assertThat(body.getText()).hasSize(2 * KB);
+    assertThat(service.getSpilledCount()).isEqualTo(1);
+    assertThat(service.getAvailableBytes()).isEqualTo(2 * KB);
+
+    body.close();
+    assertThat(service.getAvailableBytes()).isEqualTo(4 * KB);
+  }
+
+  @Test
+  void spilledBodyIsRejectedWhenNoBudgetFreesUpInTime()
+  {
+    MemoryBudgetService service = service(OverBudgetMode.SPILL, 50);
+    BufferedBody held = service.readBody(request(3 * KB));
+
+    assertThatThrownBy(() -> service.readBody(chunked(new byte[2 * KB])))
+      .isInstanceOf(ServiceOverloadedException.class);
+    assertThat(service.getSpilledCount()).isEqualTo(1);
+    assertThat(service.getAvailableBytes()).isEqualTo(KB);
+
+    held.close();
+  }
+
+  @Test
+  void failedReadGivesItsShareBack()
+  {
+    MemoryBudgetService service = service(OverBudgetMode.REJECT, 0);
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/b/bin")
+    {
+      @Override
+      public ServletInputStream getInputStream()
+      {
+        return new DelegatingServletInputStream(new InputStream()
+        {
+          @Override
+          public int read()
+            throws IOException
+          {
+            throw new IOException("connection reset");
+          }
+        });
+      }
+
+      @Override
+      public long getContentLengthLong()
+      {
+        return 2 * KB;
+      }
+    };
+
+    assertThat(service.readBody(request).getText()).isEmpty();
+    assertThat(service.getAvailableBytes()).isEqualTo(4 * KB);
+  }
+
+  @Test
+  void discardedBufferGivesItsShareBack()
+  {
+    MemoryBudgetService service = service(OverBudgetMode.REJECT, 0);
+    service.tryHold(KB);
+    BodyBuffer buffer = service.openBuffer(chunked(new byte[0]));
+
+    assertThat(buffer.tryAppend(new byte[2 * KB], 0, 2 * KB)).isTrue();
+    assertThat(buffer.tryAppend(new byte[2 * KB], 0, 2 * KB)).isFalse();
+    assertThat(service.getAvailableBytes()).isEqualTo(KB);
+
+    buffer.discard();
+    assertThat(service.getAvailableBytes()).isEqualTo(3 * KB);
+  }
+
+  @Test
+  void bodyIsReleasedOnceWhenItsTransactionRollsBack()
+  {
+    MemoryBudgetService service = service(OverBudgetMode.REJECT, 0);
+    BufferedBody body = service.readBody(request(2 * KB));
+
+    new TransactionTemplate(new InMemoryTransactionManager()).executeWithoutResult(status -> {
+      body.releaseAfterTransaction();
+      assertThat(service.getAvailableBytes()).isEqualTo(2 * KB);
+      status.setRollbackOnly();
+    });
+    body.close();
+
+    assertThat(service.getAvailableBytes()).isEqualTo(4 * KB);
+  }
+
+  @Test
+  void heldBodiesKeepTheirShareUntilReleased()
+  {
+    MemoryBudgetService service = service(OverBudgetMode.REJECT, 0);
+
+    assertThat(service.tryHold(3 * KB)).isTrue();
+    assertThat(service.tryHold(2 * KB)).isFalse();
+    assertThat(service.getAvailableBytes()).isEqualTo(KB);
+
+    service.releaseHeld(3 * KB);
+    assertThat(service.getAvailableBytes()).isEqualTo(4 * KB);
+  }
+
+  private static MemoryBudgetService service(OverBudgetMode mode, long spillWaitMs)
+  {
+    return new MemoryBudgetService(4 * KB, mode, spillWaitMs, 1, System.getProperty("java.io.tmpdir"));
+  }
+
+  private static MockHttpServletRequest request(int size)
+  {
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/b/bin");
+    request.setContent(new byte[size]);
+    return request;
+  }
+
+  private static MockHttpServletRequest chunked(byte[] body)
+  {
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", "/b/bin")
+    {
+      @Override
+      public long getContentLengthLong()
+      {
+        return -1;
+      }
+    };
+    request.setContent(body);
+    return request;
+  }
+}
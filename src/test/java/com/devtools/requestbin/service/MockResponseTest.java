@@ -0,0 +1,153 @@
+package com.devtools.requestbin.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.devtools.requestbin.dto.CaptureReceipt;
+import com.devtools.requestbin.dto.ResponseTemplate;
+import com.devtools.requestbin.exception.InvalidRequestException;
+import com.devtools.requestbin.storage.BinStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class MockResponseTest
+{
+
+  private static final CaptureReceipt RECEIPT = CaptureReceipt.builder()
+    .binId(1L)
+    .requestId(42L)
+    .sequence(7)
+    .timestamp(LocalDateTime.of(2026, 1, 2, 3, 4, 5))
+    .build();
+
+  @Test
+  void placeholdersAreRenderedInTheBodyAndHeaders() throws Exception
+  {
+    Map<String, String> headers = new LinkedHashMap<>();
+    headers.put("X-Request", "id={{requestId}};seq={{sequence}}");
+    headers.put("X-Plain", "{{unknown}}");
+    MockResponse response = MockResponse.compile(
+      new ResponseTemplate(201, headers, "{\"id\":{{requestId}},\"at\":\"{{timestamp}}\",\"x\":\"{{other}}\"}", 0));
+
+    MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+    response.writeTo(servletResponse, RECEIPT);
+
+    assertThat(servletResponse.getStatus()).isEqualTo(201);
+    assertThat(servletResponse.getHeader("X-Request")).isEqualTo("id=42;seq=7");
+    assertThat(servletResponse.getHeader("X-Plain")).isEqualTo("{{unknown}}");
+    assertThat(servletResponse.getContentAsString())
+      .isEqualTo("{\"id\":42,\"at\":\"2026-01-02T03:04:05\",\"x\":\"{{other}}\"}");
+  }
+
+  @Test
+  void sampledOutRequestsRenderNullIds() throws Exception
+  {
+    MockResponse response = MockResponse.compile(
+      new ResponseTemplate(200, Map.of("X-Id", "{{requestId}}"), "{{requestId}}/{{sequence}}", 0));
+    CaptureReceipt sampledOut = CaptureReceipt.builder()
+      .binId(1L)
+      .timestamp(RECEIPT.getTimestamp())
+      .sampledOut(true)
+      .build();
+
+    MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+    response.writeTo(servletResponse, sampledOut);
+
+    assertThat(servletResponse.getHeader("X-Id")).isEqualTo("null");
+    assertThat(servletResponse.getContentAsString()).isEqualTo("null/null");
+  }
+
+  @Test
+  void contentLengthCountsRenderedValuesInUtf8Bytes() throws Exception
+  {
+    String body = "caf\u00e9 {{requestId}}";
+    MockResponse response = MockResponse.compile(new ResponseTemplate(200, null, body, 0));
+
+    MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+    response.writeTo(servletResponse, RECEIPT);
+
+    byte[] expected = "caf\u00e9 42".getBytes(StandardCharsets.UTF_8);
+    assertThat(servletResponse.getContentLength()).isEqualTo(expected.length);
+    assertThat(servletResponse.getContentAsByteArray()).isEqualTo(expected);
+  }
+
+  @Test
+  void responseEntityMatchesTheWrittenResponse() throws Exception
+  {
+    MockResponse response = MockResponse.compile(
+      new ResponseTemplate(418, Map.of("X-Seq", "{{sequence}}"), "a{{requestId}}b{{sequence}}c", 0));
+
+    MockHttpServletResponse servletResponse = new MockHttpServletResponse();
+    response.writeTo(servletResponse, RECEIPT);
+    ResponseEntity<byte[]> entity = response.toResponseEntity(RECEIPT);
+
+    assertThat(entity.getStatusCode().value()).isEqualTo(418);
+    assertThat(entity.getHeaders().getFirst("X-Seq")).isEqualTo("7");
+    assertThat(entity.getBody()).isEqualTo(servletResponse.getContentAsByteArray());
+  }
+
+  @Test
+  void delayedResponseCompletesItsDeferredResultAfterTheLatency() throws Exception
+  {
+    MockResponseService service = new MockResponseService(mock(BinStore.class));
+    try
+    {
+      MockResponse response = MockResponse.compile(new ResponseTemplate(202, null, "{{sequence}}", 50));
+
+      DeferredResult<ResponseEntity<byte[]>> result = service.respondAfterLatency(response, RECEIPT);
+      assertThat(result.hasResult()).isFalse();
+
+      long deadline = System.currentTimeMillis() + 5_000;
+      while (!result.hasResult() && System.currentTimeMillis() < deadline)
+      {
+        Thread.sleep(10);
+      }
+      @SuppressWarnings("unchecked")
+      ResponseEntity<byte[]> entity = (ResponseEntity<byte[]>)result.getResult();
+      assertThat(entity.getStatusCode().value()).isEqualTo(202);
+      assertThat(entity.getBody()).isEqualTo("7".getBytes(StandardCharsets.US_ASCII));
+    }
+    finally
+    {
+      service.shutdown();
+    }
+  }
+
+  @Test
+  void serverHeadersCannotBeSet()
+  {
+    for (String name : new String[] {"Content-Length", "transfer-encoding", "CONNECTION"})
+    {
+      assertThatThrownBy(() -> MockResponse.compile(new ResponseTemplate(200, Map.of(name, "1"), "", 0)))
+        .isInstanceOf(InvalidRequestException.class)
+        .hasMessageContaining("set by the server");
+    }
+  }
+
+  @Test
+  void headerValuesWithLineBreaksAreRejected()
+  {
+    assertThatThrownBy(() -> MockResponse.compile(
+      new ResponseTemplate(200, Map.of("X-Split", "a\r\nSet-Cookie: b"), "", 0)))
+      .isInstanceOf(InvalidRequestException.class)
+      .hasMessageContaining("line break");
+    assertThatThrownBy(() -> MockResponse.compile(new ResponseTemplate(200, Map.of("X-Split", "a\nb"), "", 0)))
+      .isInstanceOf(InvalidRequestException.class);
+  }
+
+  @Test
+  void invalidHeaderNamesAreRejected()
+  {
+    assertThatThrownBy(() -> MockResponse.compile(new ResponseTemplate(200, Map.of("Bad Name", "x"), "", 0)))
+      .isInstanceOf(InvalidRequestException.class)
+      .hasMessageContaining("Invalid response header name");
+  }
+}
@@ -0,0 +1,71 @@
+package com.devtools.requestbin.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.devtools.requestbin.dto.ScanResponse;
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+import com.devtools.requestbin.storage.InMemoryStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PayloadScanServiceTest
+{
+
+  private final InMemoryStorage storage = new InMemoryStorage(10);
+  private final PayloadScanService scanService = new PayloadScanService(storage, storage, 2, 3);
+
+  @AfterEach
+  void shutdown()
+  {
+    scanService.shutdown();
+  }
+
+  @Test
+  void matchesDroppedFromTheLastChunkLeaveTheScanIncomplete()
+  {
+    Bin bin = binWith(2);
+
+    ScanResponse response = scanService.scan(bin.getUniqueUrl(), "$.paid == true", 1);
+
+    assertThat(response.getMatched()).isEqualTo(1);
+    assertThat(response.isComplete()).isFalse();
+  }
+
+  @Test
+  void scanThatReadsEveryChunkWithinTheLimitIsComplete()
+  {
+    Bin bin = binWith(5);
+
+    ScanResponse response = scanService.scan(bin.getUniqueUrl(), "$.paid == true", 5);
+
+    assertThat(response.getScanned()).isEqualTo(5);
+    assertThat(response.getMatched()).isEqualTo(5);
+    assertThat(response.isComplete()).isTrue();
+  }
+
+  private Bin binWith(int requests)
+  {
+    Bin bin = storage.save(Bin.builder()
+      .uniqueUrl("scan-" + requests)
+      .expiresAt(LocalDateTime.now().plusDays(1))
+      .maxRequests(100)
+      .maxBytes(1_000_000L)
+      .build());
+    for (long sequence = 1; sequence <= requests; sequence++)
+    {
+      storage.insertAll(List.of(CapturedRequest.builder()
+        .bin(bin)
+        .sequence(sequence)
+        .method("POST")
+        .body("{\"paid\": true}")
+        .bodySize(14)
+        .timestamp(LocalDateTime.now())
+        .build()));
+    }
+    return bin;
+  }
+}
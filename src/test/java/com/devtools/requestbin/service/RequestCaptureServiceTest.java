@@ -0,0 +1,77 @@
+package com.devtools.requestbin.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+import com.devtools.requestbin.exception.RequestNotFoundException;
+import com.devtools.requestbin.storage.InMemoryStorage;
+import com.devtools.requestbin.storage.InMemoryTransactionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static com.devtools.requestbin.storage.StorageFixtures.bin;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RequestCaptureServiceTest
+{
+
+  private final InMemoryStorage storage = new InMemoryStorage(10);
+  private final CaptureShardService captureShardService = new CaptureShardService(1, 10, 60, 5);
+  private final SamplingService samplingService = mock(SamplingService.class);
+  private final RequestCaptureService requestCaptureService = new RequestCaptureService(storage, storage,
+    mock(ApplicationEventPublisher.class), mock(RetentionService.class), mock(StorageQuotaService.class),
+    mock(MemoryBudgetService.class), captureShardService, new TransactionTemplate(new InMemoryTransactionManager()),
+    mock(DuplicateDetectionService.class), samplingService);
+
+  @AfterEach
+  void shutdown()
+  {
+    captureShardService.shutdown();
+  }
+
+  @Test
+  void requestIsOnlyFoundThroughItsOwnBin()
+  {
+    Bin owner = bin(storage, "owner");
+    bin(storage, "other");
+    CapturedRequest request = CapturedRequest.builder()
+      .bin(owner)
+      .sequence(1L)
+      .method("POST")
+      .headers("{}")
+      .queryParams("{}")
+      .body("secret")
+      .bodySize(6)
+      .timestamp(LocalDateTime.now())
+      .build();
+    storage.insertAll(List.of(request));
+
+    assertThat(requestCaptureService.getRequest("owner", request.getId()).getBody()).isEqualTo("secret");
+    assertThatThrownBy(() -> requestCaptureService.getRequest("other", request.getId()))
+      .isInstanceOf(RequestNotFoundException.class);
+  }
+
+  @Test
+  void releasedSampleIsStoredWithTheTimeItWasReceived()
+  {
+    Bin bin = bin(storage, "sampled");
+    LocalDateTime receivedAt = LocalDateTime.now().minusMinutes(30);
+    when(samplingService.binsWithClosedWindows()).thenReturn(List.of("sampled"));
+    when(samplingService.releaseIfClosed(bin.getId())).thenReturn(List.of(
+      new ReceivedRequest("POST", "{}", "{}", "{}", "127.0.0.1", "held", receivedAt)));
+
+    requestCaptureService.releaseClosedReservoirs();
+    captureShardService.submit("sampled", () -> null).join();
+
+    assertThat(storage.findAfterSequence(bin.getId(), 0, 10))
+      .extracting(CapturedRequest::getTimestamp)
+      .containsExactly(receivedAt);
+  }
+}
@@ -0,0 +1,144 @@
+package com.devtools.requestbin.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+import com.devtools.requestbin.entity.RetentionMode;
+import com.devtools.requestbin.exception.BinLimitExceededException;
+import com.devtools.requestbin.storage.InMemoryStorage;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class RetentionServiceTest
+{
+
+  private final InMemoryStorage storage = new InMemoryStorage(10);
+  private final RetentionService retentionService =
+    new RetentionService(storage, storage, mock(ApplicationEventPublisher.class));
+
+  RetentionServiceTest()
+  {
+    ReflectionTestUtils.setField(retentionService, "trimBatchPercent", 10);
+  }
+
+  @Test
+  void ageTrimNeverDeletesARequestYoungerThanMaxAge()
+  {
+    Bin bin = bin(RetentionMode.REJECT, 100, 1_000_000);
+    bin.setMaxAgeMinutes(60);
+    LocalDateTime old = LocalDateTime.now().minusDays(1);
+    // Sequence 3 was imported with its original timestamp, after a live capture
+    append(bin, old, old, LocalDateTime.now(), old);
+
+    assertThat(retentionService.trimByAge(bin.getId(), 100)).isEqualTo(2);
+    assertThat(sequences(bin)).containsExactly(3L, 4L);
+    assertThat(bin.getCurrentRequestCount()).isEqualTo(2);
+  }
+
+  @Test
+  void ageTrimDeletesInBatches()
+  {
+    Bin bin = bin(RetentionMode.REJECT, 100, 1_000_000);
+    bin.setMaxAgeMinutes(60);
+    LocalDateTime old = LocalDateTime.now().minusDays(1);
+    append(bin, old, old, old, old, old);
+
+    assertThat(retentionService.trimByAge(bin.getId(), 2)).isEqualTo(2);
+    assertThat(retentionService.trimByAge(bin.getId(), 2)).isEqualTo(2);
+    assertThat(retentionService.trimByAge(bin.getId(), 2)).isEqualTo(1);
+    assertThat(sequences(bin)).isEmpty();
+  }
+
+  @Test
+  void fullRejectBinRefuses()
+  {
+    Bin bin = bin(RetentionMode.REJECT, 2, 1_000_000);
+    append(bin, LocalDateTime.now(), LocalDateTime.now());
+
+    assertThatThrownBy(() -> retentionService.admit(bin, 10)).isInstanceOf(BinLimitExceededException.class);
+  }
+
+  @Test
+  void fullKeepLatestBinDropsItsOldestBatch()
+  {
+    Bin bin = bin(RetentionMode.KEEP_LATEST, 10, 1_000_000);
+    LocalDateTime now = LocalDateTime.now();
+    append(bin, now, now, now, now, now, now, now, now, now, now);
+
+    retentionService.admit(bin, 10);
+
+    // 10% of maxRequests goes in one range delete
+    assertThat(sequences(bin)).containsExactly(2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+  }
+
+  @Test
+  void keepLatestTrimCountsRequestsNotSequences()
+  {
+    Bin bin = bin(RetentionMode.KEEP_LATEST, 10, 1_000_000);
+    LocalDateTime now = LocalDateTime.now();
+    append(bin, now, now, now, now, now);
+    // Five sequences lost to rolled-back captures
+    bin.setCaptureSequence(bin.getCaptureSequence() + 5);
+    append(bin, now, now, now, now, now);
+
+    retentionService.admit(bin, 10);
+
+    assertThat(sequences(bin)).containsExactly(2L, 3L, 4L, 5L, 11L, 12L, 13L, 14L, 15L);
+  }
+
+  @Test
+  void keepLatestBinEvictsJustEnoughBytes()
+  {
+    Bin bin = bin(RetentionMode.KEEP_LATEST, 100, 40);
+    LocalDateTime now = LocalDateTime.now();
+    append(bin, now, now, now, now);
+
+    // 4 x 10 bytes held; 15 more need two of the oldest gone
+    retentionService.admit(bin, 15);
+
+    assertThat(sequences(bin)).containsExactly(3L, 4L);
+    assertThat(bin.getCurrentBytes()).isEqualTo(20);
+  }
+
+  private Bin bin(RetentionMode mode, int maxRequests, long maxBytes)
+  {
+    return storage.save(Bin.builder()
+      .uniqueUrl("bin-" + mode + "-" + maxRequests + "-" + maxBytes)
+      .expiresAt(LocalDateTime.now().plusDays(1))
+      .maxRequests(maxRequests)
+      .maxBytes(maxBytes)
+      .retentionMode(mode)
+      .build());
+  }
+
+  private void append(Bin bin, LocalDateTime... timestamps)
+  {
+    for (LocalDateTime timestamp : timestamps)
+    {
+      long sequence = bin.getCaptureSequence() + 1;
+      storage.insertAll(List.of(CapturedRequest.builder()
+        .bin(bin)
+        .sequence(sequence)
+        .method("POST")
+        .body("0123456789")
+        .bodySize(10)
+        .timestamp(timestamp)
+        .build()));
+      bin.setCaptureSequence(sequence);
+      bin.setCurrentRequestCount(bin.getCurrentRequestCount() + 1);
+      bin.setCurrentBytes(bin.getCurrentBytes() + 10);
+    }
+  }
+
+  private List<Long> sequences(Bin bin)
+  {
+    return storage.findAfterSequence(bin.getId(), 0, 100).stream().map(CapturedRequest::getSequence).toList();
+  }
+}
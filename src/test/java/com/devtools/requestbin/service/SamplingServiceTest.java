@@ -0,0 +1,81 @@
+package com.devtools.requestbin.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SamplingServiceTest
+{
+
+  private static final long WINDOW = 1_000;
+
+  private final MemoryBudgetService budget =
+    new MemoryBudgetService(4 * 1024, MemoryBudgetService.OverBudgetMode.REJECT, 0, 1, "/tmp");
+
+  @Test
+  void heldBodiesCountAgainstTheMemoryBudget()
+  {
+    SamplingService.Reservoir reservoir = new SamplingService.Reservoir(10, WINDOW, new LongAdder(), budget);
+
+    reservoir.offer(request(1024), 0);
+    reservoir.offer(request(1024), 1);
+
+    assertThat(budget.getAvailableBytes()).isEqualTo(2 * 1024);
+    assertThat(reservoir.held()).isEqualTo(2);
+  }
+
+  @Test
+  void requestThatDoesNotFitTheBudgetIsDroppedNotHeld()
+  {
+    LongAdder dropped = new LongAdder();
+    SamplingService.Reservoir reservoir = new SamplingService.Reservoir(10, WINDOW, dropped, budget);
+
+    reservoir.offer(request(3 * 1024), 0);
+    reservoir.offer(request(2 * 1024), 1);
+
+    assertThat(reservoir.held()).isEqualTo(1);
+    assertThat(dropped.sum()).isEqualTo(1);
+    assertThat(budget.getAvailableBytes()).isEqualTo(1024);
+  }
+
+  @Test
+  void releasedSampleKeepsItsBudgetUntilStored()
+  {
+    SamplingService sampling = new SamplingService(budget, "X-Response-Status");
+    SamplingService.Reservoir reservoir = new SamplingService.Reservoir(10, WINDOW, new LongAdder(), budget);
+    reservoir.offer(request(1024), 0);
+    reservoir.offer(request(1024), 1);
+
+    // The next request after the window closes releases the sample and opens a new window
+    List<ReceivedRequest> released = reservoir.offer(request(1024), WINDOW);
+    assertThat(released).hasSize(2);
+    assertThat(budget.getAvailableBytes()).isEqualTo(1024);
+
+    released.forEach(sampling::releaseHeld);
+    assertThat(budget.getAvailableBytes()).isEqualTo(3 * 1024);
+  }
+
+  @Test
+  void clearingAReservoirGivesItsBudgetBack()
+  {
+    SamplingService.Reservoir reservoir = new SamplingService.Reservoir(2, WINDOW, new LongAdder(), budget);
+    for (int i = 0; i < 5; i++)
+    {
+      reservoir.offer(request(1024), i);
+    }
+    assertThat(reservoir.held()).isEqualTo(2);
+    assertThat(budget.getAvailableBytes()).isEqualTo(2 * 1024);
+
+    reservoir.clear();
+    assertThat(budget.getAvailableBytes()).isEqualTo(4 * 1024);
+  }
+
+  private static ReceivedRequest request(int bodySize)
+  {
+    return new ReceivedRequest("POST", "{}", "{}", "{}", "127.0.0.1", "x".repeat(bodySize), LocalDateTime.now());
+  }
+}
@@ -0,0 +1,55 @@
+package com.devtools.requestbin.service;
+
+import java.util.List;
+
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.storage.BinStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ScheduledTasksServiceTest
+{
+
+  private final BinStore binStore = mock(BinStore.class);
+  private final RetentionService retentionService = mock(RetentionService.class);
+  private final CaptureShardService captureShardService = new CaptureShardService(1, 10, 60, 5);
+  private final ScheduledTasksService scheduledTasksService = new ScheduledTasksService(binStore,
+    mock(ApplicationEventPublisher.class), retentionService, mock(AdmissionControlService.class), captureShardService);
+
+  @AfterEach
+  void shutdown()
+  {
+    captureShardService.shutdown();
+  }
+
+  @Test
+  void failedOrParkedBinDoesNotStopTheOthersFromBeingTrimmed()
+  {
+    ReflectionTestUtils.setField(scheduledTasksService, "ageTrimBatchSize", 10);
+    Bin failing = Bin.builder().id(1L).uniqueUrl("failing").build();
+    Bin held = Bin.builder().id(2L).uniqueUrl("held").build();
+    Bin trimmed = Bin.builder().id(3L).uniqueUrl("trimmed").build();
+    when(binStore.findAgeLimitedActiveAt(any())).thenReturn(List.of(failing, held, trimmed));
+    when(retentionService.trimByAge(1L, 10)).thenThrow(new IllegalStateException("broken"));
+    when(retentionService.trimByAge(3L, 10)).thenReturn(2);
+    // An import holds the bin and its parked tasks are full
+    captureShardService.submitAndHold("held", () -> null).join();
+    for (int i = 0; i < 10; i++)
+    {
+      captureShardService.submit("held", () -> null);
+      // Let it park before the next one is queued
+      captureShardService.submit("trimmed", () -> null).join();
+    }
+
+    scheduledTasksService.trimAgedRequests();
+
+    verify(retentionService).trimByAge(3L, 10);
+  }
+}
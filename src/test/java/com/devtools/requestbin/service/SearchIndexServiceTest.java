@@ -0,0 +1,100 @@
+package com.devtools.requestbin.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.devtools.requestbin.dto.SearchHit;
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+import com.devtools.requestbin.event.BinRemovedEvent;
+import com.devtools.requestbin.event.RequestCapturedEvent;
+import com.devtools.requestbin.event.RequestsTrimmedEvent;
+import com.devtools.requestbin.exception.InvalidRequestException;
+import com.devtools.requestbin.storage.InMemoryStorage;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static com.devtools.requestbin.storage.StorageFixtures.bin;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchIndexServiceTest
+{
+
+  private final InMemoryStorage storage = new InMemoryStorage(10);
+  private final SearchIndexService searchIndexService = new SearchIndexService(storage, storage);
+
+  SearchIndexServiceTest()
+  {
+    ReflectionTestUtils.setField(searchIndexService, "maxIndexedChars", 1000);
+    ReflectionTestUtils.setField(searchIndexService, "maxIndexBytes", 1_000_000L);
+  }
+
+  @Test
+  void captureIndexedAfterTheBinsRemovalDoesNotBringTheIndexBack()
+  {
+    Bin bin = bin(storage, "removed");
+    capture(bin, 1, "first");
+    assertThat(searchIndexService.search("first", List.of("removed"), 0, 10).getTotalHits()).isEqualTo(1);
+
+    storage.delete(bin);
+    searchIndexService.onBinRemoved(new BinRemovedEvent(bin.getId(), "removed", 0));
+    // Committed before the removal, indexed after it
+    capture(bin, 2, "second");
+
+    assertThat(searchIndexService.getStats())
+      .containsEntry("bins", 0)
+      .containsEntry("estimatedBytes", 0L);
+  }
+
+  @Test
+  void requestsBeyondTheBudgetAreSkippedUntilTrimsFreeSpace()
+  {
+    ReflectionTestUtils.setField(searchIndexService, "maxIndexBytes", 1000L);
+    Bin bin = bin(storage, "full");
+    for (long sequence = 1; sequence <= 10; sequence++)
+    {
+      capture(bin, sequence, "word" + sequence + " shared");
+    }
+
+    long skipped = (Long)searchIndexService.getStats().get("skipped");
+    assertThat(skipped).isPositive();
+    assertThat((Long)searchIndexService.getStats().get("estimatedBytes")).isLessThanOrEqualTo(1000L);
+    assertThat(searchIndexService.search("word10", List.of("full"), 0, 10).getTotalHits()).isZero();
+
+    searchIndexService.onRequestsTrimmed(new RequestsTrimmedEvent(bin.getId(), 10, 0));
+    assertThat(searchIndexService.getStats()).containsEntry("estimatedBytes", 0L);
+    capture(bin, 11, "word11");
+    assertThat(searchIndexService.search("word11", List.of("full"), 0, 10).getTotalHits()).isEqualTo(1);
+  }
+
+  @Test
+  void searchOnlyReachesTheListedBins()
+  {
+    Bin mine = bin(storage, "mine");
+    Bin theirs = bin(storage, "theirs");
+    capture(mine, 1, "invoice paid");
+    capture(theirs, 1, "invoice paid");
+
+    assertThat(searchIndexService.search("invoice", List.of("mine"), 0, 10).getHits())
+      .extracting(SearchHit::getUniqueUrl)
+      .containsExactly("mine");
+    assertThat(searchIndexService.search("invoice", List.of("mine", "theirs"), 0, 10).getTotalHits()).isEqualTo(2);
+    assertThatThrownBy(() -> searchIndexService.search("invoice", List.of(), 0, 10))
+      .isInstanceOf(InvalidRequestException.class);
+  }
+
+  private void capture(Bin bin, long sequence, String body)
+  {
+    CapturedRequest request = CapturedRequest.builder()
+      .id(bin.getId() * 1000 + sequence)
+      .bin(bin)
+      .sequence(sequence)
+      .method("POST")
+      .body(body)
+      .bodySize(body.length())
+      .timestamp(LocalDateTime.now())
+      .build();
+    searchIndexService.onRequestCaptured(new RequestCapturedEvent(bin.getId(), bin.getUniqueUrl(), request));
+  }
+}
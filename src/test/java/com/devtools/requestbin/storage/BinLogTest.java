@@ -0,0 +1,178 @@
+package com.devtools.requestbin.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinLogTest
+{
+
+  private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+  @TempDir
+  Path dir;
+
+  private BinLog binLog;
+
+  @AfterEach
+  void close()
+  {
+    if (binLog != null)
+    {
+      binLog.close();
+    }
+  }
+
+  @Test
+  void appendsStayHiddenUntilPublished()
+    throws IOException
+  {
+    binLog = BinLog.open(dir, 1 << 20, 2);
+    commit(1, 2);
+    binLog.append(appends(3, 3));
+
+    assertThat(sequences()).containsExactly(1L, 2L);
+
+    binLog.publish();
+    assertThat(sequences()).containsExactly(1L, 2L, 3L);
+  }
+
+  @Test
+  void usedSequenceIsRejected()
+    throws IOException
+  {
+    binLog = BinLog.open(dir, 1 << 20, 2);
+    commit(1, 2);
+
+    assertThatThrownBy(() -> binLog.append(appends(2, 2))).isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void tornTailIsTruncatedOnReopen()
+    throws IOException
+  {
+    binLog = BinLog.open(dir, 1 << 20, 2);
+    commit(1, 3);
+    binLog.close();
+    try (FileChannel tail = FileChannel.open(dir.resolve(LogSegment.fileName(1)), StandardOpenOption.WRITE,
+      StandardOpenOption.APPEND))
+    {
+      // Half of a record: its header promises more payload than was written
+      tail.write(ByteBuffer.allocate(12).putInt(0, 500));
+    }
+
+    binLog = BinLog.open(dir, 1 << 20, 2);
+    commit(4, 4);
+
+    assertThat(sequences()).containsExactly(1L, 2L, 3L, 4L);
+  }
+
+  @Test
+  void uncommittedTailIsDiscardedAfterACrash()
+    throws IOException
+  {
+    binLog = BinLog.open(dir, 1 << 20, 2);
+    commit(1, 2);
+    // Written and fsynced, but the database commit never happened
+    binLog.append(appends(3, 4));
+    binLog.close();
+
+    binLog = BinLog.open(dir, 1 << 20, 2);
+    binLog.discardAfter(2);
+    commit(3, 3);
+
+    assertThat(sequences()).containsExactly(1L, 2L, 3L);
+  }
+
+  @Test
+  void sealedSegmentsKeepTheirIndexAcrossReopen()
+    throws IOException
+  {
+    binLog = BinLog.open(dir, 600, 2);
+    for (long sequence = 1; sequence <= 20; sequence++)
+    {
+      commit(sequence, sequence);
+    }
+    binLog.close();
+
+    binLog = BinLog.open(dir, 600, 2);
+
+    assertThat(sequences()).hasSize(20);
+    assertThat(binLog.sumBodySizeUpTo(20)).isEqualTo(bodySizes(1, 20));
+    assertThat(binLog.expiredPrefixEnd(START.plusMinutes(11))).isEqualTo(10L);
+  }
+
+  @Test
+  void sizeSumsAndExpiryScansRespectTheWatermarkAndPublishedSequence()
+    throws IOException
+  {
+    binLog = BinLog.open(dir, 600, 3);
+    for (long sequence = 1; sequence <= 20; sequence++)
+    {
+      commit(sequence, sequence);
+    }
+    binLog.trimUpTo(4);
+    binLog.append(appends(21, 22));
+
+    assertThat(binLog.sumBodySizeUpTo(13)).isEqualTo(bodySizes(5, 13));
+    assertThat(binLog.sumBodySizeUpTo(Long.MAX_VALUE)).isEqualTo(bodySizes(5, 20));
+    assertThat(binLog.expiredPrefixEnd(START.plusMinutes(3))).isNull();
+    assertThat(binLog.expiredPrefixEnd(START.plusMinutes(9).plusSeconds(30))).isEqualTo(9L);
+    assertThat(binLog.expiredPrefixEnd(START.plusDays(1))).isEqualTo(20L);
+  }
+
+  private void commit(long from, long to)
+    throws IOException
+  {
+    binLog.append(appends(from, to));
+    binLog.publish();
+  }
+
+  /**
+   * Request n is n minutes after START with an n-byte body
+   */
+  private static List<BinLog.Append> appends(long from, long to)
+  {
+    List<BinLog.Append> appends = new ArrayList<>();
+    for (long sequence = from; sequence <= to; sequence++)
+    {
+      CapturedRequest request = CapturedRequest.builder()
+        .id(RequestIds.of(1L, sequence))
+        .bin(Bin.builder().id(1L).build())
+        .sequence(sequence)
+        .timestamp(START.plusMinutes(sequence))
+        .method("POST")
+        .body("x".repeat((int)sequence))
+        .bodySize((int)sequence)
+        .build();
+      appends.add(new BinLog.Append(sequence, LogRecordCodec.encode(request)));
+    }
+    return appends;
+  }
+
+  private static long bodySizes(long from, long to)
+  {
+    return (from + to) * (to - from + 1) / 2;
+  }
+
+  private List<Long> sequences()
+  {
+    List<Long> sequences = new ArrayList<>();
+    binLog.forward(0, payload -> sequences.add(LogRecordCodec.sequence(payload)));
+    return sequences;
+  }
+}
@@ -0,0 +1,60 @@
+package com.devtools.requestbin.storage;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CapturedRequestPartitionManagerTest
+{
+
+  private final JdbcTemplate jdbcTemplate = jdbcTemplate();
+
+  @Test
+  void partitionsGetEveryBinIndex()
+  {
+    String table = manager().tableFor(LocalDateTime.now().plusHours(1));
+
+    assertThat(indexes(table)).contains(
+      "idx_" + table + "_bin_timestamp",
+      "idx_" + table + "_bin_method",
+      "idx_" + table + "_bin_ip",
+      "idx_" + table + "_bin_body_size");
+  }
+
+  @Test
+  void partitionsOfAnEarlierVersionAreIndexedOnStartup()
+  {
+    String table = manager().tableFor(LocalDateTime.now().plusHours(1));
+    jdbcTemplate.execute("drop index idx_" + table + "_bin_method");
+
+    manager().init();
+
+    assertThat(indexes(table)).contains("idx_" + table + "_bin_method");
+  }
+
+  private CapturedRequestPartitionManager manager()
+  {
+    return new CapturedRequestPartitionManager(jdbcTemplate,
+      new DataSourceTransactionManager(jdbcTemplate.getDataSource()), 1, 0);
+  }
+
+  private List<String> indexes(String table)
+  {
+    return jdbcTemplate.queryForList("select lower(index_name) from information_schema.indexes"
+      + " where lower(table_name) = ?", String.class, table);
+  }
+
+  private static JdbcTemplate jdbcTemplate()
+  {
+    JdbcDataSource dataSource = new JdbcDataSource();
+    dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+    return new JdbcTemplate(dataSource);
+  }
+}
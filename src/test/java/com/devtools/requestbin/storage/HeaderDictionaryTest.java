@@ -0,0 +1,111 @@
+package com.devtools.requestbin.storage;
+
+import java.util.Map;
+import java.util.UUID;
+
+import com.devtools.requestbin.entity.CapturedRequest;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HeaderDictionaryTest
+{
+
+  @Test
+  void repeatedTextsAreCodedAndEverythingRoundTrips()
+  {
+    HeaderDictionary dictionary = dictionary(null);
+    String headers = "{\"Content-Type\":\"application/json\",\"X-Odd\":\"a;b=c#d\\\\e\"}";
+
+    String first = dictionary.encode(headers);
+    String second = dictionary.encode(headers);
+
+    assertThat(first).startsWith("~;Content-Type=application/json;");
+    assertThat(second).startsWith("~;#0=#1;").hasSizeLessThan(first.length());
+    assertThat(dictionary.decode(first)).isEqualTo(headers);
+    assertThat(dictionary.decode(second)).isEqualTo(headers);
+  }
+
+  @Test
+  void decodedHeadersShareTheDictionarysTexts()
+  {
+    HeaderDictionary dictionary = dictionary(null);
+    dictionary.encode("{\"Content-Type\":\"application/json\"}");
+    String stored = dictionary.encode("{\"Content-Type\":\"application/json\"}");
+
+    Map<String, String> first = dictionary.decodeHeaders(stored);
+    Map<String, String> second = dictionary.decodeHeaders(stored);
+
+    assertThat(first).containsExactly(Map.entry("Content-Type", "application/json"));
+    assertThat(second.keySet().iterator().next()).isSameAs(first.keySet().iterator().next());
+    assertThat(second.get("Content-Type")).isSameAs(first.get("Content-Type"));
+    assertThat(dictionary.decodeHeaders("{\"legacy\":\"json\"}")).isNull();
+  }
+
+  @Test
+  void headersJsonIsOnlyBuiltWhenAskedFor()
+  {
+    CapturedRequest request = CapturedRequest.builder().headerMap(Map.of("Accept", "*/*")).build();
+
+    assertThat(request.getHeaders()).isEqualTo("{\"Accept\":\"*/*\"}");
+    request.setHeaders("{}");
+    assertThat(request.getHeaderMap()).isNull();
+  }
+
+  @Test
+  void unencodedValuesPassThrough()
+  {
+    HeaderDictionary dictionary = dictionary(null);
+
+    assertThat(dictionary.encode(null)).isNull();
+    assertThat(dictionary.encode("not json")).isEqualTo("not json");
+    assertThat(dictionary.decode("{\"legacy\":\"json\"}")).isEqualTo("{\"legacy\":\"json\"}");
+  }
+
+  @Test
+  void codeIsStoredWithTheFirstTransactionThatCommitsIt()
+  {
+    JdbcDataSource dataSource = new JdbcDataSource();
+    dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+    JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+    TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    HeaderDictionary dictionary = dictionary(jdbcTemplate);
+    dictionary.init();
+    dictionary.encode("{\"Accept\":\"*/*\"}");
+
+    transactionTemplate.executeWithoutResult(status -> {
+      dictionary.encode("{\"Accept\":\"*/*\"}");
+      status.setRollbackOnly();
+    });
+    assertThat(dictionary.getStats()).containsEntry("uncommitted", 2);
+    assertThat(count(jdbcTemplate)).isZero();
+
+    transactionTemplate.executeWithoutResult(status -> dictionary.encode("{\"Accept\":\"*/*\"}"));
+    assertThat(dictionary.getStats()).containsEntry("uncommitted", 0);
+    assertThat(count(jdbcTemplate)).isEqualTo(2);
+
+    HeaderDictionary restarted = dictionary(jdbcTemplate);
+    restarted.init();
+    assertThat(restarted.decode("~;#0=#1;")).isEqualTo("{\"Accept\":\"*/*\"}");
+  }
+
+  @SuppressWarnings("unchecked")
+  private static HeaderDictionary dictionary(JdbcTemplate jdbcTemplate)
+  {
+    ObjectProvider<JdbcTemplate> provider = mock(ObjectProvider.class);
+    when(provider.getIfAvailable()).thenReturn(jdbcTemplate);
+    return new HeaderDictionary(provider, 100, 256);
+  }
+
+  private static Integer count(JdbcTemplate jdbcTemplate)
+  {
+    return jdbcTemplate.queryForObject("select count(*) from header_dictionary", Integer.class);
+  }
+}
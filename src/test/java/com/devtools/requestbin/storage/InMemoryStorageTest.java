@@ -0,0 +1,197 @@
+package com.devtools.requestbin.storage;
+
+import java.util.List;
+
+import com.devtools.requestbin.dto.CapturedRequestSummary;
+import com.devtools.requestbin.dto.RequestFilter;
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static com.devtools.requestbin.storage.StorageFixtures.bin;
+import static com.devtools.requestbin.storage.StorageFixtures.request;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InMemoryStorageTest
+{
+
+  private final InMemoryStorage storage = new InMemoryStorage(10);
+  private final TransactionTemplate transactionTemplate = new TransactionTemplate(new InMemoryTransactionManager());
+
+  @Test
+  void rolledBackCaptureLeavesNoTrace()
+  {
+    Bin bin = bin(storage, "rollback");
+
+    CapturedRequest request = request(bin, 1);
+    rollBack(() -> {
+      Bin locked = storage.findBinById(bin.getId()).orElseThrow();
+      storage.insertAll(List.of(request));
+      locked.setCaptureSequence(1L);
+      locked.setCurrentRequestCount(1);
+    });
+
+    assertThat(storage.findAfterSequence(bin.getId(), 0, 10)).isEmpty();
+    assertThat(storage.findById(request.getId())).isEmpty();
+    assertThat(bin.getCaptureSequence()).isZero();
+    assertThat(bin.getCurrentRequestCount()).isZero();
+  }
+
+  @Test
+  void committedCaptureStays()
+  {
+    Bin bin = bin(storage, "commit");
+
+    transactionTemplate.executeWithoutResult(status -> {
+      Bin locked = storage.findBinById(bin.getId()).orElseThrow();
+      append(locked, 1);
+      locked.setCurrentRequestCount(1);
+    });
+
+    assertThat(sequences(bin)).containsExactly(1L);
+    assertThat(bin.getCurrentRequestCount()).isEqualTo(1);
+  }
+
+  @Test
+  void rolledBackTrimPutsRequestsBack()
+  {
+    Bin bin = bin(storage, "trim");
+    for (long sequence = 1; sequence <= 5; sequence++)
+    {
+      append(bin, sequence);
+    }
+
+    rollBack(() -> {
+      storage.deleteUpToSequence(bin.getId(), 3);
+      append(bin, 6);
+    });
+
+    assertThat(sequences(bin)).containsExactly(1L, 2L, 3L, 4L, 5L);
+    assertThat(storage.findMinSequence(bin.getId())).isEqualTo(1L);
+  }
+
+  @Test
+  void rolledBackDeleteKeepsTheBinAndItsRequests()
+  {
+    Bin bin = bin(storage, "delete");
+    append(bin, 1);
+
+    rollBack(() -> storage.delete(bin));
+
+    assertThat(storage.findByUniqueUrl("delete")).containsSame(bin);
+    assertThat(sequences(bin)).containsExactly(1L);
+  }
+
+  @Test
+  void innerTransactionCommitsWhenTheOuterRollsBack()
+  {
+    Bin bin = bin(storage, "nested");
+    TransactionTemplate requiresNew = new TransactionTemplate(new InMemoryTransactionManager());
+    requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+    rollBack(() -> {
+      append(bin, 1);
+      requiresNew.executeWithoutResult(status -> append(bin, 2));
+    });
+
+    assertThat(sequences(bin)).containsExactly(2L);
+  }
+
+  @Test
+  void lockingOutsideATransactionFails()
+  {
+    Bin bin = bin(storage, "lock");
+
+    assertThatThrownBy(() -> storage.lockForUpdate(bin)).isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void filterAppliesEveryGivenCondition()
+  {
+    Bin bin = bin(storage, "filter");
+    CapturedRequest match = requestWith(bin, 1, "POST", "{\"X-Signature\":\"abc\"}", 10);
+    storage.insertAll(List.of(
+      match,
+      requestWith(bin, 2, "GET", "{\"X-Signature\":\"abc\"}", 10),
+      requestWith(bin, 3, "POST", "{\"X-Signature\":\"abcd\"}", 10),
+      requestWith(bin, 4, "POST", "{\"X-Signature\":\"abc\"}", 100)));
+
+    RequestFilter filter = new RequestFilter();
+    filter.setMethod("post");
+    filter.setHeaderName("x-signature");
+    filter.setHeaderValue("ABC");
+    filter.setMaxBodySize(50);
+
+    assertThat(ids(storage.findSummaries(bin.getId(), filter, null, 10))).containsExactly(match.getId());
+  }
+
+  @Test
+  void headerNameAloneMatchesAnyValue()
+  {
+    Bin bin = bin(storage, "header-name");
+    CapturedRequest signed = requestWith(bin, 1, "POST", "{\"X-Signature\":\"abc\"}", 0);
+    storage.insertAll(List.of(signed, requestWith(bin, 2, "POST", "{\"X-Other\":\"X-Signature\"}", 0)));
+
+    RequestFilter filter = new RequestFilter();
+    filter.setHeaderName("X-SIGNATURE");
+
+    assertThat(ids(storage.findSummaries(bin.getId(), filter, null, 10))).containsExactly(signed.getId());
+  }
+
+  @Test
+  void cursorPagesThroughMatchesNewestFirst()
+  {
+    Bin bin = bin(storage, "cursor");
+    for (long sequence = 1; sequence <= 7; sequence++)
+    {
+      storage.insertAll(List.of(requestWith(bin, sequence, sequence % 2 == 0 ? "GET" : "POST", "{}", 0)));
+    }
+    RequestFilter filter = new RequestFilter();
+    filter.setMethod("POST");
+
+    List<CapturedRequestSummary> first = storage.findSummaries(bin.getId(), filter, null, 2);
+    List<CapturedRequestSummary> second = storage.findSummaries(bin.getId(), filter, first.get(1).getId(), 2);
+    List<CapturedRequestSummary> last = storage.findSummaries(bin.getId(), filter, second.get(1).getId(), 2);
+
+    List<Long> all = ids(storage.findSummaries(bin.getId(), filter, null, 10));
+    assertThat(all).hasSize(4).isSortedAccordingTo((a, b) -> Long.compare(b, a));
+    assertThat(ids(first)).containsExactlyElementsOf(all.subList(0, 2));
+    assertThat(ids(second)).containsExactlyElementsOf(all.subList(2, 4));
+    assertThat(last).isEmpty();
+  }
+
+  private void rollBack(Runnable work)
+  {
+    transactionTemplate.executeWithoutResult(status -> {
+      work.run();
+      status.setRollbackOnly();
+    });
+  }
+
+  private void append(Bin bin, long sequence)
+  {
+    storage.insertAll(List.of(request(bin, sequence)));
+  }
+
+  private static CapturedRequest requestWith(Bin bin, long sequence, String method, String headers, int bodySize)
+  {
+    CapturedRequest request = request(bin, sequence);
+    request.setMethod(method);
+    request.setHeaders(headers);
+    request.setBodySize(bodySize);
+    return request;
+  }
+
+  private static List<Long> ids(List<CapturedRequestSummary> summaries)
+  {
+    return summaries.stream().map(CapturedRequestSummary::getId).toList();
+  }
+
+  private List<Long> sequences(Bin bin)
+  {
+    return storage.findAfterSequence(bin.getId(), 0, 100).stream().map(CapturedRequest::getSequence).toList();
+  }
+}
@@ -0,0 +1,85 @@
+package com.devtools.requestbin.storage;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogRecordCodecTest
+{
+
+  private static final LocalDateTime AT = LocalDateTime.of(2026, 1, 2, 3, 4, 5, 6_000);
+
+  @Test
+  void recordRoundTripsEveryField()
+  {
+    ByteBuffer record = LogRecordCodec.encode(request("h\u00e9llo"));
+    ByteBuffer payload = payloadOf(record);
+
+    assertThat(record.getInt(record.limit() - LogRecordCodec.TRAILER_BYTES)).isEqualTo(payload.limit());
+    assertThat(LogRecordCodec.checksumMatches(payload, record.getInt(4))).isTrue();
+    assertThat(LogRecordCodec.sequence(payload)).isEqualTo(7);
+    assertThat(LogRecordCodec.timestamp(payload)).isEqualTo(AT);
+    assertThat(LogRecordCodec.bodySize(payload)).isEqualTo(6);
+
+    CapturedRequest decoded = LogRecordCodec.decode(payload, 3L, true);
+    assertThat(decoded.getId()).isEqualTo(42L);
+    assertThat(decoded.getBin().getId()).isEqualTo(3L);
+    assertThat(decoded.getMethod()).isEqualTo("POST");
+    assertThat(decoded.getIpAddress()).isNull();
+    assertThat(decoded.getHeaders()).isEqualTo("{}");
+    assertThat(decoded.getBody()).isEqualTo("h\u00e9llo");
+    assertThat(decoded.getDuplicateOf()).isEqualTo(41L);
+    assertThat(decoded.getDeliveryCount()).isEqualTo(2);
+    assertThat(decoded.getLastDeliveredAt()).isEqualTo(AT.plusMinutes(1));
+  }
+
+  @Test
+  void decodingWithoutBodySkipsIt()
+  {
+    CapturedRequest decoded = LogRecordCodec.decode(payloadOf(LogRecordCodec.encode(request("body"))), 3L, false);
+
+    assertThat(decoded.getBody()).isNull();
+    assertThat(decoded.getBodyPreview()).isEqualTo("preview");
+  }
+
+  @Test
+  void corruptedPayloadFailsTheChecksum()
+  {
+    ByteBuffer record = LogRecordCodec.encode(request("body"));
+    int crc = record.getInt(4);
+    record.put(record.limit() - LogRecordCodec.TRAILER_BYTES - 1, (byte)'x');
+
+    assertThat(LogRecordCodec.checksumMatches(payloadOf(record), crc)).isFalse();
+  }
+
+  private static ByteBuffer payloadOf(ByteBuffer record)
+  {
+    byte[] bytes = new byte[record.remaining()];
+    record.duplicate().get(bytes);
+    return LogRecordCodec.payloadOf(bytes);
+  }
+
+  private static CapturedRequest request(String body)
+  {
+    return CapturedRequest.builder()
+      .id(42L)
+      .bin(Bin.builder().id(3L).build())
+      .sequence(7L)
+      .timestamp(AT)
+      .method("POST")
+      .headers("{}")
+      .queryParams("{}")
+      .body(body)
+      .bodySize(6)
+      .bodyPreview("preview")
+      .duplicateOf(41L)
+      .deliveryCount(2)
+      .lastDeliveredAt(AT.plusMinutes(1))
+      .build();
+  }
+}
@@ -0,0 +1,92 @@
+package com.devtools.requestbin.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static com.devtools.requestbin.storage.StorageFixtures.bin;
+import static com.devtools.requestbin.storage.StorageFixtures.request;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogStructuredRequestStoreTest
+{
+
+  @TempDir
+  Path dir;
+
+  private final InMemoryStorage binStore = new InMemoryStorage(10);
+  private final TransactionTemplate transactionTemplate = new TransactionTemplate(new InMemoryTransactionManager());
+  private LogStructuredRequestStore store;
+
+  @BeforeEach
+  void open()
+    throws IOException
+  {
+    store = new LogStructuredRequestStore(dir.toString(), 1 << 20, 4, 1, binStore);
+  }
+
+  @AfterEach
+  void shutdown()
+  {
+    store.shutdown();
+  }
+
+  @Test
+  void rolledBackAppendIsNeverWritten()
+  {
+    Bin bin = bin(binStore, "rollback");
+
+    transactionTemplate.executeWithoutResult(status -> {
+      store.save(request(bin, 1));
+      status.setRollbackOnly();
+    });
+    transactionTemplate.executeWithoutResult(status -> {
+      store.save(request(bin, 2));
+      // Buffered until the commit, so not even this transaction reads it yet
+      assertThat(store.findAfterSequence(bin.getId(), 0, 10)).isEmpty();
+    });
+
+    assertThat(store.findAfterSequence(bin.getId(), 0, 10)).extracting(CapturedRequest::getSequence)
+      .containsExactly(2L);
+    assertThat(store.findById(RequestIds.of(bin.getId(), 1))).isEmpty();
+  }
+
+  @Test
+  void idleLogsAreClosedAndReopenedOnDemand()
+  {
+    Bin first = bin(binStore, "first");
+    Bin second = bin(binStore, "second");
+
+    store.save(request(first, 1));
+    store.save(request(second, 1));
+
+    assertThat((Map<?, ?>)ReflectionTestUtils.getField(store, "logs")).hasSize(1);
+    assertThat(store.findAfterSequence(first.getId(), 0, 10)).hasSize(1);
+    assertThat(store.findAfterSequence(second.getId(), 0, 10)).hasSize(1);
+  }
+
+  @Test
+  void recordsAboveTheCommittedSequenceAreDiscardedOnRestart()
+    throws IOException
+  {
+    Bin bin = bin(binStore, "restart");
+    store.insertAll(List.of(request(bin, 1), request(bin, 2)));
+    bin.setCaptureSequence(1L);
+
+    store.shutdown();
+    store = new LogStructuredRequestStore(dir.toString(), 1 << 20, 4, 1, binStore);
+
+    assertThat(store.findAfterSequence(bin.getId(), 0, 10)).extracting(CapturedRequest::getSequence)
+      .containsExactly(1L);
+  }
+}
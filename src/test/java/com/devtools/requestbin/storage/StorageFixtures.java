@@ -0,0 +1,47 @@
+package com.devtools.requestbin.storage;
+
+import java.time.LocalDateTime;
+
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+
+/**
+ * Bins and requests shared by the storage and service tests
+ */
+public final class StorageFixtures
+{
+
+  private StorageFixtures()
+  {
+  }
+
+  /**
+   * An active bin with room for 100 requests, saved to the store
+   */
+  public static Bin bin(BinStore binStore, String uniqueUrl)
+  {
+    return binStore.save(Bin.builder()
+      .uniqueUrl(uniqueUrl)
+      .expiresAt(LocalDateTime.now().plusDays(1))
+      .maxRequests(100)
+      .maxBytes(1_000_000L)
+      .build());
+  }
+
+  /**
+   * An empty POST with the given sequence, not yet stored
+   */
+  public static CapturedRequest request(Bin bin, long sequence)
+  {
+    return CapturedRequest.builder()
+      .bin(bin)
+      .sequence(sequence)
+      .method("POST")
+      .headers("{}")
+      .queryParams("{}")
+      .body("")
+      .bodySize(0)
+      .timestamp(LocalDateTime.now())
+      .build();
+  }
+}
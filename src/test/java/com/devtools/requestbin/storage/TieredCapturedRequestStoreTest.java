@@ -0,0 +1,92 @@
+package com.devtools.requestbin.storage;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.devtools.requestbin.entity.Bin;
+import com.devtools.requestbin.entity.CapturedRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static com.devtools.requestbin.storage.StorageFixtures.bin;
+import static com.devtools.requestbin.storage.StorageFixtures.request;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TieredCapturedRequestStoreTest
+{
+
+  private final InMemoryStorage engine = new InMemoryStorage(10);
+  private final TransactionTemplate transactionTemplate = new TransactionTemplate(new InMemoryTransactionManager());
+  private final TieredCapturedRequestStore store =
+    new TieredCapturedRequestStore(engine, engine, transactionTemplate, 10, 1_000_000);
+
+  @Test
+  void flusherWritesQueuedRequests()
+  {
+    Bin bin = bin(engine, "flushed");
+    store.save(request(bin, 1));
+    assertThat(engine.findAfterSequence(bin.getId(), 0, 10)).isEmpty();
+
+    store.flush();
+
+    assertThat(engine.findAfterSequence(bin.getId(), 0, 10)).hasSize(1);
+    assertThat(store.getStats()).containsEntry("pendingWrites", 0);
+  }
+
+  @Test
+  void retentionTransactionOnlyHoldsBackItsOwnBin()
+    throws Exception
+  {
+    Bin trimmed = bin(engine, "trimmed");
+    Bin other = bin(engine, "other");
+    CompletableFuture<Void> locked = new CompletableFuture<>();
+    CompletableFuture<Void> done = new CompletableFuture<>();
+    CompletableFuture<Void> retention = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(
+      status -> {
+        store.findOldestSizes(trimmed.getId(), 10);
+        locked.complete(null);
+        done.join();
+      }));
+    locked.get(5, TimeUnit.SECONDS);
+
+    store.save(request(trimmed, 1));
+    store.save(request(other, 1));
+    store.flush();
+
+    assertThat(engine.findAfterSequence(other.getId(), 0, 10)).hasSize(1);
+    assertThat(engine.findAfterSequence(trimmed.getId(), 0, 10)).isEmpty();
+
+    done.complete(null);
+    retention.get(5, TimeUnit.SECONDS);
+    store.flush();
+    assertThat(engine.findAfterSequence(trimmed.getId(), 0, 10)).hasSize(1);
+  }
+
+  @Test
+  void requestsWrittenByRetentionAreNotWrittenAgainByTheFlusher()
+    throws Exception
+  {
+    Bin bin = bin(engine, "retained");
+    store.save(request(bin, 1));
+    CompletableFuture<Void> locked = new CompletableFuture<>();
+    CompletableFuture<Void> done = new CompletableFuture<>();
+    CompletableFuture<Void> retention = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(
+      status -> {
+        store.findOldestSizes(bin.getId(), 10);
+        locked.complete(null);
+        done.join();
+      }));
+    locked.get(5, TimeUnit.SECONDS);
+    store.save(request(bin, 2));
+
+    store.flush();
+    done.complete(null);
+    retention.get(5, TimeUnit.SECONDS);
+    store.flush();
+
+    assertThat(engine.findAfterSequence(bin.getId(), 0, 10))
+      .extracting(CapturedRequest::getSequence)
+      .containsExactly(1L, 2L);
+    assertThat(store.getStats()).containsEntry("pendingWrites", 0);
+  }
+}